@@ -0,0 +1,59 @@
+package com.isp.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Many router feeds adding usage to the same few hotspot devices at once. Each iteration checks that the
+ * devices' byte totals equal everything that was added, so a lost update fails the run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class DeviceConnectionContentionBenchmark {
+
+    private static final long BYTES_PER_UPDATE = 1_500;
+
+    /** 1 puts every feed on one device; more spreads the contention. */
+    @Param({"1", "16", "1024"})
+    public int devices;
+
+    private DeviceConnection[] connections;
+    private final LongAdder updates = new LongAdder();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        connections = new DeviceConnection[devices];
+        for (int i = 0; i < devices; i++) {
+            connections[i] = new DeviceConnection("dev-" + i, "cust-" + i, "Device " + i, "AA:BB:CC:00:00:00");
+        }
+        updates.reset();
+    }
+
+    @TearDown(Level.Iteration)
+    public void verifyTotals() {
+        long total = 0;
+        for (DeviceConnection connection : connections) {
+            total += connection.getDataUsedBytes();
+        }
+        long expected = updates.sum() * BYTES_PER_UPDATE;
+        if (total != expected) {
+            throw new IllegalStateException("Lost usage: expected " + expected + " bytes but devices hold " + total);
+        }
+    }
+
+    @Benchmark
+    public boolean addDataBytes() {
+        DeviceConnection connection = connections[ThreadLocalRandom.current().nextInt(devices)];
+        boolean added = connection.addDataBytes(BYTES_PER_UPDATE);
+        updates.increment();
+        return added;
+    }
+}
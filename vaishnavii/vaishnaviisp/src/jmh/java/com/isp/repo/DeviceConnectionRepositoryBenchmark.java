@@ -0,0 +1,44 @@
+package com.isp.repo;
+
+import com.isp.model.DeviceConnection;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup cost of DeviceConnectionRepository as the number of stored devices grows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class DeviceConnectionRepositoryBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int records;
+
+    private DeviceConnectionRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = new DeviceConnectionRepository();
+        for (int i = 0; i < records; i++) {
+            repository.save(new DeviceConnection("dev-" + i, "cust-" + (i % 1000), "Device " + i,
+                    String.format("AA:BB:CC:%02X:%02X:%02X", (i >> 16) & 0xFF, (i >> 8) & 0xFF, i & 0xFF)));
+        }
+    }
+
+    @Benchmark
+    public Object findById() {
+        return repository.findById("dev-" + ThreadLocalRandom.current().nextInt(records));
+    }
+
+    @Benchmark
+    public Object findActiveByCustomerId() {
+        return repository.findActiveByCustomerId("cust-" + ThreadLocalRandom.current().nextInt(1000));
+    }
+}
@@ -0,0 +1,58 @@
+package com.isp.repo;
+
+import com.isp.model.NetworkUsage;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup cost of UsageRepository as the number of stored records grows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class UsageRepositoryBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int records;
+
+    @Param({"1000"})
+    public int customers;
+
+    private UsageRepository repository;
+    private LocalDateTime start;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = new UsageRepository();
+        start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < records; i++) {
+            repository.save(new NetworkUsage("u" + i, "cust-" + (i % customers), 0.25, start.plusMinutes(i)));
+        }
+    }
+
+    private String randomCustomer() {
+        return "cust-" + ThreadLocalRandom.current().nextInt(customers);
+    }
+
+    @Benchmark
+    public Object findByCustomerId() {
+        return repository.findByCustomerId(randomCustomer());
+    }
+
+    @Benchmark
+    public double totalForCustomer() {
+        return repository.getTotalGigabytes(randomCustomer());
+    }
+
+    @Benchmark
+    public double totalForBillingPeriod() {
+        return repository.getTotalGigabytes(randomCustomer(), start.plusDays(7), start.plusDays(37));
+    }
+}
@@ -0,0 +1,58 @@
+package com.isp.service;
+
+import com.isp.model.BillingRunResult;
+import com.isp.model.Customer;
+import com.isp.model.NetworkUsage;
+import com.isp.repo.CustomerRepository;
+import com.isp.repo.UsageRepository;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full billing cycle over an in-memory customer base (checkpointing disabled).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class BillingServiceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int customers;
+
+    @Param({"10"})
+    public int recordsPerCustomer;
+
+    private BillingService billingService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CustomerRepository customerRepo = new CustomerRepository();
+        UsageRepository usageRepo = new UsageRepository();
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int c = 0; c < customers; c++) {
+            String id = "cust-" + c;
+            customerRepo.save(new Customer(id, "Customer " + c, "c" + c + "@example.com"));
+            for (int r = 0; r < recordsPerCustomer; r++) {
+                usageRepo.save(new NetworkUsage(id + "-" + r, id, 1.5, start.plusHours(r)));
+            }
+        }
+        billingService = new BillingService(customerRepo, usageRepo,
+                new BillingRunEngine.Settings(16, Runtime.getRuntime().availableProcessors(), null));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        billingService.shutdown();
+    }
+
+    @Benchmark
+    public BillingRunResult runBillingCycle() {
+        return billingService.runBillingCycle();
+    }
+}
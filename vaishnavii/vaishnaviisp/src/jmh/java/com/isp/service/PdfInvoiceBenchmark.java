@@ -0,0 +1,26 @@
+package com.isp.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rendering one invoice PDF.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PdfInvoiceBenchmark {
+
+    private final PdfInvoiceService pdfInvoiceService = new PdfInvoiceService();
+
+    @Benchmark
+    public byte[] generateInvoice() throws IOException {
+        return pdfInvoiceService.generateInvoice("INV-20240101-1234", "Vaishnavi Muthuvel",
+                "customer@example.com", "Premium 100GB", 49.99, 87.25, 93.62);
+    }
+}
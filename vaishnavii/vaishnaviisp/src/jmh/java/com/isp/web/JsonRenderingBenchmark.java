@@ -0,0 +1,93 @@
+package com.isp.web;
+
+import com.google.gson.Gson;
+import com.isp.model.Customer;
+import com.isp.model.DeviceConnection;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebServer's hand-built JSON strings compared with Gson for the same payloads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonRenderingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private final Gson gson = new Gson();
+    private List<Customer> customers;
+    private List<DeviceConnection> devices;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        customers = new ArrayList<>(size);
+        devices = new ArrayList<>(size);
+        LocalDateTime connected = LocalDateTime.now().minusHours(3);
+        for (int i = 0; i < size; i++) {
+            customers.add(new Customer("cust-" + i, "Customer \"" + i + "\"", "c" + i + "@example.com"));
+            DeviceConnection device = new DeviceConnection("dev-" + i, "cust-1", "Laptop " + i,
+                    "AA:BB:CC:DD:EE:" + String.format("%02X", i & 0xFF), connected);
+            device.addDataUsage(i * 0.125);
+            devices.add(device);
+        }
+    }
+
+    @Benchmark
+    public String customersHandBuilt() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < customers.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(WebServer.customerToJson(customers.get(i)));
+        }
+        return sb.append(']').toString();
+    }
+
+    @Benchmark
+    public String customersGson() {
+        List<Map<String, Object>> rows = new ArrayList<>(customers.size());
+        for (Customer c : customers) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", c.getId());
+            row.put("name", c.getName());
+            row.put("email", c.getEmail());
+            rows.add(row);
+        }
+        return gson.toJson(rows);
+    }
+
+    @Benchmark
+    public String devicesHandBuilt() {
+        return WebServer.deviceListToJson(devices);
+    }
+
+    @Benchmark
+    public String devicesGson() {
+        List<Map<String, Object>> rows = new ArrayList<>(devices.size());
+        for (DeviceConnection d : devices) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", d.getId());
+            row.put("customerId", d.getCustomerId());
+            row.put("deviceName", d.getDeviceName());
+            row.put("macAddress", d.getMacAddress());
+            row.put("dataUsedGB", String.format(Locale.ROOT, "%.3f", d.getDataUsedGB()));
+            row.put("active", d.isActive());
+            row.put("connectedMinutes", d.getConnectionDurationMinutes());
+            rows.add(row);
+        }
+        return gson.toJson(rows);
+    }
+}
@@ -15,6 +15,8 @@ public class Main {
         try {
             WebServer server = new WebServer();
             server.start(port);
+            // Flush write-behind buffers (usage, rollups, alerts, devices) on SIGTERM
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "isp-shutdown"));
             System.out.println("Web server started on http://localhost:" + port);
             // Keep main thread alive so the HttpServer threads keep serving
             synchronized (Main.class) {
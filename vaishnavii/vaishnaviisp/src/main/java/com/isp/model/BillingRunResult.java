@@ -0,0 +1,117 @@
+package com.isp.model;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome of one billing cycle run: the bills, totals, per-partition timings and failures.
+ */
+public class BillingRunResult {
+
+    /**
+     * Bill computed for one customer.
+     */
+    public record CustomerBill(String customerId, String customerName, double usageGb, double amount) {
+    }
+
+    /**
+     * Work done for one partition of the customer set.
+     */
+    public record PartitionResult(int partition, int customers, int fromCheckpoint, double amount,
+                                  long durationMillis, String error) {
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    private final String runId;
+    private final boolean resumed;
+    private final LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private final List<CustomerBill> bills = new ArrayList<>();
+    private final List<PartitionResult> partitions = new ArrayList<>();
+    private final Map<String, String> failures = new TreeMap<>(); // customerId -> error
+
+    public BillingRunResult(String runId, boolean resumed, LocalDateTime startedAt) {
+        this.runId = runId;
+        this.resumed = resumed;
+        this.startedAt = startedAt;
+    }
+
+    public void addPartition(PartitionResult partition, List<CustomerBill> partitionBills, Map<String, String> partitionFailures) {
+        partitions.add(partition);
+        bills.addAll(partitionBills);
+        failures.putAll(partitionFailures);
+    }
+
+    public void finish(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getDurationMillis() {
+        return finishedAt == null ? 0 : Duration.between(startedAt, finishedAt).toMillis();
+    }
+
+    public List<CustomerBill> getBills() {
+        return Collections.unmodifiableList(bills);
+    }
+
+    public List<PartitionResult> getPartitions() {
+        return Collections.unmodifiableList(partitions);
+    }
+
+    public Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public int getCustomersBilled() {
+        return bills.size();
+    }
+
+    public double getTotalAmount() {
+        return bills.stream().mapToDouble(CustomerBill::amount).sum();
+    }
+
+    public double getTotalUsageGb() {
+        return bills.stream().mapToDouble(CustomerBill::usageGb).sum();
+    }
+
+    public int getPartitionsFromCheckpoint() {
+        return (int) partitions.stream().filter(p -> p.customers() > 0 && p.fromCheckpoint() == p.customers()).count();
+    }
+
+    /**
+     * True when every partition finished; failed customers are reported but do not block completion.
+     */
+    public boolean isComplete() {
+        return partitions.stream().noneMatch(PartitionResult::failed);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BillingRun{id=%s, customers=%d, total=$%.2f, partitions=%d (%d from checkpoint), failures=%d, %d ms}",
+                runId, getCustomersBilled(), getTotalAmount(), partitions.size(), getPartitionsFromCheckpoint(),
+                failures.size(), getDurationMillis());
+    }
+}
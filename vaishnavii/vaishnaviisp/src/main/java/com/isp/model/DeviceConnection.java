@@ -2,20 +2,28 @@ package com.isp.model;
 
 import java.time.LocalDateTime;
 import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a device connected to a customer's hotspot.
  * Tracks device information, connection time, and data usage.
+ *
+ * Usage and the connected/disconnected state share one atomic word (the top bit marks a disconnected
+ * device, the rest counts bytes), so concurrent usage updates never lose increments and none can land
+ * after the disconnect that recorded the final total.
  */
 public class DeviceConnection {
+    public static final long BYTES_PER_GB = 1L << 30;
+    private static final long DISCONNECTED = Long.MIN_VALUE;
+    private static final long BYTES = Long.MAX_VALUE;
+
     private final String id;
     private final String customerId;
     private final String deviceName;
     private final String macAddress;
     private final LocalDateTime connectTime;
-    private LocalDateTime disconnectTime;
-    private double dataUsedGB;
-    private boolean isActive;
+    private volatile LocalDateTime disconnectTime;
+    private final AtomicLong state;
     private String ipAddress;
     private double averageSpeedMbps;
 
@@ -25,8 +33,7 @@ public class DeviceConnection {
         this.deviceName = deviceName;
         this.macAddress = macAddress;
         this.connectTime = LocalDateTime.now();
-        this.dataUsedGB = 0.0;
-        this.isActive = true;
+        this.state = new AtomicLong();
         this.ipAddress = "";
         this.averageSpeedMbps = 0.0;
     }
@@ -37,8 +44,7 @@ public class DeviceConnection {
         this.deviceName = deviceName;
         this.macAddress = macAddress;
         this.connectTime = connectTime;
-        this.dataUsedGB = 0.0;
-        this.isActive = true;
+        this.state = new AtomicLong();
         this.ipAddress = "";
         this.averageSpeedMbps = 0.0;
     }
@@ -53,8 +59,7 @@ public class DeviceConnection {
         this.macAddress = macAddress;
         this.connectTime = connectTime;
         this.disconnectTime = disconnectTime;
-        this.dataUsedGB = dataUsedGB;
-        this.isActive = isActive;
+        this.state = new AtomicLong(toBytes(dataUsedGB) | (isActive ? 0 : DISCONNECTED));
         this.ipAddress = ipAddress != null ? ipAddress : "";
         this.averageSpeedMbps = averageSpeedMbps;
     }
@@ -83,21 +88,52 @@ public class DeviceConnection {
         return disconnectTime;
     }
 
-    public void setDisconnectTime(LocalDateTime disconnectTime) {
+    /**
+     * Mark the device disconnected at {@code disconnectTime}, keeping its usage so far.
+     *
+     * @return false if it was already disconnected
+     */
+    public boolean setDisconnectTime(LocalDateTime disconnectTime) {
+        long previous = state.getAndUpdate(s -> s | DISCONNECTED);
+        if ((previous & DISCONNECTED) != 0) return false;
         this.disconnectTime = disconnectTime;
-        this.isActive = false;
+        return true;
     }
 
     public double getDataUsedGB() {
-        return dataUsedGB;
+        return (double) getDataUsedBytes() / BYTES_PER_GB;
     }
 
-    public void addDataUsage(double dataGB) {
-        this.dataUsedGB += dataGB;
+    public long getDataUsedBytes() {
+        return state.get() & BYTES;
+    }
+
+    /**
+     * Add usage to an active connection.
+     *
+     * @return false if the device is already disconnected
+     */
+    public boolean addDataUsage(double dataGB) {
+        return addDataBytes(toBytes(dataGB));
+    }
+
+    /**
+     * Add usage to an active connection.
+     *
+     * @return false if the device is already disconnected
+     */
+    public boolean addDataBytes(long bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("Usage must not be negative: " + bytes);
+        long current;
+        do {
+            current = state.get();
+            if ((current & DISCONNECTED) != 0) return false;
+        } while (!state.compareAndSet(current, Math.min(current + bytes, BYTES)));
+        return true;
     }
 
     public boolean isActive() {
-        return isActive;
+        return (state.get() & DISCONNECTED) == 0;
     }
 
     public String getIpAddress() {
@@ -120,24 +156,39 @@ public class DeviceConnection {
      * Calculate connection duration in minutes.
      */
     public long getConnectionDurationMinutes() {
-        LocalDateTime endTime = isActive ? LocalDateTime.now() : disconnectTime;
+        LocalDateTime endTime = disconnectTime;
+        if (endTime == null) endTime = LocalDateTime.now();
         return Duration.between(connectTime, endTime).toMinutes();
     }
 
     /**
-     * Disconnect the device and record final data usage.
+     * Disconnect the device and record final data usage. Only the first disconnect takes effect.
+     *
+     * @return false if it was already disconnected
      */
-    public void disconnect(double finalDataUsedGB) {
-        this.dataUsedGB = finalDataUsedGB;
+    public boolean disconnect(double finalDataUsedGB) {
+        long finalState = toBytes(finalDataUsedGB) | DISCONNECTED;
+        long current;
+        do {
+            current = state.get();
+            if ((current & DISCONNECTED) != 0) return false;
+        } while (!state.compareAndSet(current, finalState));
         this.disconnectTime = LocalDateTime.now();
-        this.isActive = false;
+        return true;
+    }
+
+    private static long toBytes(double gigabytes) {
+        if (gigabytes < 0 || Double.isNaN(gigabytes)) {
+            throw new IllegalArgumentException("Usage must not be negative: " + gigabytes);
+        }
+        return Math.min(Math.round(gigabytes * BYTES_PER_GB), BYTES);
     }
 
     @Override
     public String toString() {
-        String status = isActive ? "ACTIVE" : "DISCONNECTED";
+        String status = isActive() ? "ACTIVE" : "DISCONNECTED";
         String duration = getConnectionDurationMinutes() + " min";
         return String.format("Device{id='%s', name='%s', MAC='%s', status=%s, data=%.2f GB, duration=%s}",
-                id, deviceName, macAddress, status, dataUsedGB, duration);
+                id, deviceName, macAddress, status, getDataUsedGB(), duration);
     }
 }
@@ -1,7 +1,8 @@
 package com.isp.model;
 
+import com.isp.util.IdGenerator;
+
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 public class Invoice {
     private String invoiceId;
@@ -16,12 +17,13 @@ public class Invoice {
     private LocalDateTime invoiceDate;
     private String invoiceNumber;
     private String pdfPath;
+    private String billingPeriod; // yyyy-MM
 
     // Constructor
     public Invoice() {
-        this.invoiceId = UUID.randomUUID().toString();
+        this.invoiceId = IdGenerator.generate();
         this.invoiceDate = LocalDateTime.now();
-        this.invoiceNumber = generateInvoiceNumber();
+        // invoiceNumber is assigned by InvoiceNumberService when the invoice is issued
     }
 
     public Invoice(String paymentId, String customerId, String customerName, String customerEmail, 
@@ -37,14 +39,6 @@ public class Invoice {
         this.totalAmount = amount + taxAmount;
     }
 
-    private String generateInvoiceNumber() {
-        // Format: INV-YYYYMMDD-XXXX
-        LocalDateTime now = LocalDateTime.now();
-        String datePart = String.format("%04d%02d%02d", now.getYear(), now.getMonthValue(), now.getDayOfMonth());
-        String randomPart = String.format("%04d", (int)(Math.random() * 10000));
-        return "INV-" + datePart + "-" + randomPart;
-    }
-
     private double calculateTax(double amount) {
         // 18% GST
         return amount * 0.18;
@@ -147,6 +141,14 @@ public class Invoice {
         this.pdfPath = pdfPath;
     }
 
+    public String getBillingPeriod() {
+        return billingPeriod;
+    }
+
+    public void setBillingPeriod(String billingPeriod) {
+        this.billingPeriod = billingPeriod;
+    }
+
     @Override
     public String toString() {
         return "Invoice{" +
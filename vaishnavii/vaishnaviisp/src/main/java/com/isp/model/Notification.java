@@ -1,7 +1,8 @@
 package com.isp.model;
 
+import com.isp.util.IdGenerator;
+
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 /**
  * Notification model for storing user notifications
@@ -22,7 +23,7 @@ public class Notification {
     private String metadata; // JSON string for additional data
 
     public Notification() {
-        this.id = UUID.randomUUID().toString();
+        this.id = IdGenerator.generate();
         this.createdAt = LocalDateTime.now();
         this.read = false;
         this.sent = false;
@@ -38,6 +39,25 @@ public class Notification {
         this.priority = priority;
     }
 
+    /**
+     * Copy of another notification, including its id.
+     */
+    public Notification(Notification other) {
+        this.id = other.id;
+        this.userId = other.userId;
+        this.type = other.type;
+        this.category = other.category;
+        this.title = other.title;
+        this.message = other.message;
+        this.priority = other.priority;
+        this.read = other.read;
+        this.sent = other.sent;
+        this.createdAt = other.createdAt;
+        this.sentAt = other.sentAt;
+        this.readAt = other.readAt;
+        this.metadata = other.metadata;
+    }
+
     // Getters and Setters
     public String getId() {
         return id;
@@ -1,7 +1,8 @@
 package com.isp.model;
 
+import com.isp.util.IdGenerator;
+
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 public class Payment {
     private String paymentId;
@@ -54,7 +55,7 @@ public class Payment {
 
     // Constructor
     public Payment() {
-        this.paymentId = UUID.randomUUID().toString();
+        this.paymentId = IdGenerator.generate();
         this.createdAt = LocalDateTime.now();
         this.status = PaymentStatus.PENDING;
     }
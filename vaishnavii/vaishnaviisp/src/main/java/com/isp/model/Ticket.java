@@ -1,7 +1,8 @@
 package com.isp.model;
 
+import com.isp.util.IdGenerator;
+
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 /**
  * Represents a support ticket for troubleshooting.
@@ -22,7 +23,7 @@ public class Ticket {
     private LocalDateTime resolvedAt;
 
     public Ticket(String customerId, String description) {
-        this.id = UUID.randomUUID().toString();
+        this.id = IdGenerator.generate();
         this.customerId = customerId;
         this.description = description;
         this.status = Status.OPEN;
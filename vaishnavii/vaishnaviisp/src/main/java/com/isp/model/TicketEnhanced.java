@@ -1,9 +1,10 @@
 package com.isp.model;
 
+import com.isp.util.IdGenerator;
+
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Enhanced ticket with messaging and assignment.
@@ -29,9 +30,10 @@ public class TicketEnhanced {
     private String assignedToAdminId;
     private String assignedToAdminName;
     private List<TicketMessage> messages;
+    private int messageCount = -1; // set when loaded as a summary without message bodies
 
     public TicketEnhanced(String customerId, String customerName, String subject, String description) {
-        this.id = UUID.randomUUID().toString();
+        this.id = IdGenerator.generate();
         this.customerId = customerId;
         this.customerName = customerName;
         this.subject = subject;
@@ -42,6 +44,26 @@ public class TicketEnhanced {
         this.messages = new ArrayList<>();
     }
 
+    /**
+     * Restore a persisted ticket without generating a new id or timestamps.
+     */
+    public TicketEnhanced(String id, String customerId, String customerName, String subject, String description,
+                          Status status, Priority priority, LocalDateTime createdAt, LocalDateTime resolvedAt,
+                          String assignedToAdminId, String assignedToAdminName) {
+        this.id = id;
+        this.customerId = customerId;
+        this.customerName = customerName;
+        this.subject = subject;
+        this.description = description;
+        this.status = status;
+        this.priority = priority;
+        this.createdAt = createdAt;
+        this.resolvedAt = resolvedAt;
+        this.assignedToAdminId = assignedToAdminId;
+        this.assignedToAdminName = assignedToAdminName;
+        this.messages = new ArrayList<>();
+    }
+
     // Getters and Setters
     public String getId() { return id; }
     public String getCustomerId() { return customerId; }
@@ -64,7 +86,12 @@ public class TicketEnhanced {
     public String getAssignedToAdminName() { return assignedToAdminName; }
     public void setAssignedToAdminName(String assignedToAdminName) { this.assignedToAdminName = assignedToAdminName; }
     public List<TicketMessage> getMessages() { return messages; }
-    public void addMessage(TicketMessage message) { this.messages.add(message); }
+    public void addMessage(TicketMessage message) {
+        this.messages.add(message);
+        if (messageCount >= 0) messageCount++;
+    }
+    public int getMessageCount() { return messageCount >= 0 ? messageCount : messages.size(); }
+    public void setMessageCount(int messageCount) { this.messageCount = messageCount; }
 
     @Override
     public String toString() {
@@ -73,7 +100,7 @@ public class TicketEnhanced {
                 ", subject='" + subject + '\'' +
                 ", status=" + status +
                 ", priority=" + priority +
-                ", messages=" + messages.size() +
+                ", messages=" + getMessageCount() +
                 '}';
     }
 }
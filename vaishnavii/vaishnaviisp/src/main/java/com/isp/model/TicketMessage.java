@@ -24,6 +24,19 @@ public class TicketMessage {
         this.sentAt = LocalDateTime.now();
     }
 
+    /**
+     * Restore a persisted message with its original timestamp.
+     */
+    public TicketMessage(String id, String ticketId, String senderId, String senderName, String message, String type, LocalDateTime sentAt) {
+        this.id = id;
+        this.ticketId = ticketId;
+        this.senderId = senderId;
+        this.senderName = senderName;
+        this.message = message;
+        this.type = type;
+        this.sentAt = sentAt;
+    }
+
     // Getters
     public String getId() { return id; }
     public String getTicketId() { return ticketId; }
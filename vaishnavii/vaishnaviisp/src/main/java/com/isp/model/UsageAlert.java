@@ -9,7 +9,18 @@ public class UsageAlert {
     public enum AlertType {
         WARNING_80,    // 80% usage
         WARNING_90,    // 90% usage
-        LIMIT_REACHED  // 100% usage
+        LIMIT_REACHED, // 100% usage
+        THRESHOLD;     // a customer-chosen percentage (see thresholdPercent)
+
+        /**
+         * Alert type for a usage threshold in percent.
+         */
+        public static AlertType forThreshold(int percent) {
+            if (percent >= 100) return LIMIT_REACHED;
+            if (percent == 90) return WARNING_90;
+            if (percent == 80) return WARNING_80;
+            return THRESHOLD;
+        }
     }
     
     public enum AlertStatus {
@@ -23,6 +34,7 @@ public class UsageAlert {
     private AlertType alertType;
     private AlertStatus status;
     private double usagePercentage;
+    private int thresholdPercent;
     private LocalDateTime createdAt;
     private LocalDateTime acknowledgedAt;
     
@@ -55,6 +67,9 @@ public class UsageAlert {
     public double getUsagePercentage() { return usagePercentage; }
     public void setUsagePercentage(double usagePercentage) { this.usagePercentage = usagePercentage; }
     
+    public int getThresholdPercent() { return thresholdPercent; }
+    public void setThresholdPercent(int thresholdPercent) { this.thresholdPercent = thresholdPercent; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
@@ -70,6 +85,8 @@ public class UsageAlert {
                 return String.format("High Usage Alert: You have used %.1f%% of your data plan!", usagePercentage);
             case LIMIT_REACHED:
                 return String.format("Data Limit Reached: You have used %.1f%% of your data plan!", usagePercentage);
+            case THRESHOLD:
+                return String.format("Usage Alert: You have used %.1f%% of your data plan.", usagePercentage);
             default:
                 return "Usage alert";
         }
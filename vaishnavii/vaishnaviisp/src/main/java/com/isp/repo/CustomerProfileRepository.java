@@ -15,6 +15,12 @@ import java.util.Optional;
  */
 public class CustomerProfileRepository {
 
+    /**
+     * An active customer with a plan, joined with the login email, for batch billing.
+     */
+    public record Billable(CustomerProfile profile, String email) {
+    }
+
     public void save(CustomerProfile profile) {
         String sql = """
             INSERT INTO customer_profiles (id, user_id, full_name, is_active, current_plan_id, plan_start_date, plan_renewal_date, created_at)
@@ -187,6 +193,48 @@ public class CustomerProfileRepository {
         return profiles;
     }
 
+    /**
+     * Active customers with a plan, after {@code afterUserId} in user id order. Profile, email and
+     * plan come from one joined query so batch jobs do not look each plan up separately.
+     */
+    public java.util.List<Billable> findBillablePage(String afterUserId, int limit) {
+        String sql = """
+            SELECT p.*, u.email, d.name AS plan_name, d.data_gb, d.price_per_month, d.description AS plan_description
+            FROM customer_profiles p
+            JOIN users u ON u.id = p.user_id
+            JOIN data_plans d ON d.id = p.current_plan_id
+            WHERE p.is_active = TRUE AND p.user_id > ?
+            ORDER BY p.user_id
+            LIMIT ?
+        """;
+        java.util.List<Billable> page = new ArrayList<>(limit);
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, afterUserId == null ? "" : afterUserId);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    CustomerProfile profile = new CustomerProfile(rs.getString("id"), rs.getString("user_id"), rs.getString("full_name"));
+                    profile.setActive(true);
+                    profile.setCurrentPlan(new DataPlan(rs.getString("current_plan_id"), rs.getString("plan_name"),
+                            rs.getDouble("data_gb"), rs.getDouble("price_per_month"), rs.getString("plan_description")));
+                    Timestamp planStart = rs.getTimestamp("plan_start_date");
+                    if (planStart != null) profile.setPlanStartDate(planStart.toLocalDateTime());
+                    Timestamp planRenewal = rs.getTimestamp("plan_renewal_date");
+                    if (planRenewal != null) profile.setPlanRenewalDate(planRenewal.toLocalDateTime());
+                    page.add(new Billable(profile, rs.getString("email")));
+                }
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to page billable customers", e);
+        }
+
+        return page;
+    }
+
     public void delete(String id) {
         String sql = "DELETE FROM customer_profiles WHERE id = ?";
         
@@ -3,15 +3,15 @@ package com.isp.repo;
 import com.isp.model.Customer;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * In-memory repository for customer data.
  */
 public class CustomerRepository {
-    private final Map<String, Customer> store = new HashMap<>();
+    private final Map<String, Customer> store = new ConcurrentHashMap<>();
 
     public void save(Customer customer) {
         store.put(customer.getId(), customer);
@@ -1,9 +1,12 @@
 package com.isp.repo;
 
 import com.isp.model.DailyUsage;
+import com.isp.util.ConnectionPool;
 import com.isp.util.DatabaseConnection;
+import com.isp.util.IdGenerator;
 
 import java.sql.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -13,11 +16,39 @@ import java.util.Optional;
  * Repository for DailyUsage persistence in MySQL
  */
 public class DailyUsageRepository {
+
+    /**
+     * Outcome of {@link #upsertAll}: how many rows the database rejected outright and were dropped, and
+     * the rows that could not be written this time and should be retried.
+     */
+    public record UpsertResult(int dropped, List<DailyUsage> failed) {
+    }
+
+    private static final String UPSERT_SQL = """
+        INSERT INTO daily_usage (id, customer_id, date, data_used_gb, upload_gb, download_gb, peak_speed_mbps, total_devices_connected, id_bin)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE
+            data_used_gb = data_used_gb + VALUES(data_used_gb),
+            upload_gb = upload_gb + VALUES(upload_gb),
+            download_gb = download_gb + VALUES(download_gb),
+            peak_speed_mbps = GREATEST(peak_speed_mbps, VALUES(peak_speed_mbps)),
+            total_devices_connected = GREATEST(total_devices_connected, VALUES(total_devices_connected))
+    """;
+
+    private final ConnectionPool.ConnectionFactory connections;
+
+    public DailyUsageRepository() {
+        this(DatabaseConnection::getConnection);
+    }
+
+    public DailyUsageRepository(ConnectionPool.ConnectionFactory connections) {
+        this.connections = connections;
+    }
     
     public DailyUsage save(DailyUsage usage) {
-        String sql = "INSERT INTO daily_usage (id, customer_id, date, data_used_gb, upload_gb, download_gb, peak_speed_mbps, total_devices_connected) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO daily_usage (id, customer_id, date, data_used_gb, upload_gb, download_gb, peak_speed_mbps, total_devices_connected, id_bin) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = connections.create();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, usage.getId());
@@ -28,6 +59,7 @@ public class DailyUsageRepository {
             stmt.setDouble(6, usage.getDownloadGB());
             stmt.setDouble(7, usage.getPeakSpeedMbps());
             stmt.setInt(8, usage.getTotalDevicesConnected());
+            stmt.setBytes(9, IdGenerator.toBytesOrNull(usage.getId()));
             
             stmt.executeUpdate();
             return usage;
@@ -36,11 +68,78 @@ public class DailyUsageRepository {
         }
     }
     
+    /**
+     * Add each row's volumes to the stored day, keeping the larger peak speed and device count,
+     * or insert the day if it is new. Runs as one JDBC batch in a single transaction. If the batch
+     * fails, the rows are written one at a time so one bad row does not hold back the rest: rows the
+     * database rejects outright (e.g. an unknown customer) are dropped, and rows that fail for any
+     * other reason are returned for a retry.
+     */
+    public UpsertResult upsertAll(List<DailyUsage> rows) {
+        if (rows.isEmpty()) return new UpsertResult(0, List.of());
+
+        try (Connection conn = connections.create()) {
+            try {
+                upsertBatch(conn, rows);
+                return new UpsertResult(0, List.of());
+            } catch (SQLException e) {
+                int dropped = 0;
+                List<DailyUsage> failed = new ArrayList<>();
+                for (DailyUsage row : rows) {
+                    try (PreparedStatement stmt = conn.prepareStatement(UPSERT_SQL)) {
+                        bindUpsert(stmt, row);
+                        stmt.executeUpdate();
+                    } catch (SQLIntegrityConstraintViolationException rejected) {
+                        dropped++;
+                        System.err.println("[DailyUsageRepository] Dropping daily usage for " + row.getCustomerId()
+                                + ": " + rejected.getMessage());
+                    } catch (SQLException retry) {
+                        failed.add(row);
+                    }
+                }
+                return new UpsertResult(dropped, failed);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error upserting daily usage", e);
+        }
+    }
+
+    private static void upsertBatch(Connection conn, List<DailyUsage> rows) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_SQL)) {
+            for (DailyUsage row : rows) {
+                bindUpsert(stmt, row);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void bindUpsert(PreparedStatement stmt, DailyUsage row) throws SQLException {
+        if (row.getId() == null) row.setId(IdGenerator.generate());
+        stmt.setString(1, row.getId());
+        stmt.setString(2, row.getCustomerId());
+        stmt.setDate(3, Date.valueOf(row.getDate().toLocalDate()));
+        stmt.setDouble(4, row.getDataUsedGB());
+        stmt.setDouble(5, row.getUploadGB());
+        stmt.setDouble(6, row.getDownloadGB());
+        stmt.setDouble(7, row.getPeakSpeedMbps());
+        stmt.setInt(8, row.getTotalDevicesConnected());
+        stmt.setBytes(9, IdGenerator.toBytesOrNull(row.getId()));
+    }
+    
     public List<DailyUsage> findByCustomerIdAndDateRange(String customerId, LocalDateTime startDate, LocalDateTime endDate) {
         String sql = "SELECT * FROM daily_usage WHERE customer_id = ? AND date BETWEEN ? AND ? ORDER BY date ASC";
         List<DailyUsage> usageList = new ArrayList<>();
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = connections.create();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, customerId);
@@ -61,7 +160,7 @@ public class DailyUsageRepository {
     public Optional<DailyUsage> findByCustomerIdAndDate(String customerId, LocalDateTime date) {
         String sql = "SELECT * FROM daily_usage WHERE customer_id = ? AND DATE(date) = DATE(?)";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = connections.create();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, customerId);
@@ -78,6 +177,25 @@ public class DailyUsageRepository {
         return Optional.empty();
     }
     
+    /**
+     * Total data used by a customer on days {@code from <= date < to}.
+     */
+    public double getTotalGigabytes(String customerId, LocalDate from, LocalDate to) {
+        String sql = "SELECT COALESCE(SUM(data_used_gb), 0) FROM daily_usage WHERE customer_id = ? AND date >= ? AND date < ?";
+
+        try (Connection conn = connections.create();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, customerId);
+            stmt.setDate(2, Date.valueOf(from));
+            stmt.setDate(3, Date.valueOf(to));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getDouble(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error totalling daily usage", e);
+        }
+    }
+    
     private DailyUsage mapResultSetToUsage(ResultSet rs) throws SQLException {
         DailyUsage usage = new DailyUsage();
         usage.setId(rs.getString("id"));
@@ -1,47 +1,401 @@
 package com.isp.repo;
 
 import com.isp.model.DeviceConnection;
+import com.isp.util.AppConfig;
+import com.isp.util.ConnectionPool;
+import com.isp.util.IdGenerator;
 
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * In-memory repository for device connection history.
+ * Device connection history, indexed in memory by id, customer and MAC address, with a live index of
+ * active connections per customer, so every hotspot lookup is O(1) or O(result).
+ *
+ * The no-argument constructor keeps connections in memory only. Given a connection factory, only active
+ * connections and those connected within the last {@code historyDays} are held in memory: they are loaded
+ * from {@code device_connections} at startup, and older inactive ones are dropped after each flush. Lookups
+ * by id, customer and MAC address read anything older from the database. Changes are written back in
+ * batches every {@code flushIntervalMillis}; callers report changes to a stored connection with {@link #update}.
  */
-public class DeviceConnectionRepository {
-    private final List<DeviceConnection> store = new ArrayList<>();
+public class DeviceConnectionRepository implements AutoCloseable {
+
+    /**
+     * Write-behind interval and how many days of inactive history are kept in memory.
+     */
+    public record Settings(long flushIntervalMillis, int historyDays) {
+
+        public Settings {
+            if (historyDays < 0) throw new IllegalArgumentException("historyDays must not be negative");
+        }
+
+        public Settings(long flushIntervalMillis) {
+            this(flushIntervalMillis, DEFAULT_HISTORY_DAYS);
+        }
+
+        /**
+         * Settings from {@code isp.devices.*} system properties or {@code ISP_DEVICES_*} environment variables.
+         */
+        public static Settings fromConfig() {
+            return new Settings(
+                AppConfig.getLong("isp.devices.flushIntervalMs", "ISP_DEVICES_FLUSH_INTERVAL_MS", 5_000),
+                AppConfig.getInt("isp.devices.historyDays", "ISP_DEVICES_HISTORY_DAYS", DEFAULT_HISTORY_DAYS)
+            );
+        }
+    }
+
+    /**
+     * Point-in-time repository metrics.
+     */
+    public record Stats(int connections, int active, int pendingWrites, long rowsWritten, long rowsDropped, long failedFlushes) {
+    }
+
+    private static final String UPSERT_SQL = """
+        INSERT INTO device_connections (id, customer_id, device_name, mac_address, connect_time, disconnect_time,
+                                        data_used_gb, is_active, ip_address, average_speed_mbps, id_bin)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE disconnect_time = VALUES(disconnect_time), data_used_gb = VALUES(data_used_gb),
+                                is_active = VALUES(is_active), ip_address = VALUES(ip_address),
+                                average_speed_mbps = VALUES(average_speed_mbps)
+    """;
+
+    private static final int DEFAULT_HISTORY_DAYS = 30;
+
+    private static final Comparator<DeviceConnection> BY_CONNECT_TIME = Comparator.comparing(DeviceConnection::getConnectTime);
+
+    private final Map<String, DeviceConnection> byId = new ConcurrentHashMap<>();
+    private final Map<String, Set<DeviceConnection>> byCustomer = new ConcurrentHashMap<>();
+    private final Map<String, Set<DeviceConnection>> byMac = new ConcurrentHashMap<>();
+    private final Map<String, Set<DeviceConnection>> activeByCustomer = new ConcurrentHashMap<>();
+    private final Set<DeviceConnection> active = ConcurrentHashMap.newKeySet();
+
+    private final ConnectionPool.ConnectionFactory connections;
+    private final Duration history;
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler;
+    private final Object flushLock = new Object();
+
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder rowsDropped = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+
+    public DeviceConnectionRepository() {
+        this.connections = null;
+        this.history = null;
+        this.scheduler = null;
+    }
+
+    public DeviceConnectionRepository(ConnectionPool.ConnectionFactory connections, Settings settings) {
+        this.connections = connections;
+        this.history = Duration.ofDays(settings.historyDays());
+        loadRecent(historyCutoff());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "isp-device-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            flushQuietly();
+            evictHistory(historyCutoff());
+        }, settings.flushIntervalMillis(), settings.flushIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
 
     public void save(DeviceConnection connection) {
-        store.add(connection);
+        DeviceConnection previous = byId.put(connection.getId(), connection);
+        if (previous != null) unindex(previous);
+        index(connection);
+        markDirty(connection);
+    }
+
+    /**
+     * Record that a stored connection changed (usage, disconnect): refreshes the active index and
+     * schedules the row to be written.
+     */
+    public void update(DeviceConnection connection) {
+        if (byId.get(connection.getId()) != connection) {
+            save(connection);
+            return;
+        }
+        if (!connection.isActive()) {
+            active.remove(connection);
+            removeFrom(activeByCustomer, connection.getCustomerId(), connection);
+        }
+        markDirty(connection);
     }
 
     public Optional<DeviceConnection> findById(String id) {
-        return store.stream()
-                .filter(d -> d.getId().equals(id))
-                .findFirst();
+        DeviceConnection connection = byId.get(id);
+        if (connection != null || connections == null) return Optional.ofNullable(connection);
+        List<DeviceConnection> stored = query("SELECT * FROM device_connections WHERE id = ?", List.of(id), null);
+        return stored.stream().findFirst();
     }
 
     public List<DeviceConnection> findByCustomerId(String customerId) {
-        return store.stream()
-                .filter(d -> d.getCustomerId().equals(customerId))
-                .collect(Collectors.toList());
+        Set<DeviceConnection> recent = byCustomer.get(customerId);
+        if (connections == null) return sorted(recent);
+        return withHistory(recent, "customer_id = ?", List.of(customerId));
     }
 
     public List<DeviceConnection> findActiveByCustomerId(String customerId) {
-        return store.stream()
-                .filter(d -> d.getCustomerId().equals(customerId) && d.isActive())
-                .collect(Collectors.toList());
+        return sorted(activeByCustomer.get(customerId));
+    }
+
+    public List<DeviceConnection> findByMacAddress(String macAddress) {
+        String mac = normalizeMac(macAddress);
+        Set<DeviceConnection> recent = byMac.get(mac);
+        if (connections == null) return sorted(recent);
+        // Stored as reported; match the common spellings so the mac_address index is still used
+        String lower = mac.toLowerCase(Locale.ROOT);
+        return withHistory(recent, "mac_address IN (?, ?, ?, ?)",
+                List.of(mac, mac.replace(':', '-'), lower, lower.replace(':', '-')));
     }
 
+    /**
+     * Connections held in memory: all active ones and, when backed by a database, the recent history.
+     */
     public List<DeviceConnection> findAll() {
-        return new ArrayList<>(store);
+        return sorted(byId.values());
     }
 
     public List<DeviceConnection> findAllActive() {
-        return store.stream()
-                .filter(DeviceConnection::isActive)
-                .collect(Collectors.toList());
+        return sorted(active);
+    }
+
+    /**
+     * Write all pending changes now. Rows the database rejects outright (e.g. an unknown customer)
+     * are dropped; anything else stays pending for the next flush.
+     */
+    public void flush() {
+        if (connections == null) return;
+        synchronized (flushLock) {
+            List<DeviceConnection> rows = new ArrayList<>();
+            for (String id : dirty) {
+                dirty.remove(id);
+                DeviceConnection connection = byId.get(id);
+                if (connection != null) rows.add(connection);
+            }
+            if (rows.isEmpty()) return;
+
+            try (Connection conn = connections.create()) {
+                try {
+                    upsertBatch(conn, rows);
+                    rowsWritten.add(rows.size());
+                } catch (SQLException e) {
+                    // Fall back to one row at a time so one bad row does not hold back the rest
+                    failedFlushes.increment();
+                    for (DeviceConnection row : rows) {
+                        upsertOne(conn, row);
+                    }
+                }
+            } catch (SQLException e) {
+                rows.forEach(this::markDirty);
+                throw new RuntimeException("Error writing device connections", e);
+            }
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(byId.size(), active.size(), dirty.size(), rowsWritten.sum(), rowsDropped.sum(), failedFlushes.sum());
+    }
+
+    /**
+     * Stop the periodic flush and write what is left.
+     */
+    @Override
+    public void close() {
+        if (scheduler == null) return;
+        scheduler.shutdown();
+        flushQuietly();
+    }
+
+    /**
+     * Drop inactive connections that started before the cutoff and have no pending write; the database
+     * still has them for lookups.
+     */
+    void evictHistory(LocalDateTime cutoff) {
+        for (DeviceConnection connection : byId.values()) {
+            if (connection.isActive() || !connection.getConnectTime().isBefore(cutoff)) continue;
+            if (dirty.contains(connection.getId())) continue;
+            if (byId.remove(connection.getId(), connection)) unindex(connection);
+        }
+    }
+
+    private LocalDateTime historyCutoff() {
+        return LocalDateTime.now().minus(history);
+    }
+
+    /**
+     * The in-memory connections plus the stored ones from before the history window, with the
+     * in-memory copy winning for rows in both.
+     */
+    private List<DeviceConnection> withHistory(Set<DeviceConnection> recent, String where, List<String> params) {
+        Map<String, DeviceConnection> merged = new LinkedHashMap<>();
+        if (recent != null) {
+            for (DeviceConnection connection : recent) merged.put(connection.getId(), connection);
+        }
+        String sql = "SELECT * FROM device_connections WHERE " + where + " AND connect_time < ?";
+        for (DeviceConnection connection : query(sql, params, historyCutoff())) {
+            merged.putIfAbsent(connection.getId(), connection);
+        }
+        return sorted(merged.values());
+    }
+
+    private List<DeviceConnection> query(String sql, List<String> params, LocalDateTime before) {
+        List<DeviceConnection> rows = new ArrayList<>();
+        try (Connection conn = connections.create();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (String param : params) stmt.setString(i++, param);
+            if (before != null) stmt.setTimestamp(i, Timestamp.valueOf(before));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) rows.add(mapResultSetToConnection(rs));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error reading device connection history", e);
+        }
+        return rows;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.err.println("[HOTSPOT] Device connection flush failed: " + e.getMessage());
+        }
+    }
+
+    private void index(DeviceConnection connection) {
+        addTo(byCustomer, connection.getCustomerId(), connection);
+        addTo(byMac, normalizeMac(connection.getMacAddress()), connection);
+        if (connection.isActive()) {
+            active.add(connection);
+            addTo(activeByCustomer, connection.getCustomerId(), connection);
+        }
+    }
+
+    private void unindex(DeviceConnection connection) {
+        removeFrom(byCustomer, connection.getCustomerId(), connection);
+        removeFrom(byMac, normalizeMac(connection.getMacAddress()), connection);
+        active.remove(connection);
+        removeFrom(activeByCustomer, connection.getCustomerId(), connection);
+    }
+
+    private static void addTo(Map<String, Set<DeviceConnection>> index, String key, DeviceConnection connection) {
+        index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(connection);
+    }
+
+    private static void removeFrom(Map<String, Set<DeviceConnection>> index, String key, DeviceConnection connection) {
+        index.computeIfPresent(key, (k, set) -> {
+            set.remove(connection);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static List<DeviceConnection> sorted(Collection<DeviceConnection> connections) {
+        if (connections == null) return new ArrayList<>();
+        List<DeviceConnection> list = new ArrayList<>(connections);
+        list.sort(BY_CONNECT_TIME);
+        return list;
+    }
+
+    private static String normalizeMac(String macAddress) {
+        return macAddress.trim().toUpperCase(Locale.ROOT).replace('-', ':');
+    }
+
+    private void markDirty(DeviceConnection connection) {
+        if (connections != null) dirty.add(connection.getId());
+    }
+
+    private void upsertBatch(Connection conn, List<DeviceConnection> rows) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_SQL)) {
+            for (DeviceConnection row : rows) {
+                bindUpsert(stmt, row);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void upsertOne(Connection conn, DeviceConnection row) {
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_SQL)) {
+            bindUpsert(stmt, row);
+            stmt.executeUpdate();
+            rowsWritten.increment();
+        } catch (SQLIntegrityConstraintViolationException e) {
+            rowsDropped.increment();
+            System.err.println("[HOTSPOT] Dropping device connection " + row.getId() + ": " + e.getMessage());
+        } catch (SQLException e) {
+            markDirty(row);
+        }
+    }
+
+    private static void bindUpsert(PreparedStatement stmt, DeviceConnection row) throws SQLException {
+        stmt.setString(1, row.getId());
+        stmt.setString(2, row.getCustomerId());
+        stmt.setString(3, row.getDeviceName());
+        stmt.setString(4, row.getMacAddress());
+        stmt.setTimestamp(5, Timestamp.valueOf(row.getConnectTime()));
+        stmt.setTimestamp(6, row.getDisconnectTime() != null ? Timestamp.valueOf(row.getDisconnectTime()) : null);
+        stmt.setDouble(7, row.getDataUsedGB());
+        stmt.setBoolean(8, row.isActive());
+        stmt.setString(9, row.getIpAddress());
+        stmt.setDouble(10, row.getAverageSpeedMbps());
+        stmt.setBytes(11, IdGenerator.toBytesOrNull(row.getId()));
+    }
+
+    private void loadRecent(LocalDateTime cutoff) {
+        String sql = "SELECT * FROM device_connections WHERE connect_time >= ? OR is_active = TRUE";
+
+        try (Connection conn = connections.create();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(cutoff));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    DeviceConnection connection = mapResultSetToConnection(rs);
+                    byId.put(connection.getId(), connection);
+                    index(connection);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error loading device connections", e);
+        }
+    }
+
+    private DeviceConnection mapResultSetToConnection(ResultSet rs) throws SQLException {
+        Timestamp disconnect = rs.getTimestamp("disconnect_time");
+        return new DeviceConnection(
+                rs.getString("id"),
+                rs.getString("customer_id"),
+                rs.getString("device_name"),
+                rs.getString("mac_address"),
+                rs.getTimestamp("connect_time").toLocalDateTime(),
+                disconnect != null ? disconnect.toLocalDateTime() : null,
+                rs.getDouble("data_used_gb"),
+                rs.getBoolean("is_active"),
+                rs.getString("ip_address"),
+                rs.getDouble("average_speed_mbps"));
     }
 }
@@ -4,13 +4,14 @@ import com.isp.model.DeviceUsageLog;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 /**
  * Repository for detailed device usage logs.
  */
 public class DeviceUsageLogRepository {
-    private final List<DeviceUsageLog> store = new ArrayList<>();
+    private final List<DeviceUsageLog> store = new CopyOnWriteArrayList<>();
 
     public void save(DeviceUsageLog log) {
         store.add(log);
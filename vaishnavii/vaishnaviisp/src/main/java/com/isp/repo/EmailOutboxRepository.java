@@ -0,0 +1,192 @@
+package com.isp.repo;
+
+import com.isp.model.OutboxEmail;
+import com.isp.util.ConnectionPool;
+import com.isp.util.DatabaseConnection;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repository for the email outbox so queued mail survives restarts.
+ */
+public class EmailOutboxRepository {
+
+    private static final String INSERT_SQL = """
+        INSERT INTO email_outbox (id, to_email, subject, body, status, attempts, last_error, created_at, next_attempt_at, sent_at, claimed_at)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+    """;
+
+    private final ConnectionPool.ConnectionFactory connections;
+
+    public EmailOutboxRepository() {
+        this(DatabaseConnection::getConnection);
+    }
+
+    public EmailOutboxRepository(ConnectionPool.ConnectionFactory connections) {
+        this.connections = connections;
+    }
+
+    public void save(OutboxEmail email) {
+        try (Connection conn = connections.create();
+             PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+
+            bindInsert(stmt, email);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("[EmailOutboxRepository] Error saving email: " + e.getMessage());
+            throw new RuntimeException("Failed to save outbox email", e);
+        }
+    }
+
+    /**
+     * Insert many emails as one JDBC batch in a single transaction.
+     */
+    public void saveAll(List<OutboxEmail> emails) {
+        if (emails.isEmpty()) return;
+
+        try (Connection conn = connections.create()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+                for (OutboxEmail email : emails) {
+                    bindInsert(stmt, email);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            System.err.println("[EmailOutboxRepository] Error saving email batch: " + e.getMessage());
+            throw new RuntimeException("Failed to save outbox emails", e);
+        }
+    }
+
+    private static void bindInsert(PreparedStatement stmt, OutboxEmail email) throws SQLException {
+        stmt.setString(1, email.getId());
+        stmt.setString(2, email.getToEmail());
+        stmt.setString(3, email.getSubject());
+        stmt.setString(4, email.getBody());
+        stmt.setString(5, email.getStatus().name());
+        stmt.setInt(6, email.getAttempts());
+        stmt.setString(7, email.getLastError());
+        stmt.setTimestamp(8, Timestamp.valueOf(email.getCreatedAt()));
+        stmt.setTimestamp(9, Timestamp.valueOf(email.getNextAttemptAt()));
+        stmt.setTimestamp(10, email.getSentAt() != null ? Timestamp.valueOf(email.getSentAt()) : null);
+        stmt.setTimestamp(11, email.getClaimedAt() != null ? Timestamp.valueOf(email.getClaimedAt()) : null);
+    }
+
+    /**
+     * Record the outcome of a delivery attempt (status, attempts, error, next attempt, sent and claim time).
+     */
+    public void updateDelivery(OutboxEmail email) {
+        String sql = "UPDATE email_outbox SET status = ?, attempts = ?, last_error = ?, next_attempt_at = ?, sent_at = ?, claimed_at = ? WHERE id = ?";
+
+        try (Connection conn = connections.create();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, email.getStatus().name());
+            stmt.setInt(2, email.getAttempts());
+            stmt.setString(3, truncate(email.getLastError(), 1000));
+            stmt.setTimestamp(4, Timestamp.valueOf(email.getNextAttemptAt()));
+            stmt.setTimestamp(5, email.getSentAt() != null ? Timestamp.valueOf(email.getSentAt()) : null);
+            stmt.setTimestamp(6, email.getClaimedAt() != null ? Timestamp.valueOf(email.getClaimedAt()) : null);
+            stmt.setString(7, email.getId());
+
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("[EmailOutboxRepository] Error updating email " + email.getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Pending emails whose next attempt is due, oldest first.
+     */
+    public List<OutboxEmail> findDue(LocalDateTime now, int limit) {
+        String sql = "SELECT * FROM email_outbox WHERE status = 'PENDING' AND next_attempt_at <= ? ORDER BY created_at ASC LIMIT ?";
+        List<OutboxEmail> emails = new ArrayList<>();
+
+        try (Connection conn = connections.create();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setTimestamp(1, Timestamp.valueOf(now));
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    emails.add(mapResultSetToEmail(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("[EmailOutboxRepository] Error loading pending emails: " + e.getMessage());
+        }
+
+        return emails;
+    }
+
+    /**
+     * Move a pending email to SENDING for this sender. Only one sender can claim a row, so an email is
+     * dispatched by whichever instance gets a true back.
+     */
+    public boolean claim(String id, LocalDateTime now) {
+        String sql = "UPDATE email_outbox SET status = 'SENDING', claimed_at = ? WHERE id = ? AND status = 'PENDING'";
+
+        try (Connection conn = connections.create();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setTimestamp(1, Timestamp.valueOf(now));
+            stmt.setString(2, id);
+            return stmt.executeUpdate() == 1;
+        } catch (SQLException e) {
+            System.err.println("[EmailOutboxRepository] Error claiming email " + id + ": " + e.getMessage());
+            throw new RuntimeException("Failed to claim outbox email", e);
+        }
+    }
+
+    /**
+     * Return emails claimed before the cutoff to PENDING, for senders that stopped without finishing them.
+     *
+     * @return the number of emails released
+     */
+    public int releaseStaleClaims(LocalDateTime claimedBefore) {
+        String sql = "UPDATE email_outbox SET status = 'PENDING', claimed_at = NULL WHERE status = 'SENDING' AND claimed_at < ?";
+
+        try (Connection conn = connections.create();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setTimestamp(1, Timestamp.valueOf(claimedBefore));
+            return stmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("[EmailOutboxRepository] Error releasing stale claims: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private OutboxEmail mapResultSetToEmail(ResultSet rs) throws SQLException {
+        OutboxEmail email = new OutboxEmail();
+        email.setId(rs.getString("id"));
+        email.setToEmail(rs.getString("to_email"));
+        email.setSubject(rs.getString("subject"));
+        email.setBody(rs.getString("body"));
+        email.setStatus(OutboxEmail.Status.valueOf(rs.getString("status")));
+        email.setAttempts(rs.getInt("attempts"));
+        email.setLastError(rs.getString("last_error"));
+        email.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        email.setNextAttemptAt(rs.getTimestamp("next_attempt_at").toLocalDateTime());
+        Timestamp sentAt = rs.getTimestamp("sent_at");
+        email.setSentAt(sentAt != null ? sentAt.toLocalDateTime() : null);
+        Timestamp claimedAt = rs.getTimestamp("claimed_at");
+        email.setClaimedAt(claimedAt != null ? claimedAt.toLocalDateTime() : null);
+        return email;
+    }
+
+    private static String truncate(String s, int max) {
+        return s == null || s.length() <= max ? s : s.substring(0, max);
+    }
+}
@@ -0,0 +1,57 @@
+package com.isp.repo;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Placeholders and binding for {@code IN (...)} lists padded to a few fixed sizes.
+ *
+ * Each list length is a different SQL string, so unpadded lists fill the per-connection statement
+ * cache with one-off entries. Padding to 1, 10, 50, 100 or {@value #MAX_SIZE} entries, by repeating the
+ * last id, keeps it to five statements per query.
+ */
+final class InList {
+
+    static final int MAX_SIZE = 500;
+    private static final int[] SIZES = {1, 10, 50, 100, MAX_SIZE};
+
+    private InList() {
+    }
+
+    /**
+     * Padded length for a list of {@code count} ids.
+     */
+    static int size(int count) {
+        for (int size : SIZES) {
+            if (count <= size) return size;
+        }
+        throw new IllegalArgumentException("IN list of " + count + " exceeds " + MAX_SIZE);
+    }
+
+    /**
+     * {@code ?, ?, ...} for the padded length of {@code count} ids.
+     */
+    static String placeholders(int count) {
+        int size = size(count);
+        StringBuilder sb = new StringBuilder(size * 3);
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append('?');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Bind the ids from parameter {@code index}, repeating the last one to fill the padding.
+     *
+     * @return the next free parameter index
+     */
+    static int bind(PreparedStatement stmt, int index, List<String> ids) throws SQLException {
+        int size = size(ids.size());
+        for (int i = 0; i < size; i++) {
+            stmt.setString(index + i, ids.get(Math.min(i, ids.size() - 1)));
+        }
+        return index + size;
+    }
+}
@@ -0,0 +1,138 @@
+package com.isp.repo;
+
+import com.isp.model.Invoice;
+import com.isp.util.ConnectionPool;
+import com.isp.util.DatabaseConnection;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Repository for issued invoices and the location of their archived PDFs.
+ * Each customer has at most one invoice per billing period.
+ */
+public class InvoiceRepository {
+
+    private static final int IN_BATCH_SIZE = InList.MAX_SIZE;
+
+    private final ConnectionPool.ConnectionFactory connections;
+
+    public InvoiceRepository() {
+        this(DatabaseConnection::getConnection);
+    }
+
+    public InvoiceRepository(ConnectionPool.ConnectionFactory connections) {
+        this.connections = connections;
+    }
+
+    /**
+     * Insert invoices as one JDBC batch in a single transaction.
+     */
+    public void saveAll(List<Invoice> invoices) {
+        if (invoices.isEmpty()) return;
+        String sql = """
+            INSERT INTO invoices (id, invoice_number, customer_id, customer_name, customer_email, plan_name,
+                                  billing_period, amount, tax_amount, total_amount, invoice_date, pdf_path)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+
+        try (Connection conn = connections.create()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (Invoice invoice : invoices) {
+                    stmt.setString(1, invoice.getInvoiceId());
+                    stmt.setString(2, invoice.getInvoiceNumber());
+                    stmt.setString(3, invoice.getCustomerId());
+                    stmt.setString(4, invoice.getCustomerName());
+                    stmt.setString(5, invoice.getCustomerEmail());
+                    stmt.setString(6, invoice.getPlanName());
+                    stmt.setString(7, invoice.getBillingPeriod());
+                    stmt.setDouble(8, invoice.getAmount());
+                    stmt.setDouble(9, invoice.getTaxAmount());
+                    stmt.setDouble(10, invoice.getTotalAmount());
+                    stmt.setTimestamp(11, Timestamp.valueOf(invoice.getInvoiceDate()));
+                    stmt.setString(12, invoice.getPdfPath());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to save invoices", e);
+        }
+    }
+
+    /**
+     * Which of the given customers already have an invoice for the period.
+     */
+    public Set<String> findInvoicedCustomers(String billingPeriod, Collection<String> customerIds) {
+        Set<String> invoiced = new HashSet<>();
+        List<String> ids = new ArrayList<>(customerIds);
+
+        try (Connection conn = connections.create()) {
+            for (int from = 0; from < ids.size(); from += IN_BATCH_SIZE) {
+                List<String> chunk = ids.subList(from, Math.min(ids.size(), from + IN_BATCH_SIZE));
+                String sql = "SELECT customer_id FROM invoices WHERE billing_period = ? AND customer_id IN ("
+                        + InList.placeholders(chunk.size()) + ")";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setString(1, billingPeriod);
+                    InList.bind(stmt, 2, chunk);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            invoiced.add(rs.getString(1));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to look up invoiced customers", e);
+        }
+        return invoiced;
+    }
+
+    public Optional<Invoice> findByCustomerAndPeriod(String customerId, String billingPeriod) {
+        String sql = "SELECT * FROM invoices WHERE customer_id = ? AND billing_period = ?";
+
+        try (Connection conn = connections.create();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, customerId);
+            stmt.setString(2, billingPeriod);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapResultSetToInvoice(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("[InvoiceRepository] Error finding invoice: " + e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    private Invoice mapResultSetToInvoice(ResultSet rs) throws SQLException {
+        Invoice invoice = new Invoice();
+        invoice.setInvoiceId(rs.getString("id"));
+        invoice.setInvoiceNumber(rs.getString("invoice_number"));
+        invoice.setCustomerId(rs.getString("customer_id"));
+        invoice.setCustomerName(rs.getString("customer_name"));
+        invoice.setCustomerEmail(rs.getString("customer_email"));
+        invoice.setPlanName(rs.getString("plan_name"));
+        invoice.setBillingPeriod(rs.getString("billing_period"));
+        invoice.setAmount(rs.getDouble("amount"));
+        invoice.setTaxAmount(rs.getDouble("tax_amount"));
+        invoice.setTotalAmount(rs.getDouble("total_amount"));
+        invoice.setInvoiceDate(rs.getTimestamp("invoice_date").toLocalDateTime());
+        invoice.setPdfPath(rs.getString("pdf_path"));
+        return invoice;
+    }
+}
@@ -0,0 +1,266 @@
+package com.isp.repo;
+
+import com.isp.model.Notification;
+import com.isp.util.AppConfig;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Per-user notification cache sitting in front of {@link NotificationRepository}.
+ *
+ * For each recently active user it keeps the unread count as a plain int and, once the list has
+ * been viewed, a ring of the newest {@code recentPerUser} notifications. Repository writes update
+ * cached entries in place, and the least recently used users are evicted beyond {@code maxUsers}.
+ *
+ * The cache holds its own copies of notifications and hands out copies, so callers changing a
+ * notification they saved or read cannot change what is cached.
+ *
+ * Loads on a miss run outside the lock. A write to the same user (tracked by striped generation
+ * counters) while a load is in flight discards the loaded value, so a stale read cannot overwrite
+ * a newer update.
+ */
+public class NotificationCache {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    /**
+     * Cache sizing.
+     */
+    public record Settings(int maxUsers, int recentPerUser) {
+
+        public Settings {
+            if (maxUsers < 1) throw new IllegalArgumentException("maxUsers must be at least 1");
+            if (recentPerUser < 1) throw new IllegalArgumentException("recentPerUser must be at least 1");
+        }
+
+        /**
+         * Settings from {@code isp.notifications.cache.*} system properties or
+         * {@code ISP_NOTIFICATIONS_CACHE_*} environment variables.
+         */
+        public static Settings fromConfig() {
+            return new Settings(
+                AppConfig.getInt("isp.notifications.cache.maxUsers", "ISP_NOTIFICATIONS_CACHE_MAX_USERS", 10_000),
+                AppConfig.getInt("isp.notifications.cache.recent", "ISP_NOTIFICATIONS_CACHE_RECENT", 20)
+            );
+        }
+    }
+
+    /**
+     * Point-in-time cache metrics.
+     */
+    public record Stats(int users, long hits, long misses, long evictions, double hitRate) {
+    }
+
+    private static final class Entry {
+        int unread = -1;                  // -1 until loaded
+        ArrayDeque<Notification> recent;  // newest first; null until loaded
+        boolean recentHasAll;             // ring holds every notification the user has
+    }
+
+    private final Settings settings;
+    private final Object lock = new Object();
+    private final int[] generations = new int[GENERATION_STRIPES];
+    private final LinkedHashMap<String, Entry> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public NotificationCache(Settings settings) {
+        this.settings = settings;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > settings.maxUsers()) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Unread count, from memory when cached.
+     */
+    public int unreadCount(String userId, ToIntFunction<String> loader) {
+        int generation;
+        synchronized (lock) {
+            Entry entry = entries.get(userId);
+            if (entry != null && entry.unread >= 0) {
+                hits++;
+                return entry.unread;
+            }
+            misses++;
+            generation = generations[stripe(userId)];
+        }
+        int unread = loader.applyAsInt(userId);
+        synchronized (lock) {
+            if (generations[stripe(userId)] == generation) {
+                entries.computeIfAbsent(userId, id -> new Entry()).unread = unread;
+            }
+        }
+        return unread;
+    }
+
+    /**
+     * Newest {@code limit} notifications, from the ring when it covers the request.
+     *
+     * @param loader (userId, limit) query returning notifications newest first
+     */
+    public List<Notification> recent(String userId, int limit, BiFunction<String, Integer, List<Notification>> loader) {
+        int generation;
+        synchronized (lock) {
+            Entry entry = entries.get(userId);
+            if (entry != null && entry.recent != null && (limit <= settings.recentPerUser() || entry.recentHasAll)) {
+                hits++;
+                return copy(entry.recent, limit);
+            }
+            misses++;
+            generation = generations[stripe(userId)];
+        }
+        int fetch = Math.max(limit, settings.recentPerUser());
+        List<Notification> loaded = loader.apply(userId, fetch);
+        synchronized (lock) {
+            if (generations[stripe(userId)] == generation) {
+                Entry entry = entries.computeIfAbsent(userId, id -> new Entry());
+                entry.recent = new ArrayDeque<>(copy(loaded, settings.recentPerUser()));
+                entry.recentHasAll = loaded.size() <= settings.recentPerUser() && loaded.size() < fetch;
+            }
+        }
+        return loaded.size() > limit ? new ArrayList<>(loaded.subList(0, limit)) : loaded;
+    }
+
+    /**
+     * Unread notifications, newest first; answered from memory when none are unread or the ring holds everything.
+     */
+    public List<Notification> unread(String userId, Function<String, List<Notification>> loader) {
+        synchronized (lock) {
+            Entry entry = entries.get(userId);
+            if (entry != null && entry.unread == 0) {
+                hits++;
+                return new ArrayList<>();
+            }
+            if (entry != null && entry.recent != null && entry.recentHasAll) {
+                hits++;
+                List<Notification> result = new ArrayList<>();
+                for (Notification n : entry.recent) {
+                    if (!n.isRead()) result.add(new Notification(n));
+                }
+                return result;
+            }
+            misses++;
+        }
+        return loader.apply(userId);
+    }
+
+    /**
+     * A new notification row was inserted.
+     */
+    public void onInserted(Notification notification) {
+        String userId = notification.getUserId();
+        synchronized (lock) {
+            generations[stripe(userId)]++;
+            Entry entry = entries.get(userId);
+            if (entry == null) return;
+            if (entry.unread >= 0 && !notification.isRead()) {
+                entry.unread++;
+            }
+            if (entry.recent != null) {
+                entry.recent.addFirst(new Notification(notification));
+                if (entry.recent.size() > settings.recentPerUser()) {
+                    entry.recent.removeLast();
+                    entry.recentHasAll = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * One of the user's unread notifications was marked read.
+     */
+    public void onRead(String userId, String notificationId) {
+        synchronized (lock) {
+            generations[stripe(userId)]++;
+            Entry entry = entries.get(userId);
+            if (entry == null) return;
+            if (entry.unread > 0) {
+                entry.unread--;
+            }
+            if (entry.recent != null) {
+                for (Notification n : entry.recent) {
+                    if (n.getId().equals(notificationId)) {
+                        markRead(n);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * All of the user's notifications were marked read.
+     */
+    public void onAllRead(String userId) {
+        synchronized (lock) {
+            generations[stripe(userId)]++;
+            Entry entry = entries.computeIfAbsent(userId, id -> new Entry());
+            entry.unread = 0;
+            if (entry.recent != null) {
+                entry.recent.forEach(NotificationCache::markRead);
+            }
+        }
+    }
+
+    public void invalidate(String userId) {
+        synchronized (lock) {
+            generations[stripe(userId)]++;
+            entries.remove(userId);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (lock) {
+            for (int i = 0; i < generations.length; i++) {
+                generations[i]++;
+            }
+            entries.clear();
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (lock) {
+            long total = hits + misses;
+            return new Stats(entries.size(), hits, misses, evictions, total == 0 ? 0 : (double) hits / total);
+        }
+    }
+
+    private static void markRead(Notification notification) {
+        if (!notification.isRead()) {
+            notification.setRead(true);
+            notification.setReadAt(LocalDateTime.now());
+        }
+    }
+
+    private static List<Notification> copy(Collection<Notification> notifications, int limit) {
+        List<Notification> result = new ArrayList<>(Math.min(limit, notifications.size()));
+        Iterator<Notification> it = notifications.iterator();
+        while (it.hasNext() && result.size() < limit) {
+            result.add(new Notification(it.next()));
+        }
+        return result;
+    }
+
+    private static int stripe(String userId) {
+        return (userId.hashCode() & 0x7fffffff) % GENERATION_STRIPES;
+    }
+}
@@ -4,51 +4,22 @@ import com.isp.model.NotificationPreferences;
 import com.isp.util.DatabaseConnection;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Repository for managing notification preferences
  */
 public class NotificationPreferencesRepository {
+    private static final int IN_BATCH_SIZE = InList.MAX_SIZE;
+
     private DatabaseConnection dbConnection;
 
     public NotificationPreferencesRepository(DatabaseConnection dbConnection) {
         this.dbConnection = dbConnection;
-        createTableIfNotExists();
-    }
-
-    private void createTableIfNotExists() {
-        String createTableSQL = """
-            CREATE TABLE IF NOT EXISTS notification_preferences (
-                user_id VARCHAR(36) PRIMARY KEY,
-                email_enabled BOOLEAN DEFAULT TRUE,
-                email_usage_alerts BOOLEAN DEFAULT TRUE,
-                email_payment_reminders BOOLEAN DEFAULT TRUE,
-                email_ticket_updates BOOLEAN DEFAULT TRUE,
-                email_security_alerts BOOLEAN DEFAULT TRUE,
-                email_promotions BOOLEAN DEFAULT FALSE,
-                browser_enabled BOOLEAN DEFAULT TRUE,
-                browser_usage_alerts BOOLEAN DEFAULT TRUE,
-                browser_payment_reminders BOOLEAN DEFAULT TRUE,
-                browser_ticket_updates BOOLEAN DEFAULT TRUE,
-                browser_security_alerts BOOLEAN DEFAULT TRUE,
-                sms_enabled BOOLEAN DEFAULT FALSE,
-                sms_critical_only BOOLEAN DEFAULT TRUE,
-                sms_usage_alerts BOOLEAN DEFAULT FALSE,
-                sms_payment_reminders BOOLEAN DEFAULT FALSE,
-                sms_security_alerts BOOLEAN DEFAULT TRUE,
-                phone_number VARCHAR(20),
-                usage_alert_threshold_1 INT DEFAULT 50,
-                usage_alert_threshold_2 INT DEFAULT 75,
-                usage_alert_threshold_3 INT DEFAULT 90
-            )
-        """;
-
-        try (Connection conn = dbConnection.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(createTableSQL);
-        } catch (SQLException e) {
-            throw new RuntimeException("Error creating notification_preferences table", e);
-        }
     }
 
     public void save(NotificationPreferences prefs) {
@@ -138,6 +109,42 @@ public class NotificationPreferencesRepository {
         return prefs;
     }
 
+    /**
+     * Preferences for many users in {@code IN} batches, with defaults for users who never saved any.
+     */
+    public Map<String, NotificationPreferences> findByUserIds(Collection<String> userIds) {
+        Map<String, NotificationPreferences> result = new HashMap<>(userIds.size() * 2);
+        List<String> ids = new ArrayList<>(userIds);
+
+        try (Connection conn = dbConnection.getConnection()) {
+            for (int from = 0; from < ids.size(); from += IN_BATCH_SIZE) {
+                List<String> chunk = ids.subList(from, Math.min(ids.size(), from + IN_BATCH_SIZE));
+                String sql = "SELECT * FROM notification_preferences WHERE user_id IN ("
+                        + InList.placeholders(chunk.size()) + ")";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    InList.bind(pstmt, 1, chunk);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            NotificationPreferences prefs = mapResultSetToPreferences(rs);
+                            result.put(prefs.getUserId(), prefs);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding notification preferences", e);
+        }
+
+        for (String userId : ids) {
+            result.computeIfAbsent(userId, id -> {
+                NotificationPreferences prefs = new NotificationPreferences();
+                prefs.setUserId(id);
+                return prefs;
+            });
+        }
+        return result;
+    }
+
     private NotificationPreferences mapResultSetToPreferences(ResultSet rs) throws SQLException {
         NotificationPreferences prefs = new NotificationPreferences();
         prefs.setUserId(rs.getString("user_id"));
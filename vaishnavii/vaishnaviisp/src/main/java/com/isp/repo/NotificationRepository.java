@@ -2,6 +2,7 @@ package com.isp.repo;
 
 import com.isp.model.Notification;
 import com.isp.util.DatabaseConnection;
+import com.isp.util.IdGenerator;
 
 import java.sql.*;
 import java.time.LocalDateTime;
@@ -9,83 +10,114 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Repository for managing notifications
+ * Repository for managing notifications.
+ * Unread counts and recent notifications are served from a {@link NotificationCache} that
+ * every write here keeps up to date.
  */
 public class NotificationRepository {
+    private static final int WRITE_BATCH_SIZE = 500;
+    private static final String INSERT_SQL = """
+        INSERT INTO notifications 
+        (id, user_id, type, category, title, message, priority, is_read, is_sent, created_at, sent_at, read_at, metadata, id_bin)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+    """;
+
     private DatabaseConnection dbConnection;
+    private final NotificationCache cache;
 
     public NotificationRepository(DatabaseConnection dbConnection) {
+        this(dbConnection, new NotificationCache(NotificationCache.Settings.fromConfig()));
+    }
+
+    public NotificationRepository(DatabaseConnection dbConnection, NotificationCache cache) {
         this.dbConnection = dbConnection;
-        createTableIfNotExists();
-    }
-
-    private void createTableIfNotExists() {
-        String createTableSQL = """
-            CREATE TABLE IF NOT EXISTS notifications (
-                id VARCHAR(36) PRIMARY KEY,
-                user_id VARCHAR(36) NOT NULL,
-                type VARCHAR(20) NOT NULL,
-                category VARCHAR(50) NOT NULL,
-                title VARCHAR(255) NOT NULL,
-                message TEXT NOT NULL,
-                priority VARCHAR(20) NOT NULL,
-                is_read BOOLEAN DEFAULT FALSE,
-                is_sent BOOLEAN DEFAULT FALSE,
-                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                sent_at TIMESTAMP NULL,
-                read_at TIMESTAMP NULL,
-                metadata TEXT,
-                INDEX idx_user_id (user_id),
-                INDEX idx_created_at (created_at),
-                INDEX idx_is_read (is_read)
-            )
+        this.cache = cache;
+    }
+
+    public void save(Notification notification) {
+        String updateSql = """
+            UPDATE notifications SET message = ?, is_read = ?, is_sent = ?, sent_at = ?, read_at = ?
+            WHERE id = ?
         """;
 
-        try (Connection conn = dbConnection.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(createTableSQL);
+        try (Connection conn = dbConnection.getConnection()) {
+            // Insert and update are separate statements so the cache knows whether a row is new
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+                bindInsert(pstmt, notification);
+                pstmt.executeUpdate();
+                cache.onInserted(notification);
+                return;
+            } catch (SQLIntegrityConstraintViolationException duplicate) {
+                // Existing notification: fall through to update
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(updateSql)) {
+                pstmt.setString(1, notification.getMessage());
+                pstmt.setBoolean(2, notification.isRead());
+                pstmt.setBoolean(3, notification.isSent());
+                pstmt.setTimestamp(4, notification.getSentAt() != null ? Timestamp.valueOf(notification.getSentAt()) : null);
+                pstmt.setTimestamp(5, notification.getReadAt() != null ? Timestamp.valueOf(notification.getReadAt()) : null);
+                pstmt.setString(6, notification.getId());
+                pstmt.executeUpdate();
+                cache.invalidate(notification.getUserId());
+            }
         } catch (SQLException e) {
-            throw new RuntimeException("Error creating notifications table", e);
+            throw new RuntimeException("Error saving notification", e);
         }
     }
 
-    public void save(Notification notification) {
-        String sql = """
-            INSERT INTO notifications 
-            (id, user_id, type, category, title, message, priority, is_read, is_sent, created_at, sent_at, read_at, metadata)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-            ON DUPLICATE KEY UPDATE
-            message = VALUES(message),
-            is_read = VALUES(is_read),
-            is_sent = VALUES(is_sent),
-            sent_at = VALUES(sent_at),
-            read_at = VALUES(read_at)
-        """;
+    /**
+     * Insert new notifications with JDBC batches of {@value #WRITE_BATCH_SIZE} rows, one transaction per batch.
+     */
+    public void saveAll(List<Notification> notifications) {
+        if (notifications.isEmpty()) return;
 
-        try (Connection conn = dbConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, notification.getId());
-            pstmt.setString(2, notification.getUserId());
-            pstmt.setString(3, notification.getType());
-            pstmt.setString(4, notification.getCategory());
-            pstmt.setString(5, notification.getTitle());
-            pstmt.setString(6, notification.getMessage());
-            pstmt.setString(7, notification.getPriority());
-            pstmt.setBoolean(8, notification.isRead());
-            pstmt.setBoolean(9, notification.isSent());
-            pstmt.setTimestamp(10, Timestamp.valueOf(notification.getCreatedAt()));
-            pstmt.setTimestamp(11, notification.getSentAt() != null ? Timestamp.valueOf(notification.getSentAt()) : null);
-            pstmt.setTimestamp(12, notification.getReadAt() != null ? Timestamp.valueOf(notification.getReadAt()) : null);
-            pstmt.setString(13, notification.getMetadata());
-            
-            pstmt.executeUpdate();
+        try (Connection conn = dbConnection.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+                for (int from = 0; from < notifications.size(); from += WRITE_BATCH_SIZE) {
+                    List<Notification> batch = notifications.subList(from, Math.min(notifications.size(), from + WRITE_BATCH_SIZE));
+                    for (Notification notification : batch) {
+                        bindInsert(pstmt, notification);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                    conn.commit();
+                    batch.forEach(cache::onInserted);
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
         } catch (SQLException e) {
-            throw new RuntimeException("Error saving notification", e);
+            throw new RuntimeException("Error saving notifications", e);
         }
     }
 
+    private static void bindInsert(PreparedStatement pstmt, Notification notification) throws SQLException {
+        pstmt.setString(1, notification.getId());
+        pstmt.setString(2, notification.getUserId());
+        pstmt.setString(3, notification.getType());
+        pstmt.setString(4, notification.getCategory());
+        pstmt.setString(5, notification.getTitle());
+        pstmt.setString(6, notification.getMessage());
+        pstmt.setString(7, notification.getPriority());
+        pstmt.setBoolean(8, notification.isRead());
+        pstmt.setBoolean(9, notification.isSent());
+        pstmt.setTimestamp(10, Timestamp.valueOf(notification.getCreatedAt()));
+        pstmt.setTimestamp(11, notification.getSentAt() != null ? Timestamp.valueOf(notification.getSentAt()) : null);
+        pstmt.setTimestamp(12, notification.getReadAt() != null ? Timestamp.valueOf(notification.getReadAt()) : null);
+        pstmt.setString(13, notification.getMetadata());
+        pstmt.setBytes(14, IdGenerator.toBytesOrNull(notification.getId()));
+    }
+
     public List<Notification> findByUserId(String userId, int limit) {
+        return cache.recent(userId, limit, this::queryByUserId);
+    }
+
+    private List<Notification> queryByUserId(String userId, int limit) {
         String sql = "SELECT * FROM notifications WHERE user_id = ? ORDER BY created_at DESC LIMIT ?";
         List<Notification> notifications = new ArrayList<>();
 
@@ -108,6 +140,10 @@ public class NotificationRepository {
     }
 
     public List<Notification> findUnreadByUserId(String userId) {
+        return cache.unread(userId, this::queryUnreadByUserId);
+    }
+
+    private List<Notification> queryUnreadByUserId(String userId) {
         String sql = "SELECT * FROM notifications WHERE user_id = ? AND is_read = FALSE ORDER BY created_at DESC";
         List<Notification> notifications = new ArrayList<>();
 
@@ -128,21 +164,32 @@ public class NotificationRepository {
         return notifications;
     }
 
-    public void markAsRead(String notificationId) {
-        String sql = "UPDATE notifications SET is_read = TRUE, read_at = ? WHERE id = ?";
+    /**
+     * Mark one of the user's notifications read. Returns true if it was unread.
+     */
+    public boolean markAsRead(String userId, String notificationId) {
+        String sql = "UPDATE notifications SET is_read = TRUE, read_at = ? WHERE id = ? AND user_id = ? AND is_read = FALSE";
 
         try (Connection conn = dbConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
             pstmt.setString(2, notificationId);
-            pstmt.executeUpdate();
+            pstmt.setString(3, userId);
+            boolean updated = pstmt.executeUpdate() > 0;
+            if (updated) {
+                cache.onRead(userId, notificationId);
+            }
+            return updated;
         } catch (SQLException e) {
             throw new RuntimeException("Error marking notification as read", e);
         }
     }
 
-    public void markAllAsRead(String userId) {
+    /**
+     * Mark all of the user's notifications read. Returns how many were unread.
+     */
+    public int markAllAsRead(String userId) {
         String sql = "UPDATE notifications SET is_read = TRUE, read_at = ? WHERE user_id = ? AND is_read = FALSE";
 
         try (Connection conn = dbConnection.getConnection();
@@ -150,13 +197,23 @@ public class NotificationRepository {
             
             pstmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
             pstmt.setString(2, userId);
-            pstmt.executeUpdate();
+            int updated = pstmt.executeUpdate();
+            cache.onAllRead(userId);
+            return updated;
         } catch (SQLException e) {
             throw new RuntimeException("Error marking all notifications as read", e);
         }
     }
 
     public int getUnreadCount(String userId) {
+        return cache.unreadCount(userId, this::queryUnreadCount);
+    }
+
+    public NotificationCache.Stats getCacheStats() {
+        return cache.getStats();
+    }
+
+    private int queryUnreadCount(String userId) {
         String sql = "SELECT COUNT(*) FROM notifications WHERE user_id = ? AND is_read = FALSE";
 
         try (Connection conn = dbConnection.getConnection();
@@ -183,7 +240,10 @@ public class NotificationRepository {
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, daysOld);
-            pstmt.executeUpdate();
+            if (pstmt.executeUpdate() > 0) {
+                // Only read rows are deleted, but cached rings may still hold them
+                cache.invalidateAll();
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Error deleting old notifications", e);
         }
@@ -0,0 +1,74 @@
+package com.isp.repo;
+
+import com.isp.util.ConnectionPool;
+import com.isp.util.DatabaseConnection;
+
+import java.sql.*;
+
+/**
+ * Named counters in the {@code sequences} table, advanced a block at a time.
+ * The row lock taken by the UPDATE makes concurrent reservations from several
+ * server instances hand out disjoint ranges.
+ */
+public class SequenceRepository {
+
+    private final ConnectionPool.ConnectionFactory connections;
+
+    public SequenceRepository() {
+        this(DatabaseConnection::getConnection);
+    }
+
+    public SequenceRepository(ConnectionPool.ConnectionFactory connections) {
+        this.connections = connections;
+    }
+
+    /**
+     * Reserve {@code blockSize} values of the named sequence, creating it at 1 if it does not exist.
+     *
+     * @return the first reserved value; the block is {@code [first, first + blockSize)}
+     */
+    public long reserve(String name, int blockSize) {
+        if (blockSize < 1) throw new IllegalArgumentException("blockSize must be at least 1");
+        String updateSQL = "UPDATE sequences SET next_value = next_value + ? WHERE name = ?";
+        String selectSQL = "SELECT next_value FROM sequences WHERE name = ?";
+        String insertSQL = "INSERT INTO sequences (name, next_value) VALUES (?, ?)";
+
+        try (Connection conn = connections.create()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement update = conn.prepareStatement(updateSQL);
+                 PreparedStatement select = conn.prepareStatement(selectSQL)) {
+                update.setInt(1, blockSize);
+                update.setString(2, name);
+                if (update.executeUpdate() == 0) {
+                    try (PreparedStatement insert = conn.prepareStatement(insertSQL)) {
+                        insert.setString(1, name);
+                        insert.setLong(2, 1L + blockSize);
+                        insert.executeUpdate();
+                        conn.commit();
+                        return 1;
+                    } catch (SQLIntegrityConstraintViolationException e) {
+                        // Another instance created the row first; take a block from it instead
+                        conn.rollback();
+                        if (update.executeUpdate() == 0) throw e;
+                    }
+                }
+                // Read back under the row lock held since the UPDATE
+                select.setString(1, name);
+                try (ResultSet rs = select.executeQuery()) {
+                    rs.next();
+                    long next = rs.getLong(1);
+                    conn.commit();
+                    return next - blockSize;
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to reserve sequence block for " + name, e);
+        }
+    }
+}
@@ -2,38 +2,141 @@ package com.isp.repo;
 
 import com.isp.model.TicketEnhanced;
 import com.isp.model.TicketMessage;
+import com.isp.util.ConnectionPool;
 import com.isp.util.DatabaseConnection;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
  * Repository for enhanced tickets with database persistence.
+ *
+ * Lists load their messages with one {@code IN (...)} query per {@value #IN_BATCH_SIZE} tickets
+ * on the same connection, instead of one query per ticket, padded to fixed sizes by {@link InList}. Messages are append-only: replies go
+ * through {@link #appendMessage} and header changes through {@link #saveHeader}. {@link #findPage} pages with a keyset
+ * cursor on (created_at, id) and can return summaries that carry only a message count.
  */
 public class TicketEnhancedRepository {
 
+    static final int IN_BATCH_SIZE = InList.MAX_SIZE;
+    private static final int WRITE_BATCH_SIZE = 500;
+    private static final String SUMMARY_COLUMNS =
+        "t.*, (SELECT COUNT(*) FROM ticket_messages m WHERE m.ticket_id = t.id) AS message_count";
+
+    /**
+     * One page of tickets, newest first. {@code nextCursor} is null on the last page.
+     */
+    public record Page(List<TicketEnhanced> tickets, String nextCursor) {
+    }
+
+    private final ConnectionPool.ConnectionFactory connections;
+
+    public TicketEnhancedRepository() {
+        this(DatabaseConnection::getConnection);
+    }
+
+    public TicketEnhancedRepository(ConnectionPool.ConnectionFactory connections) {
+        this.connections = connections;
+    }
+
+    private static final String UPSERT_HEADER_SQL = """
+        INSERT INTO tickets (id, customer_id, customer_name, subject, description, status, priority, created_at, resolved_at, assigned_to_admin_id, assigned_to_admin_name)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE
+            customer_id = VALUES(customer_id),
+            customer_name = VALUES(customer_name),
+            subject = VALUES(subject),
+            description = VALUES(description),
+            status = VALUES(status),
+            priority = VALUES(priority),
+            resolved_at = VALUES(resolved_at),
+            assigned_to_admin_id = VALUES(assigned_to_admin_id),
+            assigned_to_admin_name = VALUES(assigned_to_admin_name)
+    """;
+    private static final String INSERT_MESSAGE_SQL = """
+        INSERT INTO ticket_messages (id, ticket_id, sender_id, sender_name, message, message_type, created_at)
+        VALUES (?, ?, ?, ?, ?, ?, ?)
+    """;
+    // Messages are immutable once written; re-saving an existing one is a no-op
+    private static final String INSERT_MESSAGE_IF_ABSENT_SQL = INSERT_MESSAGE_SQL + " ON DUPLICATE KEY UPDATE id = id";
+
+    /**
+     * Write the ticket header and any messages not yet stored, in one transaction.
+     * Existing messages are left untouched; use {@link #appendMessage} for replies.
+     */
     public void save(TicketEnhanced ticket) {
-        String ticketSql = """
-            INSERT INTO tickets (id, customer_id, customer_name, subject, description, status, priority, created_at, resolved_at, assigned_to_admin_id, assigned_to_admin_name)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-            ON DUPLICATE KEY UPDATE
-                customer_id = VALUES(customer_id),
-                customer_name = VALUES(customer_name),
-                subject = VALUES(subject),
-                description = VALUES(description),
-                status = VALUES(status),
-                priority = VALUES(priority),
-                resolved_at = VALUES(resolved_at),
-                assigned_to_admin_id = VALUES(assigned_to_admin_id),
-                assigned_to_admin_name = VALUES(assigned_to_admin_name)
-        """;
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(ticketSql)) {
-            
+        try (Connection conn = connections.create()) {
+            conn.setAutoCommit(false);
+            try {
+                writeHeader(conn, ticket);
+                insertMessages(conn, ticket.getMessages(), INSERT_MESSAGE_IF_ABSENT_SQL);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("[TicketEnhancedRepository] Error saving ticket: " + e.getMessage());
+            throw new RuntimeException("Failed to save ticket", e);
+        }
+    }
+
+    /**
+     * Write only the ticket row (status, priority, assignment), leaving messages alone.
+     */
+    public void saveHeader(TicketEnhanced ticket) {
+        try (Connection conn = connections.create()) {
+            writeHeader(conn, ticket);
+        } catch (SQLException e) {
+            System.err.println("[TicketEnhancedRepository] Error saving ticket header: " + e.getMessage());
+            throw new RuntimeException("Failed to save ticket", e);
+        }
+    }
+
+    /**
+     * Insert a single new message.
+     */
+    public void appendMessage(TicketMessage message) {
+        try (Connection conn = connections.create();
+             PreparedStatement stmt = conn.prepareStatement(INSERT_MESSAGE_SQL)) {
+            bindMessage(stmt, message);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("[TicketEnhancedRepository] Error appending message: " + e.getMessage());
+            throw new RuntimeException("Failed to append ticket message", e);
+        }
+    }
+
+    /**
+     * Insert many new messages (bulk import) as JDBC batches in one transaction.
+     */
+    public void appendMessages(List<TicketMessage> messages) {
+        if (messages.isEmpty()) return;
+        try (Connection conn = connections.create()) {
+            conn.setAutoCommit(false);
+            try {
+                insertMessages(conn, messages, INSERT_MESSAGE_SQL);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("[TicketEnhancedRepository] Error appending messages: " + e.getMessage());
+            throw new RuntimeException("Failed to append ticket messages", e);
+        }
+    }
+
+    private void writeHeader(Connection conn, TicketEnhanced ticket) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_HEADER_SQL)) {
             stmt.setString(1, ticket.getId());
             stmt.setString(2, ticket.getCustomerId());
             stmt.setString(3, ticket.getCustomerName());
@@ -45,231 +148,253 @@ public class TicketEnhancedRepository {
             stmt.setTimestamp(9, ticket.getResolvedAt() != null ? Timestamp.valueOf(ticket.getResolvedAt()) : null);
             stmt.setString(10, ticket.getAssignedToAdminId());
             stmt.setString(11, ticket.getAssignedToAdminName());
-            
             stmt.executeUpdate();
-            
-            // Save messages
-            saveMessages(ticket.getId(), ticket.getMessages());
-            
-        } catch (SQLException e) {
-            System.err.println("[TicketEnhancedRepository] Error saving ticket: " + e.getMessage());
-            throw new RuntimeException("Failed to save ticket", e);
         }
     }
-    
-    private void saveMessages(String ticketId, List<TicketMessage> messages) throws SQLException {
-        String deleteSql = "DELETE FROM ticket_messages WHERE ticket_id = ?";
-        String insertSql = """
-            INSERT INTO ticket_messages (id, ticket_id, sender_id, sender_name, message, message_type, created_at)
-            VALUES (?, ?, ?, ?, ?, ?, ?)
-        """;
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement deleteStmt = conn.prepareStatement(deleteSql);
-             PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-            
-            // Delete existing messages
-            deleteStmt.setString(1, ticketId);
-            deleteStmt.executeUpdate();
-            
-            // Insert all messages
+
+    private void insertMessages(Connection conn, List<TicketMessage> messages, String sql) throws SQLException {
+        if (messages.isEmpty()) return;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int pending = 0;
             for (TicketMessage msg : messages) {
-                insertStmt.setString(1, msg.getId());
-                insertStmt.setString(2, msg.getTicketId());
-                insertStmt.setString(3, msg.getSenderId());
-                insertStmt.setString(4, msg.getSenderName());
-                insertStmt.setString(5, msg.getMessage());
-                insertStmt.setString(6, msg.getType());
-                insertStmt.setTimestamp(7, Timestamp.valueOf(msg.getSentAt()));
-                insertStmt.executeUpdate();
+                bindMessage(stmt, msg);
+                stmt.addBatch();
+                if (++pending == WRITE_BATCH_SIZE) {
+                    stmt.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                stmt.executeBatch();
             }
         }
     }
 
+    private static void bindMessage(PreparedStatement stmt, TicketMessage msg) throws SQLException {
+        stmt.setString(1, msg.getId());
+        stmt.setString(2, msg.getTicketId());
+        stmt.setString(3, msg.getSenderId());
+        stmt.setString(4, msg.getSenderName());
+        stmt.setString(5, msg.getMessage());
+        stmt.setString(6, msg.getType());
+        stmt.setTimestamp(7, Timestamp.valueOf(msg.getSentAt()));
+    }
+
     public Optional<TicketEnhanced> findById(String id) {
         String sql = "SELECT * FROM tickets WHERE id = ?";
-        TicketEnhanced ticket = null;
-        
-        try (Connection conn = DatabaseConnection.getConnection();
+
+        try (Connection conn = connections.create();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
+
             stmt.setString(1, id);
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                ticket = mapResultSetToTicket(rs);
+            TicketEnhanced ticket = null;
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    ticket = mapResultSetToTicket(rs);
+                }
             }
-            
-        } catch (SQLException e) {
-            System.err.println("[TicketEnhancedRepository] Error finding ticket by id: " + e.getMessage());
-        }
-        
-        if (ticket != null) {
-            try {
-                loadMessages(ticket);
-            } catch (SQLException e) {
-                System.err.println("[TicketEnhancedRepository] Error loading messages: " + e.getMessage());
+            if (ticket == null) {
+                return Optional.empty();
             }
+            loadMessages(conn, List.of(ticket));
             return Optional.of(ticket);
+
+        } catch (SQLException e) {
+            System.err.println("[TicketEnhancedRepository] Error finding ticket by id: " + e.getMessage());
+            return Optional.empty();
         }
-        
-        return Optional.empty();
     }
 
-    public List<TicketEnhanced> findByCustomerId(String customerId) {
-        String sql = "SELECT * FROM tickets WHERE customer_id = ? ORDER BY created_at DESC";
-        List<TicketEnhanced> tickets = new ArrayList<>();
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, customerId);
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                tickets.add(mapResultSetToTicket(rs));
+    /**
+     * The ticket row without its messages.
+     */
+    public Optional<TicketEnhanced> findHeaderById(String id) {
+        try (Connection conn = connections.create();
+             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM tickets WHERE id = ?")) {
+            stmt.setString(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? Optional.of(mapResultSetToTicket(rs)) : Optional.empty();
             }
-            
         } catch (SQLException e) {
-            System.err.println("[TicketEnhancedRepository] Error finding tickets by customer: " + e.getMessage());
-        }
-        
-        // Load messages for all tickets after closing the main ResultSet
-        for (TicketEnhanced ticket : tickets) {
-            try {
-                loadMessages(ticket);
-            } catch (SQLException e) {
-                System.err.println("[TicketEnhancedRepository] Error loading messages for ticket: " + e.getMessage());
-            }
+            System.err.println("[TicketEnhancedRepository] Error finding ticket by id: " + e.getMessage());
+            return Optional.empty();
         }
-        
-        return tickets;
+    }
+
+    public List<TicketEnhanced> findByCustomerId(String customerId) {
+        return findWithMessages("SELECT * FROM tickets WHERE customer_id = ? ORDER BY created_at DESC", customerId,
+                "Error finding tickets by customer");
     }
 
     public List<TicketEnhanced> findByAdminId(String adminId) {
-        String sql = "SELECT * FROM tickets WHERE assigned_to_admin_id = ? ORDER BY created_at DESC";
+        return findWithMessages("SELECT * FROM tickets WHERE assigned_to_admin_id = ? ORDER BY created_at DESC", adminId,
+                "Error finding tickets by admin");
+    }
+
+    public List<TicketEnhanced> findAll() {
+        return findWithMessages("SELECT * FROM tickets ORDER BY created_at DESC", null, "Error finding all tickets");
+    }
+
+    /**
+     * A page of tickets ordered by (created_at, id) descending, optionally for one customer.
+     *
+     * @param customerId only this customer's tickets, or null for all
+     * @param cursor     {@code nextCursor} from the previous page, or null for the first page
+     * @param summary    skip message bodies and fill {@link TicketEnhanced#getMessageCount()} instead
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Page findPage(String customerId, String cursor, int limit, boolean summary) {
+        int pageSize = Math.max(1, limit);
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(summary ? SUMMARY_COLUMNS : "t.*").append(" FROM tickets t WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        if (customerId != null) {
+            sql.append(" AND t.customer_id = ?");
+            params.add(customerId);
+        }
+        Cursor after = Cursor.decode(cursor);
+        if (after != null) {
+            sql.append(" AND (t.created_at < ? OR (t.created_at = ? AND t.id < ?))");
+            params.add(Timestamp.valueOf(after.createdAt()));
+            params.add(Timestamp.valueOf(after.createdAt()));
+            params.add(after.id());
+        }
+        // Fetch one extra row to learn whether another page exists
+        sql.append(" ORDER BY t.created_at DESC, t.id DESC LIMIT ?");
+        params.add(pageSize + 1);
+
         List<TicketEnhanced> tickets = new ArrayList<>();
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, adminId);
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                tickets.add(mapResultSetToTicket(rs));
+        try (Connection conn = connections.create();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
             }
-            
-        } catch (SQLException e) {
-            System.err.println("[TicketEnhancedRepository] Error finding tickets by admin: " + e.getMessage());
-        }
-        
-        // Load messages for all tickets after closing the main ResultSet
-        for (TicketEnhanced ticket : tickets) {
-            try {
-                loadMessages(ticket);
-            } catch (SQLException e) {
-                System.err.println("[TicketEnhancedRepository] Error loading messages for ticket: " + e.getMessage());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    TicketEnhanced ticket = mapResultSetToTicket(rs);
+                    if (summary) {
+                        ticket.setMessageCount(rs.getInt("message_count"));
+                    }
+                    tickets.add(ticket);
+                }
+            }
+            boolean more = tickets.size() > pageSize;
+            if (more) {
+                tickets.remove(tickets.size() - 1);
             }
+            if (!summary) {
+                loadMessages(conn, tickets);
+            }
+            String next = more ? Cursor.encode(tickets.get(tickets.size() - 1)) : null;
+            return new Page(tickets, next);
+
+        } catch (SQLException e) {
+            System.err.println("[TicketEnhancedRepository] Error finding ticket page: " + e.getMessage());
+            return new Page(Collections.emptyList(), null);
         }
-        
-        return tickets;
     }
 
-    public List<TicketEnhanced> findAll() {
-        String sql = "SELECT * FROM tickets ORDER BY created_at DESC";
+    private List<TicketEnhanced> findWithMessages(String sql, String param, String errorMessage) {
         List<TicketEnhanced> tickets = new ArrayList<>();
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            while (rs.next()) {
-                tickets.add(mapResultSetToTicket(rs));
+
+        try (Connection conn = connections.create();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            if (param != null) {
+                stmt.setString(1, param);
             }
-            
-        } catch (SQLException e) {
-            System.err.println("[TicketEnhancedRepository] Error finding all tickets: " + e.getMessage());
-        }
-        
-        // Load messages for all tickets after closing the main ResultSet
-        for (TicketEnhanced ticket : tickets) {
-            try {
-                loadMessages(ticket);
-            } catch (SQLException e) {
-                System.err.println("[TicketEnhancedRepository] Error loading messages for ticket: " + e.getMessage());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    tickets.add(mapResultSetToTicket(rs));
+                }
             }
+            loadMessages(conn, tickets);
+
+        } catch (SQLException e) {
+            System.err.println("[TicketEnhancedRepository] " + errorMessage + ": " + e.getMessage());
         }
-        
+
         return tickets;
     }
-    
+
     private TicketEnhanced mapResultSetToTicket(ResultSet rs) throws SQLException {
-        TicketEnhanced ticket = new TicketEnhanced(
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        Timestamp resolvedAt = rs.getTimestamp("resolved_at");
+        return new TicketEnhanced(
+            rs.getString("id"),
             rs.getString("customer_id"),
             rs.getString("customer_name"),
             rs.getString("subject"),
-            rs.getString("description")
+            rs.getString("description"),
+            TicketEnhanced.Status.valueOf(rs.getString("status")),
+            TicketEnhanced.Priority.valueOf(rs.getString("priority")),
+            createdAt != null ? createdAt.toLocalDateTime() : null,
+            resolvedAt != null ? resolvedAt.toLocalDateTime() : null,
+            rs.getString("assigned_to_admin_id"),
+            rs.getString("assigned_to_admin_name")
         );
-        
-        // Set ID using reflection to bypass constructor
-        try {
-            java.lang.reflect.Field idField = TicketEnhanced.class.getDeclaredField("id");
-            idField.setAccessible(true);
-            idField.set(ticket, rs.getString("id"));
-            
-            java.lang.reflect.Field createdAtField = TicketEnhanced.class.getDeclaredField("createdAt");
-            createdAtField.setAccessible(true);
-            createdAtField.set(ticket, rs.getTimestamp("created_at").toLocalDateTime());
-        } catch (Exception e) {
-            throw new SQLException("Failed to set ticket fields", e);
+    }
+
+    /**
+     * Attach messages to every ticket using batched {@code IN (...)} queries on the caller's connection.
+     */
+    private void loadMessages(Connection conn, List<TicketEnhanced> tickets) throws SQLException {
+        if (tickets.isEmpty()) return;
+        Map<String, TicketEnhanced> byId = new HashMap<>(tickets.size() * 2);
+        for (TicketEnhanced ticket : tickets) {
+            byId.put(ticket.getId(), ticket);
         }
-        
-        ticket.setStatus(TicketEnhanced.Status.valueOf(rs.getString("status")));
-        ticket.setPriority(TicketEnhanced.Priority.valueOf(rs.getString("priority")));
-        
-        Timestamp resolvedAt = rs.getTimestamp("resolved_at");
-        if (resolvedAt != null) {
-            try {
-                java.lang.reflect.Field resolvedAtField = TicketEnhanced.class.getDeclaredField("resolvedAt");
-                resolvedAtField.setAccessible(true);
-                resolvedAtField.set(ticket, resolvedAt.toLocalDateTime());
-            } catch (Exception ignored) {}
+        List<String> ids = new ArrayList<>(byId.keySet());
+
+        for (int from = 0; from < ids.size(); from += IN_BATCH_SIZE) {
+            List<String> batch = ids.subList(from, Math.min(from + IN_BATCH_SIZE, ids.size()));
+            String sql = "SELECT id, ticket_id, sender_id, sender_name, message, message_type, created_at"
+                    + " FROM ticket_messages WHERE ticket_id IN (" + InList.placeholders(batch.size()) + ")"
+                    + " ORDER BY ticket_id, created_at ASC, id ASC";
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                InList.bind(stmt, 1, batch);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Timestamp sentAt = rs.getTimestamp(7);
+                        TicketMessage msg = new TicketMessage(
+                            rs.getString(1),
+                            rs.getString(2),
+                            rs.getString(3),
+                            rs.getString(4),
+                            rs.getString(5),
+                            rs.getString(6),
+                            sentAt != null ? sentAt.toLocalDateTime() : null
+                        );
+                        TicketEnhanced ticket = byId.get(msg.getTicketId());
+                        if (ticket != null) {
+                            ticket.addMessage(msg);
+                        }
+                    }
+                }
+            }
         }
-        
-        ticket.setAssignedToAdminId(rs.getString("assigned_to_admin_id"));
-        ticket.setAssignedToAdminName(rs.getString("assigned_to_admin_name"));
-        
-        return ticket;
     }
-    
-    private void loadMessages(TicketEnhanced ticket) throws SQLException {
-        String sql = "SELECT * FROM ticket_messages WHERE ticket_id = ? ORDER BY created_at ASC";
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, ticket.getId());
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                TicketMessage msg = new TicketMessage(
-                    rs.getString("id"),
-                    rs.getString("ticket_id"),
-                    rs.getString("sender_id"),
-                    rs.getString("sender_name"),
-                    rs.getString("message"),
-                    rs.getString("message_type")
-                );
-                
-                // Set sentAt using reflection
-                try {
-                    java.lang.reflect.Field sentAtField = TicketMessage.class.getDeclaredField("sentAt");
-                    sentAtField.setAccessible(true);
-                    sentAtField.set(msg, rs.getTimestamp("created_at").toLocalDateTime());
-                } catch (Exception ignored) {}
-                
-                ticket.addMessage(msg);
+
+    /**
+     * Opaque keyset cursor: base64url of "createdAt|id" for the last ticket on a page.
+     */
+    private record Cursor(LocalDateTime createdAt, String id) {
+
+        static String encode(TicketEnhanced last) {
+            String raw = last.getCreatedAt() + "|" + last.getId();
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) return null;
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int bar = raw.indexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, bar)), raw.substring(bar + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
             }
         }
     }
@@ -5,13 +5,14 @@ import com.isp.model.Ticket;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 /**
  * In-memory repository for support tickets.
  */
 public class TicketRepository {
-    private final List<Ticket> store = new ArrayList<>();
+    private final List<Ticket> store = new CopyOnWriteArrayList<>();
 
     public void save(Ticket ticket) {
         store.add(ticket);
@@ -1,79 +1,145 @@
 package com.isp.repo;
 
 import com.isp.model.UsageAlert;
+import com.isp.util.ConnectionPool;
 import com.isp.util.DatabaseConnection;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Repository for UsageAlert persistence in MySQL
  */
 public class UsageAlertRepository {
-    
+
+    private static final String INSERT_SQL = "INSERT INTO usage_alerts (id, customer_id, alert_type, status, usage_percentage, threshold_percent, created_at, acknowledged_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final ConnectionPool.ConnectionFactory connections;
+
+    public UsageAlertRepository() {
+        this(DatabaseConnection::getConnection);
+    }
+
+    public UsageAlertRepository(ConnectionPool.ConnectionFactory connections) {
+        this.connections = connections;
+    }
+
     public UsageAlert save(UsageAlert alert) {
-        String sql = "INSERT INTO usage_alerts (id, customer_id, alert_type, status, usage_percentage, created_at, acknowledged_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, alert.getId());
-            stmt.setString(2, alert.getCustomerId());
-            stmt.setString(3, alert.getAlertType().name());
-            stmt.setString(4, alert.getStatus().name());
-            stmt.setDouble(5, alert.getUsagePercentage());
-            stmt.setTimestamp(6, Timestamp.valueOf(alert.getCreatedAt()));
-            stmt.setTimestamp(7, alert.getAcknowledgedAt() != null ? Timestamp.valueOf(alert.getAcknowledgedAt()) : null);
-            
+        try (Connection conn = connections.create();
+             PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+
+            bindInsert(stmt, alert);
             stmt.executeUpdate();
             return alert;
         } catch (SQLException e) {
             throw new RuntimeException("Error saving usage alert", e);
         }
     }
-    
+
+    /**
+     * Insert alerts as one JDBC batch in a single transaction.
+     */
+    public void saveAll(List<UsageAlert> alerts) {
+        if (alerts.isEmpty()) return;
+
+        try (Connection conn = connections.create()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+                for (UsageAlert alert : alerts) {
+                    bindInsert(stmt, alert);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error saving usage alerts", e);
+        }
+    }
+
+    /**
+     * Threshold percentages already alerted for a customer since {@code since}.
+     */
+    public Set<Integer> findThresholdsSince(String customerId, LocalDateTime since) {
+        String sql = "SELECT DISTINCT threshold_percent FROM usage_alerts WHERE customer_id = ? AND created_at >= ?";
+        Set<Integer> thresholds = new HashSet<>();
+
+        try (Connection conn = connections.create();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, customerId);
+            stmt.setTimestamp(2, Timestamp.valueOf(since));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    thresholds.add(rs.getInt(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding alerts", e);
+        }
+        return thresholds;
+    }
+
     public List<UsageAlert> findActiveAlertsByCustomerId(String customerId) {
         String sql = "SELECT * FROM usage_alerts WHERE customer_id = ? AND status = 'ACTIVE' ORDER BY created_at DESC";
         List<UsageAlert> alerts = new ArrayList<>();
-        
-        try (Connection conn = DatabaseConnection.getConnection();
+
+        try (Connection conn = connections.create();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
+
             stmt.setString(1, customerId);
             ResultSet rs = stmt.executeQuery();
-            
+
             while (rs.next()) {
                 alerts.add(mapResultSetToAlert(rs));
             }
         } catch (SQLException e) {
             throw new RuntimeException("Error finding alerts", e);
         }
-        
+
         return alerts;
     }
-    
+
     public List<UsageAlert> findByCustomerId(String customerId) {
         String sql = "SELECT * FROM usage_alerts WHERE customer_id = ? ORDER BY created_at DESC";
         List<UsageAlert> alerts = new ArrayList<>();
-        
-        try (Connection conn = DatabaseConnection.getConnection();
+
+        try (Connection conn = connections.create();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
+
             stmt.setString(1, customerId);
             ResultSet rs = stmt.executeQuery();
-            
+
             while (rs.next()) {
                 alerts.add(mapResultSetToAlert(rs));
             }
         } catch (SQLException e) {
             throw new RuntimeException("Error finding alerts", e);
         }
-        
+
         return alerts;
     }
-    
+
+    private static void bindInsert(PreparedStatement stmt, UsageAlert alert) throws SQLException {
+        stmt.setString(1, alert.getId());
+        stmt.setString(2, alert.getCustomerId());
+        stmt.setString(3, alert.getAlertType().name());
+        stmt.setString(4, alert.getStatus().name());
+        stmt.setDouble(5, alert.getUsagePercentage());
+        stmt.setInt(6, alert.getThresholdPercent());
+        stmt.setTimestamp(7, Timestamp.valueOf(alert.getCreatedAt()));
+        stmt.setTimestamp(8, alert.getAcknowledgedAt() != null ? Timestamp.valueOf(alert.getAcknowledgedAt()) : null);
+    }
+
     private UsageAlert mapResultSetToAlert(ResultSet rs) throws SQLException {
         UsageAlert alert = new UsageAlert();
         alert.setId(rs.getString("id"));
@@ -81,6 +147,7 @@ public class UsageAlertRepository {
         alert.setAlertType(UsageAlert.AlertType.valueOf(rs.getString("alert_type")));
         alert.setStatus(UsageAlert.AlertStatus.valueOf(rs.getString("status")));
         alert.setUsagePercentage(rs.getDouble("usage_percentage"));
+        alert.setThresholdPercent(rs.getInt("threshold_percent"));
         alert.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
         Timestamp ackTime = rs.getTimestamp("acknowledged_at");
         if (ackTime != null) {
@@ -2,27 +2,174 @@ package com.isp.repo;
 
 import com.isp.model.NetworkUsage;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * In-memory repository for network usage data.
+ *
+ * Records are partitioned by customer. Each partition keeps its records sorted by timestamp with
+ * a prefix-sum array, so per-customer totals are O(1) and billing-period totals are two binary
+ * searches. Writers only lock their own customer's partition; total and count reads take no lock.
  */
 public class UsageRepository {
-    private final List<NetworkUsage> store = new ArrayList<>();
+    private final ConcurrentHashMap<String, CustomerUsage> partitions = new ConcurrentHashMap<>();
 
     public void save(NetworkUsage usage) {
-        store.add(usage);
+        partitions.computeIfAbsent(usage.getCustomerId(), id -> new CustomerUsage()).add(usage);
+    }
+
+    /**
+     * Save a batch, taking each customer's partition lock once for all of that customer's records.
+     */
+    public void saveAll(List<NetworkUsage> batch) {
+        Map<String, List<NetworkUsage>> byCustomer = new HashMap<>();
+        for (NetworkUsage usage : batch) {
+            byCustomer.computeIfAbsent(usage.getCustomerId(), id -> new ArrayList<>()).add(usage);
+        }
+        byCustomer.forEach((customerId, records) ->
+                partitions.computeIfAbsent(customerId, id -> new CustomerUsage()).addAll(records));
     }
 
     public List<NetworkUsage> findByCustomerId(String customerId) {
-        return store.stream()
-                .filter(u -> u.getCustomerId().equals(customerId))
-                .collect(Collectors.toList());
+        CustomerUsage partition = partitions.get(customerId);
+        return partition != null ? partition.snapshot() : new ArrayList<>();
+    }
+
+    /**
+     * Records for a customer with {@code from <= timestamp < to}; a null bound is open.
+     */
+    public List<NetworkUsage> findByCustomerId(String customerId, LocalDateTime from, LocalDateTime to) {
+        CustomerUsage partition = partitions.get(customerId);
+        return partition != null ? partition.range(from, to) : new ArrayList<>();
     }
 
     public List<NetworkUsage> findAll() {
-        return new ArrayList<>(store);
+        List<NetworkUsage> all = new ArrayList<>();
+        for (CustomerUsage partition : partitions.values()) {
+            all.addAll(partition.snapshot());
+        }
+        return all;
+    }
+
+    /**
+     * Total gigabytes recorded for a customer.
+     */
+    public double getTotalGigabytes(String customerId) {
+        CustomerUsage partition = partitions.get(customerId);
+        return partition != null ? partition.total : 0.0;
+    }
+
+    /**
+     * Total gigabytes for a customer with {@code from <= timestamp < to}; a null bound is open.
+     */
+    public double getTotalGigabytes(String customerId, LocalDateTime from, LocalDateTime to) {
+        CustomerUsage partition = partitions.get(customerId);
+        return partition != null ? partition.totalBetween(from, to) : 0.0;
+    }
+
+    public int getRecordCount(String customerId) {
+        CustomerUsage partition = partitions.get(customerId);
+        return partition != null ? partition.count : 0;
+    }
+
+    /**
+     * Customers that have at least one usage record.
+     */
+    public Set<String> getCustomerIds() {
+        return partitions.keySet();
+    }
+
+    /**
+     * One customer's usage, sorted by timestamp. prefix[i] is the sum of the first i records.
+     */
+    private static final class CustomerUsage {
+        private NetworkUsage[] records = new NetworkUsage[8];
+        private double[] prefix = new double[9];
+        private volatile double total;
+        private volatile int count;
+
+        synchronized void add(NetworkUsage usage) {
+            int pos = insert(usage, count);
+            publish(pos, count + 1);
+        }
+
+        synchronized void addAll(List<NetworkUsage> batch) {
+            int size = count;
+            int firstChanged = size;
+            for (NetworkUsage usage : batch) {
+                firstChanged = Math.min(firstChanged, insert(usage, size++));
+            }
+            publish(firstChanged, size);
+        }
+
+        /**
+         * Place a record among the first {@code size} in timestamp order and return its index.
+         */
+        private int insert(NetworkUsage usage, int size) {
+            if (size == records.length) {
+                records = Arrays.copyOf(records, size * 2);
+                prefix = Arrays.copyOf(prefix, size * 2 + 1);
+            }
+
+            // Usage normally arrives in time order, so this is an append; late records shift the tail.
+            int pos = size;
+            while (pos > 0 && records[pos - 1].getTimestamp().isAfter(usage.getTimestamp())) {
+                pos--;
+            }
+            System.arraycopy(records, pos, records, pos + 1, size - pos);
+            records[pos] = usage;
+            return pos;
+        }
+
+        /**
+         * Recompute prefix sums from {@code from} and make the first {@code size} records visible.
+         */
+        private void publish(int from, int size) {
+            for (int i = from; i < size; i++) {
+                prefix[i + 1] = prefix[i] + records[i].getGigabytes();
+            }
+            total = prefix[size];
+            count = size;
+        }
+
+        synchronized List<NetworkUsage> snapshot() {
+            return new ArrayList<>(Arrays.asList(records).subList(0, count));
+        }
+
+        synchronized List<NetworkUsage> range(LocalDateTime from, LocalDateTime to) {
+            int lo = from != null ? lowerBound(from) : 0;
+            int hi = Math.max(lo, to != null ? lowerBound(to) : count);
+            return new ArrayList<>(Arrays.asList(records).subList(lo, hi));
+        }
+
+        synchronized double totalBetween(LocalDateTime from, LocalDateTime to) {
+            int lo = from != null ? lowerBound(from) : 0;
+            int hi = to != null ? lowerBound(to) : count;
+            return hi > lo ? prefix[hi] - prefix[lo] : 0.0;
+        }
+
+        /**
+         * Index of the first record at or after {@code time}.
+         */
+        private int lowerBound(LocalDateTime time) {
+            int lo = 0;
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (records[mid].getTimestamp().isBefore(time)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
     }
 }
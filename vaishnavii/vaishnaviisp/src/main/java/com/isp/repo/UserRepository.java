@@ -7,6 +7,7 @@ import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -126,6 +127,44 @@ public class UserRepository {
         return users;
     }
 
+    /**
+     * Active users after {@code afterId} in id order, for walking the table in pages without OFFSET.
+     *
+     * @param role   only users with this role, or null for any
+     * @param planId only customers currently on this plan, or null for any
+     */
+    public List<User> findActivePage(String afterId, int limit, User.Role role, String planId) {
+        StringBuilder sql = new StringBuilder("SELECT u.* FROM users u");
+        if (planId != null) {
+            sql.append(" JOIN customer_profiles p ON p.user_id = u.id AND p.is_active = TRUE AND p.current_plan_id = ?");
+        }
+        sql.append(" WHERE u.status = 'ACTIVE'");
+        if (role != null) sql.append(" AND u.role = ?");
+        if (afterId != null) sql.append(" AND u.id > ?");
+        sql.append(" ORDER BY u.id LIMIT ?");
+
+        List<User> users = new ArrayList<>(limit);
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+
+            int i = 1;
+            if (planId != null) stmt.setString(i++, planId);
+            if (role != null) stmt.setString(i++, role.name());
+            if (afterId != null) stmt.setString(i++, afterId);
+            stmt.setInt(i, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(mapResultSetToUser(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to page users", e);
+        }
+
+        return users;
+    }
+
     public void delete(String id) {
         String sql = "DELETE FROM users WHERE id = ?";
         
@@ -0,0 +1,339 @@
+package com.isp.service;
+
+import com.isp.model.BillingRunResult;
+import com.isp.model.BillingRunResult.CustomerBill;
+import com.isp.model.BillingRunResult.PartitionResult;
+import com.isp.model.Customer;
+import com.isp.util.AppConfig;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Runs a billing cycle in parallel over hash partitions of the customer set.
+ *
+ * Each partition is billed on a {@link ForkJoinPool} and, when checkpointing is on, written to
+ * {@code <checkpointDir>/<runId>/partition-NNN.tsv} as soon as it finishes. If a run stops before
+ * every partition is done, the next run resumes it: checkpointed customers are taken from disk and
+ * only the rest are billed. A run in which some customers failed stays unfinished, so the next run in the
+ * same billing period bills just those customers again; a run is never resumed in a later period.
+ * Run directories are deleted once older than the retention period.
+ */
+public class BillingRunEngine {
+
+    /**
+     * Computes one customer's bill.
+     */
+    @FunctionalInterface
+    public interface BillCalculator {
+        CustomerBill bill(Customer customer);
+    }
+
+    /**
+     * Partitioning, parallelism, checkpoint and retention settings.
+     */
+    public record Settings(int partitions, int parallelism, Path checkpointDir, Duration retention) {
+
+        public Settings {
+            if (partitions < 1) throw new IllegalArgumentException("partitions must be at least 1");
+            if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+            if (retention == null || retention.isNegative()) throw new IllegalArgumentException("retention must not be negative");
+        }
+
+        public Settings(int partitions, int parallelism, Path checkpointDir) {
+            this(partitions, parallelism, checkpointDir, Duration.ofDays(DEFAULT_RETENTION_DAYS));
+        }
+
+        /**
+         * Settings from {@code isp.billing.*} system properties or {@code ISP_BILLING_*} environment variables.
+         * An empty checkpoint directory disables checkpointing.
+         */
+        public static Settings fromConfig() {
+            String dir = AppConfig.get("isp.billing.checkpointDir", "ISP_BILLING_CHECKPOINT_DIR", "data/billing-runs");
+            return new Settings(
+                AppConfig.getInt("isp.billing.partitions", "ISP_BILLING_PARTITIONS", 16),
+                AppConfig.getInt("isp.billing.parallelism", "ISP_BILLING_PARALLELISM", Runtime.getRuntime().availableProcessors()),
+                "none".equalsIgnoreCase(dir) ? null : Paths.get(dir),
+                Duration.ofDays(AppConfig.getInt("isp.billing.retentionDays", "ISP_BILLING_RETENTION_DAYS", DEFAULT_RETENTION_DAYS))
+            );
+        }
+    }
+
+    private static final DateTimeFormatter RUN_ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final String RUN_FILE = "run.properties";
+    private static final int DEFAULT_RETENTION_DAYS = 90;
+
+    private final BillCalculator calculator;
+    private final Settings settings;
+    private final ForkJoinPool pool;
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    public BillingRunEngine(BillCalculator calculator, Settings settings) {
+        this.calculator = calculator;
+        this.settings = settings;
+        this.pool = new ForkJoinPool(settings.parallelism());
+    }
+
+    /**
+     * Bill every customer for the current month, resuming this month's unfinished run if there is one.
+     *
+     * @throws IllegalStateException if another run is already in progress
+     */
+    public BillingRunResult run(Collection<Customer> customers) {
+        return run(customers, YearMonth.now());
+    }
+
+    /**
+     * Bill every customer for a period, resuming that period's unfinished run if there is one.
+     *
+     * @throws IllegalStateException if another run is already in progress
+     */
+    public BillingRunResult run(Collection<Customer> customers, YearMonth period) {
+        if (!runLock.tryLock()) {
+            throw new IllegalStateException("A billing run is already in progress");
+        }
+        try {
+            Optional<String> unfinished = findUnfinishedRun(period);
+            pruneFinishedRuns(unfinished.orElse(null));
+            String runId = unfinished.orElseGet(() -> "run-" + LocalDateTime.now().format(RUN_ID_FORMAT) + "-" + period);
+            Path runDir = settings.checkpointDir() != null ? settings.checkpointDir().resolve(runId) : null;
+            if (runDir != null && unfinished.isEmpty()) {
+                writeRunFile(runDir, "RUNNING", period);
+            }
+
+            BillingRunResult result = new BillingRunResult(runId, unfinished.isPresent(), LocalDateTime.now());
+            List<List<Customer>> partitions = partition(customers);
+            List<Callable<PartitionOutcome>> tasks = new ArrayList<>();
+            for (int i = 0; i < partitions.size(); i++) {
+                int index = i;
+                List<Customer> members = partitions.get(i);
+                tasks.add(() -> billPartition(runDir, index, members));
+            }
+
+            List<Future<PartitionOutcome>> futures = pool.invokeAll(tasks);
+            for (int i = 0; i < futures.size(); i++) {
+                PartitionOutcome outcome;
+                try {
+                    outcome = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    outcome = PartitionOutcome.failed(i, partitions.get(i).size(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    outcome = PartitionOutcome.failed(i, partitions.get(i).size(), e);
+                }
+                result.addPartition(outcome.result, outcome.bills, outcome.failures);
+            }
+            result.finish(LocalDateTime.now());
+
+            // Failed customers are only in the checkpoint as FAILED, so leaving the run open bills them next time
+            if (runDir != null && result.isComplete() && result.getFailures().isEmpty()) {
+                writeRunFile(runDir, "COMPLETE", period);
+            }
+            return result;
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    List<List<Customer>> partition(Collection<Customer> customers) {
+        List<List<Customer>> partitions = new ArrayList<>(settings.partitions());
+        for (int i = 0; i < settings.partitions(); i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (Customer customer : customers) {
+            partitions.get(Math.floorMod(customer.getId().hashCode(), settings.partitions())).add(customer);
+        }
+        for (List<Customer> members : partitions) {
+            members.sort(Comparator.comparing(Customer::getId));
+        }
+        return partitions;
+    }
+
+    private PartitionOutcome billPartition(Path runDir, int index, List<Customer> members) throws IOException {
+        long start = System.nanoTime();
+        Map<String, CustomerBill> done = runDir != null ? readCheckpoint(runDir, index) : Map.of();
+
+        List<CustomerBill> bills = new ArrayList<>(members.size());
+        Map<String, String> failures = new LinkedHashMap<>();
+        int fromCheckpoint = 0;
+        boolean billedNew = false;
+        for (Customer customer : members) {
+            CustomerBill previous = done.get(customer.getId());
+            if (previous != null) {
+                bills.add(previous);
+                fromCheckpoint++;
+                continue;
+            }
+            try {
+                bills.add(calculator.bill(customer));
+                billedNew = true;
+            } catch (RuntimeException e) {
+                failures.put(customer.getId(), String.valueOf(e.getMessage()));
+            }
+        }
+
+        if (runDir != null && (billedNew || !failures.isEmpty())) {
+            writeCheckpoint(runDir, index, bills, failures);
+        }
+
+        double amount = bills.stream().mapToDouble(CustomerBill::amount).sum();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        return new PartitionOutcome(new PartitionResult(index, members.size(), fromCheckpoint, amount, millis, null), bills, failures);
+    }
+
+    /**
+     * The latest run, if it is still running for the same period and partition layout. A run left
+     * unfinished in an earlier period is not resumed; it is pruned with the other old runs.
+     */
+    private Optional<String> findUnfinishedRun(YearMonth period) {
+        Path dir = settings.checkpointDir();
+        if (dir == null || !Files.isDirectory(dir)) return Optional.empty();
+        try (Stream<Path> runs = Files.list(dir)) {
+            Optional<Path> latest = runs.filter(p -> Files.isRegularFile(p.resolve(RUN_FILE)))
+                    .max(Comparator.comparing(p -> p.getFileName().toString()));
+            if (latest.isEmpty()) return Optional.empty();
+            Properties props = readRunFile(latest.get());
+            boolean sameLayout = String.valueOf(settings.partitions()).equals(props.getProperty("partitions"));
+            boolean samePeriod = period.toString().equals(props.getProperty("period"));
+            if ("RUNNING".equals(props.getProperty("status")) && sameLayout && samePeriod) {
+                return Optional.of(latest.get().getFileName().toString());
+            }
+        } catch (IOException e) {
+            System.err.println("[BILLING] Could not read billing checkpoints: " + e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Delete run directories last written before the retention period, except the run about to be resumed.
+     */
+    private void pruneFinishedRuns(String keep) {
+        Path dir = settings.checkpointDir();
+        if (dir == null || !Files.isDirectory(dir)) return;
+        Instant cutoff = Instant.now().minus(settings.retention());
+        try (Stream<Path> runs = Files.list(dir)) {
+            for (Path runDir : runs.filter(p -> Files.isRegularFile(p.resolve(RUN_FILE))).toList()) {
+                if (runDir.getFileName().toString().equals(keep)) continue;
+                if (Files.getLastModifiedTime(runDir.resolve(RUN_FILE)).toInstant().isBefore(cutoff)) {
+                    deleteRun(runDir);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[BILLING] Could not prune billing checkpoints: " + e.getMessage());
+        }
+    }
+
+    private static void deleteRun(Path runDir) throws IOException {
+        try (Stream<Path> files = Files.walk(runDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private Properties readRunFile(Path runDir) throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(runDir.resolve(RUN_FILE), StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        return props;
+    }
+
+    private void writeRunFile(Path runDir, String status, YearMonth period) {
+        Properties props = new Properties();
+        props.setProperty("status", status);
+        props.setProperty("period", period.toString());
+        props.setProperty("partitions", String.valueOf(settings.partitions()));
+        props.setProperty("updatedAt", LocalDateTime.now().toString());
+        try {
+            Files.createDirectories(runDir);
+            Path tmp = runDir.resolve(RUN_FILE + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                props.store(writer, "Billing run " + runDir.getFileName());
+            }
+            Files.move(tmp, runDir.resolve(RUN_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("[BILLING] Could not write run checkpoint: " + e.getMessage());
+        }
+    }
+
+    private Map<String, CustomerBill> readCheckpoint(Path runDir, int index) throws IOException {
+        Path file = partitionFile(runDir, index);
+        Map<String, CustomerBill> bills = new LinkedHashMap<>();
+        if (!Files.exists(file)) return bills;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] f = line.split("\t", -1);
+            if (f.length == 5 && "OK".equals(f[0])) {
+                bills.put(f[1], new CustomerBill(f[1], f[2], Double.parseDouble(f[3]), Double.parseDouble(f[4])));
+            }
+        }
+        return bills;
+    }
+
+    /**
+     * Write the partition file atomically; failed customers are recorded but billed again on resume.
+     */
+    private void writeCheckpoint(Path runDir, int index, List<CustomerBill> bills, Map<String, String> failures) throws IOException {
+        Files.createDirectories(runDir);
+        Path file = partitionFile(runDir, index);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (CustomerBill bill : bills) {
+                writer.write("OK\t" + clean(bill.customerId()) + "\t" + clean(bill.customerName()) + "\t"
+                        + bill.usageGb() + "\t" + bill.amount() + "\n");
+            }
+            for (Map.Entry<String, String> failure : failures.entrySet()) {
+                writer.write("FAILED\t" + clean(failure.getKey()) + "\t" + clean(failure.getValue()) + "\n");
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path partitionFile(Path runDir, int index) {
+        return runDir.resolve(String.format("partition-%03d.tsv", index));
+    }
+
+    private static String clean(String s) {
+        return s == null ? "" : s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private record PartitionOutcome(PartitionResult result, List<CustomerBill> bills, Map<String, String> failures) {
+        static PartitionOutcome failed(int index, int customers, Throwable error) {
+            String message = error != null ? error.getClass().getSimpleName() + ": " + error.getMessage() : "unknown error";
+            return new PartitionOutcome(new PartitionResult(index, customers, 0, 0, 0, message), List.of(), Map.of());
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package com.isp.service;
 
+import com.isp.model.BillingRunResult;
 import com.isp.model.Customer;
-import com.isp.model.NetworkUsage;
 import com.isp.repo.CustomerRepository;
 import com.isp.repo.UsageRepository;
 
-import java.util.List;
+import java.time.LocalDateTime;
 
 /**
  * Service for automated billing calculations.
@@ -17,51 +17,73 @@ import java.util.List;
 public class BillingService {
     private final CustomerRepository customerRepository;
     private final UsageRepository usageRepository;
+    private final BillingRunEngine runEngine;
     
     private static final double BASE_FEE = 20.0;
     private static final double COST_PER_GB = 0.5;
 
     public BillingService(CustomerRepository customerRepository, UsageRepository usageRepository) {
+        this(customerRepository, usageRepository, BillingRunEngine.Settings.fromConfig());
+    }
+
+    public BillingService(CustomerRepository customerRepository, UsageRepository usageRepository,
+                          BillingRunEngine.Settings runSettings) {
         this.customerRepository = customerRepository;
         this.usageRepository = usageRepository;
+        this.runEngine = new BillingRunEngine(this::billCustomer, runSettings);
     }
 
     /**
      * Calculate bill for a specific customer.
      */
     public double calculateBillForCustomer(String customerId) {
-        List<NetworkUsage> usage = usageRepository.findByCustomerId(customerId);
-        double totalGb = usage.stream()
-                .mapToDouble(NetworkUsage::getGigabytes)
-                .sum();
-        
+        double totalGb = usageRepository.getTotalGigabytes(customerId);
+        return BASE_FEE + (totalGb * COST_PER_GB);
+    }
+
+    /**
+     * Calculate bill for a customer's usage in a billing period ({@code from} inclusive, {@code to} exclusive).
+     */
+    public double calculateBillForPeriod(String customerId, LocalDateTime from, LocalDateTime to) {
+        double totalGb = usageRepository.getTotalGigabytes(customerId, from, to);
         return BASE_FEE + (totalGb * COST_PER_GB);
     }
 
     /**
-     * Run billing cycle for all customers.
+     * Run billing cycle for all customers in parallel partitions, resuming an unfinished run if one exists.
+     *
+     * @throws IllegalStateException if a billing run is already in progress
      */
-    public void runBillingCycle() {
-        System.out.println("\n=== Running Billing Cycle ===");
-        for (Customer customer : customerRepository.findAll()) {
-            double amount = calculateBillForCustomer(customer.getId());
-            System.out.printf("Bill for %s (%s): $%.2f%n", 
-                    customer.getName(), 
-                    customer.getId(), 
-                    amount);
+    public BillingRunResult runBillingCycle() {
+        BillingRunResult result = runEngine.run(customerRepository.findAll());
+        System.out.println("[BILLING] " + result);
+        for (BillingRunResult.PartitionResult partition : result.getPartitions()) {
+            if (partition.failed()) {
+                System.err.println("[BILLING] Partition " + partition.partition() + " failed: " + partition.error());
+            }
         }
-        System.out.println("=== Billing Cycle Complete ===\n");
+        return result;
+    }
+
+    private BillingRunResult.CustomerBill billCustomer(Customer customer) {
+        double totalGb = usageRepository.getTotalGigabytes(customer.getId());
+        return new BillingRunResult.CustomerBill(customer.getId(), customer.getName(), totalGb,
+                BASE_FEE + (totalGb * COST_PER_GB));
+    }
+
+    /**
+     * Stop the billing worker pool.
+     */
+    public void shutdown() {
+        runEngine.shutdown();
     }
 
     /**
      * Get billing summary for a customer.
      */
     public String getBillingSummary(String customerId) {
-        List<NetworkUsage> usage = usageRepository.findByCustomerId(customerId);
-        double totalGb = usage.stream()
-                .mapToDouble(NetworkUsage::getGigabytes)
-                .sum();
-        double bill = calculateBillForCustomer(customerId);
+        double totalGb = usageRepository.getTotalGigabytes(customerId);
+        double bill = BASE_FEE + (totalGb * COST_PER_GB);
 
         return String.format("Usage: %.2f GB | Base: $%.2f | Usage Cost: $%.2f | Total: $%.2f",
                 totalGb, BASE_FEE, totalGb * COST_PER_GB, bill);
@@ -0,0 +1,209 @@
+package com.isp.service;
+
+import com.isp.model.DailyUsage;
+import com.isp.repo.DailyUsageRepository;
+import com.isp.util.AppConfig;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps {@code daily_usage} up to date from live usage events.
+ *
+ * Events are folded into an in-memory accumulator per customer and day. Every {@code flushIntervalMillis}
+ * the accumulated deltas are written with one batched upsert that adds the data volumes and keeps the
+ * larger peak speed and device count, so dashboards read finished days instead of scanning raw usage.
+ * A day's accumulator keeps its distinct device ids until the day is over and fully flushed, so the
+ * device count stays exact however many flushes the day takes. Rows the database rejects, such as those
+ * for an unknown customer, are dropped so they cannot hold back every other customer's totals.
+ */
+public class DailyUsageRollup implements UsageListener, AutoCloseable {
+
+    /**
+     * Flush interval.
+     */
+    public record Settings(long flushIntervalMillis) {
+
+        /**
+         * Settings from {@code isp.usage.rollup.flushIntervalMs} or {@code ISP_USAGE_ROLLUP_FLUSH_INTERVAL_MS}.
+         */
+        public static Settings fromConfig() {
+            return new Settings(AppConfig.getLong("isp.usage.rollup.flushIntervalMs", "ISP_USAGE_ROLLUP_FLUSH_INTERVAL_MS", 60_000));
+        }
+    }
+
+    /**
+     * Point-in-time rollup metrics.
+     */
+    public record Stats(int openDays, long events, long rowsUpserted, long rowsDropped, long flushes, long failedFlushes) {
+    }
+
+    /**
+     * Where flushed rows go; each row carries deltas except for peak speed and device count.
+     * Rows reported as failed are kept for the next flush.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        DailyUsageRepository.UpsertResult upsert(List<DailyUsage> rows);
+    }
+
+    private record Key(String customerId, LocalDate day) {
+    }
+
+    /**
+     * Unflushed totals for one customer-day. Only touched inside ConcurrentHashMap compute calls.
+     */
+    private static final class Accumulator {
+        double dataGB;
+        double uploadGB;
+        double downloadGB;
+        double peakSpeedMbps;
+        final Set<String> devices = new HashSet<>();
+        boolean dirty;
+
+        void add(Event event) {
+            dataGB += event.gigabytes();
+            uploadGB += event.uploadGB();
+            downloadGB += event.downloadGB();
+            peakSpeedMbps = Math.max(peakSpeedMbps, event.speedMbps());
+            if (event.deviceId() != null) devices.add(event.deviceId());
+            dirty = true;
+        }
+
+        void restore(DailyUsage row) {
+            dataGB += row.getDataUsedGB();
+            uploadGB += row.getUploadGB();
+            downloadGB += row.getDownloadGB();
+            peakSpeedMbps = Math.max(peakSpeedMbps, row.getPeakSpeedMbps());
+            dirty = true;
+        }
+    }
+
+    private final Sink sink;
+    private final ConcurrentHashMap<Key, Accumulator> open = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Object flushLock = new Object();
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder rowsUpserted = new LongAdder();
+    private final LongAdder rowsDropped = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+
+    public DailyUsageRollup(DailyUsageRepository repository, Settings settings) {
+        this(repository::upsertAll, settings);
+    }
+
+    DailyUsageRollup(Sink sink, Settings settings) {
+        this.sink = sink;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "isp-usage-rollup");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, settings.flushIntervalMillis(),
+                settings.flushIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onUsage(List<Event> batch) {
+        for (Event event : batch) {
+            open.compute(new Key(event.customerId(), event.at().toLocalDate()), (key, acc) -> {
+                if (acc == null) acc = new Accumulator();
+                acc.add(event);
+                return acc;
+            });
+        }
+        events.add(batch.size());
+    }
+
+    /**
+     * Write all accumulated deltas now.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            LocalDate today = LocalDate.now();
+            List<Key> keys = new ArrayList<>();
+            List<DailyUsage> rows = new ArrayList<>();
+            for (Key key : open.keySet()) {
+                open.computeIfPresent(key, (k, acc) -> {
+                    if (!acc.dirty) {
+                        // Nothing new; a finished day can be dropped
+                        return k.day().isBefore(today) ? null : acc;
+                    }
+                    rows.add(new DailyUsage(null, k.customerId(), k.day().atStartOfDay(), acc.dataGB, acc.uploadGB,
+                            acc.downloadGB, acc.peakSpeedMbps, acc.devices.size()));
+                    keys.add(k);
+                    acc.dataGB = acc.uploadGB = acc.downloadGB = 0;
+                    acc.dirty = false;
+                    return acc;
+                });
+            }
+            if (rows.isEmpty()) return;
+
+            DailyUsageRepository.UpsertResult result;
+            try {
+                result = sink.upsert(rows);
+            } catch (RuntimeException e) {
+                failedFlushes.increment();
+                restore(keys, rows, rows);
+                throw e;
+            }
+            rowsDropped.add(result.dropped());
+            rowsUpserted.add(rows.size() - result.dropped() - result.failed().size());
+            flushes.increment();
+            if (!result.failed().isEmpty()) {
+                failedFlushes.increment();
+                restore(keys, rows, result.failed());
+            }
+        }
+    }
+
+    /**
+     * Put the deltas of rows that were not written back, so the next flush retries them.
+     */
+    private void restore(List<Key> keys, List<DailyUsage> rows, List<DailyUsage> failed) {
+        Set<DailyUsage> retry = Collections.newSetFromMap(new IdentityHashMap<>());
+        retry.addAll(failed);
+        for (int i = 0; i < rows.size(); i++) {
+            DailyUsage row = rows.get(i);
+            if (!retry.contains(row)) continue;
+            open.compute(keys.get(i), (k, acc) -> {
+                if (acc == null) acc = new Accumulator();
+                acc.restore(row);
+                return acc;
+            });
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(open.size(), events.sum(), rowsUpserted.sum(), rowsDropped.sum(), flushes.sum(), failedFlushes.sum());
+    }
+
+    /**
+     * Stop the periodic flush and write what is left.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        flushQuietly();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.err.println("[USAGE] Daily usage rollup flush failed: " + e.getMessage());
+        }
+    }
+}
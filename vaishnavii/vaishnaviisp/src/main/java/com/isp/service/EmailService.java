@@ -1,11 +1,15 @@
 package com.isp.service;
 
-import javax.mail.*;
-import javax.mail.internet.*;
+import com.isp.model.OutboxEmail;
+import com.isp.repo.EmailOutboxRepository;
+
+import javax.mail.Session;
+import java.util.List;
 import java.util.Properties;
 
 /**
  * Email notification service using Gmail SMTP.
+ * Mail is handed to a background {@link MailDispatcher}; callers never wait for SMTP.
  */
 public class EmailService {
     private boolean emailEnabled;
@@ -14,6 +18,7 @@ public class EmailService {
     private String fromEmail;
     private String smtpUsername;
     private String smtpPassword;
+    private MailDispatcher dispatcher;
 
     public EmailService() {
         // Gmail SMTP configuration
@@ -29,11 +34,27 @@ public class EmailService {
             System.out.println("[EMAIL] Warning: GMAIL_APP_PASSWORD not set. Email sending will be simulated.");
             System.out.println("[EMAIL] To enable real email: Set GMAIL_APP_PASSWORD environment variable with Gmail app password");
             this.emailEnabled = false;
+            return;
         }
+
+        // Configure Gmail SMTP properties
+        Properties props = new Properties();
+        props.put("mail.smtp.auth", "true");
+        props.put("mail.smtp.starttls.enable", "true");
+        props.put("mail.smtp.host", smtpHost);
+        props.put("mail.smtp.port", String.valueOf(smtpPort));
+        props.put("mail.smtp.ssl.trust", smtpHost);
+        props.put("mail.smtp.ssl.protocols", "TLSv1.2");
+        props.put("mail.smtp.connectiontimeout", "10000");
+        props.put("mail.smtp.timeout", "30000");
+
+        Session session = Session.getInstance(props);
+        this.dispatcher = new MailDispatcher(session, fromEmail, smtpUsername, smtpPassword,
+                new EmailOutboxRepository(), MailDispatcher.Settings.fromConfig());
     }
 
     /**
-     * Send email notification using Gmail SMTP.
+     * Queue an email notification for delivery via Gmail SMTP.
      */
     public void sendEmail(String toEmail, String subject, String body) {
         if (!emailEnabled) {
@@ -49,45 +70,36 @@ public class EmailService {
             return;
         }
 
-        try {
-            // Configure Gmail SMTP properties
-            Properties props = new Properties();
-            props.put("mail.smtp.auth", "true");
-            props.put("mail.smtp.starttls.enable", "true");
-            props.put("mail.smtp.host", smtpHost);
-            props.put("mail.smtp.port", String.valueOf(smtpPort));
-            props.put("mail.smtp.ssl.trust", smtpHost);
-            props.put("mail.smtp.ssl.protocols", "TLSv1.2");
-
-            // Create session with authentication
-            Session session = Session.getInstance(props, new Authenticator() {
-                @Override
-                protected PasswordAuthentication getPasswordAuthentication() {
-                    return new PasswordAuthentication(smtpUsername, smtpPassword);
-                }
-            });
-
-            // Create message
-            Message message = new MimeMessage(session);
-            message.setFrom(new InternetAddress(fromEmail));
-            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(toEmail));
-            message.setSubject(subject);
-            message.setText(body);
-
-            // Send email
-            Transport.send(message);
-            System.out.println("[EMAIL] ✓ Sent to: " + toEmail + " | Subject: " + subject);
-            
-        } catch (Exception e) {
-            System.err.println("[EMAIL] Failed to send email: " + e.getMessage());
-            // Fallback to console logging
-            System.out.println("╔════════════════════════════════════════╗");
-            System.out.println("║    EMAIL NOTIFICATION (FAILED)        ║");
-            System.out.println("╠════════════════════════════════════════╣");
-            System.out.println("║ To: " + padRight(toEmail, 32) + "║");
-            System.out.println("║ From: " + padRight(fromEmail, 30) + "║");
-            System.out.println("║ Subject: " + padRight(subject, 27) + "║");
-            System.out.println("╚════════════════════════════════════════╝");
+        dispatcher.enqueue(toEmail, subject, body);
+        System.out.println("[EMAIL] Queued for: " + toEmail + " | Subject: " + subject);
+    }
+
+    /**
+     * Queue a batch of emails with one outbox write. Simulated mode only logs the count.
+     */
+    public void sendEmails(List<OutboxEmail> emails) {
+        if (emails.isEmpty()) return;
+        if (!emailEnabled) {
+            System.out.println("[EMAIL] (simulated) " + emails.size() + " emails | Subject: " + emails.get(0).getSubject());
+            return;
+        }
+        dispatcher.enqueueAll(emails);
+        System.out.println("[EMAIL] Queued " + emails.size() + " emails | Subject: " + emails.get(0).getSubject());
+    }
+
+    /**
+     * Dispatcher metrics, or null when sending is simulated.
+     */
+    public MailDispatcher.Stats getDispatcherStats() {
+        return dispatcher != null ? dispatcher.getStats() : null;
+    }
+
+    /**
+     * Flush queued mail and close the SMTP connection.
+     */
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.close();
         }
     }
 
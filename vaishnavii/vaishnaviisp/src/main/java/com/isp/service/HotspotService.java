@@ -7,17 +7,23 @@ import com.isp.util.IdGenerator;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Service for managing hotspot device connections and tracking usage history.
  */
 public class HotspotService {
     private final DeviceConnectionRepository repository;
+    private final List<UsageListener> listeners = new CopyOnWriteArrayList<>();
 
     public HotspotService(DeviceConnectionRepository repository) {
         this.repository = repository;
     }
 
+    public void addListener(UsageListener listener) {
+        listeners.add(listener);
+    }
+
     /**
      * Connect a new device to customer's hotspot.
      */
@@ -36,8 +42,8 @@ public class HotspotService {
         Optional<DeviceConnection> connectionOpt = repository.findById(connectionId);
         if (connectionOpt.isPresent()) {
             DeviceConnection connection = connectionOpt.get();
-            if (connection.isActive()) {
-                connection.disconnect(finalDataUsedGB);
+            if (connection.disconnect(finalDataUsedGB)) {
+                repository.update(connection);
                 System.out.println("Device disconnected: " + connection);
             } else {
                 System.out.println("Device already disconnected: " + connectionId);
@@ -54,8 +60,9 @@ public class HotspotService {
         Optional<DeviceConnection> connectionOpt = repository.findById(connectionId);
         if (connectionOpt.isPresent()) {
             DeviceConnection connection = connectionOpt.get();
-            if (connection.isActive()) {
-                connection.addDataUsage(additionalDataGB);
+            if (connection.addDataUsage(additionalDataGB)) {
+                repository.update(connection);
+                fireUsage(connection, additionalDataGB);
                 System.out.printf("Updated device %s: +%.2f GB (total: %.2f GB)%n",
                         connection.getDeviceName(), additionalDataGB, connection.getDataUsedGB());
             } else {
@@ -66,6 +73,19 @@ public class HotspotService {
         }
     }
 
+    private void fireUsage(DeviceConnection connection, double dataGB) {
+        if (listeners.isEmpty()) return;
+        List<UsageListener.Event> events = List.of(new UsageListener.Event(connection.getCustomerId(), connection.getId(),
+                LocalDateTime.now(), dataGB, 0, 0, connection.getAverageSpeedMbps()));
+        for (UsageListener listener : listeners) {
+            try {
+                listener.onUsage(events);
+            } catch (RuntimeException e) {
+                System.err.println("[HOTSPOT] Usage listener failed: " + e.getMessage());
+            }
+        }
+    }
+
     /**
      * Get all device connections for a customer (history).
      */
@@ -80,6 +100,13 @@ public class HotspotService {
         return repository.findActiveByCustomerId(customerId);
     }
 
+    /**
+     * Get all connections made by a device, across customers.
+     */
+    public List<DeviceConnection> getDeviceHistoryByMac(String macAddress) {
+        return repository.findByMacAddress(macAddress);
+    }
+
     /**
      * Get all active devices across all customers.
      */
@@ -0,0 +1,283 @@
+package com.isp.service;
+
+import com.isp.model.CustomerProfile;
+import com.isp.model.DataPlan;
+import com.isp.model.Invoice;
+import com.isp.repo.CustomerProfileRepository;
+import com.isp.repo.InvoiceRepository;
+import com.isp.util.AppConfig;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Month-end job that renders every active customer's invoice ahead of time.
+ *
+ * Customers are read in keyset pages; each page is rendered in parallel and its PDFs are written
+ * straight to {@code <archiveDir>/yyyy/MM/<invoiceNumber>.pdf}, so memory holds one page of
+ * customers rather than the whole run. The page's invoices are then recorded in the invoices table
+ * with their {@code pdfPath}. Customers already invoiced for the period are skipped, so a failed or
+ * interrupted run can simply be started again.
+ */
+public class InvoiceBatchJob implements AutoCloseable {
+
+    /**
+     * Archive location, parallelism and page size.
+     */
+    public record Settings(Path archiveDir, int parallelism, int pageSize) {
+
+        public Settings {
+            if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+            if (pageSize < 1) throw new IllegalArgumentException("pageSize must be at least 1");
+        }
+
+        /**
+         * Settings from {@code isp.invoice.*} system properties or {@code ISP_INVOICE_*} environment variables.
+         */
+        public static Settings fromConfig() {
+            return new Settings(
+                Paths.get(AppConfig.get("isp.invoice.archiveDir", "ISP_INVOICE_ARCHIVE_DIR", "data/invoices")),
+                AppConfig.getInt("isp.invoice.batchParallelism", "ISP_INVOICE_BATCH_PARALLELISM",
+                        Runtime.getRuntime().availableProcessors()),
+                AppConfig.getInt("isp.invoice.batchPageSize", "ISP_INVOICE_BATCH_PAGE_SIZE", 500)
+            );
+        }
+    }
+
+    /**
+     * Next page of billable customers after {@code afterUserId} in user id order.
+     */
+    @FunctionalInterface
+    public interface CustomerSource {
+        List<CustomerProfileRepository.Billable> page(String afterUserId, int limit);
+    }
+
+    public enum State { IDLE, RUNNING, COMPLETED, FAILED }
+
+    /**
+     * Point-in-time progress of the current or last run.
+     */
+    public record Progress(String period,
+                           State state,
+                           long customers,
+                           long rendered,
+                           long skipped,
+                           long failed,
+                           long bytesWritten,
+                           long elapsedMillis,
+                           double invoicesPerSecond,
+                           String error) {
+    }
+
+    private static final double TAX_RATE = 0.18;
+
+    private final CustomerSource customers;
+    private final InvoiceRepository invoices;
+    private final InvoiceNumberService numbers;
+    private final Settings settings;
+    private final InvoiceRenderer renderer;
+    private final ExecutorService renderPool;
+    private final ExecutorService runner;
+    private final ReentrantLock runLock = new ReentrantLock();
+    private volatile Run current;
+
+    public InvoiceBatchJob(CustomerSource customers, InvoiceRepository invoices, InvoiceNumberService numbers, Settings settings) {
+        this.customers = customers;
+        this.invoices = invoices;
+        this.numbers = numbers;
+        this.settings = settings;
+        // A renderer of its own so the batch never takes render slots from interactive downloads
+        this.renderer = new InvoiceRenderer(new InvoiceRenderer.Settings(settings.parallelism(), Long.MAX_VALUE));
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.renderPool = Executors.newFixedThreadPool(settings.parallelism(), r -> {
+            Thread t = new Thread(r, "isp-invoice-render-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.runner = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "isp-invoice-batch");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Start a run for the period in the background.
+     *
+     * @throws IllegalStateException if a run is already in progress
+     */
+    public Progress start(YearMonth period) {
+        Run run = begin(period);
+        runner.execute(() -> execute(run));
+        return run.snapshot();
+    }
+
+    /**
+     * Run for the period on the calling thread.
+     *
+     * @throws IllegalStateException if a run is already in progress
+     */
+    public Progress run(YearMonth period) {
+        Run run = begin(period);
+        execute(run);
+        return run.snapshot();
+    }
+
+    public Progress getProgress() {
+        Run run = current;
+        return run != null ? run.snapshot()
+                : new Progress(null, State.IDLE, 0, 0, 0, 0, 0, 0, 0, null);
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    @Override
+    public void close() {
+        runner.shutdownNow();
+        renderPool.shutdownNow();
+    }
+
+    private Run begin(YearMonth period) {
+        if (!runLock.tryLock()) {
+            throw new IllegalStateException("An invoice batch is already running");
+        }
+        try {
+            if (current != null && current.state == State.RUNNING) {
+                throw new IllegalStateException("An invoice batch is already running");
+            }
+            current = new Run(period);
+            return current;
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private void execute(Run run) {
+        String period = run.period.toString();
+        Path dir = settings.archiveDir().resolve(String.format("%04d", run.period.getYear()))
+                .resolve(String.format("%02d", run.period.getMonthValue()));
+        System.out.println("[INVOICE] Batch for " + period + " started, archiving to " + dir);
+        try {
+            Files.createDirectories(dir);
+            String afterUserId = null;
+            while (true) {
+                List<CustomerProfileRepository.Billable> page = customers.page(afterUserId, settings.pageSize());
+                if (page.isEmpty()) break;
+                afterUserId = page.get(page.size() - 1).profile().getUserId();
+                run.customers.addAndGet(page.size());
+
+                Set<String> done = invoices.findInvoicedCustomers(period,
+                        page.stream().map(b -> b.profile().getUserId()).toList());
+                List<Callable<Invoice>> tasks = new ArrayList<>(page.size());
+                for (CustomerProfileRepository.Billable billable : page) {
+                    if (done.contains(billable.profile().getUserId())) {
+                        run.skipped.incrementAndGet();
+                    } else {
+                        tasks.add(() -> renderToArchive(run, dir, billable));
+                    }
+                }
+
+                List<Invoice> issued = new ArrayList<>(tasks.size());
+                for (Future<Invoice> future : renderPool.invokeAll(tasks)) {
+                    try {
+                        issued.add(future.get());
+                    } catch (ExecutionException e) {
+                        run.failed.incrementAndGet();
+                        System.err.println("[INVOICE] Render failed: " + e.getCause().getMessage());
+                    }
+                }
+                invoices.saveAll(issued);
+                run.rendered.addAndGet(issued.size());
+                if (page.size() < settings.pageSize()) break;
+            }
+            run.finish(State.COMPLETED, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.finish(State.FAILED, "Interrupted");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[INVOICE] Batch for " + period + " failed: " + e.getMessage());
+            run.finish(State.FAILED, e.getMessage());
+        }
+        Progress done = run.snapshot();
+        System.out.println("[INVOICE] Batch for " + period + " " + done.state() + " | rendered=" + done.rendered()
+                + " skipped=" + done.skipped() + " failed=" + done.failed()
+                + " | " + String.format(Locale.ROOT, "%.1f", done.invoicesPerSecond()) + "/s");
+    }
+
+    private Invoice renderToArchive(Run run, Path dir, CustomerProfileRepository.Billable billable) throws IOException {
+        CustomerProfile profile = billable.profile();
+        DataPlan plan = profile.getCurrentPlan();
+        Invoice invoice = new Invoice(null, profile.getUserId(), profile.getFullName(), billable.email(),
+                plan.getName(), plan.getPricePerMonth());
+        invoice.setBillingPeriod(run.period.toString());
+        invoice.setInvoiceDate(LocalDateTime.now());
+        invoice.setInvoiceNumber(numbers.next(run.period));
+
+        List<String> details = new ArrayList<>(InvoiceRenderer.planDetails(profile));
+        details.add("Billing Period: " + run.period);
+        details.add(String.format(Locale.ROOT, "Subtotal: $%.2f", invoice.getAmount()));
+        details.add(String.format(Locale.ROOT, "GST (%.0f%%): $%.2f", TAX_RATE * 100, invoice.getTaxAmount()));
+
+        Path target = dir.resolve(invoice.getInvoiceNumber() + ".pdf");
+        Path tmp = dir.resolve(invoice.getInvoiceNumber() + ".pdf.tmp");
+        renderer.render(new InvoiceRenderer.Invoice(invoice.getInvoiceNumber(), invoice.getInvoiceDate(),
+                        profile.getFullName(), billable.email(), details, invoice.getTotalAmount()),
+                () -> new BufferedOutputStream(Files.newOutputStream(tmp), 16 * 1024));
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        run.bytes.addAndGet(Files.size(target));
+        invoice.setPdfPath(target.toAbsolutePath().normalize().toString());
+        return invoice;
+    }
+
+    private static final class Run {
+        final YearMonth period;
+        final long startNanos = System.nanoTime();
+        final AtomicLong customers = new AtomicLong();
+        final AtomicLong rendered = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        volatile State state = State.RUNNING;
+        volatile long endNanos;
+        volatile String error;
+
+        Run(YearMonth period) {
+            this.period = period;
+        }
+
+        void finish(State finalState, String failure) {
+            endNanos = System.nanoTime();
+            error = failure;
+            state = finalState;
+        }
+
+        Progress snapshot() {
+            long elapsedNanos = (endNanos != 0 ? endNanos : System.nanoTime()) - startNanos;
+            long count = rendered.get();
+            return new Progress(period.toString(), state, customers.get(), count, skipped.get(), failed.get(),
+                    bytes.get(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    elapsedNanos == 0 ? 0 : count * 1_000_000_000.0 / elapsedNanos, error);
+        }
+    }
+}
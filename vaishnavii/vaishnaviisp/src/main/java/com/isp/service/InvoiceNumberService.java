@@ -0,0 +1,109 @@
+package com.isp.service;
+
+import com.isp.repo.SequenceRepository;
+import com.isp.util.AppConfig;
+
+import java.time.YearMonth;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out invoice numbers of the form {@code INV-yyyyMM-00001234}.
+ *
+ * The numeric part comes from the {@code invoice} sequence, reserved from the database a block at a time
+ * (hi/lo): the database hands each instance a disjoint range, and numbers within the range are taken from
+ * memory with a single atomic increment. Only the thread that exhausts a block goes back to the database.
+ * Numbers are unique across restarts and instances, and increasing within one instance; values left in a
+ * block at shutdown are skipped, not reused.
+ */
+public class InvoiceNumberService {
+
+    static final String SEQUENCE = "invoice";
+
+    /**
+     * Block size.
+     */
+    public record Settings(int blockSize) {
+
+        public Settings {
+            if (blockSize < 1) throw new IllegalArgumentException("blockSize must be at least 1");
+        }
+
+        /**
+         * Settings from {@code isp.invoice.numberBlockSize} or {@code ISP_INVOICE_NUMBER_BLOCK_SIZE}.
+         */
+        public static Settings fromConfig() {
+            return new Settings(AppConfig.getInt("isp.invoice.numberBlockSize", "ISP_INVOICE_NUMBER_BLOCK_SIZE", 100));
+        }
+    }
+
+    /**
+     * A reserved range {@code [next, end)}; {@code next} may run past {@code end} once exhausted.
+     */
+    private static final class Block {
+        final AtomicLong next;
+        final long end;
+
+        Block(long first, long end) {
+            this.next = new AtomicLong(first);
+            this.end = end;
+        }
+    }
+
+    private final SequenceRepository sequences;
+    private final Settings settings;
+    private final AtomicLong reservations = new AtomicLong();
+    private volatile Block block = new Block(0, 0);
+
+    public InvoiceNumberService(SequenceRepository sequences, Settings settings) {
+        this.sequences = sequences;
+        this.settings = settings;
+    }
+
+    /**
+     * Next invoice number for the billing period.
+     */
+    public String next(YearMonth period) {
+        return String.format("INV-%04d%02d-%08d", period.getYear(), period.getMonthValue(), nextValue());
+    }
+
+    /**
+     * Number shown on an on-demand preview of a period's invoice, {@code DRAFT-yyyyMM-<customer>}, where
+     * the customer part is the last 8 characters of the id (a ULID's leading characters are its timestamp,
+     * which customers created together share). It is the same on every download and takes no sequence value;
+     * the issued number comes from the month-end batch.
+     */
+    public static String draft(YearMonth period, String customerId) {
+        String customer = customerId.substring(Math.max(0, customerId.length() - 8)).toUpperCase(Locale.ROOT);
+        return String.format("DRAFT-%04d%02d-%s", period.getYear(), period.getMonthValue(), customer);
+    }
+
+    /**
+     * Next raw sequence value.
+     */
+    public long nextValue() {
+        while (true) {
+            Block current = block;
+            long value = current.next.getAndIncrement();
+            if (value < current.end) {
+                return value;
+            }
+            refill(current);
+        }
+    }
+
+    /**
+     * Number of blocks reserved from the database so far.
+     */
+    public long getReservations() {
+        return reservations.get();
+    }
+
+    private synchronized void refill(Block exhausted) {
+        // Another thread may already have replaced the block while this one waited
+        if (block != exhausted) return;
+        long first = sequences.reserve(SEQUENCE, settings.blockSize());
+        reservations.incrementAndGet();
+        block = new Block(first, first + settings.blockSize());
+    }
+}
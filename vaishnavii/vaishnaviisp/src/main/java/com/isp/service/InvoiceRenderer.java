@@ -0,0 +1,312 @@
+package com.isp.service;
+
+import com.isp.model.CustomerProfile;
+import com.isp.model.DataPlan;
+import com.isp.util.AppConfig;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Renders invoice PDFs straight to an output stream.
+ *
+ * Everything that is the same on every invoice (header bar, title, section labels, footer) is drawn
+ * once into a Flate-compressed content stream when the renderer is created; each invoice page reuses
+ * those bytes as-is and only draws its own fields, in a single text object, into a second content
+ * stream. The finished document is written directly to the caller's stream rather than buffered.
+ *
+ * A semaphore caps how many invoices are rendered at once so a month-end rush queues briefly and then
+ * gets a "busy" answer instead of growing the heap without bound.
+ */
+public class InvoiceRenderer {
+
+    /**
+     * Concurrency settings.
+     */
+    public record Settings(int maxConcurrent, long acquireTimeoutMillis) {
+
+        public Settings {
+            if (maxConcurrent < 1) throw new IllegalArgumentException("maxConcurrent must be at least 1");
+        }
+
+        /**
+         * Settings from {@code isp.invoice.*} system properties or {@code ISP_INVOICE_*} environment variables.
+         */
+        public static Settings fromConfig() {
+            return new Settings(
+                AppConfig.getInt("isp.invoice.maxConcurrentRenders", "ISP_INVOICE_MAX_CONCURRENT_RENDERS",
+                        Math.max(2, Runtime.getRuntime().availableProcessors())),
+                AppConfig.getLong("isp.invoice.acquireTimeoutMs", "ISP_INVOICE_ACQUIRE_TIMEOUT_MS", 5_000)
+            );
+        }
+    }
+
+    /**
+     * Point-in-time renderer metrics.
+     */
+    public record Stats(int active, long rendered, long rejected, long failed, double avgRenderMillis, double maxRenderMillis) {
+    }
+
+    /**
+     * The per-customer fields of one invoice. {@code details} are printed one per line under "Service Details".
+     */
+    public record Invoice(String number,
+                          LocalDateTime issuedAt,
+                          String customerName,
+                          String customerEmail,
+                          List<String> details,
+                          double amountDue) {
+    }
+
+    /**
+     * Where the PDF goes. Called only once a render slot is held and the page is built, so the
+     * caller can still answer with an error status up to that point. The stream is closed after writing.
+     */
+    @FunctionalInterface
+    public interface Target {
+        OutputStream open() throws IOException;
+    }
+
+    // Standard 14 fonts need no embedding; named once so the template and per-invoice text share resources
+    private static final PDFont REGULAR = PDType1Font.HELVETICA;
+    private static final PDFont BOLD = PDType1Font.HELVETICA_BOLD;
+    private static final COSName REGULAR_NAME = COSName.getPDFName("F1");
+    private static final COSName BOLD_NAME = COSName.getPDFName("F2");
+    private static final DateTimeFormatter ISSUED_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private static final float MARGIN = 50;
+    private static final float TOP = PDRectangle.LETTER.getHeight() - MARGIN;
+    private static final float NUMBER_Y = TOP - 70;
+    private static final float BILL_TO_Y = TOP - 114;
+    private static final float DETAILS_Y = TOP - 180;
+    private static final float LINE = 14;
+
+    private final Settings settings;
+    private final Semaphore slots;
+    private final byte[] template;
+    private final LongAdder rendered = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+    private final AtomicLong maxRenderNanos = new AtomicLong();
+
+    public InvoiceRenderer(Settings settings) {
+        this.settings = settings;
+        this.slots = new Semaphore(settings.maxConcurrent(), true);
+        try {
+            this.template = buildTemplate();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not build invoice template", e);
+        }
+    }
+
+    /**
+     * Render an invoice and write it to the target.
+     *
+     * @throws IllegalStateException if no render slot frees up within the acquire timeout
+     */
+    public void render(Invoice invoice, Target target) throws IOException {
+        boolean acquired;
+        try {
+            acquired = slots.tryAcquire(settings.acquireTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for an invoice render slot", e);
+        }
+        if (!acquired) {
+            rejected.increment();
+            throw new IllegalStateException("Too many invoices are being generated; try again shortly");
+        }
+
+        long start = System.nanoTime();
+        try (PDDocument doc = new PDDocument()) {
+            PDPage page = newPage(doc);
+            // Copy the already-compressed template bytes verbatim; no re-encoding per invoice
+            COSStream templateStream = doc.getDocument().createCOSStream();
+            templateStream.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+            try (OutputStream raw = templateStream.createRawOutputStream()) {
+                raw.write(template);
+            }
+            page.setContents(new PDStream(templateStream));
+            try (PDPageContentStream cs = new PDPageContentStream(doc, page, PDPageContentStream.AppendMode.APPEND, true)) {
+                drawFields(cs, invoice);
+            }
+            // save() closes the stream, which ends a chunked HTTP response
+            doc.save(target.open());
+            rendered.increment();
+        } catch (IOException | RuntimeException e) {
+            failed.increment();
+            throw e;
+        } finally {
+            slots.release();
+            long elapsed = System.nanoTime() - start;
+            renderNanos.add(elapsed);
+            maxRenderNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    /**
+     * "Service Details" lines describing a customer's current plan.
+     */
+    public static List<String> planDetails(CustomerProfile profile) {
+        List<String> details = new ArrayList<>();
+        DataPlan plan = profile.getCurrentPlan();
+        if (plan == null) {
+            details.add("No active plan");
+            return details;
+        }
+        DateTimeFormatter day = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        details.add("Plan: " + plan.getName());
+        details.add("Data Allowance: " + plan.getDataGB() + " GB");
+        details.add("Description: " + plan.getDescription());
+        if (profile.getPlanStartDate() != null) {
+            details.add("Plan Start Date: " + profile.getPlanStartDate().format(day));
+        }
+        if (profile.getPlanRenewalDate() != null) {
+            details.add("Next Renewal Date: " + profile.getPlanRenewalDate().format(day));
+        }
+        return details;
+    }
+
+    public Stats getStats() {
+        long count = rendered.sum() + failed.sum();
+        return new Stats(
+            settings.maxConcurrent() - slots.availablePermits(),
+            rendered.sum(),
+            rejected.sum(),
+            failed.sum(),
+            count == 0 ? 0 : renderNanos.sum() / 1_000_000.0 / count,
+            maxRenderNanos.get() / 1_000_000.0
+        );
+    }
+
+    private static PDPage newPage(PDDocument doc) {
+        PDPage page = new PDPage(PDRectangle.LETTER);
+        PDResources resources = new PDResources();
+        resources.put(REGULAR_NAME, REGULAR);
+        resources.put(BOLD_NAME, BOLD);
+        page.setResources(resources);
+        doc.addPage(page);
+        return page;
+    }
+
+    /**
+     * Static page content, rendered once and kept as compressed content-stream bytes.
+     */
+    private static byte[] buildTemplate() throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            PDPage page = newPage(doc);
+            float width = page.getMediaBox().getWidth();
+            try (PDPageContentStream cs = new PDPageContentStream(doc, page, PDPageContentStream.AppendMode.OVERWRITE, true)) {
+                cs.saveGraphicsState();
+                // Header blue bar
+                cs.setNonStrokingColor(33, 150, 243);
+                cs.addRect(0, TOP - 20, width, 20);
+                cs.fill();
+
+                cs.setNonStrokingColor(0);
+                cs.beginText();
+                cs.setFont(BOLD, 22);
+                cs.newLineAtOffset(MARGIN, TOP - 40);
+                cs.showText("INVOICE");
+                cs.setFont(BOLD, 12);
+                cs.newLineAtOffset(0, BILL_TO_Y - (TOP - 40));
+                cs.showText("Bill To:");
+                cs.newLineAtOffset(0, DETAILS_Y - BILL_TO_Y);
+                cs.showText("Service Details:");
+                cs.endText();
+
+                // Footer
+                cs.setNonStrokingColor(100, 100, 100);
+                cs.beginText();
+                cs.setFont(REGULAR, 9);
+                cs.newLineAtOffset(MARGIN, 62);
+                cs.showText("Thank you for choosing our ISP services!");
+                cs.setFont(REGULAR, 8);
+                cs.newLineAtOffset(0, -12);
+                cs.showText("For support, contact: support@isp.com | Phone: 1-800-ISP-HELP");
+                cs.endText();
+                cs.restoreGraphicsState();
+            }
+            try (InputStream raw = page.getCOSObject().getCOSStream(COSName.CONTENTS).createRawInputStream()) {
+                return raw.readAllBytes();
+            }
+        }
+    }
+
+    private static void drawFields(PDPageContentStream cs, Invoice invoice) throws IOException {
+        cs.setNonStrokingColor(0);
+        cs.beginText();
+        cs.setFont(REGULAR, 10);
+        cs.newLineAtOffset(MARGIN, NUMBER_Y);
+        cs.showText(printable(REGULAR, "Invoice #: " + invoice.number()));
+        cs.newLineAtOffset(0, -LINE);
+        cs.showText("Issue Date: " + invoice.issuedAt().format(ISSUED_FORMAT));
+
+        cs.setFont(REGULAR, 11);
+        cs.newLineAtOffset(0, BILL_TO_Y - 18 - (NUMBER_Y - LINE));
+        cs.showText(printable(REGULAR, invoice.customerName()));
+        cs.setFont(REGULAR, 10);
+        cs.newLineAtOffset(0, -LINE);
+        cs.showText(printable(REGULAR, invoice.customerEmail()));
+
+        cs.newLineAtOffset(0, DETAILS_Y - 20 - (BILL_TO_Y - 18 - LINE));
+        for (String detail : invoice.details()) {
+            cs.showText(printable(REGULAR, detail));
+            cs.newLineAtOffset(0, -LINE);
+        }
+
+        cs.setFont(BOLD, 14);
+        cs.newLineAtOffset(0, -16);
+        cs.showText(String.format(Locale.ROOT, "Amount Due: $%.2f", invoice.amountDue()));
+        cs.endText();
+    }
+
+    /**
+     * Replace characters the standard font cannot encode, which would otherwise abort the render.
+     */
+    static String printable(PDFont font, String text) {
+        if (text == null) return "";
+        StringBuilder sb = null;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            int next = i + Character.charCount(cp);
+            boolean encodable;
+            try {
+                font.encode(text.substring(i, next));
+                encodable = cp >= 0x20;
+            } catch (IllegalArgumentException | IOException e) {
+                encodable = false;
+            }
+            if (!encodable && sb == null) {
+                sb = new StringBuilder(text.length()).append(text, 0, i);
+            }
+            if (sb != null) {
+                if (encodable) sb.appendCodePoint(cp); else sb.append('?');
+            }
+            i = next;
+        }
+        return sb == null ? text : sb.toString();
+    }
+}
@@ -0,0 +1,518 @@
+package com.isp.service;
+
+import com.isp.model.OutboxEmail;
+import com.isp.repo.EmailOutboxRepository;
+import com.isp.util.AppConfig;
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background SMTP sender.
+ *
+ * Callers enqueue mail and return immediately. A single worker drains the bounded queue in
+ * batches over one long-lived {@link Transport}, reconnecting when the server drops the
+ * connection, after {@code maxMessagesPerConnection} messages, or after sitting idle.
+ * Transient failures are retried with exponential backoff. When an {@link EmailOutboxRepository}
+ * is supplied every message is written to the outbox first, and a periodic sweep re-queues
+ * pending rows, so mail queued before a restart (or rejected by a full queue) is still delivered.
+ * A row is claimed (PENDING to SENDING in one conditional update) before it is queued, so instances
+ * sharing an outbox never send the same email twice. Claims older than {@code claimTimeoutMillis}
+ * belong to an instance that stopped and are returned to PENDING by the sweep.
+ */
+public class MailDispatcher implements AutoCloseable {
+
+    /**
+     * Queue, batching and retry settings.
+     */
+    public record Settings(int queueCapacity,
+                           int batchSize,
+                           int maxAttempts,
+                           long initialBackoffMillis,
+                           long maxBackoffMillis,
+                           long idleCloseMillis,
+                           int maxMessagesPerConnection,
+                           long sweepIntervalMillis,
+                           long claimTimeoutMillis) {
+
+        /**
+         * Settings from {@code isp.mail.*} system properties or {@code ISP_MAIL_*} environment variables.
+         */
+        public static Settings fromConfig() {
+            return new Settings(
+                AppConfig.getInt("isp.mail.queueCapacity", "ISP_MAIL_QUEUE_CAPACITY", 1000),
+                AppConfig.getInt("isp.mail.batchSize", "ISP_MAIL_BATCH_SIZE", 50),
+                AppConfig.getInt("isp.mail.maxAttempts", "ISP_MAIL_MAX_ATTEMPTS", 5),
+                AppConfig.getLong("isp.mail.backoffMs", "ISP_MAIL_BACKOFF_MS", 2_000),
+                AppConfig.getLong("isp.mail.maxBackoffMs", "ISP_MAIL_MAX_BACKOFF_MS", 300_000),
+                AppConfig.getLong("isp.mail.idleCloseMs", "ISP_MAIL_IDLE_CLOSE_MS", 30_000),
+                AppConfig.getInt("isp.mail.maxPerConnection", "ISP_MAIL_MAX_PER_CONNECTION", 100),
+                AppConfig.getLong("isp.mail.sweepIntervalMs", "ISP_MAIL_SWEEP_INTERVAL_MS", 60_000),
+                AppConfig.getLong("isp.mail.claimTimeoutMs", "ISP_MAIL_CLAIM_TIMEOUT_MS", 600_000)
+            );
+        }
+    }
+
+    /**
+     * Point-in-time dispatcher metrics.
+     */
+    public record Stats(int queued,
+                        long enqueued,
+                        long sent,
+                        long retried,
+                        long failed,
+                        long deferred,
+                        long dropped,
+                        long connectionsOpened,
+                        double avgSendMillis,
+                        double maxSendMillis,
+                        double avgDeliveryMillis,
+                        double sentPerSecond) {
+    }
+
+    private final Session session;
+    private final String fromEmail;
+    private final String username;
+    private final String password;
+    private final EmailOutboxRepository outbox;
+    private final Settings settings;
+    private final BlockingQueue<OutboxEmail> queue;
+    private final Set<String> tracked = ConcurrentHashMap.newKeySet();
+    // Queued emails the outbox failed to store; they cannot be claimed, so retries skip the claim
+    private final Set<String> unsaved = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler;
+    private final Thread worker;
+    private final long startedAt = System.nanoTime();
+    private volatile boolean running = true;
+
+    // Worker-thread state
+    private Transport transport;
+    private int messagesOnConnection;
+    private long lastActivity = System.currentTimeMillis();
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final LongAdder sendNanos = new LongAdder();
+    private final AtomicLong maxSendNanos = new AtomicLong();
+    private final LongAdder deliveryMillis = new LongAdder();
+
+    /**
+     * @param outbox outbox repository, or null to keep queued mail in memory only
+     */
+    public MailDispatcher(Session session, String fromEmail, String username, String password,
+                          EmailOutboxRepository outbox, Settings settings) {
+        this.session = session;
+        this.fromEmail = fromEmail;
+        this.username = username;
+        this.password = password;
+        this.outbox = outbox;
+        this.settings = settings;
+        this.queue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "isp-mail-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        this.worker = new Thread(this::runWorker, "isp-mail-dispatcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+        if (outbox != null) {
+            scheduler.scheduleWithFixedDelay(this::sweepOutbox, 0, settings.sweepIntervalMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Queue an email for delivery and return without waiting for SMTP.
+     */
+    public OutboxEmail enqueue(String toEmail, String subject, String body) {
+        OutboxEmail email = new OutboxEmail(toEmail, subject, body);
+        enqueued.increment();
+        tracked.add(email.getId());
+
+        boolean persisted = false;
+        if (outbox != null) {
+            if (queue.remainingCapacity() > 0) claimLocally(email, LocalDateTime.now());
+            try {
+                outbox.save(email);
+                persisted = true;
+            } catch (RuntimeException e) {
+                unsaved.add(email.getId());
+                System.err.println("[EMAIL] Outbox unavailable, queueing in memory only: " + e.getMessage());
+            }
+        }
+
+        if (!offer(email, persisted)) {
+            if (persisted) {
+                System.out.println("[EMAIL] Queue full, " + email.getId() + " left in outbox for the next sweep");
+            } else {
+                System.err.println("[EMAIL] Queue full, dropped email to: " + toEmail + " | Subject: " + subject);
+            }
+        }
+        return email;
+    }
+
+    /**
+     * Queue many emails, persisting them to the outbox in one batch. Emails that do not fit in the
+     * queue stay in the outbox for the sweep, so a large broadcast drains at the dispatcher's pace.
+     */
+    public void enqueueAll(List<OutboxEmail> emails) {
+        if (emails.isEmpty()) return;
+        enqueued.add(emails.size());
+
+        boolean persisted = false;
+        if (outbox != null) {
+            // Rows that will be queued here are saved already claimed; the rest are left for the sweep
+            int room = queue.remainingCapacity();
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < Math.min(room, emails.size()); i++) {
+                claimLocally(emails.get(i), now);
+            }
+            try {
+                outbox.saveAll(emails);
+                persisted = true;
+            } catch (RuntimeException e) {
+                emails.forEach(email -> unsaved.add(email.getId()));
+                System.err.println("[EMAIL] Outbox unavailable, queueing in memory only: " + e.getMessage());
+            }
+        }
+
+        int overflow = 0;
+        for (OutboxEmail email : emails) {
+            tracked.add(email.getId());
+            if (!offer(email, persisted)) overflow++;
+        }
+        if (overflow > 0) {
+            System.out.println("[EMAIL] Queue full, " + overflow + " of " + emails.size() + " emails "
+                    + (persisted ? "left in outbox for the next sweep" : "dropped"));
+        }
+    }
+
+    private boolean offer(OutboxEmail email, boolean persisted) {
+        // An unclaimed outbox row belongs to whichever sweep claims it first, so it is not queued here
+        boolean claimed = !persisted || email.getStatus() == OutboxEmail.Status.SENDING;
+        if (claimed && queue.offer(email)) return true;
+        untrack(email);
+        if (persisted) {
+            release(email);
+            deferred.increment();
+        } else {
+            dropped.increment();
+        }
+        return false;
+    }
+
+    private static void claimLocally(OutboxEmail email, LocalDateTime now) {
+        email.setStatus(OutboxEmail.Status.SENDING);
+        email.setClaimedAt(now);
+    }
+
+    /**
+     * Hand a claimed email that will not be sent from memory back to the sweep.
+     */
+    private void release(OutboxEmail email) {
+        if (email.getStatus() != OutboxEmail.Status.SENDING) return;
+        email.setStatus(OutboxEmail.Status.PENDING);
+        email.setClaimedAt(null);
+        persist(email);
+    }
+
+    public Stats getStats() {
+        long sentCount = sent.sum();
+        long attempts = sentCount + retried.sum() + failed.sum();
+        double seconds = (System.nanoTime() - startedAt) / 1_000_000_000.0;
+        return new Stats(
+            queue.size(),
+            enqueued.sum(),
+            sentCount,
+            retried.sum(),
+            failed.sum(),
+            deferred.sum(),
+            dropped.sum(),
+            connectionsOpened.sum(),
+            attempts == 0 ? 0 : sendNanos.sum() / 1_000_000.0 / attempts,
+            maxSendNanos.get() / 1_000_000.0,
+            sentCount == 0 ? 0 : (double) deliveryMillis.sum() / sentCount,
+            seconds > 0 ? sentCount / seconds : 0
+        );
+    }
+
+    /**
+     * Stop accepting retries, deliver what is already queued and close the SMTP connection.
+     * Anything not delivered stays pending in the outbox.
+     */
+    @Override
+    public void close() {
+        running = false;
+        scheduler.shutdownNow();
+        try {
+            worker.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWorker() {
+        List<OutboxEmail> batch = new ArrayList<>(settings.batchSize());
+        while (running || !queue.isEmpty()) {
+            OutboxEmail first;
+            try {
+                first = queue.poll(Math.min(settings.idleCloseMillis(), 1_000), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (first == null) {
+                closeIfIdle();
+                continue;
+            }
+            batch.clear();
+            batch.add(first);
+            queue.drainTo(batch, settings.batchSize() - 1);
+            for (OutboxEmail email : batch) {
+                deliver(email);
+            }
+            lastActivity = System.currentTimeMillis();
+        }
+        closeTransport();
+    }
+
+    private void closeIfIdle() {
+        if (transport != null && System.currentTimeMillis() - lastActivity >= settings.idleCloseMillis()) {
+            closeTransport();
+        }
+    }
+
+    private void deliver(OutboxEmail email) {
+        email.setAttempts(email.getAttempts() + 1);
+        long start = System.nanoTime();
+        try {
+            MimeMessage message = buildMessage(email);
+            boolean reused = transport != null;
+            try {
+                send(message);
+            } catch (MessagingException e) {
+                // A pooled connection the server has dropped fails on first use; retry once on a fresh one.
+                if (!reused || e instanceof SendFailedException) throw e;
+                closeTransport();
+                send(message);
+            }
+            recordSendTime(start);
+            markSent(email);
+            if (messagesOnConnection >= settings.maxMessagesPerConnection()) {
+                closeTransport();
+            }
+        } catch (MessagingException | RuntimeException e) {
+            recordSendTime(start);
+            closeTransport();
+            handleFailure(email, e);
+        }
+    }
+
+    private MimeMessage buildMessage(OutboxEmail email) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress(fromEmail));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(email.getToEmail()));
+        message.setSubject(email.getSubject());
+        message.setText(email.getBody());
+        message.saveChanges();
+        return message;
+    }
+
+    private void send(MimeMessage message) throws MessagingException {
+        if (transport == null || !transport.isConnected()) {
+            closeTransport();
+            Transport t = session.getTransport("smtp");
+            t.connect(username, password);
+            transport = t;
+            messagesOnConnection = 0;
+            connectionsOpened.increment();
+        }
+        transport.sendMessage(message, message.getAllRecipients());
+        messagesOnConnection++;
+    }
+
+    private void closeTransport() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException ignored) {
+            }
+            transport = null;
+            messagesOnConnection = 0;
+        }
+    }
+
+    private void markSent(OutboxEmail email) {
+        LocalDateTime now = LocalDateTime.now();
+        email.setStatus(OutboxEmail.Status.SENT);
+        email.setSentAt(now);
+        email.setClaimedAt(null);
+        email.setLastError(null);
+        persist(email);
+        untrack(email);
+        sent.increment();
+        deliveryMillis.add(Duration.between(email.getCreatedAt(), now).toMillis());
+        System.out.println("[EMAIL] ✓ Sent to: " + email.getToEmail() + " | Subject: " + email.getSubject());
+    }
+
+    private void handleFailure(OutboxEmail email, Exception e) {
+        email.setLastError(e.getMessage());
+        email.setClaimedAt(null);
+        if (isPermanent(e) || email.getAttempts() >= settings.maxAttempts()) {
+            email.setStatus(OutboxEmail.Status.FAILED);
+            persist(email);
+            untrack(email);
+            failed.increment();
+            System.err.println("[EMAIL] Failed to send email after " + email.getAttempts() + " attempt(s): " + e.getMessage());
+            System.out.println("╔════════════════════════════════════════╗");
+            System.out.println("║    EMAIL NOTIFICATION (FAILED)        ║");
+            System.out.println("╠════════════════════════════════════════╣");
+            System.out.println("║ To: " + email.getToEmail());
+            System.out.println("║ Subject: " + email.getSubject());
+            System.out.println("╚════════════════════════════════════════╝");
+            return;
+        }
+
+        long backoff = backoffMillis(email.getAttempts());
+        email.setStatus(OutboxEmail.Status.PENDING);
+        email.setNextAttemptAt(LocalDateTime.now().plusNanos(backoff * 1_000_000));
+        persist(email);
+        retried.increment();
+        System.err.println("[EMAIL] Send to " + email.getToEmail() + " failed (attempt " + email.getAttempts()
+                + "), retrying in " + backoff + " ms: " + e.getMessage());
+        if (!running) {
+            untrack(email);
+            return;
+        }
+        try {
+            scheduler.schedule(() -> requeue(email), backoff, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException rejected) {
+            untrack(email);
+        }
+    }
+
+    long backoffMillis(int attempts) {
+        long backoff = settings.initialBackoffMillis() << Math.min(attempts - 1, 20);
+        return Math.min(backoff, settings.maxBackoffMillis());
+    }
+
+    private void requeue(OutboxEmail email) {
+        if (outbox != null && !unsaved.contains(email.getId())) {
+            // Pending again while backing off, so another instance's sweep may have taken it
+            try {
+                if (!claim(email)) {
+                    untrack(email);
+                    return;
+                }
+            } catch (RuntimeException e) {
+                // Sending without a claim could duplicate another instance's send; the sweep retries it
+                System.err.println("[EMAIL] Could not claim retry of " + email.getId() + ", leaving it to the sweep: " + e.getMessage());
+                untrack(email);
+                return;
+            }
+        }
+        if (!queue.offer(email)) {
+            release(email);
+            untrack(email);
+            if (outbox != null) {
+                deferred.increment();
+            } else {
+                dropped.increment();
+                System.err.println("[EMAIL] Queue full, dropped retry to: " + email.getToEmail());
+            }
+        }
+    }
+
+    private void sweepOutbox() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            int released = outbox.releaseStaleClaims(now.minusNanos(settings.claimTimeoutMillis() * 1_000_000));
+            if (released > 0) {
+                System.out.println("[EMAIL] Released " + released + " stale outbox claim(s)");
+            }
+            int room = queue.remainingCapacity();
+            if (room == 0) return;
+            for (OutboxEmail email : outbox.findDue(now, room)) {
+                if (!tracked.add(email.getId())) continue;
+                boolean claimed;
+                try {
+                    claimed = claim(email);
+                } catch (RuntimeException e) {
+                    untrack(email);
+                    throw e;
+                }
+                if (!claimed) {
+                    untrack(email);
+                    continue;
+                }
+                if (!queue.offer(email)) {
+                    untrack(email);
+                    release(email);
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("[EMAIL] Outbox sweep failed: " + e.getMessage());
+        }
+    }
+
+    private void untrack(OutboxEmail email) {
+        tracked.remove(email.getId());
+        unsaved.remove(email.getId());
+    }
+
+    private boolean claim(OutboxEmail email) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!outbox.claim(email.getId(), now)) return false;
+        claimLocally(email, now);
+        return true;
+    }
+
+    private void persist(OutboxEmail email) {
+        if (outbox != null) {
+            outbox.updateDelivery(email);
+        }
+    }
+
+    private void recordSendTime(long start) {
+        long elapsed = System.nanoTime() - start;
+        sendNanos.add(elapsed);
+        maxSendNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    private static boolean isPermanent(Exception e) {
+        Exception current = e;
+        while (current != null) {
+            if (current instanceof AddressException) return true;
+            if (current instanceof SMTPSendFailedException s && s.getReturnCode() >= 500) return true;
+            if (current instanceof SMTPAddressFailedException a && a.getReturnCode() >= 500) return true;
+            current = current instanceof MessagingException m ? m.getNextException() : null;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,341 @@
+package com.isp.service;
+
+import com.isp.model.Notification;
+import com.isp.model.NotificationPreferences;
+import com.isp.model.OutboxEmail;
+import com.isp.model.User;
+import com.isp.util.AppConfig;
+import com.isp.util.IdGenerator;
+import com.isp.util.RateLimiter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Sends one announcement to every user in a segment, e.g. a regional outage or planned maintenance.
+ *
+ * Recipients are read from the users table in keyset pages. For each page the broadcaster loads
+ * every recipient's preferences in one query, inserts the browser notifications as one JDBC batch,
+ * queues the emails with one outbox write and hands SMS numbers to the provider in bulk. Email and
+ * SMS are paced by {@link RateLimiter}s so a broadcast cannot flood the SMTP relay or SMS provider.
+ *
+ * Broadcasts run one at a time on a background thread; {@link #getProgress(String)} reports how far
+ * each has got.
+ */
+public class NotificationBroadcaster implements AutoCloseable {
+
+    /**
+     * Who receives a broadcast. Null fields match everyone.
+     */
+    public record Segment(User.Role role, String planId) {
+
+        public static Segment allCustomers() {
+            return new Segment(User.Role.CUSTOMER, null);
+        }
+
+        public static Segment plan(String planId) {
+            return new Segment(User.Role.CUSTOMER, planId);
+        }
+    }
+
+    /**
+     * Page size, channel rates and how many finished broadcasts to remember.
+     */
+    public record Settings(int pageSize, double emailsPerSecond, double smsPerSecond, int history) {
+
+        public Settings {
+            if (pageSize < 1) throw new IllegalArgumentException("pageSize must be at least 1");
+            if (emailsPerSecond <= 0) throw new IllegalArgumentException("emailsPerSecond must be positive");
+            if (smsPerSecond <= 0) throw new IllegalArgumentException("smsPerSecond must be positive");
+            if (history < 1) throw new IllegalArgumentException("history must be at least 1");
+        }
+
+        /**
+         * Settings from {@code isp.broadcast.*} system properties or {@code ISP_BROADCAST_*} environment variables.
+         */
+        public static Settings fromConfig() {
+            return new Settings(
+                AppConfig.getInt("isp.broadcast.pageSize", "ISP_BROADCAST_PAGE_SIZE", 1000),
+                AppConfig.getInt("isp.broadcast.emailsPerSecond", "ISP_BROADCAST_EMAILS_PER_SECOND", 200),
+                AppConfig.getInt("isp.broadcast.smsPerSecond", "ISP_BROADCAST_SMS_PER_SECOND", 50),
+                AppConfig.getInt("isp.broadcast.history", "ISP_BROADCAST_HISTORY", 20)
+            );
+        }
+    }
+
+    /**
+     * Next page of recipients after {@code afterId} in id order.
+     */
+    @FunctionalInterface
+    public interface RecipientSource {
+        List<User> page(Segment segment, String afterId, int limit);
+    }
+
+    /**
+     * Bulk SMS delivery of one message to many numbers.
+     */
+    @FunctionalInterface
+    public interface SmsSender {
+        void send(List<String> phoneNumbers, String message);
+    }
+
+    public enum State { QUEUED, RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    /**
+     * Point-in-time progress of one broadcast.
+     */
+    public record Progress(String id,
+                           String title,
+                           Segment segment,
+                           State state,
+                           long recipients,
+                           long browser,
+                           long emails,
+                           long sms,
+                           String queuedAt,
+                           String finishedAt,
+                           long elapsedMillis,
+                           double recipientsPerSecond,
+                           String error) {
+    }
+
+    private final RecipientSource recipients;
+    private final Function<Collection<String>, Map<String, NotificationPreferences>> preferences;
+    private final Consumer<List<Notification>> browserSink;
+    private final Consumer<List<OutboxEmail>> emailSink;
+    private final SmsSender smsSender;
+    private final Settings settings;
+    private final RateLimiter emailLimiter;
+    private final RateLimiter smsLimiter;
+    private final ExecutorService worker;
+    private final Map<String, Broadcast> broadcasts = new LinkedHashMap<>();
+
+    public NotificationBroadcaster(RecipientSource recipients,
+                                   Function<Collection<String>, Map<String, NotificationPreferences>> preferences,
+                                   Consumer<List<Notification>> browserSink,
+                                   Consumer<List<OutboxEmail>> emailSink,
+                                   SmsSender smsSender,
+                                   Settings settings) {
+        this.recipients = recipients;
+        this.preferences = preferences;
+        this.browserSink = browserSink;
+        this.emailSink = emailSink;
+        this.smsSender = smsSender;
+        this.settings = settings;
+        // A page's worth of burst lets each batch go out in one call once the bucket has refilled
+        this.emailLimiter = new RateLimiter(settings.emailsPerSecond(), settings.pageSize());
+        this.smsLimiter = new RateLimiter(settings.smsPerSecond(), settings.pageSize());
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "isp-broadcast");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Queue a broadcast and return its id immediately.
+     */
+    public String start(Segment segment, String category, String title, String message, String priority) {
+        Broadcast broadcast = new Broadcast(IdGenerator.generate(), segment, category, title, message, priority);
+        synchronized (broadcasts) {
+            broadcasts.put(broadcast.id, broadcast);
+            trimHistory();
+        }
+        worker.execute(() -> run(broadcast));
+        System.out.println("[BROADCAST] Queued " + broadcast.id + " | " + title + " | " + segment);
+        return broadcast.id;
+    }
+
+    /**
+     * Progress of a broadcast, or null if it is unknown or has aged out of the history.
+     */
+    public Progress getProgress(String id) {
+        synchronized (broadcasts) {
+            Broadcast broadcast = broadcasts.get(id);
+            return broadcast != null ? broadcast.snapshot() : null;
+        }
+    }
+
+    /**
+     * Progress of recent broadcasts, oldest first.
+     */
+    public List<Progress> getRecent() {
+        synchronized (broadcasts) {
+            List<Progress> result = new ArrayList<>(broadcasts.size());
+            for (Broadcast broadcast : broadcasts.values()) {
+                result.add(broadcast.snapshot());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Stop a queued or running broadcast after the page in flight. Returns false if it already finished.
+     */
+    public boolean cancel(String id) {
+        synchronized (broadcasts) {
+            Broadcast broadcast = broadcasts.get(id);
+            if (broadcast == null || broadcast.state.ordinal() > State.RUNNING.ordinal()) return false;
+            broadcast.cancelled = true;
+            return true;
+        }
+    }
+
+    /**
+     * Block until every broadcast queued so far has finished.
+     */
+    void awaitIdle() throws Exception {
+        worker.submit(() -> { }).get(30, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() {
+        worker.shutdownNow();
+        try {
+            worker.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(Broadcast broadcast) {
+        if (broadcast.cancelled) {
+            broadcast.finish(State.CANCELLED, null);
+            return;
+        }
+        broadcast.begin();
+        String smsText = NotificationService.buildSmsText(broadcast.title, broadcast.message);
+        String afterId = null;
+        try {
+            while (!broadcast.cancelled) {
+                List<User> page = recipients.page(broadcast.segment, afterId, settings.pageSize());
+                if (page.isEmpty()) break;
+                afterId = page.get(page.size() - 1).getId();
+
+                List<String> ids = new ArrayList<>(page.size());
+                for (User user : page) ids.add(user.getId());
+                Map<String, NotificationPreferences> prefsByUser = preferences.apply(ids);
+
+                List<Notification> browser = new ArrayList<>();
+                List<OutboxEmail> emails = new ArrayList<>();
+                List<String> phones = new ArrayList<>();
+                for (User user : page) {
+                    NotificationPreferences prefs = prefsByUser.get(user.getId());
+                    if (NotificationService.shouldSendBrowser(broadcast.category, broadcast.priority, prefs)) {
+                        Notification notification = new Notification(user.getId(), "BROWSER", broadcast.category,
+                                broadcast.title, broadcast.message, broadcast.priority);
+                        notification.setSent(true);
+                        browser.add(notification);
+                    }
+                    if (NotificationService.shouldSendEmail(broadcast.category, broadcast.priority, prefs)) {
+                        emails.add(new OutboxEmail(user.getEmail(), broadcast.title, NotificationService.buildEmailBody(
+                                user.getUsername(), broadcast.title, broadcast.message, broadcast.category)));
+                    }
+                    if (NotificationService.shouldSendSMS(broadcast.category, broadcast.priority, prefs)
+                            && prefs.getPhoneNumber() != null) {
+                        phones.add(prefs.getPhoneNumber());
+                    }
+                }
+
+                if (!browser.isEmpty()) {
+                    browserSink.accept(browser);
+                    broadcast.browser.addAndGet(browser.size());
+                }
+                if (!emails.isEmpty()) {
+                    emailLimiter.acquire(emails.size());
+                    emailSink.accept(emails);
+                    broadcast.emails.addAndGet(emails.size());
+                }
+                if (!phones.isEmpty()) {
+                    smsLimiter.acquire(phones.size());
+                    smsSender.send(phones, smsText);
+                    broadcast.sms.addAndGet(phones.size());
+                }
+                broadcast.recipients.addAndGet(page.size());
+                if (page.size() < settings.pageSize()) break;
+            }
+            broadcast.finish(broadcast.cancelled ? State.CANCELLED : State.COMPLETED, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            broadcast.finish(State.CANCELLED, "Interrupted");
+        } catch (RuntimeException e) {
+            System.err.println("[BROADCAST] " + broadcast.id + " failed after " + broadcast.recipients.get()
+                    + " recipients: " + e.getMessage());
+            broadcast.finish(State.FAILED, e.getMessage());
+        }
+        Progress done = broadcast.snapshot();
+        System.out.println("[BROADCAST] " + done.id() + " " + done.state() + " | recipients=" + done.recipients()
+                + " browser=" + done.browser() + " email=" + done.emails() + " sms=" + done.sms()
+                + " | " + String.format("%.0f", done.recipientsPerSecond()) + "/s");
+    }
+
+    private void trimHistory() {
+        var it = broadcasts.values().iterator();
+        while (broadcasts.size() > settings.history() && it.hasNext()) {
+            Broadcast oldest = it.next();
+            if (oldest.state.ordinal() > State.RUNNING.ordinal()) {
+                it.remove();
+            }
+        }
+    }
+
+    private static final class Broadcast {
+        final String id;
+        final Segment segment;
+        final String category;
+        final String title;
+        final String message;
+        final String priority;
+        final LocalDateTime queuedAt = LocalDateTime.now();
+        final AtomicLong recipients = new AtomicLong();
+        final AtomicLong browser = new AtomicLong();
+        final AtomicLong emails = new AtomicLong();
+        final AtomicLong sms = new AtomicLong();
+        volatile State state = State.QUEUED;
+        volatile boolean cancelled;
+        volatile long startNanos;
+        volatile long endNanos;
+        volatile LocalDateTime finishedAt;
+        volatile String error;
+
+        Broadcast(String id, Segment segment, String category, String title, String message, String priority) {
+            this.id = id;
+            this.segment = segment;
+            this.category = category;
+            this.title = title;
+            this.message = message;
+            this.priority = priority;
+        }
+
+        void begin() {
+            startNanos = System.nanoTime();
+            state = State.RUNNING;
+        }
+
+        void finish(State finalState, String failure) {
+            endNanos = System.nanoTime();
+            finishedAt = LocalDateTime.now();
+            error = failure;
+            state = finalState;
+        }
+
+        Progress snapshot() {
+            long elapsedNanos = startNanos == 0 ? 0 : (endNanos != 0 ? endNanos : System.nanoTime()) - startNanos;
+            long count = recipients.get();
+            return new Progress(id, title, segment, state, count, browser.get(), emails.get(), sms.get(),
+                    queuedAt.toString(), finishedAt != null ? finishedAt.toString() : null,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    elapsedNanos == 0 ? 0 : count * 1_000_000_000.0 / elapsedNanos, error);
+        }
+    }
+}
@@ -8,16 +8,36 @@ import com.isp.repo.NotificationPreferencesRepository;
 import com.isp.repo.UserRepository;
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Comprehensive notification service that handles all notification types
  */
 public class NotificationService {
+
+    /**
+     * Observer for browser notification changes, e.g. to push them to open dashboards.
+     */
+    public interface Listener {
+        default void onCreated(Notification notification) {
+        }
+
+        /** {@code count} of the user's notifications changed from unread to read. */
+        default void onRead(String userId, int count) {
+        }
+
+        /** The user saved new notification preferences. */
+        default void onPreferencesChanged(String userId) {
+        }
+    }
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
     private NotificationRepository notificationRepo;
     private NotificationPreferencesRepository preferencesRepo;
     private UserRepository userRepo;
     private EmailService emailService;
     private SmsService smsService;
+    private final NotificationBroadcaster broadcaster;
 
     public NotificationService(NotificationRepository notificationRepo,
                              NotificationPreferencesRepository preferencesRepo,
@@ -29,6 +49,21 @@ public class NotificationService {
         this.userRepo = userRepo;
         this.emailService = emailService;
         this.smsService = smsService;
+        this.broadcaster = new NotificationBroadcaster(
+            (segment, afterId, limit) -> userRepo.findActivePage(afterId, limit, segment.role(), segment.planId()),
+            preferencesRepo::findByUserIds,
+            this::saveBrowserNotifications,
+            emailService::sendEmails,
+            smsService::sendBulk,
+            NotificationBroadcaster.Settings.fromConfig());
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
     }
 
     /**
@@ -73,6 +108,33 @@ public class NotificationService {
         }
     }
 
+    /**
+     * Start sending one announcement to every active user in the segment; returns the broadcast id.
+     * Progress is available from {@link #getBroadcastProgress(String)}.
+     */
+    public String broadcast(NotificationBroadcaster.Segment segment, String category, String title, String message, String priority) {
+        return broadcaster.start(segment, category, title, message, priority);
+    }
+
+    public NotificationBroadcaster.Progress getBroadcastProgress(String broadcastId) {
+        return broadcaster.getProgress(broadcastId);
+    }
+
+    public List<NotificationBroadcaster.Progress> getRecentBroadcasts() {
+        return broadcaster.getRecent();
+    }
+
+    public boolean cancelBroadcast(String broadcastId) {
+        return broadcaster.cancel(broadcastId);
+    }
+
+    /**
+     * Stop any running broadcast.
+     */
+    public void shutdown() {
+        broadcaster.close();
+    }
+
     /**
      * Send usage alert notification
      */
@@ -117,7 +179,7 @@ public class NotificationService {
      */
     public void sendTicketUpdate(String userId, String ticketId, String ticketSubject, String updateMessage) {
         String title = "Ticket Updated: " + ticketSubject;
-        String message = "Your support ticket #" + ticketId.substring(0, 8) + " has been updated:\n\n" + updateMessage;
+        String message = "Your support ticket #" + ticketId.substring(ticketId.length() - 8) + " has been updated:\n\n" + updateMessage;
         sendNotification(userId, "TICKET", title, message, "MEDIUM");
     }
 
@@ -154,7 +216,7 @@ public class NotificationService {
 
     // Helper methods for determining which channels to use
 
-    private boolean shouldSendEmail(String category, String priority, NotificationPreferences prefs) {
+    static boolean shouldSendEmail(String category, String priority, NotificationPreferences prefs) {
         if (!prefs.isEmailEnabled()) return false;
         
         switch (category) {
@@ -171,7 +233,7 @@ public class NotificationService {
         }
     }
 
-    private boolean shouldSendBrowser(String category, String priority, NotificationPreferences prefs) {
+    static boolean shouldSendBrowser(String category, String priority, NotificationPreferences prefs) {
         if (!prefs.isBrowserEnabled()) return false;
         
         switch (category) {
@@ -188,7 +250,7 @@ public class NotificationService {
         }
     }
 
-    private boolean shouldSendSMS(String category, String priority, NotificationPreferences prefs) {
+    static boolean shouldSendSMS(String category, String priority, NotificationPreferences prefs) {
         if (!prefs.isSmsEnabled()) return false;
         
         // If critical only mode is enabled, only send critical notifications
@@ -217,18 +279,38 @@ public class NotificationService {
         Notification notification = new Notification(userId, "BROWSER", category, title, message, priority);
         notification.setSent(true);
         notificationRepo.save(notification);
+        fireCreated(notification);
+    }
+
+    private void saveBrowserNotifications(List<Notification> notifications) {
+        notificationRepo.saveAll(notifications);
+        notifications.forEach(this::fireCreated);
+    }
+
+    private void fireCreated(Notification notification) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onCreated(notification);
+            } catch (RuntimeException e) {
+                System.err.println("[NOTIFICATION] Listener failed: " + e.getMessage());
+            }
+        }
     }
 
     private void sendSmsNotification(User user, String phoneNumber, String title, String message, String category) {
+        smsService.sendSMS(phoneNumber, buildSmsText(title, message));
+    }
+
+    static String buildSmsText(String title, String message) {
         // Truncate message for SMS (160 character limit)
         String smsMessage = message;
         if (smsMessage.length() > 140) {
             smsMessage = smsMessage.substring(0, 137) + "...";
         }
-        smsService.sendSMS(phoneNumber, title + ": " + smsMessage);
+        return title + ": " + smsMessage;
     }
 
-    private String buildEmailBody(String username, String title, String message, String category) {
+    static String buildEmailBody(String username, String title, String message, String category) {
         return String.format("""
             Dear %s,
             
@@ -259,12 +341,31 @@ public class NotificationService {
         return notificationRepo.getUnreadCount(userId);
     }
 
-    public void markAsRead(String notificationId) {
-        notificationRepo.markAsRead(notificationId);
+    public void markAsRead(String userId, String notificationId) {
+        if (notificationRepo.markAsRead(userId, notificationId)) {
+            fireRead(userId, 1);
+        }
     }
 
     public void markAllAsRead(String userId) {
-        notificationRepo.markAllAsRead(userId);
+        int count = notificationRepo.markAllAsRead(userId);
+        if (count > 0) {
+            fireRead(userId, count);
+        }
+    }
+
+    private void fireRead(String userId, int count) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onRead(userId, count);
+            } catch (RuntimeException e) {
+                System.err.println("[NOTIFICATION] Listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public com.isp.repo.NotificationCache.Stats getCacheStats() {
+        return notificationRepo.getCacheStats();
     }
 
     public NotificationPreferences getPreferences(String userId) {
@@ -273,6 +374,13 @@ public class NotificationService {
 
     public void updatePreferences(NotificationPreferences preferences) {
         preferencesRepo.save(preferences);
+        for (Listener listener : listeners) {
+            try {
+                listener.onPreferencesChanged(preferences.getUserId());
+            } catch (RuntimeException e) {
+                System.err.println("[NOTIFICATION] Listener failed: " + e.getMessage());
+            }
+        }
     }
 
     public void cleanupOldNotifications(int daysOld) {
@@ -1,5 +1,7 @@
 package com.isp.service;
 
+import java.util.List;
+
 /**
  * SMS notification service (simulated)
  * In production, integrate with Twilio, AWS SNS, or other SMS provider
@@ -99,6 +101,24 @@ public class SmsService {
         sendSMS(phoneNumber, message);
     }
 
+    /**
+     * Send the same SMS to many numbers in one provider request
+     */
+    public void sendBulk(List<String> phoneNumbers, String message) {
+        if (phoneNumbers.isEmpty()) return;
+        if (!smsEnabled) {
+            System.out.println("[SMS] (simulated) " + phoneNumbers.size() + " messages | " + message.substring(0, Math.min(50, message.length())));
+            return;
+        }
+
+        try {
+            // In production, call the provider's bulk API here (e.g. Twilio Notify or an SNS topic)
+            System.out.println("[SMS] ✓ Sent to " + phoneNumbers.size() + " numbers | Message: " + message.substring(0, Math.min(50, message.length())) + "...");
+        } catch (Exception e) {
+            System.err.println("[SMS] Failed to send bulk SMS: " + e.getMessage());
+        }
+    }
+
     private String padRight(String s, int n) {
         if (s == null) s = "";
         if (s.length() > n) return s.substring(0, n);
@@ -49,7 +49,8 @@ public class TicketEnhancedService {
      * Add a message to a ticket and send email notification.
      */
     public void addMessage(String ticketId, String senderId, String senderName, String message, String type, String senderEmail, String recipientEmail) {
-        Optional<TicketEnhanced> ticketOpt = repository.findById(ticketId);
+        // Only the header is needed; the new message is appended without rewriting the thread
+        Optional<TicketEnhanced> ticketOpt = repository.findHeaderById(ticketId);
         if (ticketOpt.isPresent()) {
             TicketEnhanced ticket = ticketOpt.get();
             TicketMessage msg = new TicketMessage(
@@ -61,10 +62,12 @@ public class TicketEnhancedService {
                     type
             );
             ticket.addMessage(msg);
+            repository.appendMessage(msg);
             
             // If admin is responding, mark ticket as accepted and send email
             if ("ADMIN".equals(type)) {
                 ticket.setStatus(TicketEnhanced.Status.IN_PROGRESS);
+                repository.saveHeader(ticket);
                 // Send email from admin to customer
                 String subject = "Response to your ticket #" + ticketId;
                 String body = "Dear " + ticket.getCustomerName() + ",\\n\\n" +
@@ -93,12 +96,13 @@ public class TicketEnhancedService {
      * Assign ticket to an admin.
      */
     public void assignToAdmin(String ticketId, String adminId, String adminName) {
-        Optional<TicketEnhanced> ticketOpt = repository.findById(ticketId);
+        Optional<TicketEnhanced> ticketOpt = repository.findHeaderById(ticketId);
         if (ticketOpt.isPresent()) {
             TicketEnhanced ticket = ticketOpt.get();
             ticket.setAssignedToAdminId(adminId);
             ticket.setAssignedToAdminName(adminName);
             ticket.setStatus(TicketEnhanced.Status.IN_PROGRESS);
+            repository.saveHeader(ticket);
             System.out.println("Ticket assigned to admin: " + adminName);
         }
     }
@@ -107,10 +111,11 @@ public class TicketEnhancedService {
      * Update ticket status.
      */
     public void updateStatus(String ticketId, TicketEnhanced.Status status) {
-        Optional<TicketEnhanced> ticketOpt = repository.findById(ticketId);
+        Optional<TicketEnhanced> ticketOpt = repository.findHeaderById(ticketId);
         if (ticketOpt.isPresent()) {
             TicketEnhanced ticket = ticketOpt.get();
             ticket.setStatus(status);
+            repository.saveHeader(ticket);
             System.out.println("Ticket status updated: " + status);
         }
     }
@@ -119,6 +124,13 @@ public class TicketEnhancedService {
         return repository.findById(id);
     }
 
+    /**
+     * The ticket without its messages.
+     */
+    public Optional<TicketEnhanced> findHeaderById(String id) {
+        return repository.findHeaderById(id);
+    }
+
     public List<TicketEnhanced> findByCustomerId(String customerId) {
         return repository.findByCustomerId(customerId);
     }
@@ -130,4 +142,13 @@ public class TicketEnhancedService {
     public List<TicketEnhanced> listAll() {
         return repository.findAll();
     }
+
+    /**
+     * One page of ticket summaries (message counts, no bodies), newest first.
+     *
+     * @param customerId only this customer's tickets, or null for all
+     */
+    public TicketEnhancedRepository.Page listSummaries(String customerId, String cursor, int limit) {
+        return repository.findPage(customerId, cursor, limit, true);
+    }
 }
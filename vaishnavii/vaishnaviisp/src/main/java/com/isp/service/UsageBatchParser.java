@@ -0,0 +1,188 @@
+package com.isp.service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.isp.model.NetworkUsage;
+import com.isp.util.IdGenerator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Reads a batch of usage records from a request body as it arrives, without holding the whole body.
+ *
+ * Two formats are accepted:
+ * <ul>
+ *   <li>Newline-delimited JSON: one {@code {"customerId": "...", "gigabytes": 1.5, "timestamp": ...}} per line,
+ *       where {@code timestamp} is optional and either epoch milliseconds or an ISO local date-time.</li>
+ *   <li>Binary: the magic {@code ISPU}, a version byte ({@code 1}), then records of
+ *       {@code customerId} (modified UTF-8, as {@link java.io.DataOutput#writeUTF}), {@code gigabytes} (double)
+ *       and {@code timestamp} (epoch millis, long; 0 for "now"), all big-endian, until end of stream.</li>
+ * </ul>
+ * Invalid records are counted and skipped; the first few reasons are kept for the response.
+ */
+public class UsageBatchParser {
+
+    public static final byte[] BINARY_MAGIC = {'I', 'S', 'P', 'U'};
+    public static final int BINARY_VERSION = 1;
+
+    private static final int MAX_ERRORS = 20;
+    private static final int MAX_CUSTOMER_ID = 255;
+    private static final double MAX_GIGABYTES = 10_000;
+    private static final long MAX_CLOCK_SKEW_MILLIS = 5 * 60_000;
+
+    /**
+     * Counts for one batch.
+     */
+    public record Result(long accepted, long rejected, List<String> errors) {
+    }
+
+    private final ZoneId zone;
+
+    public UsageBatchParser() {
+        this(ZoneId.systemDefault());
+    }
+
+    UsageBatchParser(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Parse the body, passing each valid record to {@code sink}; a record the sink refuses counts as rejected.
+     *
+     * @param binary true for the {@code ISPU} format, false for NDJSON
+     */
+    public Result parse(InputStream body, boolean binary, Predicate<NetworkUsage> sink) throws IOException {
+        Tally tally = new Tally();
+        if (binary) {
+            parseBinary(new DataInputStream(new BufferedInputStream(body, 64 * 1024)), sink, tally);
+        } else {
+            parseNdjson(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 64 * 1024), sink, tally);
+        }
+        return new Result(tally.accepted, tally.rejected, tally.errors);
+    }
+
+    private void parseNdjson(BufferedReader reader, Predicate<NetworkUsage> sink, Tally tally) throws IOException {
+        String line;
+        long lineNo = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank()) continue;
+            String customerId;
+            double gigabytes;
+            Long timestamp = null;
+            try {
+                JsonObject json = JsonParser.parseString(line).getAsJsonObject();
+                JsonElement id = json.get("customerId");
+                JsonElement gb = json.get("gigabytes");
+                if (id == null || gb == null) {
+                    tally.reject("line " + lineNo + ": customerId and gigabytes required");
+                    continue;
+                }
+                customerId = id.getAsString();
+                gigabytes = gb.getAsDouble();
+                JsonElement ts = json.get("timestamp");
+                if (ts != null && !ts.isJsonNull()) {
+                    String raw = ts.getAsString();
+                    timestamp = raw.chars().allMatch(Character::isDigit)
+                            ? Long.parseLong(raw)
+                            : LocalDateTime.parse(raw).atZone(zone).toInstant().toEpochMilli();
+                }
+            } catch (RuntimeException e) {
+                // Gson's JsonParseException, IllegalStateException and NumberFormatException, DateTimeParseException
+                tally.reject("line " + lineNo + ": " + (e instanceof DateTimeParseException ? "invalid timestamp" : "invalid JSON"));
+                continue;
+            }
+            accept("line " + lineNo, customerId, gigabytes, timestamp, sink, tally);
+        }
+    }
+
+    private void parseBinary(DataInputStream in, Predicate<NetworkUsage> sink, Tally tally) throws IOException {
+        byte[] magic = new byte[BINARY_MAGIC.length];
+        try {
+            in.readFully(magic);
+            if (!Arrays.equals(magic, BINARY_MAGIC)) {
+                tally.reject("not an ISPU batch");
+                return;
+            }
+            int version = in.readUnsignedByte();
+            if (version != BINARY_VERSION) {
+                tally.reject("unsupported ISPU version " + version);
+                return;
+            }
+        } catch (EOFException e) {
+            tally.reject("not an ISPU batch");
+            return;
+        }
+
+        long recordNo = 0;
+        while (true) {
+            String customerId;
+            try {
+                customerId = in.readUTF();
+            } catch (EOFException e) {
+                return; // clean end between records
+            }
+            recordNo++;
+            double gigabytes;
+            long timestamp;
+            try {
+                gigabytes = in.readDouble();
+                timestamp = in.readLong();
+            } catch (EOFException e) {
+                tally.reject("record " + recordNo + ": truncated");
+                return;
+            }
+            accept("record " + recordNo, customerId, gigabytes, timestamp == 0 ? null : timestamp, sink, tally);
+        }
+    }
+
+    private void accept(String where, String customerId, double gigabytes, Long epochMillis,
+                        Predicate<NetworkUsage> sink, Tally tally) {
+        if (customerId == null || customerId.isBlank() || customerId.length() > MAX_CUSTOMER_ID) {
+            tally.reject(where + ": invalid customerId");
+            return;
+        }
+        if (!Double.isFinite(gigabytes) || gigabytes < 0 || gigabytes > MAX_GIGABYTES) {
+            tally.reject(where + ": gigabytes out of range");
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (epochMillis != null && epochMillis > now + MAX_CLOCK_SKEW_MILLIS) {
+            tally.reject(where + ": timestamp in the future");
+            return;
+        }
+        LocalDateTime at = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis != null ? epochMillis : now), zone);
+        if (sink.test(new NetworkUsage(IdGenerator.generate(), customerId, gigabytes, at))) {
+            tally.accepted++;
+        } else {
+            tally.reject(where + ": ingest buffer full");
+        }
+    }
+
+    private static final class Tally {
+        long accepted;
+        long rejected;
+        final List<String> errors = new ArrayList<>();
+
+        void reject(String reason) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS) errors.add(reason);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.isp.service;
+
+import com.isp.model.NetworkUsage;
+import com.isp.util.AppConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer between usage ingestion and storage.
+ *
+ * Producers append to a bounded queue and return at once; a full queue rejects the record rather than
+ * blocking the request thread. A single flusher drains the queue into batches of up to {@code flushSize}
+ * and hands each batch to the sink when it is full or when {@code flushIntervalMillis} has passed since
+ * the first record in it arrived, whichever comes first.
+ */
+public class UsageIngestBuffer implements AutoCloseable {
+
+    /**
+     * Capacity and flush thresholds.
+     */
+    public record Settings(int capacity, int flushSize, long flushIntervalMillis) {
+
+        public Settings {
+            if (capacity < 1) throw new IllegalArgumentException("capacity must be at least 1");
+            if (flushSize < 1) throw new IllegalArgumentException("flushSize must be at least 1");
+        }
+
+        /**
+         * Settings from {@code isp.usage.ingest.*} system properties or {@code ISP_USAGE_INGEST_*} environment variables.
+         */
+        public static Settings fromConfig() {
+            return new Settings(
+                AppConfig.getInt("isp.usage.ingest.capacity", "ISP_USAGE_INGEST_CAPACITY", 100_000),
+                AppConfig.getInt("isp.usage.ingest.flushSize", "ISP_USAGE_INGEST_FLUSH_SIZE", 5_000),
+                AppConfig.getLong("isp.usage.ingest.flushIntervalMs", "ISP_USAGE_INGEST_FLUSH_INTERVAL_MS", 1_000)
+            );
+        }
+    }
+
+    /**
+     * Point-in-time buffer metrics.
+     */
+    public record Stats(int buffered, long accepted, long dropped, long flushed, long flushes, long failedFlushes,
+                        double avgBatchSize) {
+    }
+
+    /**
+     * Where flushed batches go.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void write(List<NetworkUsage> batch);
+    }
+
+    private final Sink sink;
+    private final Settings settings;
+    private final BlockingQueue<NetworkUsage> queue;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+
+    public UsageIngestBuffer(Sink sink, Settings settings) {
+        this.sink = sink;
+        this.settings = settings;
+        this.queue = new ArrayBlockingQueue<>(settings.capacity());
+        this.flusher = new Thread(this::runFlusher, "isp-usage-flush");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Append a record for a later flush.
+     *
+     * @return false if the buffer is full and the record was not taken
+     */
+    public boolean offer(NetworkUsage usage) {
+        if (running && queue.offer(usage)) {
+            accepted.increment();
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    /**
+     * Write everything buffered so far on the calling thread.
+     */
+    public void flush() {
+        List<NetworkUsage> batch = new ArrayList<>(Math.min(settings.flushSize(), queue.size()));
+        flushLock.lock();
+        try {
+            while (queue.drainTo(batch, settings.flushSize()) > 0) {
+                write(batch);
+                batch.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public Stats getStats() {
+        long count = flushes.sum();
+        return new Stats(
+            queue.size(),
+            accepted.sum(),
+            dropped.sum(),
+            flushed.sum(),
+            count,
+            failedFlushes.sum(),
+            count == 0 ? 0 : (double) flushed.sum() / count
+        );
+    }
+
+    /**
+     * Stop taking records and flush what is buffered.
+     */
+    @Override
+    public void close() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void runFlusher() {
+        List<NetworkUsage> batch = new ArrayList<>(settings.flushSize());
+        while (running) {
+            try {
+                NetworkUsage first = queue.poll(settings.flushIntervalMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                flushLock.lock();
+                try {
+                    batch.add(first);
+                    fill(batch);
+                    write(batch);
+                } finally {
+                    batch.clear();
+                    flushLock.unlock();
+                }
+            } catch (InterruptedException e) {
+                // close() flushes whatever is still queued
+                return;
+            }
+        }
+    }
+
+    /**
+     * Top the batch up until it reaches flushSize or the flush interval runs out.
+     */
+    private void fill(List<NetworkUsage> batch) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.flushIntervalMillis());
+        try {
+            while (batch.size() < settings.flushSize()) {
+                if (queue.drainTo(batch, settings.flushSize() - batch.size()) > 0) continue;
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return;
+                NetworkUsage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) return;
+                batch.add(next);
+            }
+        } catch (InterruptedException e) {
+            // Write what we have; the flusher loop sees the interrupt next
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(List<NetworkUsage> batch) {
+        if (batch.isEmpty()) return;
+        try {
+            sink.write(List.copyOf(batch));
+            flushed.add(batch.size());
+            flushes.increment();
+        } catch (RuntimeException e) {
+            failedFlushes.increment();
+            dropped.add(batch.size());
+            System.err.println("[USAGE] Failed to flush " + batch.size() + " usage records: " + e.getMessage());
+        }
+    }
+}
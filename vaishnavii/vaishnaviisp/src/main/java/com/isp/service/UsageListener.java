@@ -0,0 +1,33 @@
+package com.isp.service;
+
+import com.isp.model.NetworkUsage;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Observer for usage as it is recorded, from router telemetry ({@link UsageService}) and hotspot
+ * devices ({@link HotspotService}). Events arrive in batches on the recording thread, so
+ * implementations should only fold them into memory and do slow work elsewhere.
+ */
+public interface UsageListener {
+
+    /**
+     * Usage attributed to a customer. The upload/download split and speed are zero when the
+     * source does not report them; {@code deviceId} is null for whole-line router usage.
+     */
+    record Event(String customerId,
+                 String deviceId,
+                 LocalDateTime at,
+                 double gigabytes,
+                 double uploadGB,
+                 double downloadGB,
+                 double speedMbps) {
+
+        public static Event of(NetworkUsage usage) {
+            return new Event(usage.getCustomerId(), null, usage.getTimestamp(), usage.getGigabytes(), 0, 0, 0);
+        }
+    }
+
+    void onUsage(List<Event> events);
+}
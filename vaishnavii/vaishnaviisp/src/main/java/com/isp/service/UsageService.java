@@ -4,17 +4,36 @@ import com.isp.model.NetworkUsage;
 import com.isp.repo.UsageRepository;
 import com.isp.util.IdGenerator;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Service for tracking network usage.
  */
 public class UsageService {
     private final UsageRepository repository;
+    private final UsageIngestBuffer ingestBuffer;
+    private final UsageBatchParser batchParser = new UsageBatchParser();
+    private final List<UsageListener> listeners = new CopyOnWriteArrayList<>();
 
     public UsageService(UsageRepository repository) {
+        this(repository, UsageIngestBuffer.Settings.fromConfig());
+    }
+
+    public UsageService(UsageRepository repository, UsageIngestBuffer.Settings ingestSettings) {
         this.repository = repository;
+        this.ingestBuffer = new UsageIngestBuffer(batch -> {
+            repository.saveAll(batch);
+            fireUsage(batch);
+        }, ingestSettings);
+    }
+
+    public void addListener(UsageListener listener) {
+        listeners.add(listener);
     }
 
     public NetworkUsage recordUsage(String customerId, double gigabytes) {
@@ -25,17 +44,50 @@ public class UsageService {
                 LocalDateTime.now()
         );
         repository.save(usage);
-        System.out.println("Usage recorded: " + usage);
+        fireUsage(List.of(usage));
         return usage;
     }
 
+    /**
+     * Stream a telemetry batch into the write-behind buffer. Accepted records reach storage on the next flush.
+     *
+     * @param binary true for the {@code ISPU} binary format, false for NDJSON
+     */
+    public UsageBatchParser.Result ingestBatch(InputStream body, boolean binary) throws IOException {
+        return batchParser.parse(body, binary, ingestBuffer::offer);
+    }
+
+    public UsageIngestBuffer.Stats getIngestStats() {
+        return ingestBuffer.getStats();
+    }
+
+    private void fireUsage(List<NetworkUsage> batch) {
+        if (listeners.isEmpty()) return;
+        List<UsageListener.Event> events = new ArrayList<>(batch.size());
+        for (NetworkUsage usage : batch) {
+            events.add(UsageListener.Event.of(usage));
+        }
+        for (UsageListener listener : listeners) {
+            try {
+                listener.onUsage(events);
+            } catch (RuntimeException e) {
+                System.err.println("[USAGE] Listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Flush buffered usage and stop the flusher.
+     */
+    public void shutdown() {
+        ingestBuffer.close();
+    }
+
     public List<NetworkUsage> getUsageForCustomer(String customerId) {
         return repository.findByCustomerId(customerId);
     }
 
     public double getTotalUsageForCustomer(String customerId) {
-        return repository.findByCustomerId(customerId).stream()
-                .mapToDouble(NetworkUsage::getGigabytes)
-                .sum();
+        return repository.getTotalGigabytes(customerId);
     }
 }
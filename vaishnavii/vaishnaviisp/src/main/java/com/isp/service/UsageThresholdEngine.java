@@ -0,0 +1,383 @@
+package com.isp.service;
+
+import com.isp.model.CustomerProfile;
+import com.isp.model.DataPlan;
+import com.isp.model.NotificationPreferences;
+import com.isp.model.UsageAlert;
+import com.isp.repo.DailyUsageRepository;
+import com.isp.repo.UsageAlertRepository;
+import com.isp.util.AppConfig;
+import com.isp.util.IdGenerator;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Fires usage alerts as usage arrives instead of scanning customers on a schedule.
+ *
+ * Each customer seen this month gets an in-memory state: usage so far this month, the plan allowance,
+ * the customer's alert thresholds (plus 100%) and a bitmask of the thresholds already alerted. Every
+ * usage event adds to the total and checks only the thresholds not yet set in the mask, so each
+ * threshold fires exactly once per month. State is loaded the first time a customer is seen (or after
+ * {@link #invalidate}) and resets when the month changes. The load runs on a background thread; usage
+ * that arrives meanwhile is held in the state and checked once the baseline is in. Alerts are written in
+ * batches, and the customer notified, on a background flush, so the recording path never waits on the database.
+ */
+public class UsageThresholdEngine implements UsageListener, AutoCloseable {
+
+    /**
+     * Flush interval and the number of threads loading baselines.
+     */
+    public record Settings(long flushIntervalMillis, int loadThreads) {
+
+        public Settings {
+            if (loadThreads < 1) throw new IllegalArgumentException("loadThreads must be at least 1");
+        }
+
+        public Settings(long flushIntervalMillis) {
+            this(flushIntervalMillis, DEFAULT_LOAD_THREADS);
+        }
+
+        /**
+         * Settings from {@code isp.usage.alerts.*} system properties or {@code ISP_USAGE_ALERTS_*} environment variables.
+         */
+        public static Settings fromConfig() {
+            return new Settings(
+                AppConfig.getLong("isp.usage.alerts.flushIntervalMs", "ISP_USAGE_ALERTS_FLUSH_INTERVAL_MS", 5_000),
+                AppConfig.getInt("isp.usage.alerts.loadThreads", "ISP_USAGE_ALERTS_LOAD_THREADS", DEFAULT_LOAD_THREADS)
+            );
+        }
+    }
+
+    /**
+     * Point-in-time engine metrics.
+     */
+    public record Stats(int customers, long events, long loads, long failedLoads, long fired, long pending, long failedFlushes) {
+    }
+
+    /**
+     * What is known about a customer at the start of tracking: usage so far in the period, the plan
+     * allowance (0 for none), alert thresholds in percent, and thresholds already alerted this period.
+     */
+    public record Baseline(double usedGB, double planGB, int[] thresholds, Set<Integer> alreadyFired) {
+    }
+
+    /**
+     * Source of baselines, e.g. daily usage totals, the customer's plan and preferences, and past alerts.
+     */
+    @FunctionalInterface
+    public interface BaselineLoader {
+        Baseline load(String customerId, YearMonth period);
+    }
+
+    /**
+     * Where alerts go once fired.
+     */
+    public interface AlertSink {
+        void saveAll(List<UsageAlert> alerts);
+
+        void notify(UsageAlert alert, double usedGB, double planGB);
+    }
+
+    /**
+     * Sends the customer-facing alert; takes the login user id, not the profile id.
+     */
+    @FunctionalInterface
+    public interface Notifier {
+        void sendUsageAlert(String userId, int usagePercent, double usedGB, double remainingGB, double planGB);
+    }
+
+    private record Crossing(UsageAlert alert, double usedGB, double planGB) {
+    }
+
+    private static final int LIMIT_PERCENT = 100;
+    private static final int DEFAULT_LOAD_THREADS = 2;
+
+    /**
+     * One customer's running state; guarded by its own monitor. Until the baseline is loaded, usedGB
+     * holds only the usage seen since tracking started and nothing is checked.
+     */
+    private static final class State {
+        YearMonth period;
+        double usedGB;
+        double planGB;
+        int[] thresholds = new int[0]; // ascending, at most 32
+        int fired;                     // bit i set once thresholds[i] has alerted this period
+        boolean loaded;
+        boolean loading;
+        LocalDateTime lastUsageAt;
+
+        State(YearMonth period) {
+            this.period = period;
+        }
+
+        void apply(Baseline baseline) {
+            usedGB += baseline.usedGB();
+            planGB = baseline.planGB();
+            thresholds = baseline.thresholds();
+            fired = 0;
+            for (int i = 0; i < thresholds.length; i++) {
+                if (baseline.alreadyFired().contains(thresholds[i])) fired |= 1 << i;
+            }
+            loaded = true;
+        }
+    }
+
+    private final BaselineLoader loader;
+    private final AlertSink sink;
+    private final ConcurrentHashMap<String, State> states = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Crossing> pending = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService scheduler;
+    private final Executor loadExecutor;
+    private final ExecutorService ownedLoadExecutor;
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder failedLoads = new LongAdder();
+    private final LongAdder fired = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+
+    public UsageThresholdEngine(BaselineLoader loader, AlertSink sink, Settings settings) {
+        this(loader, sink, settings, null);
+    }
+
+    /**
+     * @param loadExecutor runs baseline loads, or null for a pool of {@code settings.loadThreads()} threads
+     */
+    UsageThresholdEngine(BaselineLoader loader, AlertSink sink, Settings settings, Executor loadExecutor) {
+        this.loader = loader;
+        this.sink = sink;
+        if (loadExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.ownedLoadExecutor = Executors.newFixedThreadPool(settings.loadThreads(), r -> {
+                Thread t = new Thread(r, "isp-usage-alerts-load-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            this.loadExecutor = ownedLoadExecutor;
+        } else {
+            this.ownedLoadExecutor = null;
+            this.loadExecutor = loadExecutor;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "isp-usage-alerts");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, settings.flushIntervalMillis(),
+                settings.flushIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Engine for usage keyed by customer profile id, as recorded by the usage and hotspot services. The
+     * baseline is this month's daily usage, the profile's plan, its user's alert preferences and the
+     * alerts already raised this month; alerts are stored against the profile and sent to its user.
+     */
+    public static UsageThresholdEngine create(Function<String, Optional<CustomerProfile>> profiles,
+                                              Function<String, NotificationPreferences> preferences,
+                                              DailyUsageRepository dailyUsage,
+                                              UsageAlertRepository alerts,
+                                              Notifier notifier,
+                                              Settings settings) {
+        return new UsageThresholdEngine((profileId, period) -> {
+            Optional<CustomerProfile> profile = profiles.apply(profileId);
+            double planGB = profile.map(CustomerProfile::getCurrentPlan).map(DataPlan::getDataGB).orElse(0.0);
+            NotificationPreferences prefs = profile.map(CustomerProfile::getUserId).map(preferences).orElse(null);
+            int[] thresholds = prefs != null
+                    ? thresholds(prefs.getUsageAlertThreshold1(), prefs.getUsageAlertThreshold2(), prefs.getUsageAlertThreshold3())
+                    : thresholds();
+            return new Baseline(
+                    dailyUsage.getTotalGigabytes(profileId, period.atDay(1), period.plusMonths(1).atDay(1)),
+                    planGB,
+                    thresholds,
+                    alerts.findThresholdsSince(profileId, period.atDay(1).atStartOfDay()));
+        }, new AlertSink() {
+            @Override
+            public void saveAll(List<UsageAlert> batch) {
+                alerts.saveAll(batch);
+            }
+
+            @Override
+            public void notify(UsageAlert alert, double usedGB, double planGB) {
+                Optional<String> userId = profiles.apply(alert.getCustomerId()).map(CustomerProfile::getUserId);
+                if (userId.isEmpty()) {
+                    System.err.println("[USAGE] No profile " + alert.getCustomerId() + " to notify of usage alert");
+                    return;
+                }
+                notifier.sendUsageAlert(userId.get(), alert.getThresholdPercent(), usedGB, Math.max(0, planGB - usedGB), planGB);
+            }
+        }, settings);
+    }
+
+    /**
+     * Alert thresholds in ascending order with 100% always included, ignoring values outside 1..100.
+     */
+    public static int[] thresholds(int... percents) {
+        return IntStream.concat(Arrays.stream(percents), IntStream.of(LIMIT_PERCENT))
+                .filter(p -> p > 0 && p <= LIMIT_PERCENT)
+                .distinct()
+                .sorted()
+                .limit(Integer.SIZE)
+                .toArray();
+    }
+
+    @Override
+    public void onUsage(List<Event> batch) {
+        for (Event event : batch) {
+            YearMonth period = YearMonth.from(event.at());
+            State state = states.computeIfAbsent(event.customerId(), id -> new State(period));
+            boolean startLoad;
+            synchronized (state) {
+                if (period.isAfter(state.period)) {
+                    state.period = period;
+                    state.usedGB = 0;
+                    state.fired = 0;
+                } else if (period.isBefore(state.period)) {
+                    continue; // late usage for a closed month
+                }
+                state.usedGB += event.gigabytes();
+                state.lastUsageAt = event.at();
+                if (state.loaded) check(event.customerId(), state, event.at());
+                startLoad = !state.loaded && !state.loading;
+                if (startLoad) state.loading = true;
+            }
+            if (startLoad) load(event.customerId(), state);
+        }
+        events.add(batch.size());
+    }
+
+    /**
+     * Load a customer's baseline off the recording path, then check the usage that arrived meanwhile.
+     * A failed load is retried on the customer's next event.
+     */
+    private void load(String customerId, State state) {
+        YearMonth period;
+        synchronized (state) {
+            period = state.period;
+        }
+        loads.increment();
+        try {
+            loadExecutor.execute(() -> {
+                Baseline baseline;
+                try {
+                    baseline = loader.load(customerId, period);
+                } catch (RuntimeException e) {
+                    failedLoads.increment();
+                    synchronized (state) {
+                        state.loading = false;
+                    }
+                    System.err.println("[USAGE] Could not load usage alert baseline for " + customerId + ": " + e.getMessage());
+                    return;
+                }
+                boolean reload;
+                synchronized (state) {
+                    // A new month started while loading; the baseline is for the wrong period
+                    reload = !period.equals(state.period);
+                    if (!reload) {
+                        state.apply(baseline);
+                        state.loading = false;
+                        check(customerId, state, state.lastUsageAt);
+                    }
+                }
+                if (reload) load(customerId, state);
+            });
+        } catch (RejectedExecutionException e) {
+            synchronized (state) {
+                state.loading = false;
+            }
+        }
+    }
+
+    /**
+     * Forget a customer's state (by profile id), e.g. after a plan or preference change; it is reloaded on
+     * the next event.
+     */
+    public void invalidate(String customerId) {
+        states.remove(customerId);
+    }
+
+    /**
+     * Save and notify all fired alerts now.
+     */
+    public void flush() {
+        List<Crossing> batch = new ArrayList<>();
+        for (Crossing c; (c = pending.poll()) != null; ) {
+            batch.add(c);
+        }
+        if (batch.isEmpty()) return;
+        try {
+            sink.saveAll(batch.stream().map(Crossing::alert).toList());
+        } catch (RuntimeException e) {
+            failedFlushes.increment();
+            pending.addAll(batch);
+            throw e;
+        }
+        for (Crossing c : batch) {
+            try {
+                sink.notify(c.alert(), c.usedGB(), c.planGB());
+            } catch (RuntimeException e) {
+                System.err.println("[USAGE] Usage alert notification failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(states.size(), events.sum(), loads.sum(), failedLoads.sum(), fired.sum(), pending.size(), failedFlushes.sum());
+    }
+
+    @Override
+    public void close() {
+        if (ownedLoadExecutor != null) ownedLoadExecutor.shutdownNow();
+        scheduler.shutdown();
+        flushQuietly();
+    }
+
+    /**
+     * Queue an alert for the highest newly crossed threshold; lower ones crossed in the same step are
+     * only marked. Called with the state's monitor held.
+     */
+    private void check(String customerId, State state, LocalDateTime at) {
+        if (state.planGB <= 0) return;
+        double percent = state.usedGB * 100 / state.planGB;
+        int highest = -1;
+        for (int i = 0; i < state.thresholds.length && percent >= state.thresholds[i]; i++) {
+            if ((state.fired & (1 << i)) == 0) {
+                state.fired |= 1 << i;
+                highest = i;
+            }
+        }
+        if (highest < 0) return;
+
+        int threshold = state.thresholds[highest];
+        UsageAlert alert = new UsageAlert(IdGenerator.generate(), customerId, UsageAlert.AlertType.forThreshold(threshold),
+                UsageAlert.AlertStatus.ACTIVE, percent, at, null);
+        alert.setThresholdPercent(threshold);
+        pending.add(new Crossing(alert, state.usedGB, state.planGB));
+        fired.increment();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.err.println("[USAGE] Usage alert flush failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.isp.util;
+
+/**
+ * Reads runtime settings from system properties, falling back to environment variables.
+ * A system property such as {@code -Disp.db.pool.max=20} wins over {@code ISP_DB_POOL_MAX=20}.
+ */
+public final class AppConfig {
+
+    private AppConfig() {}
+
+    public static String get(String property, String envVar, String defaultValue) {
+        String value = System.getProperty(property);
+        if (value == null || value.isBlank()) {
+            value = envVar != null ? System.getenv(envVar) : null;
+        }
+        return (value == null || value.isBlank()) ? defaultValue : value.trim();
+    }
+
+    public static int getInt(String property, String envVar, int defaultValue) {
+        String value = get(property, envVar, null);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("[CONFIG] Invalid integer for " + property + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(String property, String envVar, long defaultValue) {
+        String value = get(property, envVar, null);
+        if (value == null) return defaultValue;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.println("[CONFIG] Invalid number for " + property + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String property, String envVar, boolean defaultValue) {
+        String value = get(property, envVar, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
@@ -0,0 +1,455 @@
+package com.isp.util;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Bounded JDBC connection pool.
+ *
+ * Borrowed connections are proxies: calling {@code close()} hands the physical connection
+ * back to the pool instead of closing it, so repositories keep using try-with-resources.
+ * Idle connections are validated on borrow, evicted after {@code idleTimeoutMillis} (down to
+ * {@code minSize}), and borrowers wait at most {@code borrowTimeoutMillis} for a free slot.
+ * Each physical connection keeps up to {@code statementCacheSize} prepared statements (see
+ * {@link StatementCache}); 0 turns statement caching off.
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+
+    /**
+     * Opens a new physical connection.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    /**
+     * Pool sizing and timing settings.
+     */
+    public record Settings(int minSize,
+                           int maxSize,
+                           long borrowTimeoutMillis,
+                           long idleTimeoutMillis,
+                           long evictionIntervalMillis,
+                           long validationBypassMillis,
+                           int validationTimeoutSeconds,
+                           int statementCacheSize) {
+
+        public Settings {
+            if (maxSize < 1) throw new IllegalArgumentException("maxSize must be at least 1");
+            if (minSize < 0 || minSize > maxSize) throw new IllegalArgumentException("minSize must be between 0 and maxSize");
+            if (statementCacheSize < 0) throw new IllegalArgumentException("statementCacheSize must not be negative");
+        }
+
+        /**
+         * Settings from {@code isp.db.pool.*} system properties or {@code ISP_DB_POOL_*} environment variables.
+         */
+        public static Settings fromConfig() {
+            return new Settings(
+                AppConfig.getInt("isp.db.pool.min", "ISP_DB_POOL_MIN", 2),
+                AppConfig.getInt("isp.db.pool.max", "ISP_DB_POOL_MAX", 10),
+                AppConfig.getLong("isp.db.pool.borrowTimeoutMs", "ISP_DB_POOL_BORROW_TIMEOUT_MS", 5_000),
+                AppConfig.getLong("isp.db.pool.idleTimeoutMs", "ISP_DB_POOL_IDLE_TIMEOUT_MS", 300_000),
+                AppConfig.getLong("isp.db.pool.evictionIntervalMs", "ISP_DB_POOL_EVICTION_INTERVAL_MS", 30_000),
+                AppConfig.getLong("isp.db.pool.validationBypassMs", "ISP_DB_POOL_VALIDATION_BYPASS_MS", 500),
+                AppConfig.getInt("isp.db.pool.validationTimeoutSec", "ISP_DB_POOL_VALIDATION_TIMEOUT_SEC", 2),
+                AppConfig.getInt("isp.db.pool.statementCacheSize", "ISP_DB_POOL_STATEMENT_CACHE_SIZE", 64)
+            );
+        }
+    }
+
+    /**
+     * Point-in-time pool metrics.
+     */
+    public record Stats(int active,
+                        int idle,
+                        int total,
+                        int maxSize,
+                        int waiting,
+                        long borrows,
+                        long timeouts,
+                        double avgWaitMillis,
+                        double maxWaitMillis,
+                        long created,
+                        long destroyed,
+                        double creationsPerSecond,
+                        long statementHits,
+                        long statementMisses,
+                        long statementEvictions,
+                        double avgPrepareMicros) {
+    }
+
+    private final ConnectionFactory factory;
+    private final Settings settings;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+    private volatile double creationsPerSecond;
+    private long lastCreatedSample;
+    private long lastSampleNanos = System.nanoTime();
+
+    public ConnectionPool(ConnectionFactory factory, Settings settings) {
+        this.factory = factory;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.maxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "isp-db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        fillToMinimum();
+        housekeeper.scheduleWithFixedDelay(this::housekeep,
+                settings.evictionIntervalMillis(), settings.evictionIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection. Closing the returned connection releases it back to the pool.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+
+        long start = System.nanoTime();
+        boolean acquired;
+        waiting.incrementAndGet();
+        try {
+            acquired = permits.tryAcquire(settings.borrowTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        long waited = System.nanoTime() - start;
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        if (!acquired) {
+            timeouts.increment();
+            throw new SQLTimeoutException("Timed out after " + settings.borrowTimeoutMillis()
+                    + " ms waiting for a database connection (active=" + active.get()
+                    + ", max=" + settings.maxSize() + ")");
+        }
+
+        try {
+            PooledEntry entry = takeIdleOrCreate();
+            active.incrementAndGet();
+            borrows.increment();
+            return entry.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public Stats getStats() {
+        long borrowCount = borrows.sum() + timeouts.sum();
+        double avgWait = borrowCount == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / borrowCount;
+        long prepares = statementCounters.misses.sum();
+        return new Stats(
+            active.get(),
+            idle.size(),
+            total.get(),
+            settings.maxSize(),
+            waiting.get(),
+            borrows.sum(),
+            timeouts.sum(),
+            avgWait,
+            maxWaitNanos.get() / 1_000_000.0,
+            created.sum(),
+            destroyed.sum(),
+            creationsPerSecond,
+            statementCounters.hits.sum(),
+            prepares,
+            statementCounters.evictions.sum(),
+            prepares == 0 ? 0 : statementCounters.prepareNanos.sum() / 1_000.0 / prepares
+        );
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Close idle connections and stop housekeeping. Borrowed connections are closed when returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            destroy(entry);
+        }
+    }
+
+    private PooledEntry takeIdleOrCreate() throws SQLException {
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            if (isUsable(entry)) {
+                return entry;
+            }
+            destroy(entry);
+        }
+        return create();
+    }
+
+    private boolean isUsable(PooledEntry entry) {
+        if (System.currentTimeMillis() - entry.lastReturned < settings.validationBypassMillis()) {
+            return true;
+        }
+        try {
+            return entry.physical.isValid(settings.validationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledEntry create() throws SQLException {
+        total.incrementAndGet();
+        try {
+            Connection physical = factory.create();
+            created.increment();
+            return new PooledEntry(physical);
+        } catch (SQLException | RuntimeException e) {
+            total.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void release(PooledEntry entry, boolean broken) {
+        active.decrementAndGet();
+        try {
+            if (entry.statements != null) entry.statements.releaseAll();
+            if (broken || closed || total.get() > settings.maxSize() || !reset(entry)) {
+                destroy(entry);
+            } else {
+                entry.lastReturned = System.currentTimeMillis();
+                idle.offerFirst(entry);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean reset(PooledEntry entry) {
+        try {
+            Connection c = entry.physical;
+            if (c.isClosed()) return false;
+            if (!c.getAutoCommit()) {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+            c.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void destroy(PooledEntry entry) {
+        total.decrementAndGet();
+        destroyed.increment();
+        if (entry.statements != null) entry.statements.close();
+        try {
+            entry.physical.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+            Iterator<PooledEntry> it = idle.descendingIterator();
+            while (it.hasNext() && total.get() > settings.minSize()) {
+                PooledEntry entry = it.next();
+                if (now - entry.lastReturned > settings.idleTimeoutMillis() && idle.remove(entry)) {
+                    destroy(entry);
+                }
+            }
+            fillToMinimum();
+            sampleCreationRate();
+        } catch (RuntimeException e) {
+            System.err.println("[DATABASE] Pool housekeeping failed: " + e.getMessage());
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!closed && total.get() < settings.minSize()) {
+            // Open under a permit like a borrower would, so total never passes maxSize
+            if (!permits.tryAcquire()) return;
+            try {
+                PooledEntry entry = create();
+                entry.lastReturned = System.currentTimeMillis();
+                idle.offerLast(entry);
+            } catch (SQLException e) {
+                System.err.println("[DATABASE] Could not pre-open pooled connection: " + e.getMessage());
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private synchronized void sampleCreationRate() {
+        long nowNanos = System.nanoTime();
+        long createdNow = created.sum();
+        double seconds = (nowNanos - lastSampleNanos) / 1_000_000_000.0;
+        if (seconds > 0) {
+            creationsPerSecond = (createdNow - lastCreatedSample) / seconds;
+        }
+        lastCreatedSample = createdNow;
+        lastSampleNanos = nowNanos;
+    }
+
+    /**
+     * A physical connection owned by the pool.
+     */
+    private final class PooledEntry {
+        private final Connection physical;
+        private final StatementCache statements;
+        private volatile long lastReturned;
+
+        PooledEntry(Connection physical) {
+            this.physical = physical;
+            this.statements = settings.statementCacheSize() > 0
+                    ? new StatementCache(physical, settings.statementCacheSize(), statementCounters)
+                    : null;
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new LeaseHandler(this));
+        }
+    }
+
+    /**
+     * Routes calls on a borrowed connection to the physical one until the borrower closes it.
+     */
+    private final class LeaseHandler implements InvocationHandler {
+        private final PooledEntry entry;
+        private final AtomicBoolean returned = new AtomicBoolean();
+        private volatile boolean broken;
+
+        LeaseHandler(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        release(entry, broken);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned.get() || entry.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + entry.physical + "]";
+                default:
+                    break;
+            }
+            if (returned.get()) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                if (entry.statements != null && "prepareStatement".equals(method.getName()) && args.length == 1) {
+                    return entry.statements.prepare((String) args[0], (Connection) proxy);
+                }
+                return method.invoke(entry.physical, args);
+            } catch (InvocationTargetException e) {
+                throw checkBroken(e.getCause());
+            } catch (SQLException e) {
+                throw checkBroken(e);
+            }
+        }
+
+        private Throwable checkBroken(Throwable cause) {
+            if (cause instanceof SQLException sqlException) {
+                String state = sqlException.getSQLState();
+                if (state != null && state.startsWith("08")) {
+                    broken = true;
+                }
+            }
+            return cause;
+        }
+    }
+
+    // DataSource plumbing
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections use the configured credentials");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return iface.cast(this);
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -1,12 +1,169 @@
 package com.isp.util;
 
-import java.util.UUID;
+import java.security.SecureRandom;
+import java.util.Arrays;
 
 /**
  * Utility class for generating unique IDs.
+ *
+ * IDs are ULIDs: a 48-bit millisecond timestamp followed by 80 random bits, written as 26 Crockford
+ * base32 characters. They sort by creation time both as strings and as 16-byte binary, so new rows land
+ * at the right-hand edge of a primary-key index instead of at random pages. Within one thread, IDs made
+ * in the same millisecond increment the random part, so each thread's IDs are strictly increasing
+ * without any shared lock.
+ *
+ * Legacy UUID strings are still accepted by {@link #toBytes(String)}, which is what lets existing rows
+ * be given a {@code BINARY(16)} form (see {@link IdMigration}).
  */
 public class IdGenerator {
+
+    /** Length of the string form. */
+    public static final int LENGTH = 26;
+
+    private static final char[] ENCODING = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] DECODING = new byte[128];
+    private static final SecureRandom SEEDS = new SecureRandom();
+
+    static {
+        Arrays.fill(DECODING, (byte) -1);
+        for (int i = 0; i < ENCODING.length; i++) {
+            DECODING[ENCODING[i]] = (byte) i;
+            DECODING[Character.toLowerCase(ENCODING[i])] = (byte) i;
+        }
+        // Crockford aliases
+        DECODING['O'] = DECODING['o'] = 0;
+        DECODING['I'] = DECODING['i'] = DECODING['L'] = DECODING['l'] = 1;
+    }
+
+    /**
+     * Per-thread generator state: the last timestamp and the 80 random bits used with it.
+     */
+    private static final class State {
+        long lastMillis = -1;
+        long randomHi; // upper 16 bits of the random part
+        long randomLo; // lower 64 bits
+        final byte[] seed = new byte[10];
+    }
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
     public static String generate() {
-        return UUID.randomUUID().toString();
+        return encode(nextHigh(System.currentTimeMillis()), STATE.get().randomLo);
+    }
+
+    /**
+     * A new ID in its 16-byte binary form, for {@code BINARY(16)} columns.
+     */
+    public static byte[] generateBinary() {
+        long high = nextHigh(System.currentTimeMillis());
+        return toBytes(high, STATE.get().randomLo);
+    }
+
+    /**
+     * Advance this thread's state for the given time and return the upper 64 bits of the ID
+     * (timestamp and the top 16 random bits); the lower 64 bits are left in the state.
+     */
+    private static long nextHigh(long now) {
+        State s = STATE.get();
+        if (now > s.lastMillis) {
+            SEEDS.nextBytes(s.seed);
+            s.randomHi = ((s.seed[0] & 0xFFL) << 8) | (s.seed[1] & 0xFFL);
+            long lo = 0;
+            for (int i = 2; i < 10; i++) lo = (lo << 8) | (s.seed[i] & 0xFFL);
+            s.randomLo = lo;
+            s.lastMillis = now;
+        } else {
+            // Same millisecond (or the clock stepped back): keep the last timestamp and count up
+            if (++s.randomLo == 0) {
+                s.randomHi = (s.randomHi + 1) & 0xFFFF;
+                if (s.randomHi == 0) {
+                    s.lastMillis++;
+                }
+            }
+        }
+        return (s.lastMillis << 16) | s.randomHi;
+    }
+
+    /**
+     * Creation time of a ULID, in epoch milliseconds.
+     */
+    public static long timestampOf(String id) {
+        return readLong(toBytes(id), 0) >>> 16;
+    }
+
+    /**
+     * Binary form of an ID: a ULID is base32-decoded and a UUID string is hex-decoded.
+     *
+     * @throws IllegalArgumentException if the string is neither
+     */
+    public static byte[] toBytes(String id) {
+        if (id != null && id.length() == LENGTH) {
+            long high = 0, low = 0;
+            // 26 chars carry 130 bits; the first char holds only the top 3 bits
+            for (int i = 0; i < LENGTH; i++) {
+                char c = id.charAt(i);
+                int v = c < 128 ? DECODING[c] : -1;
+                if (v < 0 || (i == 0 && v > 7)) throw new IllegalArgumentException("Invalid ID: " + id);
+                high = (high << 5) | (low >>> 59);
+                low = (low << 5) | v;
+            }
+            return toBytes(high, low);
+        }
+        if (id != null && id.length() == 36) {
+            String hex = id.replace("-", "");
+            if (hex.length() == 32) {
+                try {
+                    return toBytes(Long.parseUnsignedLong(hex, 0, 16, 16), Long.parseUnsignedLong(hex, 16, 32, 16));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid ID: " + id, e);
+                }
+            }
+        }
+        throw new IllegalArgumentException("Invalid ID: " + id);
+    }
+
+    /**
+     * Binary form of an ID for {@code id_bin} columns, or null for hand-made IDs (seed data etc.)
+     * that are neither a ULID nor a UUID.
+     */
+    public static byte[] toBytesOrNull(String id) {
+        try {
+            return toBytes(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * ULID string for a 16-byte binary ID.
+     */
+    public static String fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != 16) throw new IllegalArgumentException("ID must be 16 bytes");
+        return encode(readLong(bytes, 0), readLong(bytes, 8));
+    }
+
+    private static String encode(long high, long low) {
+        char[] out = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            out[i] = ENCODING[(int) (low & 31)];
+            low = (low >>> 5) | (high << 59);
+            high >>>= 5;
+        }
+        return new String(out);
+    }
+
+    private static byte[] toBytes(long high, long low) {
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (high >>> (56 - 8 * i));
+            bytes[8 + i] = (byte) (low >>> (56 - 8 * i));
+        }
+        return bytes;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long v = 0;
+        for (int i = 0; i < 8; i++) v = (v << 8) | (bytes[offset + i] & 0xFFL);
+        return v;
     }
 }
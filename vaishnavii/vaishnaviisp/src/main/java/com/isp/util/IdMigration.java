@@ -0,0 +1,99 @@
+package com.isp.util;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Gives existing rows a compact {@code id_bin BINARY(16)} copy of their string primary key.
+ *
+ * The column and its unique index come from the V6 schema migration, and repositories fill it for new
+ * rows. This backfills the rows written before that, where it is still NULL (legacy UUIDs are hex-decoded,
+ * ULIDs base32-decoded, see {@link IdGenerator#toBytes(String)}), in pages of one transaction each.
+ * Safe to run repeatedly; a run after a complete one finds nothing to do.
+ *
+ * Run with {@code java -cp ... com.isp.util.IdMigration [table ...]}; defaults to the high-volume tables.
+ */
+public class IdMigration {
+
+    static final String[] DEFAULT_TABLES = {"usage", "notifications", "daily_usage", "device_connections"};
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final int PAGE_SIZE = 1000;
+
+    /**
+     * Outcome for one table.
+     */
+    public record Result(String table, long backfilled, long skipped) {
+    }
+
+    private final ConnectionPool.ConnectionFactory connections;
+
+    public IdMigration(ConnectionPool.ConnectionFactory connections) {
+        this.connections = connections;
+    }
+
+    public Result migrate(String table) {
+        if (!IDENTIFIER.matcher(table).matches()) throw new IllegalArgumentException("Invalid table name: " + table);
+        String quoted = "`" + table + "`";
+
+        try (Connection conn = connections.create()) {
+            long backfilled = 0, skipped = 0;
+            String lastId = "";
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement select = conn.prepareStatement(
+                         "SELECT id FROM " + quoted + " WHERE id_bin IS NULL AND id > ? ORDER BY id LIMIT " + PAGE_SIZE);
+                 PreparedStatement update = conn.prepareStatement(
+                         "UPDATE " + quoted + " SET id_bin = ? WHERE id = ?")) {
+                while (true) {
+                    List<String> ids = new ArrayList<>(PAGE_SIZE);
+                    select.setString(1, lastId);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) ids.add(rs.getString(1));
+                    }
+                    if (ids.isEmpty()) break;
+                    lastId = ids.get(ids.size() - 1);
+                    for (String id : ids) {
+                        byte[] bin;
+                        try {
+                            bin = IdGenerator.toBytes(id);
+                        } catch (IllegalArgumentException e) {
+                            // Hand-made ids (seed data etc.) stay NULL and keep using the string key
+                            skipped++;
+                            continue;
+                        }
+                        update.setBytes(1, bin);
+                        update.setString(2, id);
+                        update.addBatch();
+                    }
+                    for (int count : update.executeBatch()) {
+                        if (count > 0) backfilled += count;
+                    }
+                    conn.commit();
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            System.out.println("[IdMigration] " + table + ": backfilled=" + backfilled + " skipped=" + skipped);
+            return new Result(table, backfilled, skipped);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to migrate ids for " + table, e);
+        }
+    }
+
+    public static void main(String[] args) {
+        String[] tables = args.length > 0 ? args : DEFAULT_TABLES;
+        IdMigration migration = new IdMigration(DatabaseConnection::getConnection);
+        try {
+            for (String table : tables) {
+                migration.migrate(table);
+            }
+        } finally {
+            DatabaseConnection.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.isp.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets.
+ *
+ * Values are recorded in microseconds. Below 128 µs every value has its own bucket; above that each
+ * power of two is split into 64 buckets, so any reported percentile is within about 1.6% of the
+ * true value. Values above one hour are clamped into the last bucket.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;        // 128
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS >> 1;       // 64
+    private static final long MAX_VALUE = TimeUnit.HOURS.toMicros(1);
+
+    private final AtomicLongArray counts = new AtomicLongArray(bucketIndex(MAX_VALUE) + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1_000);
+    }
+
+    public void recordMicros(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_VALUE));
+        counts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / 1_000.0 / n;
+    }
+
+    public double getMaxMillis() {
+        return max.get() / 1_000.0;
+    }
+
+    /**
+     * Latency at the given percentile (0-100) in milliseconds.
+     */
+    public double getPercentileMillis(double percentile) {
+        long total = count.sum();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketMidpoint(i), max.get()) / 1_000.0;
+            }
+        }
+        return max.get() / 1_000.0;
+    }
+
+    /**
+     * Cumulative count of values at or below {@code micros}, for Prometheus-style buckets.
+     */
+    public long countAtOrBelow(long micros) {
+        int limit = bucketIndex(Math.min(micros, MAX_VALUE));
+        long seen = 0;
+        for (int i = 0; i <= limit; i++) {
+            seen += counts.get(i);
+        }
+        return seen;
+    }
+
+    public double getSumMillis() {
+        return sum.sum() / 1_000.0;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long bucketMidpoint(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        long lower = (long) (index - shift * HALF_SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) - 1) / 2;
+    }
+}
@@ -0,0 +1,347 @@
+package com.isp.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the versioned SQL scripts listed in {@code db/migration/migrations.txt} on the classpath.
+ *
+ * Applied versions are recorded in {@code schema_version} with the script's SHA-256 checksum and how
+ * long it took. A warm start is one query against that table: nothing else runs when the database is
+ * already at the latest version. A shipped script that was edited afterwards (checksum mismatch) stops
+ * startup rather than leaving the schema in an unknown state.
+ *
+ * On MySQL the whole run holds the {@code GET_LOCK} named {@value #LOCK_NAME}, so instances starting together
+ * migrate one at a time and the later ones find the work done. MySQL DDL is not transactional, so a script
+ * that fails halfway is rerun from the top on the next start: {@code ALTER TABLE t ADD COLUMN c} and
+ * {@code CREATE INDEX i ON t} are skipped when the column or index already exists (one column per ALTER).
+ */
+public class SchemaMigrator {
+
+    /**
+     * One script from the classpath.
+     */
+    public record Migration(int version, String description, String script, String checksum) {
+    }
+
+    /**
+     * A migration applied by this run.
+     */
+    public record Applied(int version, String description, long millis) {
+    }
+
+    /**
+     * Outcome of {@link #migrate()}: the version the database is at now and what was applied to get there.
+     */
+    public record Report(int version, List<Applied> applied, long totalMillis) {
+    }
+
+    static final String DEFAULT_LOCATION = "db/migration";
+    static final String LOCK_NAME = "isp_schema_migrate";
+    private static final String VERSION_TABLE = "schema_version";
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final Pattern ADD_COLUMN = Pattern.compile("(?is)ALTER\\s+TABLE\\s+`?(\\w+)`?\\s+ADD\\s+COLUMN\\s+`?(\\w+)`?\\s.*");
+    private static final Pattern CREATE_INDEX = Pattern.compile("(?is)CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+`?(\\w+)`?\\s+ON\\s+`?(\\w+)`?.*");
+
+    private final ConnectionPool.ConnectionFactory connections;
+    private final String location;
+    private final int lockTimeoutSeconds;
+
+    public SchemaMigrator(ConnectionPool.ConnectionFactory connections) {
+        this(connections, DEFAULT_LOCATION,
+                AppConfig.getInt("isp.db.migrationLockTimeoutSec", "ISP_DB_MIGRATION_LOCK_TIMEOUT_SEC", 60));
+    }
+
+    SchemaMigrator(ConnectionPool.ConnectionFactory connections, String location, int lockTimeoutSeconds) {
+        this.connections = connections;
+        this.location = location;
+        this.lockTimeoutSeconds = lockTimeoutSeconds;
+    }
+
+    /**
+     * Bring the database up to the latest version.
+     *
+     * @throws IllegalStateException if an applied script has changed or the database is newer than this build
+     */
+    public Report migrate() {
+        long start = System.nanoTime();
+        List<Migration> migrations = loadMigrations();
+        int latest = migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version();
+        List<Applied> applied = new ArrayList<>();
+
+        try (Connection conn = connections.create()) {
+            boolean locked = lock(conn);
+            try {
+                Map<Integer, String> installed = readInstalled(conn);
+                for (Migration migration : migrations) {
+                    String checksum = installed.get(migration.version());
+                    if (checksum != null && !checksum.equals(migration.checksum())) {
+                        throw new IllegalStateException("Migration V" + migration.version() + " (" + migration.description()
+                                + ") was changed after it was applied; add a new migration instead");
+                    }
+                }
+                int current = installed.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+                if (current > latest) {
+                    throw new IllegalStateException("Database schema is at V" + current + " but this build only knows up to V" + latest);
+                }
+
+                for (Migration migration : migrations) {
+                    if (installed.containsKey(migration.version())) continue;
+                    long began = System.nanoTime();
+                    apply(conn, migration);
+                    long millis = (System.nanoTime() - began) / 1_000_000;
+                    record(conn, migration, millis);
+                    applied.add(new Applied(migration.version(), migration.description(), millis));
+                    System.out.println("[DATABASE] Applied migration V" + migration.version() + " "
+                            + migration.description() + " in " + millis + " ms");
+                    current = migration.version();
+                }
+                return new Report(current, List.copyOf(applied), (System.nanoTime() - start) / 1_000_000);
+            } finally {
+                if (locked) unlock(conn);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error migrating database schema", e);
+        }
+    }
+
+    /**
+     * The migrations on the classpath, in version order.
+     */
+    public List<Migration> loadMigrations() {
+        List<Migration> migrations = new ArrayList<>();
+        int previous = 0;
+        for (String fileName : readManifest(location + "/migrations.txt")) {
+            Matcher m = FILE_NAME.matcher(fileName);
+            if (!m.matches()) throw new IllegalStateException("Invalid migration file name: " + fileName);
+            int version = Integer.parseInt(m.group(1));
+            if (version <= previous) throw new IllegalStateException("Migrations out of order at " + fileName);
+            previous = version;
+            String script = String.join("\n", readResource(location + "/" + fileName));
+            migrations.add(new Migration(version, m.group(2).replace('_', ' '), script, sha256(script)));
+        }
+        return migrations;
+    }
+
+    /**
+     * Take the MySQL named lock for this run. Other databases (the H2 used in tests) run unlocked.
+     *
+     * @return whether a lock was taken and must be released
+     */
+    private boolean lock(Connection conn) throws SQLException {
+        if (!isMySql(conn)) return false;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, lockTimeoutSeconds);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getInt(1) == 1) return true;
+            }
+        }
+        throw new IllegalStateException("Timed out after " + lockTimeoutSeconds
+                + " s waiting for another instance to finish migrating the schema");
+    }
+
+    private static void unlock(Connection conn) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        } catch (SQLException e) {
+            // The lock is released anyway when the session ends
+            System.err.println("[DATABASE] Could not release migration lock: " + e.getMessage());
+        }
+    }
+
+    private static boolean isMySql(Connection conn) throws SQLException {
+        return conn.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql");
+    }
+
+    /**
+     * Applied versions and their checksums; empty (and the table created) on a new database.
+     */
+    private static Map<Integer, String> readInstalled(Connection conn) throws SQLException {
+        Map<Integer, String> installed = new TreeMap<>();
+        if (!tableExists(conn, VERSION_TABLE)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS schema_version (
+                        version INT PRIMARY KEY,
+                        description VARCHAR(200) NOT NULL,
+                        checksum CHAR(64) NOT NULL,
+                        installed_at TIMESTAMP NOT NULL,
+                        execution_ms BIGINT NOT NULL
+                    )
+                """);
+            }
+            return installed;
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                installed.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        return installed;
+    }
+
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : statements(migration.script())) {
+                if (alreadyApplied(conn, sql)) {
+                    System.out.println("[DATABASE] V" + migration.version() + ": already present, skipping " + firstLine(sql));
+                    continue;
+                }
+                try {
+                    stmt.execute(sql);
+                } catch (SQLException e) {
+                    throw new SQLException("Migration V" + migration.version() + " failed at: " + firstLine(sql), e.getSQLState(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether an ADD COLUMN or CREATE INDEX statement has already taken effect, e.g. by an earlier
+     * attempt at the same migration that failed on a later statement.
+     */
+    static boolean alreadyApplied(Connection conn, String sql) throws SQLException {
+        Matcher column = ADD_COLUMN.matcher(sql);
+        if (column.matches()) {
+            return columnExists(conn, column.group(1), column.group(2));
+        }
+        Matcher index = CREATE_INDEX.matcher(sql);
+        if (index.matches()) {
+            return indexExists(conn, index.group(2), index.group(1));
+        }
+        return false;
+    }
+
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        for (String name : identifiers(meta, table)) {
+            try (ResultSet rs = meta.getTables(conn.getCatalog(), null, name, null)) {
+                if (rs.next()) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean columnExists(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        for (String t : identifiers(meta, table)) {
+            for (String c : identifiers(meta, column)) {
+                try (ResultSet rs = meta.getColumns(conn.getCatalog(), null, t, c)) {
+                    if (rs.next()) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean indexExists(Connection conn, String table, String index) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        for (String t : identifiers(meta, table)) {
+            try (ResultSet rs = meta.getIndexInfo(conn.getCatalog(), null, t, false, true)) {
+                while (rs.next()) {
+                    if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The spellings an unquoted identifier may be stored under (H2 folds to upper case, MySQL keeps it).
+     */
+    private static List<String> identifiers(DatabaseMetaData meta, String name) throws SQLException {
+        if (meta.storesUpperCaseIdentifiers()) return List.of(name.toUpperCase(Locale.ROOT));
+        if (meta.storesLowerCaseIdentifiers()) return List.of(name.toLowerCase(Locale.ROOT));
+        return List.of(name);
+    }
+
+    private static void record(Connection conn, Migration migration, long millis) throws SQLException {
+        String sql = "INSERT INTO schema_version (version, description, checksum, installed_at, execution_ms) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, migration.version());
+            stmt.setString(2, migration.description());
+            stmt.setString(3, migration.checksum());
+            stmt.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.setLong(5, millis);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Split a script into statements on semicolons that end a line, dropping {@code --} comment lines.
+     */
+    static List<String> statements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\n")) {
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) continue;
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                String sql = current.toString().strip();
+                statements.add(sql.substring(0, sql.length() - 1));
+                current.setLength(0);
+            }
+        }
+        if (!current.toString().isBlank()) statements.add(current.toString().strip());
+        return statements;
+    }
+
+    private static List<String> readManifest(String resource) {
+        List<String> lines = new ArrayList<>();
+        for (String line : readResource(resource)) {
+            String trimmed = line.strip();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) lines.add(trimmed);
+        }
+        return lines;
+    }
+
+    private static List<String> readResource(String resource) {
+        InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) throw new IllegalStateException("Missing migration resource: " + resource);
+        // Reading line by line also normalizes CRLF checkouts to the same checksum
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return reader.lines().toList();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read " + resource, e);
+        }
+    }
+
+    private static String firstLine(String sql) {
+        int newline = sql.indexOf('\n');
+        return newline < 0 ? sql : sql.substring(0, newline);
+    }
+
+    private static String sha256(String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package com.isp.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Per-statement SQL metrics gathered by wrapping borrowed connections.
+ *
+ * Statements are grouped by fingerprint: the SQL with literals replaced by {@code ?}, IN lists collapsed
+ * and whitespace normalized. Each fingerprint keeps a latency histogram, rows returned or affected, errors
+ * and the repository methods that ran it. The first time a fingerprint runs slower than
+ * {@code slowQueryMillis} its {@code EXPLAIN} plan is captured in the background on a separate connection,
+ * and every slow execution goes into a bounded slow-query log.
+ */
+public class SqlProfiler implements AutoCloseable {
+
+    /**
+     * Slow-query threshold and bounds on what is kept.
+     */
+    public record Settings(long slowQueryMillis, int maxFingerprints, int slowLogSize) {
+
+        /**
+         * Settings from {@code isp.db.slowQueryMs}, {@code isp.db.sqlStats.maxFingerprints} and
+         * {@code isp.db.slowLog.size} (or {@code ISP_DB_*} environment variables).
+         */
+        public static Settings fromConfig() {
+            return new Settings(
+                AppConfig.getLong("isp.db.slowQueryMs", "ISP_DB_SLOW_QUERY_MS", 200),
+                AppConfig.getInt("isp.db.sqlStats.maxFingerprints", "ISP_DB_SQL_STATS_MAX_FINGERPRINTS", 200),
+                AppConfig.getInt("isp.db.slowLog.size", "ISP_DB_SLOW_LOG_SIZE", 100)
+            );
+        }
+    }
+
+    /**
+     * Aggregates for one fingerprint. Latencies are in milliseconds; {@code plan} is null until captured.
+     */
+    public record StatementStats(String sql,
+                                 long count,
+                                 long errors,
+                                 long rows,
+                                 double meanMs,
+                                 double p50Ms,
+                                 double p95Ms,
+                                 double p99Ms,
+                                 double maxMs,
+                                 double totalMs,
+                                 Map<String, Long> callers,
+                                 List<Map<String, String>> plan) {
+    }
+
+    /**
+     * One execution over the threshold.
+     */
+    public record SlowQuery(String sql, String caller, double millis, String at) {
+    }
+
+    /**
+     * Everything the profiler knows, busiest fingerprints (by total time) first and newest slow queries first.
+     */
+    public record Report(long slowQueryMillis, List<StatementStats> statements, List<SlowQuery> slowQueries) {
+    }
+
+    static final String OVERFLOW = "OTHER";
+    private static final int MAX_CALLERS = 16;
+    private static final String OTHER_CALLER = "other";
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern EXPLAINABLE = Pattern.compile("(?is)\\s*(SELECT|UPDATE|DELETE)\\b.*");
+    private static final StackWalker STACK = StackWalker.getInstance();
+
+    private final Settings settings;
+    private final ConnectionPool.ConnectionFactory explainConnections;
+    private final Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final Map<String, Fingerprint> bySql = new ConcurrentHashMap<>();
+    private final Deque<SlowQuery> slowLog = new ArrayDeque<>();
+    private final ExecutorService explainer;
+
+    /**
+     * @param explainConnections connections for {@code EXPLAIN}; these must not be wrapped by this profiler
+     */
+    public SqlProfiler(ConnectionPool.ConnectionFactory explainConnections, Settings settings) {
+        this.settings = settings;
+        this.explainConnections = explainConnections;
+        this.explainer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "isp-sql-explain");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Wrap a borrowed connection so the statements it creates are measured. Closing the wrapper closes
+     * (or returns) the underlying connection.
+     */
+    public Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                SqlProfiler.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new ConnectionHandler(connection));
+    }
+
+    public Report getReport() {
+        List<StatementStats> statements = new ArrayList<>();
+        for (Fingerprint f : fingerprints.values()) {
+            statements.add(f.snapshot());
+        }
+        statements.sort(Comparator.comparingDouble(StatementStats::totalMs).reversed());
+        List<SlowQuery> slow;
+        synchronized (slowLog) {
+            slow = new ArrayList<>(slowLog);
+        }
+        return new Report(settings.slowQueryMillis(), statements, slow);
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset() {
+        fingerprints.clear();
+        bySql.clear();
+        synchronized (slowLog) {
+            slowLog.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        explainer.shutdownNow();
+    }
+
+    /**
+     * SQL with literals replaced by {@code ?}, IN lists collapsed to {@code IN (?)} and whitespace normalized.
+     */
+    static String fingerprint(String sql) {
+        String s = STRING_LITERAL.matcher(sql).replaceAll("?");
+        s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+        s = IN_LIST.matcher(s).replaceAll("IN (?)");
+        return WHITESPACE.matcher(s).replaceAll(" ").strip();
+    }
+
+    private Fingerprint lookup(String sql) {
+        Fingerprint cached = bySql.get(sql);
+        if (cached != null) return cached;
+        String key = fingerprint(sql);
+        Fingerprint f = fingerprints.get(key);
+        if (f == null) {
+            if (fingerprints.size() >= settings.maxFingerprints()) {
+                f = fingerprints.computeIfAbsent(OVERFLOW, Fingerprint::new);
+            } else {
+                f = fingerprints.computeIfAbsent(key, Fingerprint::new);
+            }
+        }
+        // Statements built with inlined literals would grow this without bound
+        if (bySql.size() < settings.maxFingerprints() * 4) {
+            bySql.put(sql, f);
+        }
+        return f;
+    }
+
+    private void recordSlow(Fingerprint f, String sql, String caller, long nanos, Map<Integer, Binding> bindings) {
+        SlowQuery entry = new SlowQuery(f.sql, caller, nanos / 1_000_000.0, LocalDateTime.now().toString());
+        synchronized (slowLog) {
+            slowLog.addFirst(entry);
+            while (slowLog.size() > settings.slowLogSize()) {
+                slowLog.removeLast();
+            }
+        }
+        System.err.println("[DATABASE] Slow query (" + Math.round(entry.millis()) + " ms) from " + caller + ": " + f.sql);
+
+        if (f.sql.equals(OVERFLOW) || !EXPLAINABLE.matcher(sql).matches() || !f.explainRequested.compareAndSet(false, true)) {
+            return;
+        }
+        List<Binding> replay = bindings == null ? List.of() : List.copyOf(bindings.values());
+        try {
+            explainer.execute(() -> f.plan = explain(sql, replay));
+        } catch (RejectedExecutionException e) {
+            f.explainRequested.set(false);
+        }
+    }
+
+    private List<Map<String, String>> explain(String sql, List<Binding> bindings) {
+        List<Map<String, String>> plan = new ArrayList<>();
+        try (Connection conn = explainConnections.create();
+             PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            for (Binding binding : bindings) {
+                binding.method.invoke(stmt, binding.args);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                while (rs.next()) {
+                    Map<String, String> row = new LinkedHashMap<>();
+                    for (int i = 1; i <= meta.getColumnCount(); i++) {
+                        row.put(meta.getColumnLabel(i).toLowerCase(Locale.ROOT), rs.getString(i));
+                    }
+                    plan.add(row);
+                }
+            }
+        } catch (SQLException | ReflectiveOperationException | RuntimeException e) {
+            Throwable cause = e instanceof InvocationTargetException ite ? ite.getCause() : e;
+            plan.add(Map.of("error", String.valueOf(cause.getMessage())));
+        }
+        return plan;
+    }
+
+    /**
+     * The repository or service method that issued the statement, e.g. {@code DailyUsageRepository.findByCustomerIdAndDate}.
+     */
+    private static String caller() {
+        return STACK.walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith("com.isp.") && !f.getClassName().startsWith("com.isp.util."))
+                .findFirst()
+                .map(f -> simpleName(f.getClassName()) + "." + f.getMethodName())
+                .orElse("unknown"));
+    }
+
+    private static String simpleName(String className) {
+        String name = className.substring(className.lastIndexOf('.') + 1);
+        int nested = name.indexOf('$');
+        return nested > 0 ? name.substring(0, nested) : name;
+    }
+
+    private static Object unwrapInvoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A parameter setter call, kept so the statement can be replayed under {@code EXPLAIN}.
+     */
+    private record Binding(Method method, Object[] args) {
+    }
+
+    /**
+     * Running totals for one fingerprint.
+     */
+    private static final class Fingerprint {
+        private final String sql;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final Map<String, LongAdder> callers = new ConcurrentHashMap<>();
+        private final AtomicBoolean explainRequested = new AtomicBoolean();
+        private volatile List<Map<String, String>> plan;
+
+        Fingerprint(String sql) {
+            this.sql = sql;
+        }
+
+        void record(String caller, long nanos, boolean failed) {
+            latency.recordNanos(nanos);
+            if (failed) errors.increment();
+            LongAdder n = callers.get(caller);
+            if (n == null) {
+                n = callers.size() < MAX_CALLERS
+                        ? callers.computeIfAbsent(caller, c -> new LongAdder())
+                        : callers.computeIfAbsent(OTHER_CALLER, c -> new LongAdder());
+            }
+            n.increment();
+        }
+
+        StatementStats snapshot() {
+            Map<String, Long> byCaller = new TreeMap<>();
+            callers.forEach((caller, n) -> byCaller.put(caller, n.sum()));
+            return new StatementStats(sql, latency.getCount(), errors.sum(), rows.sum(),
+                    latency.getMeanMillis(), latency.getPercentileMillis(50), latency.getPercentileMillis(95),
+                    latency.getPercentileMillis(99), latency.getMaxMillis(), latency.getSumMillis(), byCaller, plan);
+        }
+    }
+
+    /**
+     * Wraps the statements a connection creates.
+     */
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ProfiledConnection[" + target + "]";
+                default:
+                    break;
+            }
+            Object result = unwrapInvoke(target, method, args);
+            if (method.getName().equals("prepareStatement") && result instanceof PreparedStatement stmt) {
+                String sql = (String) args[0];
+                return wrapStatement(PreparedStatement.class, stmt, sql, (Connection) proxy);
+            }
+            if (method.getName().equals("createStatement") && result instanceof Statement stmt) {
+                return wrapStatement(Statement.class, stmt, null, (Connection) proxy);
+            }
+            return result;
+        }
+
+        private Object wrapStatement(Class<?> type, Statement stmt, String sql, Connection owner) {
+            return Proxy.newProxyInstance(
+                    SqlProfiler.class.getClassLoader(),
+                    new Class<?>[] { type },
+                    new StatementHandler(stmt, sql, owner));
+        }
+    }
+
+    /**
+     * Times executions and counts rows for one statement.
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String preparedSql;
+        private final Fingerprint prepared;
+        private final Connection owner;
+        private Map<Integer, Binding> bindings;
+        private String batchSql;
+        private Fingerprint current;
+
+        StatementHandler(Statement target, String preparedSql, Connection owner) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+            this.prepared = preparedSql != null ? lookup(preparedSql) : null;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ProfiledStatement[" + target + "]";
+                case "getConnection":
+                    return owner;
+                case "getResultSet": {
+                    Object rs = unwrapInvoke(target, method, args);
+                    return rs instanceof ResultSet resultSet && current != null ? countRows(resultSet, current) : rs;
+                }
+                case "clearParameters":
+                    if (bindings != null) bindings.clear();
+                    break;
+                case "addBatch":
+                    if (args != null && args.length == 1 && batchSql == null) batchSql = (String) args[0];
+                    break;
+                case "clearBatch":
+                    batchSql = null;
+                    break;
+                default:
+                    // Parameters are only kept while this fingerprint's plan may still be wanted
+                    if (prepared != null && name.startsWith("set") && args != null && args.length >= 2
+                            && args[0] instanceof Integer index && !prepared.explainRequested.get()) {
+                        if (bindings == null) bindings = new TreeMap<>();
+                        bindings.put(index, new Binding(method, args.clone()));
+                    }
+                    break;
+            }
+            return unwrapInvoke(target, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            String sql;
+            Fingerprint f;
+            if (args != null && args.length > 0 && args[0] instanceof String text) {
+                sql = text;
+                f = lookup(text);
+            } else if (prepared != null) {
+                sql = preparedSql;
+                f = prepared;
+            } else if (batchSql != null) {
+                sql = batchSql;
+                f = lookup(batchSql);
+            } else {
+                return unwrapInvoke(target, method, args);
+            }
+            if (method.getName().endsWith("Batch")) batchSql = null;
+
+            current = f;
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = unwrapInvoke(target, method, args);
+                failed = false;
+                return countResult(result, f);
+            } finally {
+                long nanos = System.nanoTime() - start;
+                String caller = caller();
+                f.record(caller, nanos, failed);
+                if (nanos >= settings.slowQueryMillis() * 1_000_000) {
+                    recordSlow(f, sql, caller, nanos, f == prepared ? bindings : null);
+                }
+            }
+        }
+
+        private Object countResult(Object result, Fingerprint f) {
+            if (result instanceof ResultSet rs) {
+                return countRows(rs, f);
+            } else if (result instanceof Integer n && n > 0) {
+                f.rows.add(n);
+            } else if (result instanceof Long n && n > 0) {
+                f.rows.add(n);
+            } else if (result instanceof int[] counts) {
+                for (int n : counts) if (n > 0) f.rows.add(n);
+            } else if (result instanceof long[] counts) {
+                for (long n : counts) if (n > 0) f.rows.add(n);
+            }
+            return result;
+        }
+
+        private ResultSet countRows(ResultSet rs, Fingerprint f) {
+            return (ResultSet) Proxy.newProxyInstance(
+                    SqlProfiler.class.getClassLoader(),
+                    new Class<?>[] { ResultSet.class },
+                    (proxy, method, args) -> {
+                        Object result = unwrapInvoke(rs, method, args);
+                        if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                            f.rows.increment();
+                        }
+                        return result;
+                    });
+        }
+    }
+}
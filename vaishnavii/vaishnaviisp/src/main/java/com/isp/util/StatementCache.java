@@ -0,0 +1,191 @@
+package com.isp.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU of prepared statements for one pooled connection, keyed by SQL text.
+ *
+ * {@code prepareStatement(sql)} on a borrowed connection hands out a wrapper around the cached statement;
+ * closing the wrapper clears its parameters and keeps the statement for the next caller instead of
+ * closing it, so the driver parses and plans each query once per connection. A statement already handed
+ * out in the same lease is prepared fresh rather than shared. Returning the connection to the pool
+ * closes any wrappers the borrower left open.
+ */
+final class StatementCache {
+
+    /**
+     * Pool-wide cache counters.
+     */
+    static final class Counters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+        final LongAdder prepareNanos = new LongAdder();
+    }
+
+    private final Connection physical;
+    private final int capacity;
+    private final Counters counters;
+    private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CachedStatementHandler> inUse = new HashMap<>();
+
+    StatementCache(Connection physical, int capacity, Counters counters) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.counters = counters;
+    }
+
+    synchronized PreparedStatement prepare(String sql, Connection owner) throws SQLException {
+        if (inUse.containsKey(sql)) {
+            // Same SQL open twice in one lease: the second one is not cached
+            return prepareTimed(sql);
+        }
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            counters.hits.increment();
+        } else {
+            statement = prepareTimed(sql);
+            statements.put(sql, statement);
+            evictOverCapacity();
+        }
+        CachedStatementHandler handler = new CachedStatementHandler(sql, statement, owner);
+        inUse.put(sql, handler);
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                handler);
+    }
+
+    /**
+     * Close wrappers the borrower forgot about; called when the connection goes back to the pool.
+     */
+    synchronized void releaseAll() {
+        for (CachedStatementHandler handler : new ArrayList<>(inUse.values())) {
+            handler.release();
+        }
+    }
+
+    /**
+     * Close every cached statement; called before the physical connection is closed.
+     */
+    synchronized void close() {
+        inUse.clear();
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+    }
+
+    synchronized int size() {
+        return statements.size();
+    }
+
+    private PreparedStatement prepareTimed(String sql) throws SQLException {
+        long start = System.nanoTime();
+        PreparedStatement statement = physical.prepareStatement(sql);
+        counters.prepareNanos.add(System.nanoTime() - start);
+        counters.misses.increment();
+        return statement;
+    }
+
+    private void evictOverCapacity() {
+        Iterator<Map.Entry<String, PreparedStatement>> it = statements.entrySet().iterator();
+        while (statements.size() > capacity && it.hasNext()) {
+            Map.Entry<String, PreparedStatement> eldest = it.next();
+            if (inUse.containsKey(eldest.getKey())) continue;
+            it.remove();
+            closeQuietly(eldest.getValue());
+            counters.evictions.increment();
+        }
+    }
+
+    private synchronized void checkIn(CachedStatementHandler handler) {
+        if (inUse.get(handler.sql) != handler) return;
+        inUse.remove(handler.sql);
+        try {
+            ResultSet open = handler.statement.getResultSet();
+            if (open != null) open.close();
+            handler.statement.clearParameters();
+            handler.statement.clearBatch();
+        } catch (SQLException e) {
+            // Unusable for the next caller
+            statements.remove(handler.sql);
+            closeQuietly(handler.statement);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * The borrower's view of a cached statement: {@code close()} checks it back into the cache.
+     */
+    private final class CachedStatementHandler implements InvocationHandler {
+        private final String sql;
+        private final PreparedStatement statement;
+        private final Connection owner;
+        private volatile boolean closed;
+
+        CachedStatementHandler(String sql, PreparedStatement statement, Connection owner) {
+            this.sql = sql;
+            this.statement = statement;
+            this.owner = owner;
+        }
+
+        void release() {
+            if (!closed) {
+                closed = true;
+                checkIn(this);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    release();
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return owner;
+                case "closeOnCompletion":
+                    // Would close the shared statement along with its result set
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + sql + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -21,12 +21,14 @@ import java.util.Map;
  */
 public class NotificationHandler implements HttpHandler {
     private final NotificationService notificationService;
-    private final Map<String, String> sessions;
+    private final SessionStore sessions;
+    private final NotificationHub hub;
     private final Gson gson;
 
-    public NotificationHandler(NotificationService notificationService, Map<String, String> sessions) {
+    public NotificationHandler(NotificationService notificationService, SessionStore sessions, NotificationHub hub) {
         this.notificationService = notificationService;
         this.sessions = sessions;
+        this.hub = hub;
         this.gson = new Gson();
     }
 
@@ -50,6 +52,8 @@ public class NotificationHandler implements HttpHandler {
                 handleGetNotifications(exchange);
             } else if (path.equals("/api/notifications/unread") && "GET".equals(method)) {
                 handleGetUnreadNotifications(exchange);
+            } else if (path.equals("/api/notifications/stream") && "GET".equals(method)) {
+                handleStream(exchange);
             } else if (path.equals("/api/notifications/count") && "GET".equals(method)) {
                 handleGetUnreadCount(exchange);
             } else if (path.equals("/api/notifications/mark-read") && "POST".equals(method)) {
@@ -108,6 +112,15 @@ public class NotificationHandler implements HttpHandler {
         sendJsonResponse(exchange, 200, response);
     }
 
+    private void handleStream(HttpExchange exchange) throws IOException {
+        String userId = getUserIdFromToken(exchange);
+        if (userId == null) {
+            sendJsonResponse(exchange, 401, Map.of("status", "error", "message", "Unauthorized"));
+            return;
+        }
+        hub.subscribe(exchange, userId);
+    }
+
     private void handleGetUnreadCount(HttpExchange exchange) throws IOException {
         String userId = getUserIdFromToken(exchange);
         if (userId == null) {
@@ -115,7 +128,11 @@ public class NotificationHandler implements HttpHandler {
             return;
         }
 
-        int count = notificationService.getUnreadCount(userId);
+        // Users with an open stream have their count in memory
+        int count = hub.getUnreadCount(userId);
+        if (count < 0) {
+            count = notificationService.getUnreadCount(userId);
+        }
         
         Map<String, Object> response = new HashMap<>();
         response.put("status", "success");
@@ -135,7 +152,7 @@ public class NotificationHandler implements HttpHandler {
         JsonObject json = gson.fromJson(body, JsonObject.class);
         String notificationId = json.get("notificationId").getAsString();
 
-        notificationService.markAsRead(notificationId);
+        notificationService.markAsRead(userId, notificationId);
         
         sendJsonResponse(exchange, 200, Map.of("status", "success", "message", "Notification marked as read"));
     }
@@ -214,7 +231,7 @@ public class NotificationHandler implements HttpHandler {
             }
         }
         
-        return token != null ? sessions.get(token) : null;
+        return sessions.getUserId(token);
     }
 
     private Map<String, String> parseQueryString(String query) {
@@ -0,0 +1,277 @@
+package com.isp.web;
+
+import com.google.gson.JsonObject;
+import com.isp.model.Notification;
+import com.isp.service.NotificationService;
+import com.isp.util.AppConfig;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * Fan-out hub pushing notifications to open dashboards as Server-Sent Events.
+ *
+ * Each connected user has a channel holding their open streams and an unread count. The count is
+ * loaded from the database once when the first stream opens and then kept current from
+ * {@link NotificationService} events, so neither the stream nor {@code /api/notifications/count}
+ * needs to query while the user is connected. Writes happen on a single hub thread, which also
+ * sends heartbeat comments so proxies keep idle streams open and dead clients are noticed.
+ */
+public class NotificationHub implements NotificationService.Listener, AutoCloseable {
+
+    /**
+     * Stream limits and heartbeat interval.
+     */
+    public record Settings(long heartbeatMillis, int maxPerUser, int maxClients) {
+
+        public Settings {
+            if (maxPerUser < 1) throw new IllegalArgumentException("maxPerUser must be at least 1");
+            if (maxClients < 1) throw new IllegalArgumentException("maxClients must be at least 1");
+        }
+
+        /**
+         * Settings from {@code isp.notifications.stream.*} system properties or
+         * {@code ISP_NOTIFICATIONS_STREAM_*} environment variables.
+         */
+        public static Settings fromConfig() {
+            return new Settings(
+                AppConfig.getLong("isp.notifications.stream.heartbeatMs", "ISP_NOTIFICATIONS_STREAM_HEARTBEAT_MS", 25_000),
+                AppConfig.getInt("isp.notifications.stream.maxPerUser", "ISP_NOTIFICATIONS_STREAM_MAX_PER_USER", 5),
+                AppConfig.getInt("isp.notifications.stream.maxClients", "ISP_NOTIFICATIONS_STREAM_MAX_CLIENTS", 20_000)
+            );
+        }
+    }
+
+    /**
+     * Point-in-time hub metrics.
+     */
+    public record Stats(int clients, int users, long opened, long rejected, long eventsSent, long writeFailures) {
+    }
+
+    private static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final Settings settings;
+    private final ToIntFunction<String> unreadLoader;
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger clients = new AtomicInteger();
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder eventsSent = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final ScheduledExecutorService dispatcher;
+
+    /**
+     * @param unreadLoader unread count from the database, used when a user's first stream opens
+     */
+    public NotificationHub(Settings settings, ToIntFunction<String> unreadLoader) {
+        this.settings = settings;
+        this.unreadLoader = unreadLoader;
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "isp-notification-hub");
+            t.setDaemon(true);
+            return t;
+        });
+        if (settings.heartbeatMillis() > 0) {
+            dispatcher.scheduleWithFixedDelay(this::heartbeat, settings.heartbeatMillis(),
+                    settings.heartbeatMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Open an event stream on the exchange. The exchange stays open after the handler returns.
+     */
+    public void subscribe(HttpExchange exchange, String userId) throws IOException {
+        if (clients.get() >= settings.maxClients()) {
+            rejected.increment();
+            exchange.getResponseHeaders().set("Retry-After", "30");
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.getResponseHeaders().set("X-Accel-Buffering", "no");
+        exchange.sendResponseHeaders(200, 0);
+        register(userId, exchange.getResponseBody(), exchange::close);
+    }
+
+    /**
+     * Attach an already-open stream; sends the retry hint and the current unread count.
+     */
+    Subscriber register(String userId, OutputStream out, Closeable onClose) {
+        Subscriber subscriber = new Subscriber(userId, out, onClose);
+        Channel channel = null;
+        while (channel == null) {
+            // Query the count before compute so the database call does not hold the map bin lock;
+            // it is only needed if this subscriber opens the user's channel
+            int unread = channels.containsKey(userId) ? -1 : unreadLoader.applyAsInt(userId);
+            // Add inside compute so a concurrent unregister cannot drop the channel we are joining
+            channel = channels.compute(userId, (id, existing) -> {
+                if (existing == null && unread < 0) return null; // channel closed meanwhile; load the count
+                Channel c = existing != null ? existing : new Channel(unread);
+                c.subscribers.add(subscriber);
+                return c;
+            });
+        }
+        clients.incrementAndGet();
+        opened.increment();
+        // Too many tabs for one user: drop the oldest stream
+        while (channel.subscribers.size() > settings.maxPerUser()) {
+            unregister(channel.subscribers.get(0));
+        }
+        subscriber.send(("retry: 5000\n\n" + countEvent(channel.unread.get())).getBytes(StandardCharsets.UTF_8));
+        return subscriber;
+    }
+
+    /**
+     * In-memory unread count for a connected user, or -1 if the user has no open stream.
+     */
+    public int getUnreadCount(String userId) {
+        Channel channel = channels.get(userId);
+        return channel == null ? -1 : channel.unread.get();
+    }
+
+    @Override
+    public void onCreated(Notification notification) {
+        Channel channel = channels.get(notification.getUserId());
+        if (channel == null) return;
+        int unread = notification.isRead() ? channel.unread.get() : channel.unread.incrementAndGet();
+        JsonObject data = new JsonObject();
+        data.addProperty("id", notification.getId());
+        data.addProperty("category", notification.getCategory());
+        data.addProperty("title", notification.getTitle());
+        data.addProperty("message", notification.getMessage());
+        data.addProperty("priority", notification.getPriority());
+        data.addProperty("createdAt", String.valueOf(notification.getCreatedAt()));
+        // JSON has no raw newlines, so the payload fits on one SSE data line
+        String event = "event: notification\ndata: " + data + "\n\n" + countEvent(unread);
+        publish(channel, event);
+    }
+
+    @Override
+    public void onRead(String userId, int count) {
+        Channel channel = channels.get(userId);
+        if (channel == null) return;
+        int unread = channel.unread.updateAndGet(n -> Math.max(0, n - count));
+        publish(channel, countEvent(unread));
+    }
+
+    /**
+     * Block until every event queued so far has been written.
+     */
+    void awaitDispatch() throws Exception {
+        dispatcher.submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+
+    public Stats getStats() {
+        return new Stats(clients.get(), channels.size(), opened.sum(), rejected.sum(), eventsSent.sum(), writeFailures.sum());
+    }
+
+    /**
+     * Close every stream and stop the hub thread.
+     */
+    @Override
+    public void close() {
+        dispatcher.shutdownNow();
+        for (Channel channel : channels.values()) {
+            for (Subscriber subscriber : channel.subscribers) {
+                unregister(subscriber);
+            }
+        }
+    }
+
+    private void publish(Channel channel, String event) {
+        byte[] bytes = event.getBytes(StandardCharsets.UTF_8);
+        try {
+            dispatcher.execute(() -> {
+                for (Subscriber subscriber : channel.subscribers) {
+                    if (subscriber.send(bytes)) eventsSent.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Hub is shutting down
+        }
+    }
+
+    private void heartbeat() {
+        for (Channel channel : channels.values()) {
+            for (Subscriber subscriber : channel.subscribers) {
+                subscriber.send(HEARTBEAT);
+            }
+        }
+    }
+
+    private void unregister(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) return;
+        clients.decrementAndGet();
+        channels.computeIfPresent(subscriber.userId, (id, channel) -> {
+            channel.subscribers.remove(subscriber);
+            // Forget the count once the user has no streams; it is reloaded on reconnect
+            return channel.subscribers.isEmpty() ? null : channel;
+        });
+        try {
+            subscriber.onClose.close();
+        } catch (IOException | RuntimeException ignored) {
+        }
+    }
+
+    private static String countEvent(int unread) {
+        return "event: count\ndata: {\"unreadCount\":" + unread + "}\n\n";
+    }
+
+    private static final class Channel {
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        final AtomicInteger unread;
+
+        Channel(int unread) {
+            this.unread = new AtomicInteger(unread);
+        }
+    }
+
+    final class Subscriber {
+        final String userId;
+        private final OutputStream out;
+        private final Closeable onClose;
+        final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(String userId, OutputStream out, Closeable onClose) {
+            this.userId = userId;
+            this.out = out;
+            this.onClose = onClose;
+        }
+
+        boolean send(byte[] bytes) {
+            if (closed.get()) return false;
+            try {
+                synchronized (this) {
+                    out.write(bytes);
+                    out.flush();
+                }
+                return true;
+            } catch (IOException e) {
+                writeFailures.increment();
+                unregister(this);
+                return false;
+            }
+        }
+
+        boolean isClosed() {
+            return closed.get();
+        }
+    }
+}
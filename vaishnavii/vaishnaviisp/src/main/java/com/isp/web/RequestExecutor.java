@@ -0,0 +1,168 @@
+package com.isp.web;
+
+import com.isp.util.AppConfig;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executor used by the HttpServer to run request handlers.
+ *
+ * Modes (system property {@code isp.http.executor} or env {@code ISP_HTTP_EXECUTOR}):
+ * <ul>
+ *   <li>{@code virtual} (default) - one virtual thread per request</li>
+ *   <li>{@code platform} - bounded pool of {@code isp.http.threads} threads with a queue of
+ *       {@code isp.http.queue} requests; when full the dispatcher thread runs the request itself</li>
+ *   <li>{@code direct} - run on the HttpServer dispatcher thread (the old behaviour)</li>
+ * </ul>
+ * Every mode tracks queued and in-flight request gauges.
+ */
+public class RequestExecutor implements Executor, AutoCloseable {
+
+    public enum Mode { VIRTUAL, PLATFORM, DIRECT }
+
+    /**
+     * Point-in-time executor gauges.
+     */
+    public record Stats(String mode,
+                        int queued,
+                        int inFlight,
+                        int peakInFlight,
+                        long completed,
+                        long failed,
+                        long callerRuns,
+                        int maxThreads,
+                        int queueCapacity) {
+    }
+
+    private final Mode mode;
+    private final ExecutorService delegate;
+    private final int maxThreads;
+    private final int queueCapacity;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+
+    public RequestExecutor(Mode mode, int maxThreads, int queueCapacity) {
+        this.mode = mode;
+        this.maxThreads = mode == Mode.PLATFORM ? maxThreads : 0;
+        this.queueCapacity = mode == Mode.PLATFORM ? queueCapacity : 0;
+        this.delegate = switch (mode) {
+            case VIRTUAL -> Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("isp-http-vt-", 0).factory());
+            case PLATFORM -> {
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                        maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(queueCapacity),
+                        platformThreads(),
+                        (task, executor) -> {
+                            callerRuns.increment();
+                            if (!executor.isShutdown()) {
+                                task.run();
+                            } else {
+                                queued.decrementAndGet();
+                            }
+                        });
+                pool.allowCoreThreadTimeOut(true);
+                yield pool;
+            }
+            case DIRECT -> null;
+        };
+    }
+
+    /**
+     * Build the executor selected by system property or environment variable.
+     */
+    public static RequestExecutor fromConfig() {
+        String value = AppConfig.get("isp.http.executor", "ISP_HTTP_EXECUTOR", "virtual");
+        Mode mode;
+        try {
+            mode = Mode.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("[WebServer] Unknown executor mode '" + value + "', using virtual");
+            mode = Mode.VIRTUAL;
+        }
+        int threads = AppConfig.getInt("isp.http.threads", "ISP_HTTP_THREADS",
+                Math.max(16, Runtime.getRuntime().availableProcessors() * 4));
+        int queue = AppConfig.getInt("isp.http.queue", "ISP_HTTP_QUEUE", 1000);
+        return new RequestExecutor(mode, threads, queue);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        queued.incrementAndGet();
+        Runnable task = () -> {
+            queued.decrementAndGet();
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                command.run();
+                completed.increment();
+            } catch (RuntimeException | Error e) {
+                failed.increment();
+                throw e;
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        };
+        if (delegate == null) {
+            task.run();
+        } else {
+            delegate.execute(task);
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public Stats getStats() {
+        return new Stats(
+            mode.name().toLowerCase(Locale.ROOT),
+            queued.get(),
+            inFlight.get(),
+            peakInFlight.get(),
+            completed.sum(),
+            failed.sum(),
+            callerRuns.sum(),
+            maxThreads,
+            queueCapacity
+        );
+    }
+
+    /**
+     * Stop accepting requests and wait briefly for in-flight ones to finish.
+     */
+    @Override
+    public void close() {
+        if (delegate == null) return;
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(5, TimeUnit.SECONDS)) {
+                delegate.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            delegate.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory platformThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "isp-http-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,237 @@
+package com.isp.web;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.isp.util.LatencyHistogram;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * HttpServer filter recording per-route request counts, status codes, bytes in/out and latency.
+ *
+ * Routes are labelled "METHOD /path" with id-like path segments collapsed to {id}, so
+ * /api/customers/cust-1 and /api/customers/cust-2 share one series. Non-API paths are
+ * labelled {static}.
+ */
+public class RequestMetrics extends Filter {
+
+    private static final int MAX_ROUTES = 500;
+    private static final String OVERFLOW_ROUTE = "OTHER";
+    // Route names never contain digits; ids (UUIDs, ULIDs, "cust-1", numbers) almost always do
+    private static final Pattern ID_SEGMENT = Pattern.compile(".*\\d.*|[A-Za-z0-9_-]{24,}");
+    private static final long[] PROMETHEUS_BUCKETS_MICROS = {
+        1_000, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+
+    private final Map<String, RouteStats> routes = new ConcurrentHashMap<>();
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        long start = System.nanoTime();
+        CountingInputStream in = new CountingInputStream(exchange.getRequestBody());
+        CountingOutputStream out = new CountingOutputStream(exchange.getResponseBody());
+        exchange.setStreams(in, out);
+        boolean failed = false;
+        try {
+            chain.doFilter(exchange);
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        } finally {
+            int status = exchange.getResponseCode();
+            if (status < 0) status = failed ? 500 : 0;
+            routeStats(exchange.getRequestMethod(), exchange.getRequestURI().getPath())
+                    .record(status, in.count, out.count, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Per-route request metrics";
+    }
+
+    /**
+     * Metrics for every route as JSON.
+     */
+    public JsonObject toJson() {
+        JsonArray array = new JsonArray();
+        for (Map.Entry<String, RouteStats> entry : new TreeMap<>(routes).entrySet()) {
+            RouteStats stats = entry.getValue();
+            JsonObject o = new JsonObject();
+            o.addProperty("route", entry.getKey());
+            o.addProperty("count", stats.latency.getCount());
+            JsonObject statuses = new JsonObject();
+            new TreeMap<>(stats.statuses).forEach((code, n) -> statuses.addProperty(String.valueOf(code), n.sum()));
+            o.add("status", statuses);
+            o.addProperty("bytesIn", stats.bytesIn.sum());
+            o.addProperty("bytesOut", stats.bytesOut.sum());
+            JsonObject latency = new JsonObject();
+            latency.addProperty("mean", round(stats.latency.getMeanMillis()));
+            latency.addProperty("p50", round(stats.latency.getPercentileMillis(50)));
+            latency.addProperty("p95", round(stats.latency.getPercentileMillis(95)));
+            latency.addProperty("p99", round(stats.latency.getPercentileMillis(99)));
+            latency.addProperty("p999", round(stats.latency.getPercentileMillis(99.9)));
+            latency.addProperty("max", round(stats.latency.getMaxMillis()));
+            o.add("latencyMs", latency);
+            array.add(o);
+        }
+        JsonObject resp = new JsonObject();
+        resp.add("routes", array);
+        return resp;
+    }
+
+    /**
+     * Metrics for every route in Prometheus text exposition format.
+     */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        Map<String, RouteStats> sorted = new TreeMap<>(routes);
+
+        sb.append("# HELP isp_http_requests_total HTTP requests by route and status code.\n");
+        sb.append("# TYPE isp_http_requests_total counter\n");
+        sorted.forEach((route, stats) -> new TreeMap<>(stats.statuses).forEach((code, n) ->
+                sb.append("isp_http_requests_total{").append(labels(route)).append(",status=\"").append(code)
+                  .append("\"} ").append(n.sum()).append('\n')));
+
+        sb.append("# HELP isp_http_request_bytes_total Request body bytes received by route.\n");
+        sb.append("# TYPE isp_http_request_bytes_total counter\n");
+        sorted.forEach((route, stats) -> sb.append("isp_http_request_bytes_total{").append(labels(route))
+                .append("} ").append(stats.bytesIn.sum()).append('\n'));
+
+        sb.append("# HELP isp_http_response_bytes_total Response body bytes sent by route.\n");
+        sb.append("# TYPE isp_http_response_bytes_total counter\n");
+        sorted.forEach((route, stats) -> sb.append("isp_http_response_bytes_total{").append(labels(route))
+                .append("} ").append(stats.bytesOut.sum()).append('\n'));
+
+        sb.append("# HELP isp_http_request_duration_seconds Request latency by route.\n");
+        sb.append("# TYPE isp_http_request_duration_seconds histogram\n");
+        sorted.forEach((route, stats) -> {
+            String labels = labels(route);
+            for (long bucket : PROMETHEUS_BUCKETS_MICROS) {
+                sb.append("isp_http_request_duration_seconds_bucket{").append(labels).append(",le=\"")
+                  .append(bucket / 1_000_000.0).append("\"} ").append(stats.latency.countAtOrBelow(bucket)).append('\n');
+            }
+            sb.append("isp_http_request_duration_seconds_bucket{").append(labels).append(",le=\"+Inf\"} ")
+              .append(stats.latency.getCount()).append('\n');
+            sb.append("isp_http_request_duration_seconds_sum{").append(labels).append("} ")
+              .append(stats.latency.getSumMillis() / 1_000.0).append('\n');
+            sb.append("isp_http_request_duration_seconds_count{").append(labels).append("} ")
+              .append(stats.latency.getCount()).append('\n');
+        });
+
+        sb.append("# HELP isp_http_request_duration_quantile_seconds Request latency percentiles by route.\n");
+        sb.append("# TYPE isp_http_request_duration_quantile_seconds gauge\n");
+        sorted.forEach((route, stats) -> {
+            for (double q : new double[] {50, 95, 99, 99.9}) {
+                sb.append("isp_http_request_duration_quantile_seconds{").append(labels(route)).append(",quantile=\"")
+                  .append(q / 100).append("\"} ").append(stats.latency.getPercentileMillis(q) / 1_000.0).append('\n');
+            }
+        });
+        return sb.toString();
+    }
+
+    static String routeLabel(String method, String path) {
+        StringBuilder sb = new StringBuilder(method.toUpperCase(Locale.ROOT)).append(' ');
+        if (path == null || path.isEmpty() || "/".equals(path)) {
+            return sb.append('/').toString();
+        }
+        // Static assets share one series
+        if (!path.startsWith("/api/")) {
+            return sb.append("/{static}").toString();
+        }
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) continue;
+            sb.append('/').append(ID_SEGMENT.matcher(segment).matches() ? "{id}" : segment);
+        }
+        return sb.toString();
+    }
+
+    private RouteStats routeStats(String method, String path) {
+        String label = routeLabel(method, path);
+        RouteStats stats = routes.get(label);
+        if (stats != null) return stats;
+        if (routes.size() >= MAX_ROUTES) {
+            return routes.computeIfAbsent(OVERFLOW_ROUTE, k -> new RouteStats());
+        }
+        return routes.computeIfAbsent(label, k -> new RouteStats());
+    }
+
+    private static String labels(String route) {
+        int space = route.indexOf(' ');
+        String method = space > 0 ? route.substring(0, space) : "";
+        String path = space > 0 ? route.substring(space + 1) : route;
+        return "method=\"" + method + "\",route=\"" + path.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    private static final class RouteStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        final LongAdder bytesIn = new LongAdder();
+        final LongAdder bytesOut = new LongAdder();
+
+        void record(int status, long in, long out, long nanos) {
+            statuses.computeIfAbsent(status, k -> new LongAdder()).increment();
+            bytesIn.add(in);
+            bytesOut.add(out);
+            latency.recordNanos(nanos);
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        volatile long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.isp.web;
+
+import com.isp.model.User;
+import com.isp.util.AppConfig;
+
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory session store keyed by opaque bearer tokens.
+ *
+ * Each session caches the signed-in user's {@link Principal} (id, role, profile id), so
+ * authorization checks are a single map lookup with no database access. Sessions expire after
+ * {@code idleTimeoutMillis} without use (sliding) and after {@code maxLifetimeMillis} regardless
+ * of use (absolute). A background sweeper removes expired sessions, and a user holding more than
+ * {@code maxPerUser} sessions loses the oldest one.
+ */
+public class SessionStore implements AutoCloseable {
+
+    private static final int TOKEN_BYTES = 32;
+    // Skip the lastAccess write when the session was touched very recently
+    private static final long TOUCH_GRANULARITY_MILLIS = 1_000;
+
+    /**
+     * Signed-in user as cached for the lifetime of a session.
+     */
+    public record Principal(String userId, String username, String email, User.Role role, String profileId) {
+
+        public boolean isAdmin() {
+            return role == User.Role.ADMIN;
+        }
+
+        public static Principal of(User user, String profileId) {
+            return new Principal(user.getId(), user.getUsername(), user.getEmail(), user.getRole(), profileId);
+        }
+    }
+
+    /**
+     * Expiry and sizing settings.
+     */
+    public record Settings(long idleTimeoutMillis,
+                           long maxLifetimeMillis,
+                           int maxPerUser,
+                           long sweepIntervalMillis) {
+
+        public Settings {
+            if (idleTimeoutMillis <= 0) throw new IllegalArgumentException("idleTimeoutMillis must be positive");
+            if (maxLifetimeMillis <= 0) throw new IllegalArgumentException("maxLifetimeMillis must be positive");
+            if (maxPerUser < 1) throw new IllegalArgumentException("maxPerUser must be at least 1");
+        }
+
+        /**
+         * Settings from {@code isp.session.*} system properties or {@code ISP_SESSION_*} environment variables.
+         */
+        public static Settings fromConfig() {
+            return new Settings(
+                AppConfig.getLong("isp.session.idleTimeoutMs", "ISP_SESSION_IDLE_TIMEOUT_MS", TimeUnit.MINUTES.toMillis(30)),
+                AppConfig.getLong("isp.session.maxLifetimeMs", "ISP_SESSION_MAX_LIFETIME_MS", TimeUnit.HOURS.toMillis(12)),
+                AppConfig.getInt("isp.session.maxPerUser", "ISP_SESSION_MAX_PER_USER", 5),
+                AppConfig.getLong("isp.session.sweepIntervalMs", "ISP_SESSION_SWEEP_INTERVAL_MS", 60_000)
+            );
+        }
+    }
+
+    /**
+     * Point-in-time session metrics.
+     */
+    public record Stats(int active, int users, long created, long expired, long evicted, long invalidated) {
+    }
+
+    private static final class Session {
+        final String token;
+        final Principal principal;
+        final long createdAt;
+        volatile long lastAccess;
+
+        Session(String token, Principal principal, long now) {
+            this.token = token;
+            this.principal = principal;
+            this.createdAt = now;
+            this.lastAccess = now;
+        }
+    }
+
+    private final Settings settings;
+    private final LongSupplier clock;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> byToken = new ConcurrentHashMap<>();
+    // userId -> tokens, oldest first; only mutated inside compute() so each deque is guarded by its map bin
+    private final Map<String, Deque<String>> byUser = new ConcurrentHashMap<>();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder invalidated = new LongAdder();
+    private final ScheduledExecutorService sweeper;
+
+    public SessionStore(Settings settings) {
+        this(settings, System::currentTimeMillis, true);
+    }
+
+    SessionStore(Settings settings, LongSupplier clock, boolean startSweeper) {
+        this.settings = settings;
+        this.clock = clock;
+        if (startSweeper && settings.sweepIntervalMillis() > 0) {
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "isp-session-sweeper");
+                t.setDaemon(true);
+                return t;
+            });
+            sweeper.scheduleWithFixedDelay(this::sweepSafely, settings.sweepIntervalMillis(),
+                    settings.sweepIntervalMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            this.sweeper = null;
+        }
+    }
+
+    public static SessionStore fromConfig() {
+        return new SessionStore(Settings.fromConfig());
+    }
+
+    /**
+     * Start a session for the principal and return its token.
+     */
+    public String create(Principal principal) {
+        String token = newToken();
+        Session session = new Session(token, principal, clock.getAsLong());
+        byToken.put(token, session);
+        created.increment();
+        byUser.compute(principal.userId(), (userId, tokens) -> {
+            if (tokens == null) tokens = new ArrayDeque<>();
+            tokens.addLast(token);
+            while (tokens.size() > settings.maxPerUser()) {
+                if (byToken.remove(tokens.pollFirst()) != null) evicted.increment();
+            }
+            return tokens;
+        });
+        return token;
+    }
+
+    /**
+     * Principal for a live session, or null if the token is unknown or expired. Extends the idle deadline.
+     */
+    public Principal get(String token) {
+        if (token == null) return null;
+        Session session = byToken.get(token);
+        if (session == null) return null;
+        long now = clock.getAsLong();
+        if (isExpired(session, now)) {
+            if (remove(session)) expired.increment();
+            return null;
+        }
+        if (now - session.lastAccess >= TOUCH_GRANULARITY_MILLIS) {
+            session.lastAccess = now;
+        }
+        return session.principal;
+    }
+
+    /**
+     * Id of the signed-in user, or null.
+     */
+    public String getUserId(String token) {
+        Principal principal = get(token);
+        return principal == null ? null : principal.userId();
+    }
+
+    /**
+     * End a single session (logout).
+     */
+    public void invalidate(String token) {
+        if (token == null) return;
+        Session session = byToken.get(token);
+        if (session != null && remove(session)) invalidated.increment();
+    }
+
+    /**
+     * End every session held by a user, e.g. after a password reset or role change.
+     */
+    public void invalidateUser(String userId) {
+        Deque<String> tokens = byUser.remove(userId);
+        if (tokens == null) return;
+        // Detached from byUser, so nothing else mutates the deque now
+        for (String token : tokens) {
+            if (byToken.remove(token) != null) invalidated.increment();
+        }
+    }
+
+    /**
+     * Remove every expired session. Returns the number removed.
+     */
+    public int sweep() {
+        long now = clock.getAsLong();
+        int removed = 0;
+        for (Session session : byToken.values()) {
+            if (isExpired(session, now) && remove(session)) {
+                expired.increment();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return byToken.size();
+    }
+
+    public Stats getStats() {
+        return new Stats(byToken.size(), byUser.size(), created.sum(), expired.sum(), evicted.sum(), invalidated.sum());
+    }
+
+    @Override
+    public void close() {
+        if (sweeper != null) sweeper.shutdownNow();
+    }
+
+    private boolean isExpired(Session session, long now) {
+        return now - session.lastAccess >= settings.idleTimeoutMillis()
+                || now - session.createdAt >= settings.maxLifetimeMillis();
+    }
+
+    private boolean remove(Session session) {
+        if (!byToken.remove(session.token, session)) return false;
+        byUser.computeIfPresent(session.principal.userId(), (userId, tokens) -> {
+            tokens.remove(session.token);
+            return tokens.isEmpty() ? null : tokens;
+        });
+        return true;
+    }
+
+    private void sweepSafely() {
+        try {
+            int removed = sweep();
+            if (removed > 0) {
+                System.out.println("[SESSION] Swept " + removed + " expired session(s), " + byToken.size() + " active");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("[SESSION] Sweep failed: " + e.getMessage());
+        }
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -17,7 +17,6 @@ import com.sun.net.httpserver.HttpServer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.ByteArrayOutputStream;
 import java.net.InetSocketAddress;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
@@ -27,13 +26,6 @@ import java.util.regex.Pattern;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
-// PDFBox (for invoice generation)
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
-
 /**
  * Minimal HTTP server (no external deps) exposing REST-like endpoints for the ISP system.
  * This is a lightweight alternative to full Spring Boot, suitable for demo purposes.
@@ -45,7 +37,13 @@ public class WebServer {
     private final HotspotService hotspotService;
     private final BillingService billingService;
     private com.sun.net.httpserver.HttpServer httpServer;
-    private final java.util.Map<String,String> sessions = new java.util.concurrent.ConcurrentHashMap<>(); // token -> userId
+    private RequestExecutor requestExecutor;
+    private final RequestMetrics requestMetrics = new RequestMetrics();
+    private final SessionStore sessions = SessionStore.fromConfig();
+    private final NotificationHub notificationHub;
+    private final InvoiceRenderer invoiceRenderer = new InvoiceRenderer(InvoiceRenderer.Settings.fromConfig());
+    private final com.isp.repo.InvoiceRepository invoiceRepo;
+    private final InvoiceBatchJob invoiceBatchJob;
     private final java.util.Map<String,String> otpStore = new java.util.concurrent.ConcurrentHashMap<>(); // email -> OTP
     private final java.util.Map<String,Long> otpExpiry = new java.util.concurrent.ConcurrentHashMap<>(); // email -> expiry time
     private final com.isp.service.UserService userService;
@@ -57,6 +55,9 @@ public class WebServer {
     private com.isp.repo.UsageAlertRepository usageAlertRepo;
     private com.isp.repo.DailyUsageRepository dailyUsageRepo;
     private com.isp.repo.SpeedTestRepository speedTestRepo;
+    private DailyUsageRollup dailyUsageRollup;
+    private UsageThresholdEngine usageThresholds;
+    private final DeviceConnectionRepository deviceRepo;
 
     public WebServer() {
         // Initialize database schema first
@@ -66,7 +67,8 @@ public class WebServer {
         CustomerRepository customerRepo = new CustomerRepository();
         UsageRepository usageRepo = new UsageRepository();
         TicketRepository ticketRepo = new TicketRepository();
-        DeviceConnectionRepository deviceRepo = new DeviceConnectionRepository();
+        this.deviceRepo = new DeviceConnectionRepository(com.isp.util.DatabaseConnection::getConnection,
+                DeviceConnectionRepository.Settings.fromConfig());
         this.customerService = new CustomerService(customerRepo);
         this.usageService = new UsageService(usageRepo);
         this.ticketService = new TicketService(ticketRepo);
@@ -81,6 +83,9 @@ public class WebServer {
         com.isp.repo.DataPlanRepository planRepo = new com.isp.repo.DataPlanRepository();
         this.dataPlanService = new com.isp.service.DataPlanService(planRepo);
         this.dataPlanService.initializeDefaultPlans();
+        this.invoiceRepo = new com.isp.repo.InvoiceRepository();
+        InvoiceNumberService invoiceNumbers = new InvoiceNumberService(new com.isp.repo.SequenceRepository(), InvoiceNumberService.Settings.fromConfig());
+        this.invoiceBatchJob = new InvoiceBatchJob(profileRepo::findBillablePage, invoiceRepo, invoiceNumbers, InvoiceBatchJob.Settings.fromConfig());
         // Initialize TicketEnhancedService
         com.isp.repo.TicketEnhancedRepository ticketEnhancedRepo = new com.isp.repo.TicketEnhancedRepository();
         this.ticketEnhancedService = new com.isp.service.TicketEnhancedService(ticketEnhancedRepo, emailService);
@@ -91,6 +96,8 @@ public class WebServer {
         com.isp.repo.NotificationPreferencesRepository preferencesRepo = new com.isp.repo.NotificationPreferencesRepository(dbConn);
         com.isp.service.SmsService smsService = new com.isp.service.SmsService();
         this.notificationService = new com.isp.service.NotificationService(notificationRepo, preferencesRepo, userRepo, emailService, smsService);
+        this.notificationHub = new NotificationHub(NotificationHub.Settings.fromConfig(), notificationService::getUnreadCount);
+        notificationService.addListener(notificationHub);
 
         // Seed demo users with real email addresses
         try {
@@ -126,6 +133,19 @@ public class WebServer {
         // Initialize repositories for usage monitoring
         this.usageAlertRepo = new com.isp.repo.UsageAlertRepository();
         this.dailyUsageRepo = new com.isp.repo.DailyUsageRepository();
+        this.dailyUsageRollup = new DailyUsageRollup(dailyUsageRepo, DailyUsageRollup.Settings.fromConfig());
+        usageService.addListener(dailyUsageRollup);
+        hotspotService.addListener(dailyUsageRollup);
+        this.usageThresholds = UsageThresholdEngine.create(profileRepo::findById, preferencesRepo::findByUserId,
+                dailyUsageRepo, usageAlertRepo, notificationService::sendUsageAlert, UsageThresholdEngine.Settings.fromConfig());
+        usageService.addListener(usageThresholds);
+        hotspotService.addListener(usageThresholds);
+        notificationService.addListener(new com.isp.service.NotificationService.Listener() {
+            @Override
+            public void onPreferencesChanged(String userId) {
+                profileRepo.findByUserId(userId).ifPresent(profile -> usageThresholds.invalidate(profile.getId()));
+            }
+        });
         this.speedTestRepo = new com.isp.repo.SpeedTestRepository();
         
         // Initialize sample usage data
@@ -172,7 +192,7 @@ public class WebServer {
             LocalDateTime now = LocalDateTime.now();
             
             for (int i = 0; i < 3; i++) {
-                String deviceId = java.util.UUID.randomUUID().toString();
+                String deviceId = com.isp.util.IdGenerator.generate();
                 LocalDateTime connectTime = now.minusHours(i * 2 + 1);
                 LocalDateTime disconnectTime = activeStatus[i] ? null : connectTime.plusMinutes(35 + i * 10);
                 
@@ -248,7 +268,7 @@ public class WebServer {
                 int devices = 2 + random.nextInt(3);  // 2-4 devices
                 
                 com.isp.model.DailyUsage usage = new com.isp.model.DailyUsage(
-                    java.util.UUID.randomUUID().toString(),
+                    com.isp.util.IdGenerator.generate(),
                     customerId,
                     date,
                     baseUsage,
@@ -265,7 +285,7 @@ public class WebServer {
             
             // Create a speed test result
             com.isp.model.SpeedTest speedTest = new com.isp.model.SpeedTest(
-                java.util.UUID.randomUUID().toString(),
+                com.isp.util.IdGenerator.generate(),
                 customerId,
                 LocalDateTime.now(),
                 45.8 + (random.nextDouble() * 20),  // 45-65 Mbps download
@@ -294,26 +314,49 @@ public class WebServer {
         System.out.println("[WebServer] Binding HttpServer to port: " + port);
 
     // Static UI at root: serve files from src/main/resources/public
-    server.createContext("/", new StaticHandler("/public", "index.html"));
+    route(server, "/", new StaticHandler("/public", "index.html"));
 
-        server.createContext("/api/health", exchange -> ok(exchange, json("status", "ok")));
+        route(server, "/api/health", exchange -> {
+            com.google.gson.JsonObject resp = new com.google.gson.JsonObject();
+            resp.addProperty("status", "ok");
+            resp.add("executor", new com.google.gson.Gson().toJsonTree(requestExecutor.getStats()));
+            com.isp.util.ConnectionPool.Stats poolStats = com.isp.util.DatabaseConnection.getPoolStats();
+            if (poolStats != null) {
+                resp.add("dbPool", new com.google.gson.Gson().toJsonTree(poolStats));
+            }
+            com.isp.service.MailDispatcher.Stats mailStats = emailService.getDispatcherStats();
+            if (mailStats != null) {
+                resp.add("mail", new com.google.gson.Gson().toJsonTree(mailStats));
+            }
+            resp.add("sessions", new com.google.gson.Gson().toJsonTree(sessions.getStats()));
+            resp.add("notificationStreams", new com.google.gson.Gson().toJsonTree(notificationHub.getStats()));
+            resp.add("notificationCache", new com.google.gson.Gson().toJsonTree(notificationService.getCacheStats()));
+            resp.add("invoices", new com.google.gson.Gson().toJsonTree(invoiceRenderer.getStats()));
+            resp.add("invoiceBatch", new com.google.gson.Gson().toJsonTree(invoiceBatchJob.getProgress()));
+            resp.add("usageIngest", new com.google.gson.Gson().toJsonTree(usageService.getIngestStats()));
+            resp.add("dailyUsageRollup", new com.google.gson.Gson().toJsonTree(dailyUsageRollup.getStats()));
+            resp.add("usageAlerts", new com.google.gson.Gson().toJsonTree(usageThresholds.getStats()));
+            resp.add("devices", new com.google.gson.Gson().toJsonTree(deviceRepo.getStats()));
+            setJson(exchange);
+            ok(exchange, resp.toString());
+        });
 
         // Customers
-        server.createContext("/api/customers", new CustomersHandler());
+        route(server, "/api/customers", new CustomersHandler());
         // Usage (record & query)
-        server.createContext("/api/usage", new UsageHandler());
+        route(server, "/api/usage", new UsageHandler());
         // Tickets
-        server.createContext("/api/tickets", new TicketsHandler());
+        route(server, "/api/tickets", new TicketsHandler());
         // Hotspot
-        server.createContext("/api/hotspot", new HotspotHandler());
+        route(server, "/api/hotspot", new HotspotHandler());
         // Billing
-        server.createContext("/api/billing", new BillingHandler());
+        route(server, "/api/billing", new BillingHandler());
         
         // Notifications
-        server.createContext("/api/notifications", new com.isp.web.NotificationHandler(notificationService, sessions));
+        route(server, "/api/notifications", new com.isp.web.NotificationHandler(notificationService, sessions, notificationHub));
 
         // Auth endpoints
-        server.createContext("/api/auth/register", exchange -> {
+        route(server, "/api/auth/register", exchange -> {
             try {
                 if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) { methodNotAllowed(exchange); return; }
                 String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
@@ -347,7 +390,7 @@ public class WebServer {
             }
         });
 
-        server.createContext("/api/auth/login", exchange -> {
+        route(server, "/api/auth/login", exchange -> {
             try {
                 if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) { methodNotAllowed(exchange); return; }
                 String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
@@ -358,8 +401,10 @@ public class WebServer {
                 setJson(exchange);
                 if (opt.isPresent()) {
                     com.isp.model.User u = opt.get();
-                    String token = java.util.Base64.getUrlEncoder().withoutPadding().encodeToString((u.getId()+":"+System.currentTimeMillis()).getBytes(java.nio.charset.StandardCharsets.UTF_8));
-                    sessions.put(token, u.getId());
+                    // Profile id is resolved once here so per-request checks never hit the database
+                    String profileId = u.getRole() == com.isp.model.User.Role.CUSTOMER
+                            ? profileService.findByUserId(u.getId()).map(com.isp.model.CustomerProfile::getId).orElse(null) : null;
+                    String token = sessions.create(SessionStore.Principal.of(u, profileId));
                     com.google.gson.JsonObject resp = new com.google.gson.JsonObject();
                     resp.addProperty("status","success"); resp.addProperty("token", token); resp.addProperty("username", u.getUsername()); resp.addProperty("role", u.getRole().name()); resp.addProperty("userId", u.getId());
                     send(exchange,200, resp.toString());
@@ -378,7 +423,7 @@ public class WebServer {
             }
         });
 
-        server.createContext("/api/auth/logout", exchange -> {
+        route(server, "/api/auth/logout", exchange -> {
             String token = null;
             java.util.List<String> auth = exchange.getRequestHeaders().getOrDefault("Authorization", java.util.List.of());
             if (!auth.isEmpty()) {
@@ -387,7 +432,7 @@ public class WebServer {
             if (token==null) {
                 String q = exchange.getRequestURI().getQuery(); if (q!=null) for (String p: q.split("&")) { String[] kv = p.split("=",2); if (kv.length==2 && kv[0].equals("token")) token = kv[1]; }
             }
-            if (token!=null) sessions.remove(token);
+            sessions.invalidate(token);
             setJson(exchange);
             com.google.gson.JsonObject _r6 = new com.google.gson.JsonObject();
             _r6.addProperty("status","success");
@@ -395,7 +440,7 @@ public class WebServer {
         });
 
         // Forgot Password - Request OTP
-        server.createContext("/api/auth/forgot-password", exchange -> {
+        route(server, "/api/auth/forgot-password", exchange -> {
             try {
                 if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) { methodNotAllowed(exchange); return; }
                 String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
@@ -450,7 +495,7 @@ public class WebServer {
         });
 
         // Reset Password - Verify OTP and Update Password
-        server.createContext("/api/auth/reset-password", exchange -> {
+        route(server, "/api/auth/reset-password", exchange -> {
             try {
                 if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) { methodNotAllowed(exchange); return; }
                 String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
@@ -499,6 +544,7 @@ public class WebServer {
                     // Clear OTP
                     otpStore.remove(email);
                     otpExpiry.remove(email);
+                    userService.findByEmail(email).ifPresent(u -> sessions.invalidateUser(u.getId()));
                     
                     System.out.println("[PASSWORD RESET] Password updated successfully for: " + email);
                     
@@ -525,12 +571,12 @@ public class WebServer {
         });
 
         // Customer profile / plans
-        server.createContext("/api/customer/profile", exchange -> {
+        route(server, "/api/customer/profile", exchange -> {
             String token = null;
             java.util.List<String> auth = exchange.getRequestHeaders().getOrDefault("Authorization", java.util.List.of());
             if (!auth.isEmpty()) { String v = auth.get(0); if (v.toLowerCase().startsWith("bearer ")) token = v.substring(7).trim(); }
             if (token==null) { String q = exchange.getRequestURI().getQuery(); if (q!=null) for (String p: q.split("&")) { String[] kv = p.split("=",2); if (kv.length==2 && kv[0].equals("token")) token = kv[1]; } }
-            String userId = token==null?null:sessions.get(token);
+            SessionStore.Principal principal = sessions.get(token); String userId = principal==null?null:principal.userId();
             if (userId==null) { setJson(exchange); com.google.gson.JsonObject _r7 = new com.google.gson.JsonObject(); _r7.addProperty("status","error"); _r7.addProperty("message","Unauthorized"); send(exchange,401, _r7.toString()); return; }
             java.util.Optional<com.isp.model.CustomerProfile> prof = profileService.findByUserId(userId);
             com.google.gson.JsonObject resp = new com.google.gson.JsonObject(); resp.addProperty("status","success");
@@ -543,7 +589,7 @@ public class WebServer {
             setJson(exchange); send(exchange,200, resp.toString());
         });
 
-        server.createContext("/api/customer/plans", exchange -> {
+        route(server, "/api/customer/plans", exchange -> {
             java.util.Collection<com.isp.model.DataPlan> plans = dataPlanService.listAll();
             com.google.gson.JsonArray arr = new com.google.gson.JsonArray();
             for (com.isp.model.DataPlan p : plans) {
@@ -555,11 +601,11 @@ public class WebServer {
             setJson(exchange); send(exchange,200, resp.toString());
         });
 
-        server.createContext("/api/customer/select-plan", exchange -> {
+        route(server, "/api/customer/select-plan", exchange -> {
             if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) { methodNotAllowed(exchange); return; }
             String token = null; java.util.List<String> auth = exchange.getRequestHeaders().getOrDefault("Authorization", java.util.List.of()); if (!auth.isEmpty()) { String v = auth.get(0); if (v.toLowerCase().startsWith("bearer ")) token = v.substring(7).trim(); }
             if (token==null) { String q = exchange.getRequestURI().getQuery(); if (q!=null) for (String p: q.split("&")) { String[] kv = p.split("=",2); if (kv.length==2 && kv[0].equals("token")) token = kv[1]; } }
-            String userId = token==null?null:sessions.get(token);
+            SessionStore.Principal principal = sessions.get(token); String userId = principal==null?null:principal.userId();
             if (userId==null) { setJson(exchange); com.google.gson.JsonObject _r11 = new com.google.gson.JsonObject(); _r11.addProperty("status","error"); _r11.addProperty("message","Unauthorized"); send(exchange,401, _r11.toString()); return; }
             String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
             try {
@@ -569,31 +615,28 @@ public class WebServer {
                 System.out.println("[PLAN SELECTION] Plan ID: " + planId);
                 java.util.Optional<com.isp.model.DataPlan> planOpt = dataPlanService.findById(planId);
                 if (planOpt.isEmpty()) { System.err.println("[PLAN SELECTION] ERROR: Plan not found"); setJson(exchange); com.google.gson.JsonObject _r8 = new com.google.gson.JsonObject(); _r8.addProperty("status","error"); _r8.addProperty("message","Plan not found"); send(exchange,404, _r8.toString()); return; }
-                java.util.Optional<com.isp.model.User> uOpt = userService.findById(userId);
-                String email = uOpt.map(com.isp.model.User::getEmail).orElse("");
-                String uname = uOpt.map(com.isp.model.User::getUsername).orElse("");
+                String email = principal.email() != null ? principal.email() : "";
+                String uname = principal.username() != null ? principal.username() : "";
                 System.out.println("[PLAN SELECTION] Customer: " + uname + " (" + email + ")");
-                java.util.Optional<com.isp.model.CustomerProfile> profOpt = profileService.findByUserId(userId);
-                if (profOpt.isEmpty()) { System.err.println("[PLAN SELECTION] ERROR: Profile not found"); setJson(exchange); com.google.gson.JsonObject _r12 = new com.google.gson.JsonObject(); _r12.addProperty("status","error"); _r12.addProperty("message","Profile not found"); send(exchange,404, _r12.toString()); return; }
+                if (principal.profileId() == null) { System.err.println("[PLAN SELECTION] ERROR: Profile not found"); setJson(exchange); com.google.gson.JsonObject _r12 = new com.google.gson.JsonObject(); _r12.addProperty("status","error"); _r12.addProperty("message","Profile not found"); send(exchange,404, _r12.toString()); return; }
                 System.out.println("[PLAN SELECTION] Calling selectPlan service...");
-                profileService.selectPlan(profOpt.get().getId(), planOpt.get(), email, uname);
+                profileService.selectPlan(principal.profileId(), planOpt.get(), email, uname);
+                usageThresholds.invalidate(principal.profileId());
                 System.out.println("[PLAN SELECTION] Plan selection completed successfully");
                 setJson(exchange); com.google.gson.JsonObject _r9 = new com.google.gson.JsonObject(); _r9.addProperty("status","success"); _r9.addProperty("message","Plan selected and confirmation email sent!"); send(exchange,200, _r9.toString());
             } catch (Exception e) { System.err.println("[PLAN SELECTION] ERROR: " + e.getMessage()); e.printStackTrace(); setJson(exchange); com.google.gson.JsonObject _r10 = new com.google.gson.JsonObject(); _r10.addProperty("status","error"); _r10.addProperty("message","Invalid request: " + e.getMessage()); send(exchange,400, _r10.toString()); }
         });
 
         // Customer devices dashboard
-        server.createContext("/api/customer/devices", exchange -> {
+        route(server, "/api/customer/devices", exchange -> {
             String token = null; java.util.List<String> auth = exchange.getRequestHeaders().getOrDefault("Authorization", java.util.List.of()); if (!auth.isEmpty()) { String v = auth.get(0); if (v.toLowerCase().startsWith("bearer ")) token = v.substring(7).trim(); }
             if (token==null) { String q = exchange.getRequestURI().getQuery(); if (q!=null) for (String p: q.split("&")) { String[] kv = p.split("=",2); if (kv.length==2 && kv[0].equals("token")) token = kv[1]; } }
-            String userId = token==null?null:sessions.get(token);
+            SessionStore.Principal principal = sessions.get(token); String userId = principal==null?null:principal.userId();
             if (userId==null) { setJson(exchange); com.google.gson.JsonObject _r13 = new com.google.gson.JsonObject(); _r13.addProperty("status","error"); _r13.addProperty("message","Unauthorized"); send(exchange,401, _r13.toString()); return; }
             
-            // Get customer profile to find customerId
-            java.util.Optional<com.isp.model.CustomerProfile> profOpt = profileService.findByUserId(userId);
-            if (profOpt.isEmpty()) { setJson(exchange); com.google.gson.JsonObject _r14 = new com.google.gson.JsonObject(); _r14.addProperty("status","error"); _r14.addProperty("message","Profile not found"); send(exchange,404, _r14.toString()); return; }
-            
-            String customerId = profOpt.get().getId();
+            // Customer id is the profile id cached on the session
+            String customerId = principal.profileId();
+            if (customerId == null) { setJson(exchange); com.google.gson.JsonObject _r14 = new com.google.gson.JsonObject(); _r14.addProperty("status","error"); _r14.addProperty("message","Profile not found"); send(exchange,404, _r14.toString()); return; }
             // Get device history for this customer
             java.util.List<DeviceConnection> devices = hotspotService.getDeviceHistory(customerId);
             
@@ -624,12 +667,12 @@ public class WebServer {
         });
 
         // Enhanced tickets with messaging
-        server.createContext("/api/tickets-enhanced/create", exchange -> {
+        route(server, "/api/tickets-enhanced/create", exchange -> {
             if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) { methodNotAllowed(exchange); return; }
             String token = null; java.util.List<String> auth = exchange.getRequestHeaders().getOrDefault("Authorization", java.util.List.of()); if (!auth.isEmpty()) { String v = auth.get(0); if (v.toLowerCase().startsWith("bearer ")) token = v.substring(7).trim(); }
             if (token==null) { String q = exchange.getRequestURI().getQuery(); if (q!=null) for (String p: q.split("&")) { String[] kv = p.split("=",2); if (kv.length==2 && kv[0].equals("token")) token = kv[1]; } }
             System.out.println("[TICKET CREATE] Token received: " + (token != null ? "Yes" : "No"));
-            String userId = token==null?null:sessions.get(token);
+            SessionStore.Principal principal = sessions.get(token); String userId = principal==null?null:principal.userId();
             System.out.println("[TICKET CREATE] User ID from session: " + (userId != null ? userId : "null - session expired or invalid"));
             System.out.println("[TICKET CREATE] Active sessions count: " + sessions.size());
             if (userId==null) { setJson(exchange); com.google.gson.JsonObject _r15 = new com.google.gson.JsonObject(); _r15.addProperty("status","error"); _r15.addProperty("message","Unauthorized - Session expired. Please logout and login again."); send(exchange,401, _r15.toString()); return; }
@@ -640,11 +683,7 @@ public class WebServer {
                 String subject = json.get("subject").getAsString();
                 String description = json.get("description").getAsString();
                 
-                java.util.Optional<com.isp.model.User> uOpt = userService.findById(userId);
-                if (uOpt.isEmpty()) { setJson(exchange); com.google.gson.JsonObject _r16 = new com.google.gson.JsonObject(); _r16.addProperty("status","error"); _r16.addProperty("message","User not found"); send(exchange,404, _r16.toString()); return; }
-                
-                com.isp.model.User user = uOpt.get();
-                com.isp.model.TicketEnhanced ticket = ticketEnhancedService.createTicket(userId, user.getUsername(), subject, description, user.getEmail());
+                com.isp.model.TicketEnhanced ticket = ticketEnhancedService.createTicket(userId, principal.username(), subject, description, principal.email());
                 
                 com.google.gson.JsonObject resp = new com.google.gson.JsonObject();
                 resp.addProperty("status","success");
@@ -654,11 +693,11 @@ public class WebServer {
             } catch (Exception e) { setJson(exchange); com.google.gson.JsonObject _r17 = new com.google.gson.JsonObject(); _r17.addProperty("status","error"); _r17.addProperty("message","Invalid request: " + e.getMessage()); send(exchange,400, _r17.toString()); }
         });
 
-        server.createContext("/api/tickets-enhanced/reply", exchange -> {
+        route(server, "/api/tickets-enhanced/reply", exchange -> {
             if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) { methodNotAllowed(exchange); return; }
             String token = null; java.util.List<String> auth = exchange.getRequestHeaders().getOrDefault("Authorization", java.util.List.of()); if (!auth.isEmpty()) { String v = auth.get(0); if (v.toLowerCase().startsWith("bearer ")) token = v.substring(7).trim(); }
             if (token==null) { String q = exchange.getRequestURI().getQuery(); if (q!=null) for (String p: q.split("&")) { String[] kv = p.split("=",2); if (kv.length==2 && kv[0].equals("token")) token = kv[1]; } }
-            String userId = token==null?null:sessions.get(token);
+            SessionStore.Principal principal = sessions.get(token); String userId = principal==null?null:principal.userId();
             if (userId==null) { setJson(exchange); com.google.gson.JsonObject _r18 = new com.google.gson.JsonObject(); _r18.addProperty("status","error"); _r18.addProperty("message","Unauthorized"); send(exchange,401, _r18.toString()); return; }
             
             String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
@@ -667,15 +706,11 @@ public class WebServer {
                 String ticketId = json.get("ticketId").getAsString();
                 String message = json.get("message").getAsString();
                 
-                java.util.Optional<com.isp.model.User> uOpt = userService.findById(userId);
-                if (uOpt.isEmpty()) { setJson(exchange); com.google.gson.JsonObject _r19 = new com.google.gson.JsonObject(); _r19.addProperty("status","error"); _r19.addProperty("message","User not found"); send(exchange,404, _r19.toString()); return; }
-                
-                com.isp.model.User user = uOpt.get();
-                java.util.Optional<com.isp.model.TicketEnhanced> ticketOpt = ticketEnhancedService.findById(ticketId);
+                java.util.Optional<com.isp.model.TicketEnhanced> ticketOpt = ticketEnhancedService.findHeaderById(ticketId);
                 if (ticketOpt.isEmpty()) { setJson(exchange); com.google.gson.JsonObject _r20 = new com.google.gson.JsonObject(); _r20.addProperty("status","error"); _r20.addProperty("message","Ticket not found"); send(exchange,404, _r20.toString()); return; }
                 
                 com.isp.model.TicketEnhanced ticket = ticketOpt.get();
-                String messageType = user.getRole() == com.isp.model.User.Role.ADMIN ? "ADMIN" : "CUSTOMER";
+                String messageType = principal.isAdmin() ? "ADMIN" : "CUSTOMER";
                 String recipientEmail = messageType.equals("ADMIN") ? ticket.getCustomerName() : "muthuvel04041971@gmail.com";
                 
                 // Get customer email if admin is replying
@@ -686,7 +721,7 @@ public class WebServer {
                     }
                 }
                 
-                ticketEnhancedService.addMessage(ticketId, userId, user.getUsername(), message, messageType, user.getEmail(), recipientEmail);
+                ticketEnhancedService.addMessage(ticketId, userId, principal.username(), message, messageType, principal.email(), recipientEmail);
                 
                 com.google.gson.JsonObject resp = new com.google.gson.JsonObject();
                 resp.addProperty("status","success");
@@ -695,22 +730,31 @@ public class WebServer {
             } catch (Exception e) { setJson(exchange); com.google.gson.JsonObject _r21 = new com.google.gson.JsonObject(); _r21.addProperty("status","error"); _r21.addProperty("message","Invalid request: " + e.getMessage()); send(exchange,400, _r21.toString()); }
         });
 
-        server.createContext("/api/tickets-enhanced/list", exchange -> {
+        route(server, "/api/tickets-enhanced/list", exchange -> {
             String token = null; java.util.List<String> auth = exchange.getRequestHeaders().getOrDefault("Authorization", java.util.List.of()); if (!auth.isEmpty()) { String v = auth.get(0); if (v.toLowerCase().startsWith("bearer ")) token = v.substring(7).trim(); }
             if (token==null) { String q = exchange.getRequestURI().getQuery(); if (q!=null) for (String p: q.split("&")) { String[] kv = p.split("=",2); if (kv.length==2 && kv[0].equals("token")) token = kv[1]; } }
-            String userId = token==null?null:sessions.get(token);
+            SessionStore.Principal principal = sessions.get(token); String userId = principal==null?null:principal.userId();
             if (userId==null) { setJson(exchange); com.google.gson.JsonObject _r22 = new com.google.gson.JsonObject(); _r22.addProperty("status","error"); _r22.addProperty("message","Unauthorized"); send(exchange,401, _r22.toString()); return; }
             
-            java.util.Optional<com.isp.model.User> uOpt = userService.findById(userId);
-            if (uOpt.isEmpty()) { setJson(exchange); com.google.gson.JsonObject _r23 = new com.google.gson.JsonObject(); _r23.addProperty("status","error"); _r23.addProperty("message","User not found"); send(exchange,404, _r23.toString()); return; }
-            
-            com.isp.model.User user = uOpt.get();
-            java.util.List<com.isp.model.TicketEnhanced> tickets;
-            if (user.getRole() == com.isp.model.User.Role.ADMIN) {
-                tickets = ticketEnhancedService.listAll();
-            } else {
-                tickets = ticketEnhancedService.findByCustomerId(userId);
+            String cursor = null;
+            int limit = 100;
+            String query = exchange.getRequestURI().getQuery();
+            if (query != null) {
+                for (String p : query.split("&")) {
+                    String[] kv = p.split("=", 2);
+                    if (kv.length != 2) continue;
+                    if (kv[0].equals("cursor")) cursor = URLDecoder.decode(kv[1], StandardCharsets.UTF_8);
+                    if (kv[0].equals("limit")) { try { limit = Math.max(1, Math.min(500, Integer.parseInt(kv[1]))); } catch (NumberFormatException ignored) {} }
+                }
+            }
+            // Summaries only: the list view shows message counts, not bodies
+            com.isp.repo.TicketEnhancedRepository.Page page;
+            try {
+                page = ticketEnhancedService.listSummaries(principal.isAdmin() ? null : userId, cursor, limit);
+            } catch (IllegalArgumentException e) {
+                setJson(exchange); com.google.gson.JsonObject _r23 = new com.google.gson.JsonObject(); _r23.addProperty("status","error"); _r23.addProperty("message","Invalid cursor"); send(exchange,400, _r23.toString()); return;
             }
+            java.util.List<com.isp.model.TicketEnhanced> tickets = page.tickets();
             
             com.google.gson.JsonArray arr = new com.google.gson.JsonArray();
             for (com.isp.model.TicketEnhanced t : tickets) {
@@ -721,17 +765,18 @@ public class WebServer {
                 o.addProperty("status", t.getStatus().name());
                 o.addProperty("customerName", t.getCustomerName());
                 o.addProperty("createdAt", t.getCreatedAt().toString());
-                o.addProperty("messageCount", t.getMessages().size());
+                o.addProperty("messageCount", t.getMessageCount());
                 arr.add(o);
             }
             
             com.google.gson.JsonObject resp = new com.google.gson.JsonObject();
             resp.addProperty("status","success");
             resp.add("tickets", arr);
+            if (page.nextCursor() != null) resp.addProperty("nextCursor", page.nextCursor());
             setJson(exchange); send(exchange,200, resp.toString());
         });
 
-        server.createContext("/api/tickets-enhanced/get", exchange -> {
+        route(server, "/api/tickets-enhanced/get", exchange -> {
             String token = null; 
             String ticketId = null;
             
@@ -752,7 +797,7 @@ public class WebServer {
                 if (v.toLowerCase().startsWith("bearer ")) token = v.substring(7).trim(); 
             }
             
-            String userId = token==null?null:sessions.get(token);
+            SessionStore.Principal principal = sessions.get(token); String userId = principal==null?null:principal.userId();
             if (userId==null) { setJson(exchange); com.google.gson.JsonObject _r = new com.google.gson.JsonObject(); _r.addProperty("status","error"); _r.addProperty("message","Unauthorized"); send(exchange,401, _r.toString()); return; }
             
             if (ticketId == null) { setJson(exchange); com.google.gson.JsonObject _r1 = new com.google.gson.JsonObject(); _r1.addProperty("status","error"); _r1.addProperty("message","Ticket ID required"); send(exchange,400, _r1.toString()); return; }
@@ -789,14 +834,13 @@ public class WebServer {
         });
 
         // Admin: List all customers with their profiles
-        server.createContext("/api/admin/customers", exchange -> {
+        route(server, "/api/admin/customers", exchange -> {
             String token = null; java.util.List<String> auth = exchange.getRequestHeaders().getOrDefault("Authorization", java.util.List.of()); if (!auth.isEmpty()) { String v = auth.get(0); if (v.toLowerCase().startsWith("bearer ")) token = v.substring(7).trim(); }
             if (token==null) { String q = exchange.getRequestURI().getQuery(); if (q!=null) for (String p: q.split("&")) { String[] kv = p.split("=",2); if (kv.length==2 && kv[0].equals("token")) token = kv[1]; } }
-            String userId = token==null?null:sessions.get(token);
+            SessionStore.Principal principal = sessions.get(token); String userId = principal==null?null:principal.userId();
             if (userId==null) { setJson(exchange); com.google.gson.JsonObject _r24 = new com.google.gson.JsonObject(); _r24.addProperty("status","error"); _r24.addProperty("message","Unauthorized"); send(exchange,401, _r24.toString()); return; }
             
-            java.util.Optional<com.isp.model.User> uOpt = userService.findById(userId);
-            if (uOpt.isEmpty() || uOpt.get().getRole() != com.isp.model.User.Role.ADMIN) { 
+            if (!principal.isAdmin()) { 
                 setJson(exchange); com.google.gson.JsonObject _r25 = new com.google.gson.JsonObject(); 
                 _r25.addProperty("status","error"); 
                 _r25.addProperty("message","Admin access required"); 
@@ -850,14 +894,13 @@ public class WebServer {
         });
 
         // Customer Detail endpoint
-        server.createContext("/api/admin/customer-detail", exchange -> {
+        route(server, "/api/admin/customer-detail", exchange -> {
             String token = null; java.util.List<String> auth = exchange.getRequestHeaders().getOrDefault("Authorization", java.util.List.of()); if (!auth.isEmpty()) { String v = auth.get(0); if (v.toLowerCase().startsWith("bearer ")) token = v.substring(7).trim(); }
             if (token==null) { String q = exchange.getRequestURI().getQuery(); if (q!=null) for (String p: q.split("&")) { String[] kv = p.split("=",2); if (kv.length==2 && kv[0].equals("token")) token = kv[1]; } }
-            String userId = token==null?null:sessions.get(token);
+            SessionStore.Principal principal = sessions.get(token); String userId = principal==null?null:principal.userId();
             if (userId==null) { setJson(exchange); com.google.gson.JsonObject _r = new com.google.gson.JsonObject(); _r.addProperty("status","error"); _r.addProperty("message","Unauthorized"); send(exchange,401, _r.toString()); return; }
             
-            java.util.Optional<com.isp.model.User> uOpt = userService.findById(userId);
-            if (uOpt.isEmpty() || uOpt.get().getRole() != com.isp.model.User.Role.ADMIN) { 
+            if (!principal.isAdmin()) { 
                 setJson(exchange); com.google.gson.JsonObject _r = new com.google.gson.JsonObject(); 
                 _r.addProperty("status","error"); 
                 _r.addProperty("message","Admin access required"); 
@@ -932,9 +975,214 @@ public class WebServer {
             send(exchange, 200, resp.toString());
         });
 
-        server.setExecutor(null);
+        // Request metrics (admin only): JSON by default, Prometheus text with ?format=prometheus
+        route(server, "/api/admin/metrics", exchange -> {
+            if (requireAdmin(exchange) == null) return;
+            String query = exchange.getRequestURI().getQuery();
+            String accept = exchange.getRequestHeaders().getFirst("Accept");
+            boolean prometheus = (query != null && query.contains("format=prometheus"))
+                    || (accept != null && accept.contains("text/plain"));
+            if (prometheus) {
+                byte[] body = requestMetrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) { os.write(body); }
+            } else {
+                setJson(exchange);
+                ok(exchange, requestMetrics.toJson().toString());
+            }
+        });
+
+        // Per-statement SQL latency, rows, callers, captured plans and the slow-query log (admin only)
+        route(server, "/api/admin/sql-stats", exchange -> {
+            if (requireAdmin(exchange) == null) return;
+            com.isp.util.SqlProfiler.Report report = com.isp.util.DatabaseConnection.getSqlReport();
+            com.google.gson.JsonObject resp = new com.google.gson.JsonObject();
+            resp.addProperty("status", "success");
+            if (report != null) {
+                resp.add("sql", new com.google.gson.Gson().toJsonTree(report));
+            }
+            setJson(exchange);
+            ok(exchange, resp.toString());
+        });
+
+        // Broadcast an announcement to a customer segment (admin only); runs in the background
+        route(server, "/api/admin/notifications/broadcast", exchange -> {
+            if (requireAdmin(exchange) == null) return;
+            setJson(exchange);
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) { methodNotAllowed(exchange); return; }
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            com.google.gson.JsonObject json;
+            try {
+                json = com.google.gson.JsonParser.parseString(body).getAsJsonObject();
+            } catch (RuntimeException e) {
+                badRequest(exchange, msg("invalid JSON body"));
+                return;
+            }
+            String title = json.has("title") ? json.get("title").getAsString() : null;
+            String message = json.has("message") ? json.get("message").getAsString() : null;
+            if (isBlank(title) || isBlank(message)) { badRequest(exchange, msg("title and message required")); return; }
+            String category = json.has("category") ? json.get("category").getAsString() : "SYSTEM";
+            String priority = json.has("priority") ? json.get("priority").getAsString() : "HIGH";
+            String planId = json.has("planId") ? json.get("planId").getAsString() : null;
+            com.isp.model.User.Role role;
+            try {
+                role = json.has("role") ? com.isp.model.User.Role.valueOf(json.get("role").getAsString()) : com.isp.model.User.Role.CUSTOMER;
+            } catch (IllegalArgumentException e) {
+                badRequest(exchange, msg("invalid role"));
+                return;
+            }
+
+            String broadcastId = notificationService.broadcast(
+                    new com.isp.service.NotificationBroadcaster.Segment(role, planId), category, title, message, priority);
+            com.google.gson.JsonObject resp = new com.google.gson.JsonObject();
+            resp.addProperty("status", "success");
+            resp.addProperty("broadcastId", broadcastId);
+            send(exchange, 202, resp.toString());
+        });
+
+        // Broadcast progress: one broadcast with ?id=, otherwise the recent ones; POST ?id= &action=cancel stops one
+        route(server, "/api/admin/notifications/broadcasts", exchange -> {
+            if (requireAdmin(exchange) == null) return;
+            setJson(exchange);
+            Map<String, String> params = new HashMap<>();
+            String query = exchange.getRequestURI().getQuery();
+            if (query != null) {
+                for (String p : query.split("&")) {
+                    String[] kv = p.split("=", 2);
+                    if (kv.length == 2) params.put(kv[0], urlDecode(kv[1]));
+                }
+            }
+            String id = params.get("id");
+            com.google.gson.Gson gson = new com.google.gson.Gson();
+            com.google.gson.JsonObject resp = new com.google.gson.JsonObject();
+            if ("POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                if (isBlank(id) || !"cancel".equals(params.get("action"))) { badRequest(exchange, msg("id and action=cancel required")); return; }
+                if (!notificationService.cancelBroadcast(id)) { notFound(exchange, msg("no running broadcast with that id")); return; }
+                resp.addProperty("status", "success");
+                ok(exchange, resp.toString());
+                return;
+            }
+            if (id != null) {
+                com.isp.service.NotificationBroadcaster.Progress progress = notificationService.getBroadcastProgress(id);
+                if (progress == null) { notFound(exchange, msg("unknown broadcast")); return; }
+                resp.add("broadcast", gson.toJsonTree(progress));
+            } else {
+                resp.add("broadcasts", gson.toJsonTree(notificationService.getRecentBroadcasts()));
+            }
+            resp.addProperty("status", "success");
+            ok(exchange, resp.toString());
+        });
+
+        // Month-end invoice batch (admin only): POST ?period=yyyy-MM starts a run in the background, GET reports progress
+        route(server, "/api/admin/invoices/batch", exchange -> {
+            if (requireAdmin(exchange) == null) return;
+            setJson(exchange);
+            com.google.gson.Gson gson = new com.google.gson.Gson();
+            if ("GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                ok(exchange, gson.toJson(invoiceBatchJob.getProgress()));
+                return;
+            }
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) { methodNotAllowed(exchange); return; }
+            java.time.YearMonth period;
+            try {
+                period = billingPeriod(exchange);
+                if (period == null) period = java.time.YearMonth.now();
+            } catch (java.time.format.DateTimeParseException e) {
+                badRequest(exchange, msg("period must be yyyy-MM"));
+                return;
+            }
+            try {
+                send(exchange, 202, gson.toJson(invoiceBatchJob.start(period)));
+            } catch (IllegalStateException e) {
+                send(exchange, 409, msg(e.getMessage()));
+            }
+        });
+
+        this.requestExecutor = RequestExecutor.fromConfig();
+        server.setExecutor(requestExecutor);
         server.start();
-        System.out.println("[WebServer] HttpServer started and listening on port: " + port);
+        System.out.println("[WebServer] HttpServer started and listening on port: " + port
+                + " (executor: " + requestExecutor.getMode().name().toLowerCase() + ")");
+    }
+
+    /**
+     * Stop the HTTP server, drain the request executor and close the connection pool.
+     */
+    public void stop() {
+        // Each step runs even if an earlier one fails, so every write-behind buffer gets its final flush
+        if (httpServer != null) {
+            stopStep("http server", () -> httpServer.stop(1));
+        }
+        if (requestExecutor != null) {
+            stopStep("request executor", requestExecutor::close);
+        }
+        stopStep("sessions", sessions::close);
+        stopStep("notification hub", notificationHub::close);
+        stopStep("notification service", notificationService::shutdown);
+        stopStep("email service", emailService::shutdown);
+        stopStep("billing service", billingService::shutdown);
+        stopStep("invoice batch job", invoiceBatchJob::close);
+        stopStep("usage service", usageService::shutdown);
+        // After the usage buffer so its final flush is rolled up too
+        stopStep("daily usage rollup", dailyUsageRollup::close);
+        stopStep("usage alerts", usageThresholds::close);
+        stopStep("device connections", deviceRepo::close);
+        stopStep("database", com.isp.util.DatabaseConnection::closeConnection);
+        System.out.println("[WebServer] HttpServer stopped");
+    }
+
+    private static void stopStep(String name, Runnable step) {
+        try {
+            step.run();
+        } catch (RuntimeException e) {
+            System.err.println("[WebServer] Failed to stop " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Register a context with request metrics attached.
+     */
+    private com.sun.net.httpserver.HttpContext route(HttpServer server, String path, HttpHandler handler) {
+        com.sun.net.httpserver.HttpContext context = server.createContext(path, handler);
+        context.getFilters().add(requestMetrics);
+        return context;
+    }
+
+    /**
+     * Bearer token from the Authorization header, or the token query parameter.
+     */
+    private static String extractToken(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header != null && header.toLowerCase().startsWith("bearer ")) {
+            return header.substring(7).trim();
+        }
+        String query = exchange.getRequestURI().getQuery();
+        if (query != null) {
+            for (String p : query.split("&")) {
+                String[] kv = p.split("=", 2);
+                if (kv.length == 2 && kv[0].equals("token")) return kv[1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Principal of the signed-in admin, or null after sending 401/403.
+     */
+    private SessionStore.Principal requireAdmin(HttpExchange exchange) throws IOException {
+        SessionStore.Principal principal = sessions.get(extractToken(exchange));
+        if (principal == null) {
+            setJson(exchange);
+            send(exchange, 401, "{\"status\":\"error\",\"message\":\"Unauthorized\"}");
+            return null;
+        }
+        if (!principal.isAdmin()) {
+            setJson(exchange);
+            send(exchange, 403, "{\"status\":\"error\",\"message\":\"Admin access required\"}");
+            return null;
+        }
+        return principal;
     }
 
     // Handlers
@@ -1023,7 +1271,17 @@ public class WebServer {
             setJson(ex);
             String method = ex.getRequestMethod();
             String path = ex.getRequestURI().getPath();
-            if ("POST".equalsIgnoreCase(method) && "/api/usage".equals(path)) {
+            if ("POST".equalsIgnoreCase(method) && "/api/usage/batch".equals(path)) {
+                // Router telemetry: NDJSON or ISPU binary, parsed as it streams in and flushed to storage in batches
+                String type = ex.getRequestHeaders().getFirst("Content-Type");
+                boolean binary = type != null && (type.startsWith("application/octet-stream") || type.startsWith("application/x-isp-usage"));
+                UsageBatchParser.Result result = usageService.ingestBatch(ex.getRequestBody(), binary);
+                com.google.gson.JsonObject resp = new com.google.gson.JsonObject();
+                resp.addProperty("accepted", result.accepted());
+                resp.addProperty("rejected", result.rejected());
+                resp.add("errors", new com.google.gson.Gson().toJsonTree(result.errors()));
+                send(ex, 202, resp.toString());
+            } else if ("POST".equalsIgnoreCase(method) && "/api/usage".equals(path)) {
                 Map<String, String> form = readForm(ex);
                 String customerId = form.get("customerId");
                 String gbStr = form.get("gigabytes");
@@ -1102,6 +1360,7 @@ public class WebServer {
         private final Pattern customerHistory = Pattern.compile("^/api/hotspot/customer/([^/]+)/history$");
         private final Pattern customerActive = Pattern.compile("^/api/hotspot/customer/([^/]+)/active$");
         private final Pattern allActive = Pattern.compile("^/api/hotspot/active$");
+        private final Pattern byMac = Pattern.compile("^/api/hotspot/mac/([^/]+)$");
         private final Pattern usageUpdate = Pattern.compile("^/api/hotspot/([^/]+)/usage$");
         private final Pattern disconnect = Pattern.compile("^/api/hotspot/([^/]+)/disconnect$");
         @Override public void handle(HttpExchange ex) throws IOException {
@@ -1140,6 +1399,7 @@ public class WebServer {
                 Matcher mh = customerHistory.matcher(path);
                 Matcher ma = customerActive.matcher(path);
                 Matcher maa = allActive.matcher(path);
+                Matcher mm = byMac.matcher(path);
                 if (mh.matches()) {
                     var list = hotspotService.getDeviceHistory(mh.group(1));
                     ok(ex, deviceListToJson(list));
@@ -1149,6 +1409,9 @@ public class WebServer {
                 } else if (maa.matches()) {
                     var list = hotspotService.getAllActiveDevices();
                     ok(ex, deviceListToJson(list));
+                } else if (mm.matches()) {
+                    var list = hotspotService.getDeviceHistoryByMac(urlDecode(mm.group(1)));
+                    ok(ex, deviceListToJson(list));
                 } else { badRequest(ex, msg("invalid path")); }
             } else methodNotAllowed(ex);
         }
@@ -1162,8 +1425,25 @@ public class WebServer {
             String method = ex.getRequestMethod();
             String path = ex.getRequestURI().getPath();
             if ("POST".equalsIgnoreCase(method) && "/api/billing/run".equals(path)) {
-                billingService.runBillingCycle();
-                ok(ex, msg("billing run"));
+                com.isp.model.BillingRunResult result;
+                try {
+                    result = billingService.runBillingCycle();
+                } catch (IllegalStateException e) {
+                    send(ex, 409, msg(e.getMessage()));
+                    return;
+                }
+                com.google.gson.JsonObject resp = new com.google.gson.JsonObject();
+                resp.addProperty("message", "billing run");
+                resp.addProperty("runId", result.getRunId());
+                resp.addProperty("resumed", result.isResumed());
+                resp.addProperty("complete", result.isComplete());
+                resp.addProperty("customersBilled", result.getCustomersBilled());
+                resp.addProperty("totalAmount", Math.round(result.getTotalAmount() * 100) / 100.0);
+                resp.addProperty("partitions", result.getPartitions().size());
+                resp.addProperty("partitionsFromCheckpoint", result.getPartitionsFromCheckpoint());
+                resp.addProperty("failures", result.getFailures().size());
+                resp.addProperty("durationMillis", result.getDurationMillis());
+                ok(ex, resp.toString());
             } else if ("GET".equalsIgnoreCase(method)) {
                 Matcher m = byCustomer.matcher(path);
                 if (m.matches()) {
@@ -1173,14 +1453,32 @@ public class WebServer {
                     Matcher inv = invoiceByCustomer.matcher(path);
                     if (inv.matches()) {
                         String customerId = inv.group(1);
-                        byte[] pdf = generateInvoicePdf(customerId);
-                        if (pdf == null) { notFound(ex, msg("customer not found")); return; }
-                        Headers h = ex.getResponseHeaders();
-                        h.set("Content-Type", "application/pdf");
-                        String ts = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMM"));
-                        h.set("Content-Disposition", "attachment; filename=invoice-"+customerId+"-"+ts+".pdf");
-                        ex.sendResponseHeaders(200, pdf.length);
-                        try (OutputStream os = ex.getResponseBody()) { os.write(pdf); }
+                        java.time.YearMonth period;
+                        try {
+                            period = billingPeriod(ex);
+                        } catch (java.time.format.DateTimeParseException e) {
+                            badRequest(ex, msg("period must be yyyy-MM"));
+                            return;
+                        }
+                        // Serve the batch-rendered PDF from disk; only the current month falls back to rendering on demand
+                        if (sendArchivedInvoice(ex, customerId, period != null ? period : java.time.YearMonth.now())) return;
+                        if (period != null) { notFound(ex, msg("no invoice for " + period)); return; }
+                        InvoiceRenderer.Invoice invoice = buildInvoice(customerId);
+                        if (invoice == null) { notFound(ex, msg("customer not found")); return; }
+                        try {
+                            // Stream the PDF as it is written (chunked) instead of buffering it first
+                            invoiceRenderer.render(invoice, () -> {
+                                Headers h = ex.getResponseHeaders();
+                                h.set("Content-Type", "application/pdf");
+                                String ts = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMM"));
+                                h.set("Content-Disposition", "attachment; filename=invoice-"+customerId+"-"+ts+".pdf");
+                                ex.sendResponseHeaders(200, 0);
+                                return ex.getResponseBody();
+                            });
+                        } catch (IllegalStateException e) {
+                            ex.getResponseHeaders().set("Retry-After", "5");
+                            send(ex, 503, msg(e.getMessage()));
+                        }
                     } else badRequest(ex, msg("invalid path"));
                 }
             } else methodNotAllowed(ex);
@@ -1254,7 +1552,7 @@ public class WebServer {
     private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
     private static String escape(String s) { return s.replace("\\", "\\\\").replace("\"", "\\\""); }
 
-    private static String customerToJson(Customer c) {
+    static String customerToJson(Customer c) {
         return "{\"id\":\""+c.getId()+"\",\"name\":\""+escape(c.getName())+"\",\"email\":\""+escape(c.getEmail())+"\"}";
     }
 
@@ -1268,7 +1566,7 @@ public class WebServer {
         return sb.toString();
     }
 
-    private static String deviceListToJson(List<DeviceConnection> list) {
+    static String deviceListToJson(List<DeviceConnection> list) {
         StringBuilder sb = new StringBuilder("[");
         for (int i=0;i<list.size();i++) {
             DeviceConnection d = list.get(i);
@@ -1286,8 +1584,54 @@ public class WebServer {
         return sb.toString();
     }
 
-    private byte[] generateInvoicePdf(String customerId) {
-        // Get user and profile
+    /**
+     * The {@code period} query parameter as a month, or null if absent.
+     */
+    private static java.time.YearMonth billingPeriod(HttpExchange ex) {
+        String query = ex.getRequestURI().getQuery();
+        if (query != null) {
+            for (String p : query.split("&")) {
+                String[] kv = p.split("=", 2);
+                if (kv.length == 2 && "period".equals(kv[0])) return java.time.YearMonth.parse(urlDecode(kv[1]));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Send the customer's archived invoice for the period, if the batch job produced one. The file is copied to
+     * the response with {@link java.nio.channels.FileChannel#transferTo} and a fixed Content-Length.
+     */
+    private boolean sendArchivedInvoice(HttpExchange ex, String customerId, java.time.YearMonth period) throws IOException {
+        Optional<com.isp.model.Invoice> archived = invoiceRepo.findByCustomerAndPeriod(customerId, period.toString());
+        if (archived.isEmpty() || archived.get().getPdfPath() == null) return false;
+        java.nio.file.Path pdf = java.nio.file.Paths.get(archived.get().getPdfPath());
+        java.nio.channels.FileChannel file;
+        try {
+            file = java.nio.channels.FileChannel.open(pdf, java.nio.file.StandardOpenOption.READ);
+        } catch (java.nio.file.NoSuchFileException e) {
+            System.err.println("[INVOICE] Archived PDF missing: " + pdf);
+            return false;
+        }
+        try (file) {
+            long size = file.size();
+            Headers h = ex.getResponseHeaders();
+            h.set("Content-Type", "application/pdf");
+            h.set("Content-Disposition", "attachment; filename=" + archived.get().getInvoiceNumber() + ".pdf");
+            ex.sendResponseHeaders(200, size);
+            try (java.nio.channels.WritableByteChannel out = java.nio.channels.Channels.newChannel(ex.getResponseBody())) {
+                for (long pos = 0; pos < size; ) {
+                    pos += file.transferTo(pos, size - pos, out);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Preview of the current month's invoice for a customer's plan, or null if the user or profile is missing.
+     */
+    private InvoiceRenderer.Invoice buildInvoice(String customerId) {
         System.out.println("[INVOICE] Generating invoice for customer ID: " + customerId);
         Optional<com.isp.model.User> userOpt = userService.findById(customerId);
         if (userOpt.isEmpty()) {
@@ -1295,170 +1639,19 @@ public class WebServer {
             return null;
         }
         com.isp.model.User user = userOpt.get();
-        System.out.println("[INVOICE] User found: " + user.getUsername());
-        
+
         Optional<com.isp.model.CustomerProfile> profileOpt = profileService.findByUserId(customerId);
         if (profileOpt.isEmpty()) {
             System.err.println("[INVOICE] Profile not found for user: " + customerId);
             return null;
         }
         com.isp.model.CustomerProfile profile = profileOpt.get();
-        System.out.println("[INVOICE] Profile found, plan: " + (profile.getCurrentPlan() != null ? profile.getCurrentPlan().getName() : "No plan"));
-        
-        String issued = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
-        String invoiceNumber = "INV-" + customerId.substring(0, 8) + "-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-
-        try (PDDocument doc = new PDDocument(); ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            PDPage page = new PDPage(PDRectangle.LETTER);
-            doc.addPage(page);
-            try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
-                float margin = 50;
-                float y = page.getMediaBox().getHeight() - margin;
-
-                // Header blue bar
-                cs.setNonStrokingColor(33, 150, 243);
-                cs.addRect(0, y - 20, page.getMediaBox().getWidth(), 20);
-                cs.fill();
-                y -= 40;
-
-                // Title
-                cs.beginText();
-                cs.setNonStrokingColor(0);
-                cs.setFont(PDType1Font.HELVETICA_BOLD, 22);
-                cs.newLineAtOffset(margin, y);
-                cs.showText("INVOICE");
-                cs.endText();
-
-                y -= 30;
-                cs.beginText();
-                cs.setFont(PDType1Font.HELVETICA, 10);
-                cs.newLineAtOffset(margin, y);
-                cs.showText("Invoice #: " + invoiceNumber);
-                cs.endText();
-
-                y -= 14;
-                cs.beginText();
-                cs.setFont(PDType1Font.HELVETICA, 10);
-                cs.newLineAtOffset(margin, y);
-                cs.showText("Issue Date: " + issued);
-                cs.endText();
-
-                y -= 30;
-                // Customer block
-                cs.beginText();
-                cs.setFont(PDType1Font.HELVETICA_BOLD, 12);
-                cs.newLineAtOffset(margin, y);
-                cs.showText("Bill To:");
-                cs.endText();
-
-                y -= 18;
-                cs.beginText();
-                cs.setFont(PDType1Font.HELVETICA, 11);
-                cs.newLineAtOffset(margin, y);
-                cs.showText(profile.getFullName());
-                cs.endText();
-                
-                y -= 14;
-                cs.beginText();
-                cs.setFont(PDType1Font.HELVETICA, 10);
-                cs.newLineAtOffset(margin, y);
-                cs.showText(user.getEmail());
-                cs.endText();
-
-                y -= 30;
-                // Plan Details
-                cs.beginText();
-                cs.setFont(PDType1Font.HELVETICA_BOLD, 12);
-                cs.newLineAtOffset(margin, y);
-                cs.showText("Service Details:");
-                cs.endText();
-
-                y -= 20;
-                if (profile.getCurrentPlan() != null) {
-                    com.isp.model.DataPlan plan = profile.getCurrentPlan();
-                    
-                    cs.beginText();
-                    cs.setFont(PDType1Font.HELVETICA, 11);
-                    cs.newLineAtOffset(margin, y);
-                    cs.showText("Plan: " + plan.getName());
-                    cs.endText();
-                    
-                    y -= 14;
-                    cs.beginText();
-                    cs.setFont(PDType1Font.HELVETICA, 10);
-                    cs.newLineAtOffset(margin, y);
-                    cs.showText("Data Allowance: " + plan.getDataGB() + " GB");
-                    cs.endText();
-                    
-                    y -= 14;
-                    cs.beginText();
-                    cs.setFont(PDType1Font.HELVETICA, 10);
-                    cs.newLineAtOffset(margin, y);
-                    cs.showText("Description: " + plan.getDescription());
-                    cs.endText();
-                    
-                    y -= 14;
-                    if (profile.getPlanStartDate() != null) {
-                        cs.beginText();
-                        cs.setFont(PDType1Font.HELVETICA, 10);
-                        cs.newLineAtOffset(margin, y);
-                        cs.showText("Plan Start Date: " + profile.getPlanStartDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
-                        cs.endText();
-                        y -= 14;
-                    }
-                    
-                    if (profile.getPlanRenewalDate() != null) {
-                        cs.beginText();
-                        cs.setFont(PDType1Font.HELVETICA, 10);
-                        cs.newLineAtOffset(margin, y);
-                        cs.showText("Next Renewal Date: " + profile.getPlanRenewalDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
-                        cs.endText();
-                        y -= 14;
-                    }
-                    
-                    // Amount
-                    y -= 30;
-                    cs.beginText();
-                    cs.setFont(PDType1Font.HELVETICA_BOLD, 14);
-                    cs.newLineAtOffset(margin, y);
-                    cs.showText(String.format(Locale.ROOT, "Amount Due: $%.2f", plan.getPricePerMonth()));
-                    cs.endText();
-                } else {
-                    cs.beginText();
-                    cs.setFont(PDType1Font.HELVETICA, 11);
-                    cs.newLineAtOffset(margin, y);
-                    cs.showText("No active plan");
-                    cs.endText();
-                    
-                    y -= 30;
-                    cs.beginText();
-                    cs.setFont(PDType1Font.HELVETICA_BOLD, 14);
-                    cs.newLineAtOffset(margin, y);
-                    cs.showText("Amount Due: $0.00");
-                    cs.endText();
-                }
-                
-                // Footer
-                y -= 50;
-                cs.beginText();
-                cs.setFont(PDType1Font.HELVETICA, 9);
-                cs.setNonStrokingColor(100, 100, 100);
-                cs.newLineAtOffset(margin, y);
-                cs.showText("Thank you for choosing our ISP services!");
-                cs.endText();
-                
-                y -= 12;
-                cs.beginText();
-                cs.setFont(PDType1Font.HELVETICA, 8);
-                cs.newLineAtOffset(margin, y);
-                cs.showText("For support, contact: support@isp.com | Phone: 1-800-ISP-HELP");
-                cs.endText();
-            }
-            doc.save(baos);
-            return baos.toByteArray();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
-        }
+
+        LocalDateTime now = LocalDateTime.now();
+        String invoiceNumber = InvoiceNumberService.draft(java.time.YearMonth.from(now), customerId);
+        com.isp.model.DataPlan plan = profile.getCurrentPlan();
+        double amountDue = plan != null ? plan.getPricePerMonth() : 0;
+        List<String> details = InvoiceRenderer.planDetails(profile);
+        return new InvoiceRenderer.Invoice(invoiceNumber, now, profile.getFullName(), user.getEmail(), details, amountDue);
     }
 }
@@ -12,6 +12,8 @@ public class WebServerRunner {
         // Use the original web server
         WebServer server = new WebServer();
         server.start(port);
+        // Flush write-behind buffers (usage, rollups, alerts, devices) on SIGTERM
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "isp-shutdown"));
         System.out.println("WebServerRunner: server started on port " + port);
         // Keep the JVM alive indefinitely
         Thread.currentThread().join();
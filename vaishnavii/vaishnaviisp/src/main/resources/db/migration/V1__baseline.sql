@@ -0,0 +1,197 @@
+-- Schema as it stood before versioned migrations. IF NOT EXISTS lets this baseline
+-- databases that were created by older builds.
+
+CREATE TABLE IF NOT EXISTS users (
+    id VARCHAR(255) PRIMARY KEY,
+    username VARCHAR(100) UNIQUE NOT NULL,
+    email VARCHAR(255) UNIQUE NOT NULL,
+    password_hash VARCHAR(255) NOT NULL,
+    role VARCHAR(50) NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    last_login TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS customer_profiles (
+    id VARCHAR(255) PRIMARY KEY,
+    user_id VARCHAR(255) NOT NULL,
+    full_name VARCHAR(255) NOT NULL,
+    is_active BOOLEAN DEFAULT TRUE,
+    current_plan_id VARCHAR(255),
+    plan_start_date TIMESTAMP,
+    plan_renewal_date TIMESTAMP,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES users(id)
+);
+
+CREATE TABLE IF NOT EXISTS data_plans (
+    id VARCHAR(255) PRIMARY KEY,
+    name VARCHAR(100) NOT NULL,
+    data_gb DOUBLE NOT NULL,
+    price_per_month DOUBLE NOT NULL,
+    description TEXT,
+    is_active BOOLEAN DEFAULT TRUE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS tickets (
+    id VARCHAR(255) PRIMARY KEY,
+    customer_id VARCHAR(255) NOT NULL,
+    customer_name VARCHAR(255) NOT NULL,
+    subject VARCHAR(500) NOT NULL,
+    description TEXT NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    priority VARCHAR(50) DEFAULT 'MEDIUM',
+    assigned_to_admin_id VARCHAR(255),
+    assigned_to_admin_name VARCHAR(255),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    resolved_at TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_tickets_created (created_at, id),
+    INDEX idx_tickets_customer_created (customer_id, created_at, id),
+    FOREIGN KEY (customer_id) REFERENCES users(id)
+);
+
+CREATE TABLE IF NOT EXISTS ticket_messages (
+    id VARCHAR(255) PRIMARY KEY,
+    ticket_id VARCHAR(255) NOT NULL,
+    sender_id VARCHAR(255) NOT NULL,
+    sender_name VARCHAR(255) NOT NULL,
+    message TEXT NOT NULL,
+    message_type VARCHAR(50) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (ticket_id) REFERENCES tickets(id)
+);
+
+CREATE TABLE IF NOT EXISTS device_connections (
+    id VARCHAR(255) PRIMARY KEY,
+    customer_id VARCHAR(255) NOT NULL,
+    device_name VARCHAR(255) NOT NULL,
+    mac_address VARCHAR(50) NOT NULL,
+    connect_time TIMESTAMP NOT NULL,
+    disconnect_time TIMESTAMP,
+    data_used_gb DOUBLE DEFAULT 0,
+    is_active BOOLEAN DEFAULT TRUE,
+    FOREIGN KEY (customer_id) REFERENCES customer_profiles(id)
+);
+
+-- Backticks because 'usage' is a MySQL reserved word
+CREATE TABLE IF NOT EXISTS `usage` (
+    id VARCHAR(255) PRIMARY KEY,
+    customer_id VARCHAR(255) NOT NULL,
+    gigabytes DOUBLE NOT NULL,
+    timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (customer_id) REFERENCES customer_profiles(id)
+);
+
+CREATE TABLE IF NOT EXISTS daily_usage (
+    id VARCHAR(255) PRIMARY KEY,
+    customer_id VARCHAR(255) NOT NULL,
+    date DATE NOT NULL,
+    data_used_gb DOUBLE DEFAULT 0,
+    upload_gb DOUBLE DEFAULT 0,
+    download_gb DOUBLE DEFAULT 0,
+    peak_speed_mbps DOUBLE DEFAULT 0,
+    total_devices_connected INT DEFAULT 0,
+    FOREIGN KEY (customer_id) REFERENCES customer_profiles(id),
+    UNIQUE KEY unique_customer_date (customer_id, date)
+);
+
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id VARCHAR(255) PRIMARY KEY,
+    to_email VARCHAR(255) NOT NULL,
+    subject VARCHAR(500) NOT NULL,
+    body TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INT DEFAULT 0,
+    last_error VARCHAR(1000),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    next_attempt_at TIMESTAMP NULL,
+    sent_at TIMESTAMP NULL,
+    INDEX idx_outbox_status_due (status, next_attempt_at)
+);
+
+CREATE TABLE IF NOT EXISTS notifications (
+    id VARCHAR(36) PRIMARY KEY,
+    user_id VARCHAR(36) NOT NULL,
+    type VARCHAR(20) NOT NULL,
+    category VARCHAR(50) NOT NULL,
+    title VARCHAR(255) NOT NULL,
+    message TEXT NOT NULL,
+    priority VARCHAR(20) NOT NULL,
+    is_read BOOLEAN DEFAULT FALSE,
+    is_sent BOOLEAN DEFAULT FALSE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    sent_at TIMESTAMP NULL,
+    read_at TIMESTAMP NULL,
+    metadata TEXT,
+    INDEX idx_user_id (user_id),
+    INDEX idx_created_at (created_at),
+    INDEX idx_is_read (is_read)
+);
+
+CREATE TABLE IF NOT EXISTS notification_preferences (
+    user_id VARCHAR(36) PRIMARY KEY,
+    email_enabled BOOLEAN DEFAULT TRUE,
+    email_usage_alerts BOOLEAN DEFAULT TRUE,
+    email_payment_reminders BOOLEAN DEFAULT TRUE,
+    email_ticket_updates BOOLEAN DEFAULT TRUE,
+    email_security_alerts BOOLEAN DEFAULT TRUE,
+    email_promotions BOOLEAN DEFAULT FALSE,
+    browser_enabled BOOLEAN DEFAULT TRUE,
+    browser_usage_alerts BOOLEAN DEFAULT TRUE,
+    browser_payment_reminders BOOLEAN DEFAULT TRUE,
+    browser_ticket_updates BOOLEAN DEFAULT TRUE,
+    browser_security_alerts BOOLEAN DEFAULT TRUE,
+    sms_enabled BOOLEAN DEFAULT FALSE,
+    sms_critical_only BOOLEAN DEFAULT TRUE,
+    sms_usage_alerts BOOLEAN DEFAULT FALSE,
+    sms_payment_reminders BOOLEAN DEFAULT FALSE,
+    sms_security_alerts BOOLEAN DEFAULT TRUE,
+    phone_number VARCHAR(20),
+    usage_alert_threshold_1 INT DEFAULT 50,
+    usage_alert_threshold_2 INT DEFAULT 75,
+    usage_alert_threshold_3 INT DEFAULT 90
+);
+
+CREATE TABLE IF NOT EXISTS invoices (
+    id VARCHAR(255) PRIMARY KEY,
+    invoice_number VARCHAR(64) NOT NULL,
+    customer_id VARCHAR(255) NOT NULL,
+    customer_name VARCHAR(255),
+    customer_email VARCHAR(255),
+    plan_name VARCHAR(255),
+    billing_period CHAR(7) NOT NULL,
+    amount DOUBLE NOT NULL,
+    tax_amount DOUBLE NOT NULL,
+    total_amount DOUBLE NOT NULL,
+    invoice_date TIMESTAMP NOT NULL,
+    pdf_path VARCHAR(1024),
+    CONSTRAINT uq_invoices_number UNIQUE (invoice_number),
+    CONSTRAINT uq_invoices_customer_period UNIQUE (customer_id, billing_period)
+);
+
+CREATE TABLE IF NOT EXISTS sequences (
+    name VARCHAR(64) PRIMARY KEY,
+    next_value BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS usage_alerts (
+    id VARCHAR(255) PRIMARY KEY,
+    customer_id VARCHAR(255) NOT NULL,
+    alert_type VARCHAR(50) NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    usage_percentage DOUBLE NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    acknowledged_at TIMESTAMP NULL
+);
+
+CREATE TABLE IF NOT EXISTS speed_tests (
+    id VARCHAR(255) PRIMARY KEY,
+    customer_id VARCHAR(255) NOT NULL,
+    test_time TIMESTAMP NOT NULL,
+    download_speed_mbps DOUBLE NOT NULL,
+    upload_speed_mbps DOUBLE NOT NULL,
+    ping_ms INT NOT NULL,
+    INDEX idx_speed_tests_customer_time (customer_id, test_time)
+);
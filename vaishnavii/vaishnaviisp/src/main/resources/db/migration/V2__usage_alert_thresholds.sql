@@ -0,0 +1,4 @@
+-- Threshold that raised each alert, so every threshold alerts once per month
+ALTER TABLE usage_alerts ADD COLUMN threshold_percent INT NOT NULL DEFAULT 0;
+
+CREATE INDEX idx_usage_alerts_customer_created ON usage_alerts (customer_id, created_at);
@@ -0,0 +1,4 @@
+-- Hotspot details that were previously kept in memory only
+ALTER TABLE device_connections ADD COLUMN ip_address VARCHAR(50);
+
+ALTER TABLE device_connections ADD COLUMN average_speed_mbps DOUBLE DEFAULT 0;
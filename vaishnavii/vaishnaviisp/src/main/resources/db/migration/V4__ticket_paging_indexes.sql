@@ -0,0 +1,5 @@
+-- Keyset paging indexes for the ticket lists. New databases get them from V1; databases whose
+-- tickets table predates them get them here (the migrator skips indexes that already exist).
+CREATE INDEX idx_tickets_created ON tickets (created_at, id);
+
+CREATE INDEX idx_tickets_customer_created ON tickets (customer_id, created_at, id);
@@ -0,0 +1,3 @@
+-- Outbox rows are claimed (status SENDING) before delivery so only one instance sends each email.
+-- claimed_at lets the sweep return claims left behind by a stopped instance.
+ALTER TABLE email_outbox ADD COLUMN claimed_at TIMESTAMP NULL;
@@ -0,0 +1,17 @@
+-- 16-byte copies of the string keys of the high-volume tables (see IdGenerator.toBytes). Repositories
+-- fill id_bin on insert; rows written before this version are backfilled by com.isp.util.IdMigration.
+ALTER TABLE `usage` ADD COLUMN id_bin BINARY(16) NULL;
+
+CREATE UNIQUE INDEX uq_usage_id_bin ON `usage` (id_bin);
+
+ALTER TABLE notifications ADD COLUMN id_bin BINARY(16) NULL;
+
+CREATE UNIQUE INDEX uq_notifications_id_bin ON notifications (id_bin);
+
+ALTER TABLE daily_usage ADD COLUMN id_bin BINARY(16) NULL;
+
+CREATE UNIQUE INDEX uq_daily_usage_id_bin ON daily_usage (id_bin);
+
+ALTER TABLE device_connections ADD COLUMN id_bin BINARY(16) NULL;
+
+CREATE UNIQUE INDEX uq_device_connections_id_bin ON device_connections (id_bin);
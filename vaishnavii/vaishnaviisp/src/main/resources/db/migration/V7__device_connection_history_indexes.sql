@@ -0,0 +1,9 @@
+-- Only active and recent device connections are held in memory; these serve the startup load and
+-- the lookups that read older history by customer and MAC address.
+CREATE INDEX idx_device_connections_connect ON device_connections (connect_time);
+
+CREATE INDEX idx_device_connections_active ON device_connections (is_active, connect_time);
+
+CREATE INDEX idx_device_connections_customer ON device_connections (customer_id, connect_time);
+
+CREATE INDEX idx_device_connections_mac ON device_connections (mac_address, connect_time);
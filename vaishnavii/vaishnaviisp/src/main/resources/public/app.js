@@ -460,21 +460,38 @@ async function selectPlan(planId) {
     }
 }
 
+// Fetch every ticket visible to the current user, following nextCursor page by page.
+// Returns null if the first request fails.
+async function fetchAllTickets() {
+    const tickets = [];
+    let cursor = null;
+    do {
+        let url = `/api/tickets-enhanced/list?token=${currentToken}`;
+        if (cursor) url += `&cursor=${encodeURIComponent(cursor)}`;
+        const response = await fetch(url, {
+            headers: { 'Authorization': 'Bearer ' + currentToken }
+        });
+        if (!response.ok) return tickets.length > 0 ? tickets : null;
+        const page = await response.json();
+        if (page.status !== 'success') return tickets.length > 0 ? tickets : null;
+        tickets.push(...(page.tickets || []));
+        cursor = page.nextCursor;
+    } while (cursor);
+    return tickets;
+}
+
 // Load Tickets
 async function loadTickets() {
     try {
-        const response = await fetch(`/api/tickets-enhanced/list?token=${currentToken}`, {
-            headers: { 'Authorization': 'Bearer ' + currentToken }
-        });
-        if (!response.ok) { 
+        const tickets = await fetchAllTickets();
+        if (!tickets) { 
             document.getElementById('ticketsList').innerHTML = '<p class="text-muted">No tickets yet</p>'; 
             return; 
         }
-        const result = await response.json();
         
         let html = '';
-        if (result.status === 'success' && result.tickets && result.tickets.length > 0) {
-            result.tickets.forEach(ticket => {
+        if (tickets.length > 0) {
+            tickets.forEach(ticket => {
                 const statusClass = ticket.status === 'OPEN' ? 'badge-warning' : ticket.status === 'IN_PROGRESS' ? 'badge-info' : 'badge-success';
                 html += `
                     <div class="ticket-item" onclick="viewTicketConversation('${ticket.id}')" style="cursor: pointer;">
@@ -760,11 +777,10 @@ async function viewCustomerDetail(customerId) {
 // Load Admin Tickets
 async function loadAdminTickets() {
     try {
-        const response = await fetch(`/api/tickets-enhanced/list?token=${currentToken}`);
-        const data = await response.json();
+        const tickets = await fetchAllTickets() || [];
         
         let html = '';
-        data.tickets.forEach(ticket => {
+        tickets.forEach(ticket => {
             const createdDate = new Date(ticket.createdAt);
             const formattedDate = createdDate.toLocaleString('en-IN', { 
                 dateStyle: 'medium', 
@@ -1133,6 +1149,7 @@ async function runSpeedTest() {
 
 // Logout
 function handleLogout() {
+    closeNotificationStream();
     fetch(`/api/auth/logout?token=${currentToken}`);
     currentToken = null;
     currentUser = null;
@@ -1155,12 +1172,13 @@ function handleLogout() {
 
 // ============ NOTIFICATION SYSTEM ============
 
+let notificationStream = null;
+let notificationPollTimer = null;
+
 // Load notifications when dashboard loads
 function initializeNotifications() {
     if (currentRole === 'CUSTOMER') {
-        loadNotificationCount();
-        // Check for new notifications every 30 seconds
-        setInterval(loadNotificationCount, 30000);
+        openNotificationStream();
         
         // Request browser notification permission
         if ('Notification' in window && Notification.permission === 'default') {
@@ -1169,26 +1187,79 @@ function initializeNotifications() {
     }
 }
 
+// Push unread counts and new notifications over Server-Sent Events; poll only if unavailable
+function openNotificationStream() {
+    closeNotificationStream();
+    if (!('EventSource' in window)) {
+        startNotificationPolling();
+        return;
+    }
+    notificationStream = new EventSource(`/api/notifications/stream?token=${encodeURIComponent(currentToken)}`);
+    notificationStream.addEventListener('count', event => {
+        updateNotificationBadge(JSON.parse(event.data).unreadCount);
+    });
+    notificationStream.addEventListener('notification', event => {
+        const notification = JSON.parse(event.data);
+        showBrowserNotification(notification.title, notification.message);
+        const panel = document.getElementById('notificationPanel');
+        if (panel && panel.style.display === 'block') {
+            loadNotifications();
+        }
+    });
+    notificationStream.onopen = () => stopNotificationPolling();
+    notificationStream.onerror = () => {
+        // EventSource retries by itself; it gives up (CLOSED) on errors such as 401 or 503
+        if (notificationStream && notificationStream.readyState === EventSource.CLOSED) {
+            notificationStream = null;
+            startNotificationPolling();
+        }
+    };
+}
+
+function closeNotificationStream() {
+    if (notificationStream) {
+        notificationStream.close();
+        notificationStream = null;
+    }
+    stopNotificationPolling();
+}
+
+function startNotificationPolling() {
+    if (notificationPollTimer) return;
+    loadNotificationCount();
+    notificationPollTimer = setInterval(loadNotificationCount, 30000);
+}
+
+function stopNotificationPolling() {
+    if (notificationPollTimer) {
+        clearInterval(notificationPollTimer);
+        notificationPollTimer = null;
+    }
+}
+
 // Load unread notification count
 async function loadNotificationCount() {
     try {
         const response = await fetch(`/api/notifications/count?token=${currentToken}`);
         const data = await response.json();
-        
-        const badge = document.getElementById('notificationBadge');
-        if (badge) {
-            if (data.status === 'success' && data.unreadCount > 0) {
-                badge.textContent = data.unreadCount;
-                badge.style.display = 'inline-block';
-            } else {
-                badge.style.display = 'none';
-            }
-        }
+        updateNotificationBadge(data.status === 'success' ? data.unreadCount : 0);
     } catch (error) {
         console.error('Error loading notification count:', error);
     }
 }
 
+function updateNotificationBadge(unreadCount) {
+    const badge = document.getElementById('notificationBadge');
+    if (badge) {
+        if (unreadCount > 0) {
+            badge.textContent = unreadCount;
+            badge.style.display = 'inline-block';
+        } else {
+            badge.style.display = 'none';
+        }
+    }
+}
+
 // Toggle notification panel
 async function toggleNotificationPanel() {
     const panel = document.getElementById('notificationPanel');
@@ -1296,7 +1367,7 @@ async function markNotificationRead(notificationId) {
         
         // Reload notifications and count
         loadNotifications();
-        loadNotificationCount();
+        if (!notificationStream) loadNotificationCount();
     } catch (error) {
         console.error('Error marking notification as read:', error);
     }
@@ -1311,7 +1382,7 @@ async function markAllNotificationsRead() {
         });
         
         loadNotifications();
-        loadNotificationCount();
+        if (!notificationStream) loadNotificationCount();
         alert('✓ All notifications marked as read');
     } catch (error) {
         alert('Error: ' + error.message);
@@ -1427,7 +1498,7 @@ async function sendTestNotification() {
         
         if (data.status === 'success') {
             alert('✓ Test notification sent! Check your email and notification panel.');
-            loadNotificationCount();
+            if (!notificationStream) loadNotificationCount();
         } else {
             alert('Error: ' + data.message);
         }
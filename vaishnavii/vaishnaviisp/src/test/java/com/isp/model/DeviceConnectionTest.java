@@ -0,0 +1,59 @@
+package com.isp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeviceConnectionTest {
+
+    @Test
+    public void testConcurrentUsageUpdatesAreNotLost() throws Exception {
+        DeviceConnection device = new DeviceConnection("dev-1", "cust-1", "Router", "AA:BB:CC:DD:EE:FF");
+        int threads = 8, updates = 20_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < updates; i++) device.addDataBytes(1_000);
+                }));
+            }
+            for (Future<?> f : futures) f.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals((long) threads * updates * 1_000, device.getDataUsedBytes());
+    }
+
+    @Test
+    public void testDisconnectWinsOverLaterUsage() throws Exception {
+        DeviceConnection device = new DeviceConnection("dev-1", "cust-1", "Router", "AA:BB:CC:DD:EE:FF");
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> disconnects = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                disconnects.add(pool.submit(() -> {
+                    for (int i = 0; i < 1_000; i++) device.addDataUsage(0.001);
+                    return device.disconnect(5.0);
+                }));
+            }
+            int won = 0;
+            for (Future<Boolean> f : disconnects) if (f.get(30, TimeUnit.SECONDS)) won++;
+            assertEquals(1, won);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertFalse(device.isActive());
+        assertNotNull(device.getDisconnectTime());
+        assertEquals(5.0, device.getDataUsedGB(), 1e-9);
+        assertFalse(device.addDataUsage(1.0));
+        assertEquals(5.0, device.getDataUsedGB(), 1e-9);
+    }
+}
@@ -0,0 +1,141 @@
+package com.isp.repo;
+
+import com.isp.model.DeviceConnection;
+import com.isp.util.SchemaMigrator;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeviceConnectionRepositoryTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 10, 12, 0);
+
+    private static DeviceConnection device(String id, String customerId, String mac, int minutesAgo) {
+        return new DeviceConnection(id, customerId, "Device " + id, mac, NOW.minusMinutes(minutesAgo));
+    }
+
+    @Test
+    public void testIndexesFollowConnectAndDisconnect() {
+        DeviceConnectionRepository repo = new DeviceConnectionRepository();
+        DeviceConnection phone = device("d1", "cust-1", "aa:bb:cc:dd:ee:01", 30);
+        DeviceConnection laptop = device("d2", "cust-1", "AA:BB:CC:DD:EE:02", 20);
+        DeviceConnection reused = device("d3", "cust-2", "AA-BB-CC-DD-EE-01", 10);
+        repo.save(laptop);
+        repo.save(phone);
+        repo.save(reused);
+
+        assertSame(phone, repo.findById("d1").orElseThrow());
+        assertEquals(List.of(phone, laptop), repo.findByCustomerId("cust-1"));
+        assertEquals(List.of(phone, reused), repo.findByMacAddress("AA:BB:CC:DD:EE:01"));
+        assertEquals(3, repo.findAllActive().size());
+
+        phone.disconnect(1.0);
+        repo.update(phone);
+
+        assertEquals(List.of(laptop), repo.findActiveByCustomerId("cust-1"));
+        assertEquals(List.of(laptop, reused), repo.findAllActive());
+        assertEquals(2, repo.findByCustomerId("cust-1").size());
+        assertTrue(repo.findActiveByCustomerId("cust-3").isEmpty());
+        assertTrue(repo.findById("missing").isEmpty());
+    }
+
+    @Test
+    public void testChangesAreWrittenBehindAndReloaded() throws SQLException {
+        String url = "jdbc:h2:mem:devices-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        new SchemaMigrator(() -> DriverManager.getConnection(url)).migrate();
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO users (id, username, email, password_hash, role, status) VALUES ('u1', 'u1', 'u1@example.com', 'x', 'CUSTOMER', 'ACTIVE')");
+            stmt.execute("INSERT INTO customer_profiles (id, user_id, full_name) VALUES ('cust-1', 'u1', 'Customer One')");
+        }
+
+        DeviceConnection phone = device("d1", "cust-1", "AA:BB:CC:DD:EE:01", 30);
+        try (DeviceConnectionRepository repo = new DeviceConnectionRepository(() -> DriverManager.getConnection(url),
+                new DeviceConnectionRepository.Settings(60_000))) {
+            repo.save(phone);
+            repo.save(device("d2", "cust-1", "AA:BB:CC:DD:EE:02", 20));
+            repo.save(device("d3", "unknown", "AA:BB:CC:DD:EE:03", 10));
+            repo.flush();
+
+            DeviceConnectionRepository.Stats stats = repo.getStats();
+            assertEquals(2, stats.rowsWritten());
+            assertEquals(1, stats.rowsDropped());
+            assertEquals(0, stats.pendingWrites());
+
+            phone.addDataUsage(2.5);
+            phone.disconnect(3.0);
+            repo.update(phone);
+        }
+
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM device_connections")) {
+            rs.next();
+            assertEquals(2, rs.getInt(1));
+        }
+
+        try (DeviceConnectionRepository reloaded = new DeviceConnectionRepository(() -> DriverManager.getConnection(url),
+                new DeviceConnectionRepository.Settings(60_000))) {
+            DeviceConnection loaded = reloaded.findById("d1").orElseThrow();
+            assertFalse(loaded.isActive());
+            assertEquals(3.0, loaded.getDataUsedGB(), 0.0001);
+            assertEquals(List.of("d2"), reloaded.findActiveByCustomerId("cust-1").stream().map(DeviceConnection::getId).toList());
+            assertEquals(1, reloaded.findByMacAddress("aa:bb:cc:dd:ee:01").size());
+        }
+    }
+
+    @Test
+    public void testOnlyActiveAndRecentConnectionsAreHeldInMemory() throws SQLException {
+        String url = "jdbc:h2:mem:devices-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        new SchemaMigrator(() -> DriverManager.getConnection(url)).migrate();
+        LocalDateTime now = LocalDateTime.now();
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO users (id, username, email, password_hash, role, status) VALUES ('u1', 'u1', 'u1@example.com', 'x', 'CUSTOMER', 'ACTIVE')");
+            stmt.execute("INSERT INTO customer_profiles (id, user_id, full_name) VALUES ('cust-1', 'u1', 'Customer One')");
+        }
+
+        try (DeviceConnectionRepository repo = new DeviceConnectionRepository(() -> DriverManager.getConnection(url),
+                new DeviceConnectionRepository.Settings(60_000, 30))) {
+            DeviceConnection old = new DeviceConnection("old", "cust-1", "Old", "aa-bb-cc-dd-ee-01", now.minusDays(90));
+            old.disconnect(1.0);
+            repo.save(old);
+            repo.save(new DeviceConnection("long", "cust-1", "Long", "AA:BB:CC:DD:EE:02", now.minusDays(60)));
+            repo.save(new DeviceConnection("new", "cust-1", "New", "AA:BB:CC:DD:EE:01", now.minusHours(1)));
+            repo.flush();
+        }
+
+        try (DeviceConnectionRepository repo = new DeviceConnectionRepository(() -> DriverManager.getConnection(url),
+                new DeviceConnectionRepository.Settings(60_000, 30))) {
+            assertEquals(List.of("long", "new"), repo.findAll().stream().map(DeviceConnection::getId).toList());
+            assertEquals(2, repo.getStats().connections());
+
+            // Older history comes from the database
+            assertEquals(List.of("old", "long", "new"), repo.findByCustomerId("cust-1").stream().map(DeviceConnection::getId).toList());
+            assertEquals(List.of("old", "new"), repo.findByMacAddress("AA:BB:CC:DD:EE:01").stream().map(DeviceConnection::getId).toList());
+            assertEquals(1.0, repo.findById("old").orElseThrow().getDataUsedGB(), 0.0001);
+            assertEquals(2, repo.getStats().connections());
+
+            DeviceConnection recent = repo.findById("new").orElseThrow();
+            recent.disconnect(2.0);
+            repo.update(recent);
+            repo.evictHistory(now.plusDays(1));
+            assertEquals(2, repo.getStats().connections());
+
+            repo.flush();
+            repo.evictHistory(now.plusDays(1));
+            assertEquals(List.of("long"), repo.findAll().stream().map(DeviceConnection::getId).toList());
+            assertEquals(2.0, repo.findById("new").orElseThrow().getDataUsedGB(), 0.0001);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.isp.repo;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InListTest {
+
+    @Test
+    public void testListsArePaddedToFixedSizes() {
+        assertEquals(1, InList.size(1));
+        assertEquals(10, InList.size(2));
+        assertEquals(10, InList.size(10));
+        assertEquals(50, InList.size(11));
+        assertEquals(100, InList.size(51));
+        assertEquals(500, InList.size(500));
+        assertThrows(IllegalArgumentException.class, () -> InList.size(501));
+        assertEquals("?, ?, ?, ?, ?, ?, ?, ?, ?, ?", InList.placeholders(3));
+    }
+
+    @Test
+    public void testPaddingRepeatsTheLastId() throws SQLException {
+        String url = "jdbc:h2:mem:inlist-" + System.nanoTime() + ";MODE=MySQL";
+        try (Connection conn = DriverManager.getConnection(url);
+             PreparedStatement stmt = conn.prepareStatement("SELECT X FROM SYSTEM_RANGE(1, 20)"
+                     + " WHERE CAST(X AS VARCHAR) IN (" + InList.placeholders(3) + ") ORDER BY X")) {
+            assertEquals(11, InList.bind(stmt, 1, List.of("4", "7", "12")));
+            List<Long> found = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) found.add(rs.getLong(1));
+            }
+            assertEquals(List.of(4L, 7L, 12L), found);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.isp.repo;
+
+import com.isp.model.Notification;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotificationCacheTest {
+
+    private final NotificationCache cache = new NotificationCache(new NotificationCache.Settings(2, 3));
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private static Notification notification(String userId, String title) {
+        return new Notification(userId, "BROWSER", "SYSTEM", title, "-", "LOW");
+    }
+
+    private int loadCount(String userId) {
+        loads.incrementAndGet();
+        return 5;
+    }
+
+    @Test
+    public void testUnreadCountServedFromMemoryAndKeptCurrent() {
+        assertEquals(5, cache.unreadCount("u1", this::loadCount));
+        assertEquals(5, cache.unreadCount("u1", this::loadCount));
+        assertEquals(1, loads.get());
+
+        cache.onInserted(notification("u1", "new"));
+        assertEquals(6, cache.unreadCount("u1", this::loadCount));
+        cache.onRead("u1", "whatever");
+        assertEquals(5, cache.unreadCount("u1", this::loadCount));
+        cache.onAllRead("u1");
+        assertEquals(0, cache.unreadCount("u1", this::loadCount));
+        assertEquals(1, loads.get());
+
+        NotificationCache.Stats stats = cache.getStats();
+        assertEquals(4, stats.hits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    public void testRecentRingTracksInsertsAndReads() {
+        List<Notification> stored = new ArrayList<>(List.of(notification("u1", "b"), notification("u1", "a")));
+        List<Notification> first = cache.recent("u1", 3, (id, limit) -> {
+            loads.incrementAndGet();
+            return new ArrayList<>(stored.subList(0, Math.min(limit, stored.size())));
+        });
+        assertEquals(2, first.size());
+
+        Notification newest = notification("u1", "c");
+        cache.onInserted(newest);
+        cache.onRead("u1", newest.getId());
+
+        List<Notification> second = cache.recent("u1", 3, (id, limit) -> fail("should be cached"));
+        assertEquals(List.of("c", "b", "a"), second.stream().map(Notification::getTitle).toList());
+        assertTrue(second.get(0).isRead());
+        // Ring still holds the user's whole history, so unread is answered without a query
+        assertEquals(2, cache.unread("u1", id -> fail("should be cached")).size());
+        assertEquals(1, loads.get());
+
+        // A fourth notification pushes the oldest out; larger requests go back to the database
+        cache.onInserted(notification("u1", "d"));
+        assertEquals(3, cache.recent("u1", 3, (id, limit) -> fail("should be cached")).size());
+        cache.recent("u1", 10, (id, limit) -> {
+            loads.incrementAndGet();
+            return new ArrayList<>();
+        });
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testCallersCannotChangeCachedNotifications() {
+        Notification saved = notification("u1", "a");
+        cache.recent("u1", 3, (id, limit) -> new ArrayList<>());
+        cache.onInserted(saved);
+        saved.setRead(true);
+
+        Notification returned = cache.recent("u1", 3, (id, limit) -> fail("should be cached")).get(0);
+        assertFalse(returned.isRead());
+        returned.setTitle("changed");
+
+        assertEquals("a", cache.recent("u1", 3, (id, limit) -> fail("should be cached")).get(0).getTitle());
+        assertEquals(1, cache.unread("u1", id -> fail("should be cached")).size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedUserEvicted() {
+        cache.unreadCount("u1", this::loadCount);
+        cache.unreadCount("u2", this::loadCount);
+        cache.unreadCount("u1", this::loadCount);
+        cache.unreadCount("u3", this::loadCount);
+
+        assertEquals(1, cache.getStats().evictions());
+        assertEquals(2, cache.getStats().users());
+        cache.unreadCount("u1", this::loadCount);
+        assertEquals(3, loads.get());
+        cache.unreadCount("u2", this::loadCount);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void testLoadRacingAWriteIsDiscarded() {
+        int loaded = cache.unreadCount("u1", id -> {
+            // A notification arrives while the count query is running
+            cache.onInserted(notification("u1", "racing"));
+            return 5;
+        });
+        assertEquals(5, loaded);
+        assertEquals(0, cache.getStats().users());
+        assertEquals(9, cache.unreadCount("u1", id -> 9));
+    }
+
+    @Test
+    public void testInvalidateForcesReload() {
+        cache.unreadCount("u1", this::loadCount);
+        cache.invalidate("u1");
+        cache.unreadCount("u1", this::loadCount);
+        cache.invalidateAll();
+        cache.unreadCount("u1", this::loadCount);
+        assertEquals(3, loads.get());
+    }
+}
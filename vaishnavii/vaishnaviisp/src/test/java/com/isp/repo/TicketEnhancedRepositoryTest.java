@@ -0,0 +1,198 @@
+package com.isp.repo;
+
+import com.isp.model.TicketEnhanced;
+import com.isp.model.TicketMessage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketEnhancedRepositoryTest {
+
+    private String url;
+    private final AtomicInteger connectionsOpened = new AtomicInteger();
+    private TicketEnhancedRepository repository;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        url = "jdbc:h2:mem:tickets-" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE tickets (
+                    id VARCHAR(255) PRIMARY KEY,
+                    customer_id VARCHAR(255) NOT NULL,
+                    customer_name VARCHAR(255) NOT NULL,
+                    subject VARCHAR(500) NOT NULL,
+                    description TEXT NOT NULL,
+                    status VARCHAR(50) NOT NULL,
+                    priority VARCHAR(50) DEFAULT 'MEDIUM',
+                    assigned_to_admin_id VARCHAR(255),
+                    assigned_to_admin_name VARCHAR(255),
+                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                    resolved_at TIMESTAMP,
+                    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+            """);
+            stmt.execute("""
+                CREATE TABLE ticket_messages (
+                    id VARCHAR(255) PRIMARY KEY,
+                    ticket_id VARCHAR(255) NOT NULL,
+                    sender_id VARCHAR(255) NOT NULL,
+                    sender_name VARCHAR(255) NOT NULL,
+                    message TEXT NOT NULL,
+                    message_type VARCHAR(50) NOT NULL,
+                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+            """);
+        }
+        repository = new TicketEnhancedRepository(() -> {
+            connectionsOpened.incrementAndGet();
+            return DriverManager.getConnection(url);
+        });
+    }
+
+    private List<TicketEnhanced> seed(int count, int messagesEach) {
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 9, 0);
+        List<TicketEnhanced> tickets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Pairs of tickets share a timestamp so the cursor has to break ties on id
+            TicketEnhanced ticket = new TicketEnhanced(String.format("t-%04d", i), i % 2 == 0 ? "cust-a" : "cust-b",
+                    "Customer", "Subject " + i, "Description " + i, TicketEnhanced.Status.OPEN,
+                    TicketEnhanced.Priority.MEDIUM, base.plusMinutes(i / 2), null, null, null);
+            for (int m = 0; m < messagesEach; m++) {
+                ticket.addMessage(new TicketMessage("m-" + i + "-" + m, ticket.getId(), "u", "User", "message " + m,
+                        "CUSTOMER", base.plusMinutes(i / 2).plusSeconds(m + 1)));
+            }
+            repository.save(ticket);
+            tickets.add(ticket);
+        }
+        return tickets;
+    }
+
+    @Test
+    public void testFindAllLoadsMessagesInOneConnection() {
+        seed(30, 3);
+        connectionsOpened.set(0);
+
+        List<TicketEnhanced> all = repository.findAll();
+
+        assertEquals(1, connectionsOpened.get());
+        assertEquals(30, all.size());
+        for (TicketEnhanced ticket : all) {
+            assertEquals(3, ticket.getMessages().size());
+            assertEquals("message 0", ticket.getMessages().get(0).getMessage());
+            assertEquals(ticket.getId(), ticket.getMessages().get(2).getTicketId());
+        }
+    }
+
+    @Test
+    public void testFindByIdRestoresFields() {
+        seed(1, 2);
+        TicketEnhanced ticket = repository.findById("t-0000").orElseThrow();
+        assertEquals("cust-a", ticket.getCustomerId());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 9, 0), ticket.getCreatedAt());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 9, 0, 1), ticket.getMessages().get(0).getSentAt());
+        assertTrue(repository.findById("missing").isEmpty());
+    }
+
+    @Test
+    public void testKeysetPagesCoverEveryTicketOnce() {
+        seed(25, 1);
+        Set<String> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        LocalDateTime previous = LocalDateTime.MAX;
+        do {
+            TicketEnhancedRepository.Page page = repository.findPage(null, cursor, 7, false);
+            for (TicketEnhanced ticket : page.tickets()) {
+                assertTrue(seen.add(ticket.getId()), "duplicate " + ticket.getId());
+                assertFalse(ticket.getCreatedAt().isAfter(previous));
+                assertEquals(1, ticket.getMessages().size());
+                previous = ticket.getCreatedAt();
+            }
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(25, seen.size());
+        assertEquals(4, pages);
+    }
+
+    @Test
+    public void testSummaryPageCarriesCountsWithoutBodies() {
+        seed(6, 4);
+        TicketEnhancedRepository.Page page = repository.findPage("cust-b", null, 10, true);
+
+        assertEquals(3, page.tickets().size());
+        assertNull(page.nextCursor());
+        for (TicketEnhanced ticket : page.tickets()) {
+            assertEquals("cust-b", ticket.getCustomerId());
+            assertTrue(ticket.getMessages().isEmpty());
+            assertEquals(4, ticket.getMessageCount());
+        }
+    }
+
+    @Test
+    public void testAppendMessageKeepsExistingRows() throws SQLException {
+        seed(1, 2);
+        TicketEnhanced ticket = repository.findHeaderById("t-0000").orElseThrow();
+        assertTrue(ticket.getMessages().isEmpty());
+
+        repository.appendMessage(new TicketMessage("m-new", "t-0000", "admin", "Admin", "on it", "ADMIN",
+                LocalDateTime.of(2024, 1, 1, 10, 0)));
+        ticket.setStatus(TicketEnhanced.Status.IN_PROGRESS);
+        repository.saveHeader(ticket);
+
+        TicketEnhanced reloaded = repository.findById("t-0000").orElseThrow();
+        assertEquals(TicketEnhanced.Status.IN_PROGRESS, reloaded.getStatus());
+        assertEquals(3, reloaded.getMessages().size());
+        assertEquals("on it", reloaded.getMessages().get(2).getMessage());
+
+        // Re-saving the whole ticket must not duplicate or drop messages
+        repository.save(reloaded);
+        assertEquals(3, countMessages("t-0000"));
+    }
+
+    @Test
+    public void testAppendMessagesInBatches() throws SQLException {
+        seed(1, 0);
+        List<TicketMessage> imported = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            imported.add(new TicketMessage("imp-" + i, "t-0000", "u", "User", "line " + i, "CUSTOMER",
+                    LocalDateTime.of(2024, 1, 2, 0, 0).plusSeconds(i)));
+        }
+        connectionsOpened.set(0);
+        repository.appendMessages(imported);
+
+        assertEquals(1, connectionsOpened.get());
+        assertEquals(1200, countMessages("t-0000"));
+    }
+
+    private int countMessages(String ticketId) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM ticket_messages WHERE ticket_id = '" + ticketId + "'")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void testRejectsMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> repository.findPage(null, "not-a-cursor", 10, true));
+    }
+}
@@ -0,0 +1,88 @@
+package com.isp.repo;
+
+import com.isp.model.NetworkUsage;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UsageRepositoryTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Test
+    public void testRunningTotalsPerCustomer() {
+        UsageRepository repo = new UsageRepository();
+        repo.save(new NetworkUsage("u1", "cust-1", 10.0, START));
+        repo.save(new NetworkUsage("u2", "cust-1", 5.0, START.plusDays(1)));
+        repo.save(new NetworkUsage("u3", "cust-2", 2.0, START));
+
+        assertEquals(15.0, repo.getTotalGigabytes("cust-1"), 0.0001);
+        assertEquals(2, repo.getRecordCount("cust-1"));
+        assertEquals(2.0, repo.getTotalGigabytes("cust-2"), 0.0001);
+        assertEquals(0.0, repo.getTotalGigabytes("nobody"), 0.0001);
+        assertEquals(3, repo.findAll().size());
+    }
+
+    @Test
+    public void testWindowedTotalsWithLateRecords() {
+        UsageRepository repo = new UsageRepository();
+        for (int day = 0; day < 60; day++) {
+            repo.save(new NetworkUsage("d" + day, "cust-1", 1.0, START.plusDays(day)));
+        }
+        // Arrives late but belongs to January
+        repo.save(new NetworkUsage("late", "cust-1", 100.0, START.plusDays(10).plusHours(1)));
+
+        LocalDateTime feb = START.plusMonths(1);
+        assertEquals(131.0, repo.getTotalGigabytes("cust-1", START, feb), 0.0001);
+        assertEquals(29.0, repo.getTotalGigabytes("cust-1", feb, START.plusMonths(2)), 0.0001);
+        assertEquals(160.0, repo.getTotalGigabytes("cust-1", null, null), 0.0001);
+        assertEquals(32, repo.findByCustomerId("cust-1", START, feb).size());
+
+        List<NetworkUsage> all = repo.findByCustomerId("cust-1");
+        assertEquals("late", all.get(11).getId());
+    }
+
+    @Test
+    public void testSaveAllKeepsOrderAndTotals() {
+        UsageRepository repo = new UsageRepository();
+        repo.save(new NetworkUsage("first", "cust-1", 1.0, START.plusDays(5)));
+        List<NetworkUsage> batch = new ArrayList<>();
+        for (int day = 6; day < 20; day++) {
+            batch.add(new NetworkUsage("d" + day, "cust-1", 1.0, START.plusDays(day)));
+        }
+        batch.add(new NetworkUsage("early", "cust-1", 10.0, START));
+        batch.add(new NetworkUsage("other", "cust-2", 4.0, START));
+        repo.saveAll(batch);
+
+        assertEquals(16, repo.getRecordCount("cust-1"));
+        assertEquals(25.0, repo.getTotalGigabytes("cust-1"), 0.0001);
+        assertEquals(11.0, repo.getTotalGigabytes("cust-1", START, START.plusDays(6)), 0.0001);
+        assertEquals("early", repo.findByCustomerId("cust-1").get(0).getId());
+        assertEquals(4.0, repo.getTotalGigabytes("cust-2"), 0.0001);
+    }
+
+    @Test
+    public void testConcurrentSaves() throws InterruptedException {
+        UsageRepository repo = new UsageRepository();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            String customerId = "cust-" + (t % 2);
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    repo.save(new NetworkUsage(customerId + "-" + i, customerId, 0.5, LocalDateTime.now()));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(4000, repo.getRecordCount("cust-0"));
+        assertEquals(2000.0, repo.getTotalGigabytes("cust-1"), 0.0001);
+    }
+}
@@ -0,0 +1,178 @@
+package com.isp.service;
+
+import com.isp.model.BillingRunResult;
+import com.isp.model.Customer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BillingRunEngineTest {
+
+    @TempDir
+    Path checkpointDir;
+
+    private static List<Customer> customers(int count) {
+        List<Customer> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            list.add(new Customer("cust-" + i, "Customer " + i, "c" + i + "@example.com"));
+        }
+        return list;
+    }
+
+    @Test
+    public void testRunBillsEveryCustomerAcrossPartitions() {
+        BillingRunEngine engine = new BillingRunEngine(
+                c -> new BillingRunResult.CustomerBill(c.getId(), c.getName(), 2.0, 21.0),
+                new BillingRunEngine.Settings(4, 2, checkpointDir));
+
+        BillingRunResult result = engine.run(customers(100));
+        engine.shutdown();
+
+        assertTrue(result.isComplete());
+        assertFalse(result.isResumed());
+        assertEquals(100, result.getCustomersBilled());
+        assertEquals(2100.0, result.getTotalAmount(), 0.0001);
+        assertEquals(4, result.getPartitions().size());
+        assertEquals(100, result.getPartitions().stream().mapToInt(BillingRunResult.PartitionResult::customers).sum());
+    }
+
+    @Test
+    public void testCustomerFailuresAreReportedNotFatal() {
+        BillingRunEngine engine = new BillingRunEngine(c -> {
+            if (c.getId().equals("cust-3")) throw new IllegalArgumentException("no plan");
+            return new BillingRunResult.CustomerBill(c.getId(), c.getName(), 0, 20.0);
+        }, new BillingRunEngine.Settings(2, 2, null));
+
+        BillingRunResult result = engine.run(customers(10));
+        engine.shutdown();
+
+        assertTrue(result.isComplete());
+        assertEquals(9, result.getCustomersBilled());
+        assertEquals("no plan", result.getFailures().get("cust-3"));
+    }
+
+    @Test
+    public void testInterruptedRunResumesFromCheckpoint() {
+        List<Customer> customers = customers(50);
+        BillingRunEngine.Settings settings = new BillingRunEngine.Settings(5, 2, checkpointDir);
+
+        // First run dies inside one partition
+        BillingRunEngine crashing = new BillingRunEngine(c -> {
+            if (c.getId().equals("cust-7")) throw new OutOfMemoryError("simulated crash");
+            return new BillingRunResult.CustomerBill(c.getId(), c.getName(), 1.0, 20.5);
+        }, settings);
+        BillingRunResult first = crashing.run(customers);
+        crashing.shutdown();
+        assertFalse(first.isComplete());
+
+        AtomicInteger billed = new AtomicInteger();
+        BillingRunEngine resuming = new BillingRunEngine(c -> {
+            billed.incrementAndGet();
+            return new BillingRunResult.CustomerBill(c.getId(), c.getName(), 1.0, 20.5);
+        }, settings);
+        BillingRunResult second = resuming.run(customers);
+
+        assertTrue(second.isResumed());
+        assertEquals(first.getRunId(), second.getRunId());
+        assertTrue(second.isComplete());
+        assertEquals(50, second.getCustomersBilled());
+        int failedPartitionSize = first.getPartitions().stream()
+                .filter(BillingRunResult.PartitionResult::failed)
+                .mapToInt(BillingRunResult.PartitionResult::customers)
+                .sum();
+        assertEquals(failedPartitionSize, billed.get());
+
+        // The finished run is not resumed again
+        BillingRunResult third = resuming.run(customers);
+        resuming.shutdown();
+        assertFalse(third.isResumed());
+        assertNotEquals(first.getRunId(), third.getRunId());
+    }
+
+    @Test
+    public void testRunWithFailedCustomersStaysOpenUntilTheyAreBilled() {
+        List<Customer> customers = customers(20);
+        BillingRunEngine.Settings settings = new BillingRunEngine.Settings(4, 2, checkpointDir);
+
+        BillingRunEngine failing = new BillingRunEngine(c -> {
+            if (c.getId().equals("cust-3")) throw new IllegalArgumentException("no plan");
+            return new BillingRunResult.CustomerBill(c.getId(), c.getName(), 0, 20.0);
+        }, settings);
+        BillingRunResult first = failing.run(customers);
+        failing.shutdown();
+        assertEquals(19, first.getCustomersBilled());
+
+        List<String> billed = new ArrayList<>();
+        BillingRunEngine retrying = new BillingRunEngine(c -> {
+            synchronized (billed) {
+                billed.add(c.getId());
+            }
+            return new BillingRunResult.CustomerBill(c.getId(), c.getName(), 0, 20.0);
+        }, settings);
+        BillingRunResult second = retrying.run(customers);
+
+        assertTrue(second.isResumed());
+        assertEquals(first.getRunId(), second.getRunId());
+        assertEquals(List.of("cust-3"), billed);
+        assertEquals(20, second.getCustomersBilled());
+        assertTrue(second.getFailures().isEmpty());
+
+        BillingRunResult third = retrying.run(customers);
+        retrying.shutdown();
+        assertFalse(third.isResumed());
+    }
+
+    @Test
+    public void testRunDirectoriesOlderThanRetentionArePruned() throws Exception {
+        BillingRunEngine engine = new BillingRunEngine(
+                c -> new BillingRunResult.CustomerBill(c.getId(), c.getName(), 0, 20.0),
+                new BillingRunEngine.Settings(2, 1, checkpointDir, Duration.ofDays(30)));
+
+        BillingRunResult old = engine.run(customers(5));
+        Path oldRun = checkpointDir.resolve(old.getRunId());
+        Files.setLastModifiedTime(oldRun.resolve("run.properties"),
+                FileTime.from(Instant.now().minus(Duration.ofDays(31))));
+
+        BillingRunResult recent = engine.run(customers(5));
+        engine.shutdown();
+
+        assertFalse(Files.exists(oldRun));
+        assertTrue(Files.exists(checkpointDir.resolve(recent.getRunId()).resolve("run.properties")));
+    }
+
+    @Test
+    public void testUnfinishedRunIsNotResumedInALaterPeriod() {
+        List<Customer> customers = customers(20);
+        BillingRunEngine.Settings settings = new BillingRunEngine.Settings(4, 2, checkpointDir);
+        AtomicInteger billed = new AtomicInteger();
+        BillingRunEngine engine = new BillingRunEngine(c -> {
+            if (c.getId().equals("cust-3")) throw new IllegalArgumentException("no plan");
+            billed.incrementAndGet();
+            return new BillingRunResult.CustomerBill(c.getId(), c.getName(), 0, 20.0);
+        }, settings);
+
+        BillingRunResult march = engine.run(customers, YearMonth.of(2026, 3));
+        BillingRunResult marchRetry = engine.run(customers, YearMonth.of(2026, 3));
+        assertTrue(marchRetry.isResumed());
+        assertEquals(19, billed.get());
+
+        // The customer that keeps failing does not make April reuse March's bills
+        BillingRunResult april = engine.run(customers, YearMonth.of(2026, 4));
+        engine.shutdown();
+        assertFalse(april.isResumed());
+        assertNotEquals(march.getRunId(), april.getRunId());
+        assertEquals(38, billed.get());
+    }
+}
@@ -0,0 +1,141 @@
+package com.isp.service;
+
+import com.isp.model.DailyUsage;
+import com.isp.repo.DailyUsageRepository;
+import com.isp.util.SchemaMigrator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DailyUsageRollupTest {
+
+    private static final LocalDateTime TODAY = LocalDate.now().atTime(10, 0);
+
+    private DailyUsageRepository repo;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        String url = "jdbc:h2:mem:daily-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE daily_usage (
+                    id VARCHAR(255) PRIMARY KEY,
+                    customer_id VARCHAR(255) NOT NULL,
+                    date DATE NOT NULL,
+                    data_used_gb DOUBLE DEFAULT 0,
+                    upload_gb DOUBLE DEFAULT 0,
+                    download_gb DOUBLE DEFAULT 0,
+                    peak_speed_mbps DOUBLE DEFAULT 0,
+                    id_bin BINARY(16) NULL,
+                    total_devices_connected INT DEFAULT 0,
+                    UNIQUE KEY unique_customer_date (customer_id, date)
+                )
+            """);
+        }
+        repo = new DailyUsageRepository(() -> DriverManager.getConnection(url));
+    }
+
+    private static UsageListener.Event device(String customerId, String deviceId, LocalDateTime at, double gb, double speed) {
+        return new UsageListener.Event(customerId, deviceId, at, gb, 0, 0, speed);
+    }
+
+    @Test
+    public void testFlushesAccumulateIntoOneRowPerDay() {
+        try (DailyUsageRollup rollup = new DailyUsageRollup(repo, new DailyUsageRollup.Settings(60_000))) {
+            rollup.onUsage(List.of(
+                    device("cust-1", "phone", TODAY, 1.0, 40),
+                    device("cust-1", "laptop", TODAY.plusHours(1), 2.0, 75),
+                    new UsageListener.Event("cust-1", null, TODAY, 0.5, 0.1, 0.4, 0),
+                    device("cust-1", "phone", TODAY.minusDays(1), 3.0, 20)));
+            rollup.flush();
+
+            rollup.onUsage(List.of(device("cust-1", "phone", TODAY.plusHours(2), 1.5, 60),
+                    device("cust-1", "tablet", TODAY.plusHours(2), 0.5, 10)));
+            rollup.flush();
+
+            assertEquals(3, rollup.getStats().rowsUpserted());
+            assertEquals(2, rollup.getStats().flushes());
+        }
+
+        DailyUsage today = repo.findByCustomerIdAndDate("cust-1", TODAY).orElseThrow();
+        assertEquals(5.5, today.getDataUsedGB(), 0.0001);
+        assertEquals(0.1, today.getUploadGB(), 0.0001);
+        assertEquals(75.0, today.getPeakSpeedMbps(), 0.0001);
+        assertEquals(3, today.getTotalDevicesConnected());
+
+        DailyUsage yesterday = repo.findByCustomerIdAndDate("cust-1", TODAY.minusDays(1)).orElseThrow();
+        assertEquals(3.0, yesterday.getDataUsedGB(), 0.0001);
+        assertEquals(1, yesterday.getTotalDevicesConnected());
+    }
+
+    @Test
+    public void testFailedFlushIsRetried() {
+        int[] calls = {0};
+        try (DailyUsageRollup rollup = new DailyUsageRollup(rows -> {
+            if (calls[0]++ == 0) throw new RuntimeException("database unavailable");
+            return repo.upsertAll(rows);
+        }, new DailyUsageRollup.Settings(60_000))) {
+            rollup.onUsage(List.of(device("cust-2", "phone", TODAY, 2.0, 30)));
+            assertThrows(RuntimeException.class, rollup::flush);
+
+            rollup.onUsage(List.of(device("cust-2", "phone", TODAY, 1.0, 30)));
+            rollup.flush();
+            assertEquals(1, rollup.getStats().failedFlushes());
+        }
+        assertEquals(3.0, repo.findByCustomerIdAndDate("cust-2", TODAY).orElseThrow().getDataUsedGB(), 0.0001);
+    }
+
+    @Test
+    public void testFinishedDaysAreDroppedOnceFlushed() {
+        try (DailyUsageRollup rollup = new DailyUsageRollup(repo, new DailyUsageRollup.Settings(60_000))) {
+            rollup.onUsage(List.of(device("cust-3", "phone", TODAY.minusDays(2), 1.0, 0),
+                    device("cust-3", "phone", TODAY, 1.0, 0)));
+            rollup.flush();
+            assertEquals(2, rollup.getStats().openDays());
+            rollup.flush();
+            assertEquals(1, rollup.getStats().openDays());
+        }
+    }
+
+    @Test
+    public void testRowsForUnknownCustomersAreDropped() throws SQLException {
+        String url = "jdbc:h2:mem:daily-fk-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        new SchemaMigrator(() -> DriverManager.getConnection(url)).migrate();
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO users (id, username, email, password_hash, role, status) VALUES ('u1', 'u1', 'u1@example.com', 'x', 'CUSTOMER', 'ACTIVE')");
+            stmt.execute("INSERT INTO customer_profiles (id, user_id, full_name) VALUES ('cust-1', 'u1', 'Customer One')");
+        }
+        DailyUsageRepository migrated = new DailyUsageRepository(() -> DriverManager.getConnection(url));
+
+        try (DailyUsageRollup rollup = new DailyUsageRollup(migrated, new DailyUsageRollup.Settings(60_000))) {
+            rollup.onUsage(List.of(
+                    device("cust-1", "phone", TODAY, 2.0, 30),
+                    device("no-such-customer", "phone", TODAY, 5.0, 30)));
+            rollup.flush();
+
+            DailyUsageRollup.Stats stats = rollup.getStats();
+            assertEquals(1, stats.rowsUpserted());
+            assertEquals(1, stats.rowsDropped());
+            assertEquals(0, stats.failedFlushes());
+
+            // Nothing is left to retry, so the next flush writes only new usage
+            rollup.onUsage(List.of(device("cust-1", "phone", TODAY, 1.0, 30)));
+            rollup.flush();
+            assertEquals(1, rollup.getStats().rowsDropped());
+        }
+        assertEquals(3.0, migrated.findByCustomerIdAndDate("cust-1", TODAY).orElseThrow().getDataUsedGB(), 0.0001);
+    }
+}
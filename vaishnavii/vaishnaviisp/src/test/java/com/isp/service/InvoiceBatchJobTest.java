@@ -0,0 +1,102 @@
+package com.isp.service;
+
+import com.isp.model.CustomerProfile;
+import com.isp.model.DataPlan;
+import com.isp.model.Invoice;
+import com.isp.repo.CustomerProfileRepository;
+import com.isp.repo.InvoiceRepository;
+import com.isp.repo.SequenceRepository;
+import com.isp.util.SchemaMigrator;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InvoiceBatchJobTest {
+
+    private static final YearMonth PERIOD = YearMonth.of(2025, 1);
+
+    @TempDir
+    Path archive;
+
+    private InvoiceRepository invoices;
+    private InvoiceNumberService numbers;
+    private final List<CustomerProfileRepository.Billable> customers = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        String url = "jdbc:h2:mem:invoices-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        new SchemaMigrator(() -> DriverManager.getConnection(url)).migrate();
+        invoices = new InvoiceRepository(() -> DriverManager.getConnection(url));
+        numbers = new InvoiceNumberService(new SequenceRepository(() -> DriverManager.getConnection(url)),
+                new InvoiceNumberService.Settings(5));
+        DataPlan plan = new DataPlan("plan-basic", "Basic", 50, 100.0, "Basic plan");
+        for (int i = 0; i < 7; i++) {
+            CustomerProfile profile = new CustomerProfile("profile-" + i, String.format("user-%02d", i), "Customer " + i);
+            profile.setCurrentPlan(plan);
+            customers.add(new CustomerProfileRepository.Billable(profile, "customer" + i + "@example.com"));
+        }
+    }
+
+    private List<CustomerProfileRepository.Billable> page(String afterUserId, int limit) {
+        return customers.stream()
+                .filter(b -> afterUserId == null || b.profile().getUserId().compareTo(afterUserId) > 0)
+                .limit(limit)
+                .toList();
+    }
+
+    @Test
+    public void testRendersEveryCustomerIntoArchive() throws Exception {
+        try (InvoiceBatchJob job = new InvoiceBatchJob(this::page, invoices, numbers, new InvoiceBatchJob.Settings(archive, 3, 3))) {
+            InvoiceBatchJob.Progress progress = job.run(PERIOD);
+
+            assertEquals(InvoiceBatchJob.State.COMPLETED, progress.state());
+            assertEquals(7, progress.customers());
+            assertEquals(7, progress.rendered());
+            assertEquals(0, progress.failed());
+        }
+
+        try (var files = Files.list(archive.resolve("2025").resolve("01"))) {
+            assertEquals(7, files.filter(p -> p.toString().endsWith(".pdf")).count());
+        }
+        Optional<Invoice> invoice = invoices.findByCustomerAndPeriod("user-03", "2025-01");
+        assertTrue(invoice.isPresent());
+        assertEquals(118.0, invoice.get().getTotalAmount(), 0.001);
+        Path pdf = Path.of(invoice.get().getPdfPath());
+        assertEquals(invoice.get().getInvoiceNumber() + ".pdf", pdf.getFileName().toString());
+        try (PDDocument doc = PDDocument.load(pdf.toFile())) {
+            String text = new PDFTextStripper().getText(doc);
+            assertTrue(text.contains("Customer 3"));
+            assertTrue(text.contains("Billing Period: 2025-01"));
+        }
+    }
+
+    @Test
+    public void testRerunSkipsInvoicedCustomers() {
+        try (InvoiceBatchJob job = new InvoiceBatchJob(this::page, invoices, numbers, new InvoiceBatchJob.Settings(archive, 2, 4))) {
+            job.run(PERIOD);
+            customers.add(new CustomerProfileRepository.Billable(
+                    new CustomerProfile("profile-new", "user-99", "Late Joiner"), "late@example.com"));
+            customers.get(customers.size() - 1).profile().setCurrentPlan(customers.get(0).profile().getCurrentPlan());
+
+            InvoiceBatchJob.Progress second = job.run(PERIOD);
+            assertEquals(8, second.customers());
+            assertEquals(7, second.skipped());
+            assertEquals(1, second.rendered());
+        }
+        assertTrue(invoices.findByCustomerAndPeriod("user-99", "2025-01").isPresent());
+    }
+}
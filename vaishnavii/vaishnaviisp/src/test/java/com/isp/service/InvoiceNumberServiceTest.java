@@ -0,0 +1,97 @@
+package com.isp.service;
+
+import com.isp.repo.SequenceRepository;
+import com.isp.util.SchemaMigrator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.DriverManager;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InvoiceNumberServiceTest {
+
+    private SequenceRepository sequences;
+
+    @BeforeEach
+    public void setUp() {
+        String url = "jdbc:h2:mem:sequences-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        new SchemaMigrator(() -> DriverManager.getConnection(url)).migrate();
+        sequences = new SequenceRepository(() -> DriverManager.getConnection(url));
+    }
+
+    @Test
+    public void testNumbersComeFromReservedBlocks() {
+        InvoiceNumberService numbers = new InvoiceNumberService(sequences, new InvoiceNumberService.Settings(10));
+
+        assertEquals("INV-202501-00000001", numbers.next(YearMonth.of(2025, 1)));
+        for (int i = 2; i <= 25; i++) {
+            assertEquals(i, numbers.nextValue());
+        }
+        assertEquals(3, numbers.getReservations());
+    }
+
+    @Test
+    public void testDraftNumbersAreStableAndTakeNoSequenceValue() {
+        InvoiceNumberService numbers = new InvoiceNumberService(sequences, new InvoiceNumberService.Settings(10));
+
+        assertEquals("DRAFT-202503-8XYZ9ABC", InvoiceNumberService.draft(YearMonth.of(2025, 3), "01hq3zk8xyz9abc"));
+        assertEquals("DRAFT-202503-C1", InvoiceNumberService.draft(YearMonth.of(2025, 3), "c1"));
+        // Ids created in the same millisecond share their ULID prefix but not their suffix
+        assertNotEquals(InvoiceNumberService.draft(YearMonth.of(2025, 3), "01HQ3ZK8AAAAAAAAAAAAAAAAA1"),
+                InvoiceNumberService.draft(YearMonth.of(2025, 3), "01HQ3ZK8AAAAAAAAAAAAAAAAA2"));
+        assertEquals(InvoiceNumberService.draft(YearMonth.of(2025, 3), "c1"), InvoiceNumberService.draft(YearMonth.of(2025, 3), "c1"));
+        assertEquals(1, numbers.nextValue());
+    }
+
+    @Test
+    public void testRestartSkipsToNextBlock() {
+        InvoiceNumberService first = new InvoiceNumberService(sequences, new InvoiceNumberService.Settings(10));
+        first.nextValue();
+        first.nextValue();
+
+        InvoiceNumberService restarted = new InvoiceNumberService(sequences, new InvoiceNumberService.Settings(10));
+        assertEquals(11, restarted.nextValue());
+    }
+
+    @Test
+    public void testConcurrentInstancesNeverCollide() throws Exception {
+        // Two "servers" sharing one database, each used from several threads
+        List<InvoiceNumberService> instances = List.of(
+                new InvoiceNumberService(sequences, new InvoiceNumberService.Settings(7)),
+                new InvoiceNumberService(sequences, new InvoiceNumberService.Settings(7)));
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                InvoiceNumberService numbers = instances.get(t % 2);
+                futures.add(pool.submit(() -> {
+                    long previous = 0;
+                    for (int i = 0; i < 500; i++) {
+                        long value = numbers.nextValue();
+                        assertTrue(seen.add(value), "duplicate " + value);
+                        assertTrue(value > previous);
+                        previous = value;
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(4000, seen.size());
+    }
+}
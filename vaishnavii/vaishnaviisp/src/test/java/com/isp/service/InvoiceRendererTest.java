@@ -0,0 +1,86 @@
+package com.isp.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InvoiceRendererTest {
+
+    private static InvoiceRenderer.Invoice invoice(String name) {
+        return new InvoiceRenderer.Invoice("INV-12345678-20240131", LocalDateTime.of(2024, 1, 31, 23, 59), name,
+                "jane@example.com", List.of("Plan: Fiber 500", "Data Allowance: 500.0 GB"), 49.99);
+    }
+
+    @Test
+    public void testTemplateAndFieldsBothRendered() throws Exception {
+        InvoiceRenderer renderer = new InvoiceRenderer(new InvoiceRenderer.Settings(2, 1_000));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer.render(invoice("Jane Doe"), () -> out);
+
+        try (PDDocument doc = PDDocument.load(out.toByteArray())) {
+            assertEquals(1, doc.getNumberOfPages());
+            String text = new PDFTextStripper().getText(doc);
+            // Static template
+            assertTrue(text.contains("INVOICE"), text);
+            assertTrue(text.contains("Bill To:"), text);
+            assertTrue(text.contains("support@isp.com"), text);
+            // Per-invoice fields
+            assertTrue(text.contains("Invoice #: INV-12345678-20240131"), text);
+            assertTrue(text.contains("Issue Date: 2024-01-31 23:59"), text);
+            assertTrue(text.contains("Jane Doe"), text);
+            assertTrue(text.contains("Plan: Fiber 500"), text);
+            assertTrue(text.contains("Amount Due: $49.99"), text);
+        }
+        assertEquals(1, renderer.getStats().rendered());
+        assertEquals(0, renderer.getStats().active());
+    }
+
+    @Test
+    public void testRendersAreBoundedBySlots() throws Exception {
+        InvoiceRenderer renderer = new InvoiceRenderer(new InvoiceRenderer.Settings(1, 50));
+        CountDownLatch opened = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread slow = new Thread(() -> {
+            try {
+                renderer.render(invoice("Slow"), () -> {
+                    opened.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new ByteArrayOutputStream();
+                });
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        slow.start();
+        assertTrue(opened.await(5, TimeUnit.SECONDS));
+
+        assertThrows(IllegalStateException.class, () -> renderer.render(invoice("Rejected"), ByteArrayOutputStream::new));
+        assertEquals(1, renderer.getStats().rejected());
+        assertEquals(1, renderer.getStats().active());
+
+        release.countDown();
+        slow.join(5_000);
+        renderer.render(invoice("After"), ByteArrayOutputStream::new);
+        assertEquals(2, renderer.getStats().rendered());
+    }
+
+    @Test
+    public void testUnencodableCharactersReplaced() {
+        assertEquals("José ?", InvoiceRenderer.printable(PDType1Font.HELVETICA, "José 中"));
+        assertEquals("plain", InvoiceRenderer.printable(PDType1Font.HELVETICA, "plain"));
+    }
+}
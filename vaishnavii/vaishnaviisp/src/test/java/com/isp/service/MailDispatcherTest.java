@@ -0,0 +1,266 @@
+package com.isp.service;
+
+import com.isp.model.OutboxEmail;
+import com.isp.repo.EmailOutboxRepository;
+import com.isp.util.SchemaMigrator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.mail.Session;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MailDispatcherTest {
+
+    private FakeSmtpServer smtp;
+    private MailDispatcher dispatcher;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        smtp = new FakeSmtpServer();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (dispatcher != null) dispatcher.close();
+        smtp.close();
+    }
+
+    private MailDispatcher newDispatcher(int maxAttempts) {
+        MailDispatcher.Settings settings = new MailDispatcher.Settings(100, 10, maxAttempts, 10, 50, 30_000, 100, 60_000, 600_000);
+        return new MailDispatcher(smtpSession(), "noreply@isp.test", null, null, null, settings);
+    }
+
+    private Session smtpSession() {
+        Properties props = new Properties();
+        props.put("mail.smtp.host", "127.0.0.1");
+        props.put("mail.smtp.port", String.valueOf(smtp.getPort()));
+        return Session.getInstance(props);
+    }
+
+    @Test
+    public void testSendsManyMessagesOverOneConnection() {
+        dispatcher = newDispatcher(3);
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.enqueue("user" + i + "@isp.test", "Subject " + i, "Body " + i);
+        }
+
+        waitFor(() -> dispatcher.getStats().sent() == 5);
+        assertEquals(5, smtp.messages.size());
+        assertEquals(1, smtp.connections.get());
+        assertEquals(1, dispatcher.getStats().connectionsOpened());
+        assertTrue(smtp.messages.get(0).contains("Subject: Subject 0"));
+    }
+
+    @Test
+    public void testRetriesTransientFailure() {
+        smtp.failNext.set(2);
+        dispatcher = newDispatcher(3);
+
+        dispatcher.enqueue("retry@isp.test", "Retry", "Body");
+
+        waitFor(() -> dispatcher.getStats().sent() == 1);
+        MailDispatcher.Stats stats = dispatcher.getStats();
+        assertEquals(2, stats.retried());
+        assertEquals(0, stats.failed());
+        assertEquals(1, smtp.messages.size());
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() {
+        smtp.failNext.set(10);
+        dispatcher = newDispatcher(2);
+
+        dispatcher.enqueue("never@isp.test", "Never", "Body");
+
+        waitFor(() -> dispatcher.getStats().failed() == 1);
+        assertEquals(1, dispatcher.getStats().retried());
+        assertTrue(smtp.messages.isEmpty());
+    }
+
+    @Test
+    public void testInstancesSharingAnOutboxSendEachEmailOnce() throws Exception {
+        String url = "jdbc:h2:mem:outbox-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        new SchemaMigrator(() -> DriverManager.getConnection(url)).migrate();
+        EmailOutboxRepository outbox = new EmailOutboxRepository(() -> DriverManager.getConnection(url));
+
+        List<OutboxEmail> pending = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            pending.add(new OutboxEmail("user" + i + "@isp.test", "Outage " + i, "Body"));
+        }
+        outbox.saveAll(pending);
+        // Claimed by an instance that stopped before sending it
+        OutboxEmail abandoned = new OutboxEmail("stale@isp.test", "Stale", "Body");
+        abandoned.setStatus(OutboxEmail.Status.SENDING);
+        abandoned.setClaimedAt(LocalDateTime.now().minusHours(1));
+        outbox.save(abandoned);
+
+        MailDispatcher.Settings settings = new MailDispatcher.Settings(100, 5, 3, 10, 50, 30_000, 100, 20, 60_000);
+        dispatcher = new MailDispatcher(smtpSession(), "noreply@isp.test", null, null, outbox, settings);
+        try (MailDispatcher other = new MailDispatcher(smtpSession(), "noreply@isp.test", null, null, outbox, settings)) {
+            waitFor(() -> dispatcher.getStats().sent() + other.getStats().sent() == 31);
+            Thread.sleep(100);
+            assertEquals(31, dispatcher.getStats().sent() + other.getStats().sent());
+        }
+
+        assertEquals(31, smtp.messages.size());
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM email_outbox WHERE status = 'SENT' AND claimed_at IS NULL")) {
+            rs.next();
+            assertEquals(31, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void testRetryIsNotSentWhenItsClaimFails() throws Exception {
+        String url = "jdbc:h2:mem:outbox-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        new SchemaMigrator(() -> DriverManager.getConnection(url)).migrate();
+        AtomicInteger claims = new AtomicInteger();
+        AtomicBoolean databaseDown = new AtomicBoolean();
+        EmailOutboxRepository outbox = new EmailOutboxRepository(() -> DriverManager.getConnection(url)) {
+            @Override
+            public boolean claim(String id, LocalDateTime now) {
+                claims.incrementAndGet();
+                if (databaseDown.get()) throw new RuntimeException("database unavailable");
+                return super.claim(id, now);
+            }
+        };
+        outbox.save(new OutboxEmail("retry@isp.test", "Retry", "Body"));
+        smtp.failNext.set(1);
+        databaseDown.set(true);
+
+        MailDispatcher.Settings settings = new MailDispatcher.Settings(100, 5, 3, 10, 50, 30_000, 100, 20, 60_000);
+        dispatcher = new MailDispatcher(smtpSession(), "noreply@isp.test", null, null, outbox, settings);
+        waitFor(() -> claims.get() > 0);
+        databaseDown.set(false);
+        waitFor(() -> dispatcher.getStats().retried() == 1);
+        int claimsBeforeRetry = claims.get();
+        databaseDown.set(true);
+        waitFor(() -> claims.get() > claimsBeforeRetry + 1);
+        Thread.sleep(100);
+        assertTrue(smtp.messages.isEmpty());
+
+        // The row stays in the outbox and the sweep sends it once claims work again
+        databaseDown.set(false);
+        waitFor(() -> dispatcher.getStats().sent() == 1);
+        assertEquals(1, smtp.messages.size());
+    }
+
+    private static void waitFor(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) fail("Timed out waiting for mail dispatcher");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Minimal SMTP stand-in: accepts everything, or answers MAIL FROM with 451 while failNext is positive.
+     */
+    private static class FakeSmtpServer implements AutoCloseable {
+        final List<String> messages = new CopyOnWriteArrayList<>();
+        final AtomicInteger connections = new AtomicInteger();
+        final AtomicInteger failNext = new AtomicInteger();
+        private final ServerSocket serverSocket;
+
+        FakeSmtpServer() throws IOException {
+            serverSocket = new ServerSocket(0);
+            Thread acceptor = new Thread(() -> {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Socket socket = serverSocket.accept();
+                        connections.incrementAndGet();
+                        Thread handler = new Thread(() -> handle(socket));
+                        handler.setDaemon(true);
+                        handler.start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void handle(Socket socket) {
+            try (socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 OutputStream out = socket.getOutputStream()) {
+                reply(out, "220 localhost ESMTP");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                    switch (command) {
+                        case "EHLO", "HELO" -> reply(out, "250 localhost");
+                        case "MAIL" -> {
+                            if (failNext.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                                reply(out, "451 Try again later");
+                            } else {
+                                reply(out, "250 OK");
+                            }
+                        }
+                        case "DATA" -> {
+                            reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                            StringBuilder data = new StringBuilder();
+                            String dataLine;
+                            while ((dataLine = in.readLine()) != null && !dataLine.equals(".")) {
+                                data.append(dataLine).append('\n');
+                            }
+                            messages.add(data.toString());
+                            reply(out, "250 OK");
+                        }
+                        case "QUIT" -> {
+                            reply(out, "221 Bye");
+                            return;
+                        }
+                        default -> reply(out, "250 OK");
+                    }
+                }
+            } catch (IOException ignored) {
+            }
+        }
+
+        private static void reply(OutputStream out, String line) throws IOException {
+            out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.isp.service;
+
+import com.isp.model.Notification;
+import com.isp.model.NotificationPreferences;
+import com.isp.model.OutboxEmail;
+import com.isp.model.User;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotificationBroadcasterTest {
+
+    private final List<User> users = new ArrayList<>();
+    private final AtomicInteger pageQueries = new AtomicInteger();
+    private final AtomicInteger preferenceQueries = new AtomicInteger();
+    private final List<Integer> browserBatches = new ArrayList<>();
+    private final List<OutboxEmail> emails = new ArrayList<>();
+    private final List<String> smsNumbers = new ArrayList<>();
+    private NotificationBroadcaster broadcaster = newBroadcaster(page -> { });
+
+    private NotificationBroadcaster newBroadcaster(java.util.function.Consumer<List<Notification>> onBrowserBatch) {
+        return new NotificationBroadcaster(
+            (segment, afterId, limit) -> {
+                pageQueries.incrementAndGet();
+                return users.stream()
+                        .filter(u -> segment.role() == null || u.getRole() == segment.role())
+                        .filter(u -> afterId == null || u.getId().compareTo(afterId) > 0)
+                        .limit(limit)
+                        .toList();
+            },
+            this::preferences,
+            batch -> {
+                onBrowserBatch.accept(batch);
+                browserBatches.add(batch.size());
+            },
+            emails::addAll,
+            (numbers, message) -> smsNumbers.addAll(numbers),
+            new NotificationBroadcaster.Settings(1000, 1_000_000, 1_000_000, 5));
+    }
+
+    private Map<String, NotificationPreferences> preferences(Collection<String> ids) {
+        preferenceQueries.incrementAndGet();
+        Map<String, NotificationPreferences> result = new HashMap<>();
+        for (String id : ids) {
+            NotificationPreferences prefs = new NotificationPreferences();
+            prefs.setUserId(id);
+            int n = Integer.parseInt(id.substring(2));
+            // Every tenth user opted out of email; every hundredth wants SMS for critical alerts
+            prefs.setEmailEnabled(n % 10 != 0);
+            if (n % 100 == 0) {
+                prefs.setSmsEnabled(true);
+                prefs.setPhoneNumber("+1555" + n);
+            }
+            result.put(id, prefs);
+        }
+        return result;
+    }
+
+    private void seed(int customers) {
+        for (int i = 0; i < customers; i++) {
+            String id = String.format("u-%05d", i);
+            users.add(new User(id, "user" + i, "user" + i + "@example.com", "x", User.Role.CUSTOMER));
+        }
+        users.add(new User("u-99999", "admin", "admin@example.com", "x", User.Role.ADMIN));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        broadcaster.close();
+    }
+
+    @Test
+    public void testBroadcastPagesAndBatchesEveryChannel() throws Exception {
+        seed(2500);
+
+        String id = broadcaster.start(NotificationBroadcaster.Segment.allCustomers(), "SYSTEM",
+                "Outage in North region", "Engineers are on site.", "CRITICAL");
+        broadcaster.awaitIdle();
+
+        NotificationBroadcaster.Progress progress = broadcaster.getProgress(id);
+        assertEquals(NotificationBroadcaster.State.COMPLETED, progress.state());
+        assertEquals(2500, progress.recipients());
+        assertEquals(2500, progress.browser());
+        assertEquals(2250, progress.emails());
+        assertEquals(25, progress.sms());
+        assertNull(progress.error());
+
+        // Three pages of 1000/1000/500: one recipient query and one preference query per page
+        assertEquals(3, pageQueries.get());
+        assertEquals(3, preferenceQueries.get());
+        assertEquals(List.of(1000, 1000, 500), browserBatches);
+        assertEquals(2250, emails.size());
+        assertTrue(emails.get(0).getBody().contains("Engineers are on site."));
+        assertEquals(25, smsNumbers.size());
+    }
+
+    @Test
+    public void testFailureIsReportedWithPartialProgress() throws Exception {
+        broadcaster.close();
+        broadcaster = newBroadcaster(batch -> {
+            if (browserBatches.size() == 1) throw new IllegalStateException("database down");
+        });
+        seed(2500);
+
+        String id = broadcaster.start(NotificationBroadcaster.Segment.allCustomers(), "SYSTEM", "t", "m", "HIGH");
+        broadcaster.awaitIdle();
+
+        NotificationBroadcaster.Progress progress = broadcaster.getProgress(id);
+        assertEquals(NotificationBroadcaster.State.FAILED, progress.state());
+        assertEquals(1000, progress.recipients());
+        assertEquals("database down", progress.error());
+    }
+
+    @Test
+    public void testHistoryKeepsRecentBroadcasts() throws Exception {
+        seed(3);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            ids.add(broadcaster.start(NotificationBroadcaster.Segment.allCustomers(), "SYSTEM", "t" + i, "m", "LOW"));
+            broadcaster.awaitIdle();
+        }
+
+        assertEquals(5, broadcaster.getRecent().size());
+        assertNull(broadcaster.getProgress(ids.get(0)));
+        assertEquals("t6", broadcaster.getProgress(ids.get(6)).title());
+        assertFalse(broadcaster.cancel(ids.get(6)));
+    }
+}
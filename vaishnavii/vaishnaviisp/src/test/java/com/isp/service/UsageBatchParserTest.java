@@ -0,0 +1,81 @@
+package com.isp.service;
+
+import com.isp.model.NetworkUsage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UsageBatchParserTest {
+
+    private final UsageBatchParser parser = new UsageBatchParser(ZoneOffset.UTC);
+
+    @Test
+    public void testNdjsonAcceptsValidAndReportsInvalidLines() throws IOException {
+        String body = """
+                {"customerId":"cust-1","gigabytes":1.5}
+                {"customerId":"cust-2","gigabytes":0.25,"timestamp":"2025-01-01T10:00:00"}
+
+                {"customerId":"cust-3","gigabytes":-4}
+                not json
+                {"gigabytes":2}
+                {"customerId":"cust-4","gigabytes":1,"timestamp":1735725600000}
+                """;
+        List<NetworkUsage> records = new ArrayList<>();
+        UsageBatchParser.Result result = parser.parse(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), false, records::add);
+
+        assertEquals(3, result.accepted());
+        assertEquals(3, result.rejected());
+        assertEquals(List.of("line 4: gigabytes out of range", "line 5: invalid JSON",
+                "line 6: customerId and gigabytes required"), result.errors());
+        assertEquals(LocalDateTime.of(2025, 1, 1, 10, 0), records.get(1).getTimestamp());
+        assertEquals(LocalDateTime.of(2025, 1, 1, 10, 0), records.get(2).getTimestamp());
+    }
+
+    @Test
+    public void testBinaryBatch() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(UsageBatchParser.BINARY_MAGIC);
+        out.writeByte(UsageBatchParser.BINARY_VERSION);
+        for (int i = 0; i < 1000; i++) {
+            out.writeUTF("cust-" + (i % 10));
+            out.writeDouble(0.5);
+            out.writeLong(1735725600000L);
+        }
+        out.writeUTF("cust-truncated");
+        out.writeDouble(1.0);
+
+        List<NetworkUsage> records = new ArrayList<>();
+        UsageBatchParser.Result result = parser.parse(new ByteArrayInputStream(bytes.toByteArray()), true, records::add);
+
+        assertEquals(1000, result.accepted());
+        assertEquals(1, result.rejected());
+        assertEquals("record 1001: truncated", result.errors().get(0));
+        assertEquals("cust-3", records.get(3).getCustomerId());
+    }
+
+    @Test
+    public void testRefusedRecordsCountAsRejected() throws IOException {
+        String body = "{\"customerId\":\"c\",\"gigabytes\":1}\n{\"customerId\":\"c\",\"gigabytes\":1}\n";
+        UsageBatchParser.Result result = parser.parse(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), false, u -> false);
+        assertEquals(0, result.accepted());
+        assertEquals(2, result.rejected());
+
+        UsageBatchParser.Result wrongMagic = parser.parse(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), true, u -> true);
+        assertEquals(List.of("not an ISPU batch"), wrongMagic.errors());
+    }
+}
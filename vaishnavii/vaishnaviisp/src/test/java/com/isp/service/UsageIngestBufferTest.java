@@ -0,0 +1,84 @@
+package com.isp.service;
+
+import com.isp.model.NetworkUsage;
+import com.isp.repo.UsageRepository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UsageIngestBufferTest {
+
+    private static NetworkUsage usage(String customerId, double gb) {
+        return new NetworkUsage("u-" + System.nanoTime(), customerId, gb, LocalDateTime.now());
+    }
+
+    @Test
+    public void testFlushesFullBatchesBeforeInterval() throws InterruptedException {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        CountDownLatch flushed = new CountDownLatch(2);
+        try (UsageIngestBuffer buffer = new UsageIngestBuffer(batch -> {
+            batchSizes.add(batch.size());
+            flushed.countDown();
+        }, new UsageIngestBuffer.Settings(1000, 100, 60_000))) {
+            for (int i = 0; i < 200; i++) {
+                assertTrue(buffer.offer(usage("cust-1", 1.0)));
+            }
+            assertTrue(flushed.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of(100, 100), batchSizes);
+        }
+    }
+
+    @Test
+    public void testPartialBatchFlushesAfterInterval() throws InterruptedException {
+        UsageRepository repo = new UsageRepository();
+        try (UsageIngestBuffer buffer = new UsageIngestBuffer(repo::saveAll, new UsageIngestBuffer.Settings(1000, 100, 50))) {
+            buffer.offer(usage("cust-1", 2.0));
+            buffer.offer(usage("cust-2", 3.0));
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (buffer.getStats().flushed() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2.0, repo.getTotalGigabytes("cust-1"), 0.0001);
+            assertEquals(3.0, repo.getTotalGigabytes("cust-2"), 0.0001);
+            assertEquals(1, buffer.getStats().flushes());
+        }
+    }
+
+    @Test
+    public void testFullBufferRejectsAndCloseFlushes() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        UsageRepository repo = new UsageRepository();
+        UsageIngestBuffer buffer = new UsageIngestBuffer(batch -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            repo.saveAll(batch);
+        }, new UsageIngestBuffer.Settings(3, 1, 10));
+
+        // The flusher takes one record and blocks in the sink; three more fill the queue
+        buffer.offer(usage("cust-1", 1.0));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (buffer.getStats().buffered() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        for (int i = 0; i < 3; i++) {
+            assertTrue(buffer.offer(usage("cust-1", 1.0)));
+        }
+        assertFalse(buffer.offer(usage("cust-1", 1.0)));
+        assertEquals(1, buffer.getStats().dropped());
+
+        release.countDown();
+        buffer.close();
+        assertEquals(4, repo.getRecordCount("cust-1"));
+        assertFalse(buffer.offer(usage("cust-1", 1.0)));
+    }
+}
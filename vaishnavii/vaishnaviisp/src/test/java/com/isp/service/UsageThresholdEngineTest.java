@@ -0,0 +1,227 @@
+package com.isp.service;
+
+import com.isp.model.CustomerProfile;
+import com.isp.model.DataPlan;
+import com.isp.model.NotificationPreferences;
+import com.isp.model.UsageAlert;
+import com.isp.repo.DailyUsageRepository;
+import com.isp.repo.UsageAlertRepository;
+import com.isp.util.SchemaMigrator;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.DriverManager;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UsageThresholdEngineTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 10, 12, 0);
+
+    private final List<UsageAlert> saved = new CopyOnWriteArrayList<>();
+    private final List<Integer> notified = new CopyOnWriteArrayList<>();
+
+    private final UsageThresholdEngine.AlertSink sink = new UsageThresholdEngine.AlertSink() {
+        @Override
+        public void saveAll(List<UsageAlert> alerts) {
+            saved.addAll(alerts);
+        }
+
+        @Override
+        public void notify(UsageAlert alert, double usedGB, double planGB) {
+            notified.add(alert.getThresholdPercent());
+        }
+    };
+
+    private static UsageListener.Event usage(String customerId, LocalDateTime at, double gb) {
+        return new UsageListener.Event(customerId, null, at, gb, 0, 0, 0);
+    }
+
+    private UsageThresholdEngine engine(UsageThresholdEngine.BaselineLoader loader) {
+        // Load baselines on the calling thread so each test sees them immediately
+        return new UsageThresholdEngine(loader, sink, new UsageThresholdEngine.Settings(60_000), Runnable::run);
+    }
+
+    private static List<Integer> thresholdsOf(List<UsageAlert> alerts) {
+        List<Integer> thresholds = new ArrayList<>();
+        for (UsageAlert alert : alerts) thresholds.add(alert.getThresholdPercent());
+        return thresholds;
+    }
+
+    @Test
+    public void testEachThresholdFiresOnce() {
+        try (UsageThresholdEngine engine = engine((id, period) ->
+                new UsageThresholdEngine.Baseline(0, 100, UsageThresholdEngine.thresholds(50, 75, 90), Set.of()))) {
+            engine.onUsage(List.of(usage("cust-1", NOW, 40), usage("cust-1", NOW, 15)));
+            engine.onUsage(List.of(usage("cust-1", NOW, 5)));
+            engine.onUsage(List.of(usage("cust-1", NOW, 35)));
+            engine.onUsage(List.of(usage("cust-1", NOW, 10), usage("cust-1", NOW, 10)));
+            engine.flush();
+
+            // 55 -> 50%, 60 -> nothing, 95 -> 90% (75% marked), 105 -> 100%, 115 -> nothing
+            assertEquals(List.of(50, 90, 100), thresholdsOf(saved));
+            assertEquals(List.of(50, 90, 100), notified);
+            assertEquals(UsageAlert.AlertType.LIMIT_REACHED, saved.get(2).getAlertType());
+            assertEquals(3, engine.getStats().fired());
+            assertEquals(1, engine.getStats().loads());
+        }
+    }
+
+    @Test
+    public void testBaselineCountsUsageAndAlertsFromEarlierInTheMonth() {
+        try (UsageThresholdEngine engine = engine((id, period) ->
+                new UsageThresholdEngine.Baseline(70, 100, UsageThresholdEngine.thresholds(50, 75, 90), Set.of(50)))) {
+            engine.onUsage(List.of(usage("cust-2", NOW, 6)));
+            engine.flush();
+            assertEquals(List.of(75), thresholdsOf(saved));
+        }
+    }
+
+    @Test
+    public void testNewMonthStartsOver() {
+        try (UsageThresholdEngine engine = engine((id, period) ->
+                new UsageThresholdEngine.Baseline(0, 10, UsageThresholdEngine.thresholds(80), Set.of()))) {
+            engine.onUsage(List.of(usage("cust-3", NOW, 8.5)));
+            engine.onUsage(List.of(usage("cust-3", NOW.plusMonths(1), 8.5)));
+            // Late usage for the closed month is ignored
+            engine.onUsage(List.of(usage("cust-3", NOW, 5)));
+            engine.flush();
+
+            assertEquals(List.of(80, 80), thresholdsOf(saved));
+            assertEquals(YearMonth.from(NOW.plusMonths(1)), YearMonth.from(saved.get(1).getCreatedAt()));
+        }
+    }
+
+    @Test
+    public void testInvalidateReloadsBaseline() {
+        AtomicInteger loads = new AtomicInteger();
+        try (UsageThresholdEngine engine = engine((id, period) -> {
+            loads.incrementAndGet();
+            return new UsageThresholdEngine.Baseline(0, 0, UsageThresholdEngine.thresholds(), Set.of());
+        })) {
+            engine.onUsage(List.of(usage("cust-4", NOW, 50)));
+            engine.onUsage(List.of(usage("cust-4", NOW, 50)));
+            engine.invalidate("cust-4");
+            engine.onUsage(List.of(usage("cust-4", NOW, 50)));
+            engine.flush();
+
+            assertEquals(2, loads.get());
+            assertTrue(saved.isEmpty(), "customers without a plan never alert");
+        }
+    }
+
+    @Test
+    public void testFailedSaveIsRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        UsageThresholdEngine.AlertSink flaky = new UsageThresholdEngine.AlertSink() {
+            @Override
+            public void saveAll(List<UsageAlert> alerts) {
+                if (calls.getAndIncrement() == 0) throw new RuntimeException("database unavailable");
+                saved.addAll(alerts);
+            }
+
+            @Override
+            public void notify(UsageAlert alert, double usedGB, double planGB) {
+                notified.add(alert.getThresholdPercent());
+            }
+        };
+        try (UsageThresholdEngine engine = new UsageThresholdEngine((id, period) ->
+                new UsageThresholdEngine.Baseline(0, 10, UsageThresholdEngine.thresholds(), Set.of()),
+                flaky, new UsageThresholdEngine.Settings(60_000), Runnable::run)) {
+            engine.onUsage(List.of(usage("cust-5", NOW, 10)));
+            assertThrows(RuntimeException.class, engine::flush);
+            assertTrue(notified.isEmpty());
+
+            engine.flush();
+            assertEquals(List.of(100), notified);
+            assertEquals(1, engine.getStats().failedFlushes());
+        }
+    }
+
+    @Test
+    public void testUsageIsRecordedWithoutWaitingForTheBaseline() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (UsageThresholdEngine engine = new UsageThresholdEngine((id, period) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new UsageThresholdEngine.Baseline(40, 100, UsageThresholdEngine.thresholds(50, 75), Set.of());
+        }, sink, new UsageThresholdEngine.Settings(60_000, 1))) {
+            engine.onUsage(List.of(usage("cust-6", NOW, 20)));
+            engine.onUsage(List.of(usage("cust-6", NOW.plusMinutes(1), 20)));
+            assertEquals(1, engine.getStats().loads());
+            assertEquals(0, engine.getStats().pending());
+
+            // Usage seen while loading is checked against the baseline once it arrives
+            release.countDown();
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (engine.getStats().pending() == 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            engine.flush();
+            assertEquals(List.of(75), thresholdsOf(saved));
+        }
+    }
+
+    @Test
+    public void testFailedLoadIsRetriedOnTheNextEvent() {
+        AtomicInteger calls = new AtomicInteger();
+        try (UsageThresholdEngine engine = engine((id, period) -> {
+            if (calls.getAndIncrement() == 0) throw new RuntimeException("database unavailable");
+            return new UsageThresholdEngine.Baseline(0, 10, UsageThresholdEngine.thresholds(), Set.of());
+        })) {
+            engine.onUsage(List.of(usage("cust-7", NOW, 6)));
+            engine.onUsage(List.of(usage("cust-7", NOW.plusMinutes(1), 6)));
+            engine.flush();
+            assertEquals(List.of(100), notified);
+            assertEquals(1, engine.getStats().failedLoads());
+        }
+    }
+
+    @Test
+    public void testThresholdsAreSortedAndIncludeTheLimit() {
+        assertArrayEquals(new int[]{50, 75, 90, 100}, UsageThresholdEngine.thresholds(90, 50, 0, 75, 150, 90));
+    }
+
+    @Test
+    public void testUsageForAProfileAlertsItsUser() throws Exception {
+        String url = "jdbc:h2:mem:thresholds-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        new SchemaMigrator(() -> DriverManager.getConnection(url)).migrate();
+        UsageAlertRepository alertRepo = new UsageAlertRepository(() -> DriverManager.getConnection(url));
+
+        // Usage events carry the profile id; preferences and notifications are per login user
+        CustomerProfile profile = new CustomerProfile("prof-1", "user-1", "Customer One");
+        profile.setCurrentPlan(new DataPlan("plan-10", "Basic", 10, 10, "10 GB"));
+        List<String> notifiedUsers = new CopyOnWriteArrayList<>();
+
+        try (UsageThresholdEngine engine = UsageThresholdEngine.create(
+                id -> id.equals("prof-1") ? Optional.of(profile) : Optional.empty(),
+                userId -> {
+                    assertEquals("user-1", userId);
+                    return new NotificationPreferences();
+                },
+                new DailyUsageRepository(() -> DriverManager.getConnection(url)),
+                alertRepo,
+                (userId, percent, usedGB, remainingGB, planGB) -> notifiedUsers.add(userId + ":" + percent),
+                new UsageThresholdEngine.Settings(60_000))) {
+            engine.onUsage(List.of(usage("prof-1", LocalDateTime.now(), 6)));
+            // The baseline loads in the background
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (engine.getStats().pending() == 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            engine.flush();
+        }
+
+        assertEquals(List.of("user-1:50"), notifiedUsers);
+        assertEquals(Set.of(50), alertRepo.findThresholdsSince("prof-1", LocalDateTime.now().minusDays(1)));
+    }
+}
@@ -0,0 +1,163 @@
+package com.isp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+
+    private static ConnectionPool newPool(String name, int min, int max, long borrowTimeoutMs) {
+        ConnectionPool.Settings settings = new ConnectionPool.Settings(min, max, borrowTimeoutMs, 60_000, 60_000, 0, 1, 8);
+        return new ConnectionPool(() -> DriverManager.getConnection("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1"), settings);
+    }
+
+    @Test
+    public void testCloseReturnsConnectionToPool() throws SQLException {
+        try (ConnectionPool pool = newPool("reuse", 1, 2, 1000)) {
+            assertEquals(1, pool.getStats().idle());
+
+            try (Connection conn = pool.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE t (id INT)");
+                assertEquals(1, pool.getStats().active());
+            }
+            try (Connection conn = pool.getConnection()) {
+                assertFalse(conn.isClosed());
+            }
+
+            ConnectionPool.Stats stats = pool.getStats();
+            assertEquals(0, stats.active());
+            assertEquals(1, stats.idle());
+            assertEquals(1, stats.created());
+            assertEquals(2, stats.borrows());
+        }
+    }
+
+    @Test
+    public void testBorrowTimesOutWhenExhausted() throws SQLException {
+        try (ConnectionPool pool = newPool("timeout", 0, 1, 50)) {
+            Connection held = pool.getConnection();
+            assertThrows(SQLTimeoutException.class, pool::getConnection);
+            assertEquals(1, pool.getStats().timeouts());
+
+            held.close();
+            try (Connection conn = pool.getConnection()) {
+                assertNotNull(conn);
+            }
+        }
+    }
+
+    @Test
+    public void testClosedLeaseRejectsCalls() throws SQLException {
+        try (ConnectionPool pool = newPool("lease", 0, 1, 1000)) {
+            Connection conn = pool.getConnection();
+            conn.close();
+            conn.close();
+            assertTrue(conn.isClosed());
+            assertThrows(SQLException.class, conn::createStatement);
+            assertEquals(0, pool.getStats().active());
+        }
+    }
+
+    @Test
+    public void testClosedPhysicalConnectionIsReplaced() throws SQLException {
+        try (ConnectionPool pool = newPool("validate", 0, 1, 1000)) {
+            Connection conn = pool.getConnection();
+            conn.unwrap(Connection.class).close();
+            conn.close();
+
+            try (Connection fresh = pool.getConnection()) {
+                assertTrue(fresh.isValid(1));
+            }
+            assertEquals(2, pool.getStats().created());
+        }
+    }
+
+    @Test
+    public void testPreparedStatementsAreReusedAcrossLeases() throws SQLException {
+        try (ConnectionPool pool = newPool("stmt", 1, 1, 1000)) {
+            try (Connection conn = pool.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE users (id INT PRIMARY KEY, name VARCHAR(20))");
+                stmt.execute("INSERT INTO users VALUES (1, 'a'), (2, 'b')");
+            }
+            for (int id = 1; id <= 2; id++) {
+                try (Connection conn = pool.getConnection();
+                     PreparedStatement ps = conn.prepareStatement("SELECT name FROM users WHERE id = ?")) {
+                    assertSame(conn, ps.getConnection());
+                    ps.setInt(1, id);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        assertTrue(rs.next());
+                        assertEquals(id == 1 ? "a" : "b", rs.getString(1));
+                    }
+                }
+            }
+            ConnectionPool.Stats stats = pool.getStats();
+            assertEquals(1, stats.statementMisses());
+            assertEquals(1, stats.statementHits());
+
+            // A cached statement comes back without the previous caller's parameters
+            try (Connection conn = pool.getConnection();
+                 PreparedStatement ps = conn.prepareStatement("SELECT name FROM users WHERE id = ?")) {
+                assertThrows(SQLException.class, ps::executeQuery);
+            }
+        }
+    }
+
+    @Test
+    public void testStatementCacheEvictsLeastRecentlyUsed() throws SQLException {
+        try (ConnectionPool pool = newPool("evict", 1, 1, 1000)) {
+            try (Connection conn = pool.getConnection()) {
+                for (int i = 0; i < 10; i++) {
+                    try (PreparedStatement ps = conn.prepareStatement("SELECT " + i)) {
+                        ps.executeQuery().close();
+                    }
+                }
+                // Statement 9 is still cached, 0 was evicted
+                conn.prepareStatement("SELECT 9").close();
+                conn.prepareStatement("SELECT 0").close();
+            }
+            ConnectionPool.Stats stats = pool.getStats();
+            assertEquals(1, stats.statementHits());
+            assertEquals(11, stats.statementMisses());
+            assertEquals(3, stats.statementEvictions());
+        }
+    }
+
+    @Test
+    public void testSameSqlOpenTwiceAndLeftOpen() throws SQLException {
+        try (ConnectionPool pool = newPool("nested", 1, 1, 1000)) {
+            PreparedStatement leaked;
+            try (Connection conn = pool.getConnection()) {
+                PreparedStatement outer = conn.prepareStatement("SELECT ?");
+                try (PreparedStatement inner = conn.prepareStatement("SELECT ?")) {
+                    assertNotSame(outer, inner);
+                    inner.setInt(1, 2);
+                    inner.executeQuery().close();
+                }
+                leaked = outer;
+            }
+            // Returning the connection closes statements the borrower left open
+            assertTrue(leaked.isClosed());
+            assertThrows(SQLException.class, () -> leaked.setInt(1, 1));
+
+            try (Connection conn = pool.getConnection();
+                 PreparedStatement ps = conn.prepareStatement("SELECT ?")) {
+                ps.setInt(1, 3);
+                try (ResultSet rs = ps.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals(3, rs.getInt(1));
+                }
+            }
+            assertEquals(1, pool.getStats().statementHits());
+        }
+    }
+}
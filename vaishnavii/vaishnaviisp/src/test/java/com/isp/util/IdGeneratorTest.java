@@ -0,0 +1,62 @@
+package com.isp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdGeneratorTest {
+
+    @Test
+    public void testIdsAreTimeOrderedWithinThread() {
+        long before = System.currentTimeMillis();
+        String previous = IdGenerator.generate();
+        for (int i = 0; i < 10_000; i++) {
+            String id = IdGenerator.generate();
+            assertEquals(IdGenerator.LENGTH, id.length());
+            assertTrue(id.compareTo(previous) > 0, id + " <= " + previous);
+            previous = id;
+        }
+        long ts = IdGenerator.timestampOf(previous);
+        assertTrue(ts >= before && ts <= System.currentTimeMillis());
+    }
+
+    @Test
+    public void testBinaryRoundTripKeepsOrder() {
+        String a = IdGenerator.generate();
+        String b = IdGenerator.generate();
+        byte[] binA = IdGenerator.toBytes(a);
+        byte[] binB = IdGenerator.toBytes(b);
+
+        assertEquals(a, IdGenerator.fromBytes(binA));
+        assertTrue(java.util.Arrays.compareUnsigned(binA, binB) < 0);
+        assertEquals(a, IdGenerator.fromBytes(IdGenerator.toBytes(a.toLowerCase())));
+        assertEquals(16, IdGenerator.generateBinary().length);
+    }
+
+    @Test
+    public void testLegacyUuidDecodes() {
+        byte[] bin = IdGenerator.toBytes("123e4567-e89b-12d3-a456-426614174000");
+        assertEquals((byte) 0x12, bin[0]);
+        assertEquals((byte) 0x00, bin[15]);
+        assertThrows(IllegalArgumentException.class, () -> IdGenerator.toBytes("cust-1"));
+        assertThrows(IllegalArgumentException.class, () -> IdGenerator.toBytes("8ZZZZZZZZZZZZZZZZZZZZZZZZZ"));
+    }
+
+    @Test
+    public void testUniqueAcrossThreads() throws InterruptedException {
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 20_000; i++) seen.add(IdGenerator.generate());
+            }));
+        }
+        for (Thread t : threads) t.join();
+        assertEquals(160_000, seen.size());
+    }
+}
@@ -0,0 +1,81 @@
+package com.isp.util;
+
+import com.isp.model.DailyUsage;
+import com.isp.repo.DailyUsageRepository;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdMigrationTest {
+
+    private static final String URL = "jdbc:h2:mem:idmigration;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    private static int countNullIdBin(String table) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(URL);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table + " WHERE id_bin IS NULL")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void testBackfillsBinaryIdsAndIsRerunnable() throws SQLException {
+        String uuid = "123e4567-e89b-12d3-a456-426614174000";
+        String ulid = IdGenerator.generate();
+        new SchemaMigrator(() -> DriverManager.getConnection(URL)).migrate();
+        try (Connection conn = DriverManager.getConnection(URL);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO users (id, username, email, password_hash, role, status) VALUES ('u1', 'u1', 'u1@example.com', 'x', 'CUSTOMER', 'ACTIVE')");
+            stmt.execute("INSERT INTO customer_profiles (id, user_id, full_name) VALUES ('c1', 'u1', 'One'), ('c2', 'u1', 'Two')");
+            // Rows written before id_bin existed
+            stmt.execute("INSERT INTO `usage` (id, customer_id, gigabytes) VALUES ('" + uuid + "', 'c1', 1), ('" + ulid + "', 'c1', 1), ('seed-1', 'c1', 1)");
+        }
+
+        IdMigration migration = new IdMigration(() -> DriverManager.getConnection(URL));
+        IdMigration.Result first = migration.migrate("usage");
+        assertEquals(2, first.backfilled());
+        assertEquals(1, first.skipped());
+
+        try (Connection conn = DriverManager.getConnection(URL);
+             PreparedStatement stmt = conn.prepareStatement("SELECT id_bin FROM `usage` WHERE id = ?")) {
+            stmt.setString(1, ulid);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals(ulid, IdGenerator.fromBytes(rs.getBytes(1)));
+            }
+            conn.createStatement().execute("INSERT INTO `usage` (id, customer_id, gigabytes) VALUES ('" + IdGenerator.generate() + "', 'c2', 1)");
+        }
+
+        IdMigration.Result second = migration.migrate("usage");
+        assertEquals(1, second.backfilled());
+        assertThrows(IllegalArgumentException.class, () -> migration.migrate("usage; DROP TABLE users"));
+    }
+
+    @Test
+    public void testRepositoriesWriteBinaryIdsOnInsert() throws SQLException {
+        new SchemaMigrator(() -> DriverManager.getConnection(URL)).migrate();
+        DailyUsageRepository dailyUsage = new DailyUsageRepository(() -> DriverManager.getConnection(URL));
+        try (Connection conn = DriverManager.getConnection(URL);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO users (id, username, email, password_hash, role, status) VALUES ('u3', 'u3', 'u3@example.com', 'x', 'CUSTOMER', 'ACTIVE')");
+            stmt.execute("INSERT INTO customer_profiles (id, user_id, full_name) VALUES ('c3', 'u3', 'Three')");
+        }
+
+        DailyUsage row = new DailyUsage(IdGenerator.generate(), "c3", LocalDateTime.now(), 1.5, 0.5, 1.0, 50, 2);
+        dailyUsage.upsertAll(List.of(row));
+
+        assertEquals(0, countNullIdBin("daily_usage"));
+        assertEquals(0, new IdMigration(() -> DriverManager.getConnection(URL)).migrate("daily_usage").backfilled());
+    }
+}
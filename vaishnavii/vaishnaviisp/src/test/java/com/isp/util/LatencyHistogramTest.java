@@ -0,0 +1,42 @@
+package com.isp.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 1000; ms++) {
+            histogram.recordMicros(ms * 1_000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.0, histogram.getPercentileMillis(50), 500 * 0.02);
+        assertEquals(950.0, histogram.getPercentileMillis(95), 950 * 0.02);
+        assertEquals(990.0, histogram.getPercentileMillis(99), 990 * 0.02);
+        assertEquals(1000.0, histogram.getMaxMillis(), 0.001);
+        assertEquals(500.5, histogram.getMeanMillis(), 0.001);
+    }
+
+    @Test
+    public void testBucketIndexIsMonotonic() {
+        int previous = -1;
+        for (long v = 0; v < 10_000_000L; v = v < 1000 ? v + 1 : v + v / 97) {
+            int index = LatencyHistogram.bucketIndex(v);
+            assertTrue(index >= previous, "index went backwards at " + v);
+            long mid = LatencyHistogram.bucketMidpoint(index);
+            assertTrue(Math.abs(mid - v) <= Math.max(1, v / 64), "midpoint " + mid + " too far from " + v);
+            previous = index;
+        }
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMillis(99));
+        assertEquals(0, histogram.getMeanMillis());
+    }
+}
@@ -0,0 +1,38 @@
+package com.isp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final RateLimiter limiter = new RateLimiter(100, 50, now::get);
+
+    @Test
+    public void testBurstIsFreeThenPaced() {
+        assertEquals(0, limiter.reserve(50));
+        // 10 more permits at 100/s need 100 ms of refill
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), limiter.reserve(10), 1_000);
+    }
+
+    @Test
+    public void testRefillIsCappedAtBurst() {
+        limiter.reserve(50);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(0, limiter.reserve(50));
+        assertTrue(limiter.reserve(1) > 0);
+    }
+
+    @Test
+    public void testOversizedRequestLeavesDebt() {
+        // 250 permits: 50 from the burst, 200 owed (2 s)
+        assertEquals(TimeUnit.SECONDS.toNanos(2), limiter.reserve(250), 1_000);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        // Still 100 permits in debt, so one more waits a further second and a bit
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1010), limiter.reserve(1), 1_000);
+    }
+}
@@ -0,0 +1,145 @@
+package com.isp.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaMigratorTest {
+
+    private String url;
+    private SchemaMigrator migrator;
+
+    @BeforeEach
+    public void setUp() {
+        url = "jdbc:h2:mem:schema-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        migrator = new SchemaMigrator(() -> DriverManager.getConnection(url));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void testNewDatabaseIsMigratedOnceThenLeftAlone() throws SQLException {
+        int latest = migrator.loadMigrations().size();
+
+        SchemaMigrator.Report first = migrator.migrate();
+        assertEquals(latest, first.version());
+        assertEquals(latest, first.applied().size());
+        assertEquals("baseline", first.applied().get(0).description());
+        assertEquals(latest, count("SELECT COUNT(*) FROM schema_version"));
+
+        // Tables the repositories used to create, or assumed existed
+        assertEquals(0, count("SELECT COUNT(*) FROM speed_tests"));
+        assertEquals(0, count("SELECT COUNT(threshold_percent) FROM usage_alerts"));
+        assertEquals(0, count("SELECT COUNT(average_speed_mbps) FROM device_connections"));
+
+        SchemaMigrator.Report second = migrator.migrate();
+        assertEquals(latest, second.version());
+        assertTrue(second.applied().isEmpty());
+    }
+
+    @Test
+    public void testBaselinesDatabaseCreatedByOlderBuilds() throws SQLException {
+        execute("CREATE TABLE usage_alerts (id VARCHAR(255) PRIMARY KEY, customer_id VARCHAR(255) NOT NULL, "
+                + "alert_type VARCHAR(50) NOT NULL, status VARCHAR(50) NOT NULL, usage_percentage DOUBLE NOT NULL, "
+                + "created_at TIMESTAMP NOT NULL, acknowledged_at TIMESTAMP NULL)");
+        execute("INSERT INTO usage_alerts VALUES ('a1', 'c1', 'WARNING_80', 'ACTIVE', 81.0, CURRENT_TIMESTAMP, NULL)");
+
+        execute("CREATE TABLE tickets (id VARCHAR(255) PRIMARY KEY, customer_id VARCHAR(255) NOT NULL, "
+                + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+
+        migrator.migrate();
+
+        assertEquals(1, count("SELECT COUNT(*) FROM usage_alerts WHERE threshold_percent = 0"));
+        try (Connection conn = DriverManager.getConnection(url)) {
+            assertTrue(SchemaMigrator.alreadyApplied(conn, "CREATE INDEX idx_tickets_created ON tickets (created_at, id)"));
+            assertTrue(SchemaMigrator.alreadyApplied(conn,
+                    "CREATE INDEX idx_tickets_customer_created ON tickets (customer_id, created_at, id)"));
+        }
+    }
+
+    @Test
+    public void testMigrationThatFailedHalfwayIsRerun() throws SQLException {
+        migrator.migrate();
+        // As if V2 stopped after its ALTER and nothing after it ran
+        execute("DELETE FROM schema_version WHERE version >= 2");
+        execute("DROP INDEX idx_usage_alerts_customer_created");
+
+        SchemaMigrator.Report report = migrator.migrate();
+
+        assertEquals(migrator.loadMigrations().size() - 1, report.applied().size());
+        assertEquals(2, report.applied().get(0).version());
+        try (Connection conn = DriverManager.getConnection(url)) {
+            assertTrue(SchemaMigrator.alreadyApplied(conn,
+                    "CREATE INDEX idx_usage_alerts_customer_created ON usage_alerts (customer_id, created_at)"));
+            assertTrue(SchemaMigrator.alreadyApplied(conn, "ALTER TABLE device_connections ADD COLUMN ip_address VARCHAR(50)"));
+            assertFalse(SchemaMigrator.alreadyApplied(conn, "ALTER TABLE device_connections ADD COLUMN missing INT"));
+        }
+    }
+
+    @Test
+    public void testUnreadableVersionTableIsNotTreatedAsNew() throws SQLException {
+        execute("CREATE TABLE schema_version (version INT PRIMARY KEY)");
+
+        assertThrows(RuntimeException.class, migrator::migrate);
+        assertThrows(SQLException.class, () -> count("SELECT COUNT(*) FROM users"));
+    }
+
+    @Test
+    public void testEditedMigrationStopsStartup() throws SQLException {
+        migrator.migrate();
+        execute("UPDATE schema_version SET checksum = REPEAT('0', 64) WHERE version = 1");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, migrator::migrate);
+        assertTrue(e.getMessage().contains("V1"));
+    }
+
+    @Test
+    public void testDatabaseNewerThanBuildStopsStartup() throws SQLException {
+        migrator.migrate();
+        execute("INSERT INTO schema_version (version, description, checksum, installed_at, execution_ms) "
+                + "VALUES (999, 'future', REPEAT('0', 64), CURRENT_TIMESTAMP, 0)");
+
+        assertThrows(IllegalStateException.class, migrator::migrate);
+    }
+
+    @Test
+    public void testScriptsSplitOnTrailingSemicolons() {
+        List<String> statements = SchemaMigrator.statements("""
+            -- comment; not a statement
+            CREATE TABLE a (
+                note VARCHAR(10) DEFAULT 'x;y'
+            );
+
+            INSERT INTO a VALUES ('b');
+            SELECT 1""");
+
+        assertEquals(3, statements.size());
+        assertTrue(statements.get(0).startsWith("CREATE TABLE a ("));
+        assertTrue(statements.get(0).endsWith(")"));
+        assertEquals("INSERT INTO a VALUES ('b')", statements.get(1));
+        assertEquals("SELECT 1", statements.get(2));
+    }
+}
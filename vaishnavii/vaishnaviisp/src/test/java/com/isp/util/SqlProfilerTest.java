@@ -0,0 +1,133 @@
+package com.isp.util;
+
+import com.isp.repo.DailyUsageRepository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlProfilerTest {
+
+    private String url;
+    private SqlProfiler profiler;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        url = "jdbc:h2:mem:sql-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE items (id INT PRIMARY KEY, name VARCHAR(50))");
+            stmt.execute("INSERT INTO items VALUES (1, 'a'), (2, 'b'), (3, 'c')");
+            stmt.execute("CREATE TABLE daily_usage (id VARCHAR(255) PRIMARY KEY, customer_id VARCHAR(255), date DATE)");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (profiler != null) profiler.close();
+    }
+
+    private Connection connect() throws SQLException {
+        return profiler.wrap(DriverManager.getConnection(url));
+    }
+
+    private static SqlProfiler.StatementStats stats(SqlProfiler.Report report, String sql) {
+        return report.statements().stream().filter(s -> s.sql().equals(sql)).findFirst().orElseThrow();
+    }
+
+    @Test
+    public void testFingerprintsIgnoreLiteralsAndWhitespace() {
+        assertEquals("SELECT * FROM t WHERE a = ? AND b IN (?) AND c = ?",
+                SqlProfiler.fingerprint("SELECT *\n  FROM t WHERE a = 'it''s' AND b IN (1, 2, -3) AND c = 4.5"));
+        assertEquals("UPDATE t SET threshold_1 = ? WHERE id IN (?)",
+                SqlProfiler.fingerprint("UPDATE t SET threshold_1 = ? WHERE id IN (?, ?,?)"));
+    }
+
+    @Test
+    public void testRecordsExecutionsRowsAndCallers() throws SQLException {
+        profiler = new SqlProfiler(() -> DriverManager.getConnection(url), new SqlProfiler.Settings(60_000, 100, 10));
+
+        try (Connection conn = connect()) {
+            for (int i = 1; i <= 2; i++) {
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM items WHERE id >= ?")) {
+                    stmt.setInt(1, i);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) { }
+                    }
+                }
+            }
+            try (Statement stmt = conn.createStatement()) {
+                assertEquals(1, stmt.executeUpdate("UPDATE items SET name = 'z' WHERE id = 3"));
+                assertThrows(SQLException.class, () -> stmt.executeQuery("SELECT * FROM missing WHERE id = 1"));
+            }
+        }
+        assertTrue(new DailyUsageRepository(this::connect).findByCustomerIdAndDate("c1", LocalDateTime.now()).isEmpty());
+
+        SqlProfiler.Report report = profiler.getReport();
+        SqlProfiler.StatementStats select = stats(report, "SELECT * FROM items WHERE id >= ?");
+        assertEquals(2, select.count());
+        assertEquals(5, select.rows());
+        assertEquals(0, select.errors());
+        assertEquals(1, stats(report, "UPDATE items SET name = ? WHERE id = ?").rows());
+        assertEquals(1, stats(report, "SELECT * FROM missing WHERE id = ?").errors());
+
+        SqlProfiler.StatementStats daily = report.statements().stream()
+                .filter(s -> s.sql().contains("FROM daily_usage")).findFirst().orElseThrow();
+        assertEquals(0, daily.rows());
+        assertEquals(1L, daily.callers().get("DailyUsageRepository.findByCustomerIdAndDate"));
+        assertTrue(report.slowQueries().isEmpty());
+    }
+
+    @Test
+    public void testSlowQueriesAreLoggedAndExplainedOnce() throws Exception {
+        profiler = new SqlProfiler(() -> DriverManager.getConnection(url), new SqlProfiler.Settings(0, 100, 2));
+
+        try (Connection conn = connect()) {
+            for (int i = 0; i < 3; i++) {
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT name FROM items WHERE id = ?")) {
+                    stmt.setInt(1, 2);
+                    stmt.executeQuery().close();
+                }
+            }
+        }
+
+        SqlProfiler.StatementStats select = null;
+        for (int i = 0; i < 100 && (select == null || select.plan() == null); i++) {
+            Thread.sleep(20);
+            select = stats(profiler.getReport(), "SELECT name FROM items WHERE id = ?");
+        }
+        assertNotNull(select.plan());
+        assertFalse(select.plan().isEmpty());
+        assertFalse(select.plan().get(0).containsKey("error"), select.plan().toString());
+
+        // Bounded to the newest entries
+        assertEquals(2, profiler.getReport().slowQueries().size());
+    }
+
+    @Test
+    public void testFingerprintsBeyondTheLimitShareOneEntry() throws SQLException {
+        profiler = new SqlProfiler(() -> DriverManager.getConnection(url), new SqlProfiler.Settings(60_000, 1, 10));
+
+        try (Connection conn = connect();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeQuery("SELECT id FROM items").close();
+            stmt.executeQuery("SELECT name FROM items").close();
+            stmt.executeQuery("SELECT id, name FROM items").close();
+        }
+
+        SqlProfiler.Report report = profiler.getReport();
+        assertEquals(2, report.statements().size());
+        assertEquals(2, stats(report, SqlProfiler.OVERFLOW).count());
+    }
+}
@@ -0,0 +1,129 @@
+package com.isp.web;
+
+import com.isp.model.Notification;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotificationHubTest {
+
+    private final AtomicInteger dbLoads = new AtomicInteger();
+    private final NotificationHub hub = new NotificationHub(new NotificationHub.Settings(0, 2, 100), userId -> {
+        dbLoads.incrementAndGet();
+        return 3;
+    });
+
+    @AfterEach
+    public void tearDown() {
+        hub.close();
+    }
+
+    @Test
+    public void testCountsUpdateIncrementally() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        hub.register("u1", out, () -> {});
+        assertEquals(3, hub.getUnreadCount("u1"));
+        assertEquals(-1, hub.getUnreadCount("u2"));
+
+        hub.onCreated(new Notification("u1", "BROWSER", "SYSTEM", "Hello", "World", "LOW"));
+        hub.onCreated(new Notification("u2", "BROWSER", "SYSTEM", "Not yours", "-", "LOW"));
+        hub.onRead("u1", 2);
+        hub.awaitDispatch();
+
+        assertEquals(2, hub.getUnreadCount("u1"));
+        assertEquals(1, dbLoads.get());
+        String stream = out.toString(StandardCharsets.UTF_8);
+        assertTrue(stream.startsWith("retry: 5000\n\nevent: count\ndata: {\"unreadCount\":3}\n\n"), stream);
+        assertTrue(stream.contains("event: notification\ndata: {"));
+        assertTrue(stream.contains("\"title\":\"Hello\""));
+        assertFalse(stream.contains("Not yours"));
+        assertTrue(stream.endsWith("event: count\ndata: {\"unreadCount\":2}\n\n"));
+    }
+
+    @Test
+    public void testOldestStreamDroppedOverPerUserCap() {
+        AtomicInteger closed = new AtomicInteger();
+        NotificationHub.Subscriber first = hub.register("u1", new ByteArrayOutputStream(), closed::incrementAndGet);
+        hub.register("u1", new ByteArrayOutputStream(), closed::incrementAndGet);
+        hub.register("u1", new ByteArrayOutputStream(), closed::incrementAndGet);
+
+        assertTrue(first.isClosed());
+        assertEquals(1, closed.get());
+        assertEquals(2, hub.getStats().clients());
+        // Only the first stream for a user queries the unread count
+        assertEquals(1, dbLoads.get());
+    }
+
+    @Test
+    public void testBrokenStreamIsForgotten() throws Exception {
+        ByteArrayOutputStream healthy = new ByteArrayOutputStream();
+        hub.register("u1", healthy, () -> {});
+        hub.register("u1", new OutputStream() {
+            private int writes;
+
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("gone");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                // Accept the greeting, then fail like a disconnected client
+                if (writes++ > 0) throw new IOException("gone");
+            }
+        }, () -> {});
+
+        hub.onRead("u1", 1);
+        hub.awaitDispatch();
+
+        NotificationHub.Stats stats = hub.getStats();
+        assertEquals(1, stats.clients());
+        assertEquals(1, stats.writeFailures());
+        assertTrue(healthy.toString(StandardCharsets.UTF_8).endsWith("{\"unreadCount\":2}\n\n"));
+    }
+
+    @Test
+    public void testStreamsOverHttpServer() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/stream", exchange -> hub.subscribe(exchange, "u1"));
+        server.start();
+        try {
+            HttpURLConnection conn = (HttpURLConnection) URI.create(
+                    "http://127.0.0.1:" + server.getAddress().getPort() + "/stream").toURL().openConnection();
+            conn.setReadTimeout(5_000);
+            assertEquals(200, conn.getResponseCode());
+            assertTrue(conn.getContentType().startsWith("text/event-stream"));
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
+                assertEquals("retry: 5000", reader.readLine());
+                assertEquals("", reader.readLine());
+                assertEquals("event: count", reader.readLine());
+                assertEquals("data: {\"unreadCount\":3}", reader.readLine());
+                assertEquals("", reader.readLine());
+
+                hub.onCreated(new Notification("u1", "BROWSER", "TICKET", "Reply", "An admin replied", "MEDIUM"));
+                assertEquals("event: notification", reader.readLine());
+                assertTrue(reader.readLine().contains("\"title\":\"Reply\""));
+                assertEquals("", reader.readLine());
+                assertEquals("event: count", reader.readLine());
+                assertEquals("data: {\"unreadCount\":4}", reader.readLine());
+            }
+            conn.disconnect();
+        } finally {
+            server.stop(0);
+        }
+    }
+}
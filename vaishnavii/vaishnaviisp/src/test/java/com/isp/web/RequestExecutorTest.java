@@ -0,0 +1,168 @@
+package com.isp.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestExecutorTest {
+
+    private static RequestExecutor fromConfig(String mode, String threads, String queue) {
+        setOrClear("isp.http.executor", mode);
+        setOrClear("isp.http.threads", threads);
+        setOrClear("isp.http.queue", queue);
+        try {
+            return RequestExecutor.fromConfig();
+        } finally {
+            System.clearProperty("isp.http.executor");
+            System.clearProperty("isp.http.threads");
+            System.clearProperty("isp.http.queue");
+        }
+    }
+
+    private static void setOrClear(String property, String value) {
+        if (value == null) {
+            System.clearProperty(property);
+        } else {
+            System.setProperty(property, value);
+        }
+    }
+
+    @Test
+    public void testModeSelectedFromConfig() {
+        try (RequestExecutor executor = fromConfig(null, null, null)) {
+            assertEquals(RequestExecutor.Mode.VIRTUAL, executor.getMode());
+        }
+        try (RequestExecutor executor = fromConfig("platform", "3", "7")) {
+            assertEquals(RequestExecutor.Mode.PLATFORM, executor.getMode());
+            assertEquals("platform", executor.getStats().mode());
+            assertEquals(3, executor.getStats().maxThreads());
+            assertEquals(7, executor.getStats().queueCapacity());
+        }
+        try (RequestExecutor executor = fromConfig("DIRECT", "3", "7")) {
+            assertEquals(RequestExecutor.Mode.DIRECT, executor.getMode());
+            // Pool sizing only applies to the platform mode
+            assertEquals(0, executor.getStats().maxThreads());
+        }
+        try (RequestExecutor executor = fromConfig("fibers", null, null)) {
+            assertEquals(RequestExecutor.Mode.VIRTUAL, executor.getMode());
+        }
+    }
+
+    @Test
+    public void testVirtualModeRunsEachRequestOnAVirtualThread() throws Exception {
+        AtomicBoolean virtual = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+        try (RequestExecutor executor = new RequestExecutor(RequestExecutor.Mode.VIRTUAL, 0, 0)) {
+            executor.execute(() -> {
+                virtual.set(Thread.currentThread().isVirtual());
+                done.countDown();
+            });
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            waitFor(() -> executor.getStats().completed() == 1);
+        }
+        assertTrue(virtual.get());
+    }
+
+    @Test
+    public void testDirectModeRunsOnTheCallerAndCountsFailures() {
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        try (RequestExecutor executor = new RequestExecutor(RequestExecutor.Mode.DIRECT, 0, 0)) {
+            executor.execute(() -> ranOn.set(Thread.currentThread()));
+            assertThrows(IllegalStateException.class, () -> executor.execute(() -> {
+                throw new IllegalStateException("handler failed");
+            }));
+
+            RequestExecutor.Stats stats = executor.getStats();
+            assertEquals(1, stats.completed());
+            assertEquals(1, stats.failed());
+            assertEquals(0, stats.inFlight());
+            assertEquals(0, stats.queued());
+        }
+        assertSame(Thread.currentThread(), ranOn.get());
+    }
+
+    @Test
+    public void testPlatformGaugesTrackQueuedAndInFlightRequests() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (RequestExecutor executor = new RequestExecutor(RequestExecutor.Mode.PLATFORM, 1, 1)) {
+            executor.execute(() -> {
+                started.countDown();
+                await(release);
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            executor.execute(() -> {
+            });
+
+            RequestExecutor.Stats busy = executor.getStats();
+            assertEquals(1, busy.inFlight());
+            assertEquals(1, busy.queued());
+
+            // Pool and queue are full, so the caller runs the request itself
+            AtomicReference<Thread> ranOn = new AtomicReference<>();
+            executor.execute(() -> ranOn.set(Thread.currentThread()));
+            assertSame(Thread.currentThread(), ranOn.get());
+            assertEquals(1, executor.getStats().callerRuns());
+
+            release.countDown();
+            waitFor(() -> executor.getStats().completed() == 3);
+            RequestExecutor.Stats idle = executor.getStats();
+            assertEquals(0, idle.inFlight());
+            assertEquals(0, idle.queued());
+            assertEquals(2, idle.peakInFlight());
+        }
+    }
+
+    @Test
+    public void testCloseWaitsForInFlightRequestsAndRejectsNewOnes() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean finished = new AtomicBoolean();
+        RequestExecutor executor = new RequestExecutor(RequestExecutor.Mode.PLATFORM, 2, 10);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finished.set(true);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        executor.close();
+        assertTrue(finished.get());
+
+        AtomicBoolean ranAfterClose = new AtomicBoolean();
+        executor.execute(() -> ranAfterClose.set(true));
+        assertFalse(ranAfterClose.get());
+        assertEquals(0, executor.getStats().queued());
+        assertEquals(1, executor.getStats().completed());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) fail("Timed out waiting for request executor");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.isp.web;
+
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestMetricsTest {
+
+    @Test
+    public void testRouteLabelsCollapseIds() {
+        assertEquals("GET /api/customers/{id}", RequestMetrics.routeLabel("get", "/api/customers/cust-42"));
+        assertEquals("GET /api/customers/{id}/summary",
+                RequestMetrics.routeLabel("GET", "/api/customers/3f2b9c1e-8d7a-4e2b-9f1a-0c1d2e3f4a5b/summary"));
+        assertEquals("POST /api/notifications/mark-all-read",
+                RequestMetrics.routeLabel("POST", "/api/notifications/mark-all-read"));
+        assertEquals("GET /{static}", RequestMetrics.routeLabel("GET", "/js/app.js"));
+    }
+
+    @Test
+    public void testRecordsCountStatusAndBytes() throws IOException {
+        RequestMetrics metrics = new RequestMetrics();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/echo", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            int status = body.length == 0 ? 400 : 200;
+            exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }).getFilters().add(metrics);
+        server.start();
+        try {
+            int port = server.getAddress().getPort();
+            assertEquals(200, post(port, "hello"));
+            assertEquals(200, post(port, "world!"));
+            assertEquals(400, post(port, ""));
+        } finally {
+            server.stop(0);
+        }
+
+        JsonObject route = metrics.toJson().getAsJsonArray("routes").get(0).getAsJsonObject();
+        assertEquals("POST /api/echo", route.get("route").getAsString());
+        assertEquals(3, route.get("count").getAsLong());
+        assertEquals(2, route.getAsJsonObject("status").get("200").getAsLong());
+        assertEquals(1, route.getAsJsonObject("status").get("400").getAsLong());
+        assertEquals(11, route.get("bytesIn").getAsLong());
+        assertEquals(11, route.get("bytesOut").getAsLong());
+
+        String prometheus = metrics.toPrometheus();
+        assertTrue(prometheus.contains("isp_http_requests_total{method=\"POST\",route=\"/api/echo\",status=\"200\"} 2"));
+        assertTrue(prometheus.contains("isp_http_request_duration_seconds_count{method=\"POST\",route=\"/api/echo\"} 3"));
+    }
+
+    private static int post(int port, String body) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) URI.create("http://127.0.0.1:" + port + "/api/echo").toURL().openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        try (OutputStream os = conn.getOutputStream()) {
+            os.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = conn.getResponseCode();
+        try (InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+            if (in != null) in.readAllBytes();
+        }
+        conn.disconnect();
+        return status;
+    }
+}
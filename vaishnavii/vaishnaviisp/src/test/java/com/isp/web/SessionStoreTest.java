@@ -0,0 +1,114 @@
+package com.isp.web;
+
+import com.isp.model.User;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionStoreTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private SessionStore store(long idleMillis, long lifetimeMillis, int maxPerUser) {
+        return new SessionStore(new SessionStore.Settings(idleMillis, lifetimeMillis, maxPerUser, 0), now::get, false);
+    }
+
+    private static SessionStore.Principal customer(String userId) {
+        return new SessionStore.Principal(userId, "user-" + userId, userId + "@example.com", User.Role.CUSTOMER, "prof-" + userId);
+    }
+
+    @Test
+    public void testCreateAndResolve() {
+        SessionStore sessions = store(60_000, 3_600_000, 5);
+        String token = sessions.create(customer("u1"));
+
+        SessionStore.Principal principal = sessions.get(token);
+        assertNotNull(principal);
+        assertEquals("u1", principal.userId());
+        assertEquals("prof-u1", principal.profileId());
+        assertFalse(principal.isAdmin());
+        assertNull(sessions.get("not-a-token"));
+        assertNull(sessions.get(null));
+    }
+
+    @Test
+    public void testTokensAreRandomAndUrlSafe() {
+        SessionStore sessions = store(60_000, 3_600_000, 1000);
+        Set<String> tokens = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            String token = sessions.create(customer("u1"));
+            assertEquals(43, token.length());
+            assertTrue(token.matches("[A-Za-z0-9_-]+"));
+            tokens.add(token);
+        }
+        assertEquals(200, tokens.size());
+    }
+
+    @Test
+    public void testSlidingIdleExpiry() {
+        SessionStore sessions = store(10_000, 3_600_000, 5);
+        String token = sessions.create(customer("u1"));
+
+        now.addAndGet(8_000);
+        assertNotNull(sessions.get(token));
+        now.addAndGet(8_000);
+        assertNotNull(sessions.get(token), "access should have extended the idle deadline");
+        now.addAndGet(10_000);
+        assertNull(sessions.get(token));
+        assertEquals(1, sessions.getStats().expired());
+    }
+
+    @Test
+    public void testAbsoluteExpiry() {
+        SessionStore sessions = store(10_000, 30_000, 5);
+        String token = sessions.create(customer("u1"));
+        for (int i = 0; i < 5; i++) {
+            now.addAndGet(5_000);
+            assertNotNull(sessions.get(token));
+        }
+        now.addAndGet(5_000);
+        assertNull(sessions.get(token));
+    }
+
+    @Test
+    public void testPerUserCapEvictsOldest() {
+        SessionStore sessions = store(60_000, 3_600_000, 2);
+        String first = sessions.create(customer("u1"));
+        String second = sessions.create(customer("u1"));
+        String third = sessions.create(customer("u1"));
+        String other = sessions.create(customer("u2"));
+
+        assertNull(sessions.get(first));
+        assertNotNull(sessions.get(second));
+        assertNotNull(sessions.get(third));
+        assertNotNull(sessions.get(other));
+        assertEquals(1, sessions.getStats().evicted());
+        assertEquals(3, sessions.size());
+    }
+
+    @Test
+    public void testSweepAndInvalidate() {
+        SessionStore sessions = store(10_000, 3_600_000, 5);
+        String a = sessions.create(customer("u1"));
+        String b = sessions.create(customer("u1"));
+        String c = sessions.create(customer("u2"));
+
+        sessions.invalidate(a);
+        assertNull(sessions.get(a));
+        sessions.invalidateUser("u2");
+        assertNull(sessions.get(c));
+
+        now.addAndGet(20_000);
+        assertEquals(1, sessions.sweep());
+        assertNull(sessions.get(b));
+        SessionStore.Stats stats = sessions.getStats();
+        assertEquals(0, stats.active());
+        assertEquals(0, stats.users());
+        assertEquals(2, stats.invalidated());
+    }
+}